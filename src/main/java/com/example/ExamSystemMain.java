@@ -2,6 +2,9 @@ package com.example;
 
 import com.example.database.DatabaseManager;
 import com.example.gui.MainFrame;
+import com.example.service.AsyncService;
+import com.example.service.AttemptJournal;
+import com.example.service.SubmissionQueue;
 
 import javax.swing.*;
 import com.formdev.flatlaf.FlatLightLaf;
@@ -23,17 +26,24 @@ public class ExamSystemMain {
 
         // 初始化数据库，确保只在程序启动时执行一次
         DatabaseManager.getInstance().initializeDatabase();
+        // 开启交卷日志时，启动后立即把上次退出前未写入数据库的交卷写入
+        SubmissionQueue submissionQueue = SubmissionQueue.getInstance();
 
         SwingUtilities.invokeLater(() -> {
             MainFrame gui = new MainFrame();
             gui.setVisible(true);
 
-            // 添加窗口监听器，在窗口关闭时关闭数据库连接
+            // 添加窗口监听器，在窗口关闭时关闭数据库连接池
             gui.addWindowListener(new WindowAdapter() {
                 @Override
                 public void windowClosing(WindowEvent e) {
-                    DatabaseManager.getInstance().closeConnection();
-                    System.out.println("Database connection closed.");
+                    AsyncService.getInstance().shutdown();
+                    AttemptJournal.getInstance().shutdown(); // 写入尚未保存的答题进度
+                    if (submissionQueue != null) {
+                        submissionQueue.shutdown();
+                    }
+                    DatabaseManager.getInstance().shutdown();
+                    System.out.println("Database connection pool closed.");
                     System.exit(0);
                 }
             });
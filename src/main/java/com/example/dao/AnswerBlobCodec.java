@@ -0,0 +1,170 @@
+package com.example.dao;
+
+import com.example.model.StudentAnswerDetail;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 整场考试作答的紧凑二进制编码
+ * 紧凑存储模式下，一次考试的全部作答编码为一个字节数组保存在 exam_records.answers_blob 中，
+ * 交卷只需插入一行考试记录，查看答题详情只需按主键读取一行。
+ *
+ * 格式：版本号（1 字节）、作答数量（varint），之后每道题依次为
+ * 题目ID（varint）、题目快照ID（varint）、标志字节，必要时再跟答案文本。
+ * 标志字节最低位表示是否正确，第 2 位表示答案以选项掩码保存，此时高 4 位为 A-D 的掩码；
+ * 否则答案以长度（varint）加 UTF-8 字节保存。
+ * 只有能由掩码原样还原的答案（如 "A"、"A,C"、空答案）才用掩码保存，解码结果与交卷时的答案完全相同。
+ */
+public final class AnswerBlobCodec {
+    private static final int FORMAT_VERSION = 1;
+    private static final int FLAG_CORRECT = 1;
+    private static final int FLAG_MASK = 1 << 1;
+    private static final String[] MASK_TEXT = new String[16];
+
+    static {
+        for (int mask = 0; mask < 16; mask++) {
+            StringBuilder text = new StringBuilder();
+            for (int bit = 0; bit < 4; bit++) {
+                if ((mask & (1 << bit)) != 0) {
+                    if (text.length() > 0) {
+                        text.append(',');
+                    }
+                    text.append((char) ('A' + bit));
+                }
+            }
+            MASK_TEXT[mask] = text.toString();
+        }
+    }
+
+    private AnswerBlobCodec() {
+    }
+
+    /**
+     * 编码一次考试的作答，每条详情需已设置题目ID和快照ID
+     */
+    public static byte[] encode(List<StudentAnswerDetail> details) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + details.size() * 6);
+        out.write(FORMAT_VERSION);
+        writeVarint(out, details.size());
+        for (StudentAnswerDetail detail : details) {
+            writeVarint(out, detail.getQuestionId());
+            writeVarint(out, detail.getSnapshotId());
+            String answer = detail.getStudentAnswer() == null ? "" : detail.getStudentAnswer();
+            int flags = detail.isCorrect() ? FLAG_CORRECT : 0;
+            int mask = canonicalMask(answer);
+            if (mask >= 0) {
+                out.write(flags | FLAG_MASK | (mask << 4));
+            } else {
+                out.write(flags);
+                byte[] bytes = answer.getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, bytes.length);
+                out.write(bytes, 0, bytes.length);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 解码为答题详情，只包含题目ID、快照ID、学生答案和是否正确，题目内容需另外从快照中读取
+     * @throws IllegalArgumentException 数据损坏或版本不支持时
+     */
+    public static List<StudentAnswerDetail> decode(int examRecordId, byte[] blob) {
+        Reader in = new Reader(blob);
+        int version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("不支持的作答编码版本: " + version);
+        }
+        int count = in.readVarint();
+        List<StudentAnswerDetail> details = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StudentAnswerDetail detail = new StudentAnswerDetail();
+            detail.setExamRecordId(examRecordId);
+            detail.setQuestionId(in.readVarint());
+            detail.setSnapshotId(in.readVarint());
+            int flags = in.readByte();
+            detail.setCorrect((flags & FLAG_CORRECT) != 0);
+            if ((flags & FLAG_MASK) != 0) {
+                detail.setStudentAnswer(MASK_TEXT[flags >>> 4]);
+            } else {
+                int length = in.readVarint();
+                detail.setStudentAnswer(in.readUtf8(length));
+            }
+            details.add(detail);
+        }
+        return details;
+    }
+
+    /**
+     * 答案能由掩码原样还原时返回掩码，否则返回 -1
+     */
+    private static int canonicalMask(String answer) {
+        if (answer.length() > 7) {
+            return -1; // "A,B,C,D" 是最长的掩码文本
+        }
+        int mask = 0;
+        for (int i = 0; i < answer.length(); i++) {
+            char c = answer.charAt(i);
+            if (i % 2 == 1) {
+                if (c != ',') {
+                    return -1;
+                }
+            } else if (c >= 'A' && c <= 'D') {
+                mask |= 1 << (c - 'A');
+            } else {
+                return -1;
+            }
+        }
+        return MASK_TEXT[mask].equals(answer) ? mask : -1;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("varint 不能为负数: " + value);
+        }
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        int readByte() {
+            if (position >= data.length) {
+                throw new IllegalArgumentException("作答编码数据不完整");
+            }
+            return data[position++] & 0xFF;
+        }
+
+        int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("作答编码中的 varint 过长");
+        }
+
+        String readUtf8(int length) {
+            if (length < 0 || length > data.length - position) {
+                throw new IllegalArgumentException("作答编码数据不完整");
+            }
+            String text = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return text;
+        }
+    }
+}
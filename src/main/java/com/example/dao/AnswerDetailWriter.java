@@ -0,0 +1,96 @@
+package com.example.dao;
+
+import com.example.model.StudentAnswerDetail;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 答题详情批量写入器
+ * 把多条答题详情拼成一条多行 INSERT ... VALUES (...), (...) 语句，每条语句最多 ROWS_PER_STATEMENT 行（默认 250）。
+ * 目标：n 行答题详情只执行 ceil(n / 250) 条语句，一次 100 题的交卷只需一次数据库往返，而不是每题一次；
+ * AnswerDetailWriterTest 用记录调用的 Connection 校验语句数量和参数绑定。
+ * 交卷流程不需要答题详情的自增 ID，因此不请求 RETURN_GENERATED_KEYS。
+ * 题干、选项和正确答案保存在题目快照中，写入前需先用 QuestionSnapshotDAO 设置 snapshotId。
+ * 拼接由这里完成，不依赖连接 URL 中的 rewriteBatchedStatements 设置。
+ */
+final class AnswerDetailWriter {
+    private static final Logger LOGGER = Logger.getLogger(AnswerDetailWriter.class.getName());
+
+    private static final String INSERT_PREFIX = "INSERT INTO student_answer_details (exam_record_id, question_id, snapshot_id, " +
+            "student_answer, is_correct) VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?)";
+
+    // 每行 5 个参数，250 行共 1250 个参数，远低于 MySQL 单条语句 65535 个参数的上限
+    static final int ROWS_PER_STATEMENT = Math.max(1, Integer.getInteger("exam.detailWriter.rowsPerStatement", 250));
+    private static final String FULL_STATEMENT_SQL = buildSql(ROWS_PER_STATEMENT);
+
+    private AnswerDetailWriter() {
+    }
+
+    /**
+     * 在 conn 上写入所有答题详情
+     * @return 执行的 INSERT 语句数量（即数据库往返次数）
+     */
+    static int write(Connection conn, List<StudentAnswerDetail> details) throws SQLException {
+        long startNanos = System.nanoTime();
+        int statements = 0;
+        int size = details.size();
+        int from = 0;
+        // 整段使用同一条预编译语句，最后不足一段的部分单独拼接
+        if (size >= ROWS_PER_STATEMENT) {
+            try (PreparedStatement pstmt = conn.prepareStatement(FULL_STATEMENT_SQL)) {
+                while (size - from >= ROWS_PER_STATEMENT) {
+                    bindRows(pstmt, details, from, from + ROWS_PER_STATEMENT);
+                    pstmt.executeUpdate();
+                    statements++;
+                    from += ROWS_PER_STATEMENT;
+                }
+            }
+        }
+        if (from < size) {
+            try (PreparedStatement pstmt = conn.prepareStatement(buildSql(size - from))) {
+                bindRows(pstmt, details, from, size);
+                pstmt.executeUpdate();
+                statements++;
+            }
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            long micros = Math.max(1, (System.nanoTime() - startNanos) / 1000);
+            LOGGER.log(Level.FINE, "Wrote " + size + " answer details in " + statements + " statement(s), "
+                    + micros + " us (" + (size * 1_000_000L / micros) + " rows/s)");
+        }
+        return statements;
+    }
+
+    private static void bindRows(PreparedStatement pstmt, List<StudentAnswerDetail> details, int from, int to) throws SQLException {
+        int index = 1;
+        for (int i = from; i < to; i++) {
+            StudentAnswerDetail detail = details.get(i);
+            if (detail.getSnapshotId() <= 0) {
+                throw new SQLException("答题详情缺少题目快照，题目ID: " + detail.getQuestionId());
+            }
+            pstmt.setInt(index++, detail.getExamRecordId());
+            pstmt.setInt(index++, detail.getQuestionId());
+            pstmt.setInt(index++, detail.getSnapshotId());
+            pstmt.setString(index++, detail.getStudentAnswer());
+            pstmt.setBoolean(index++, detail.isCorrect());
+        }
+    }
+
+    private static String buildSql(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows * (ROW_PLACEHOLDERS.length() + 2));
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDERS);
+        }
+        return sql.toString();
+    }
+}
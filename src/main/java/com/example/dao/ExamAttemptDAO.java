@@ -0,0 +1,193 @@
+package com.example.dao;
+
+import com.example.database.DatabaseManager;
+import com.example.model.ExamAttempt;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * 进行中考试的数据访问对象
+ * exam_attempts_in_progress 每场考试一行（题目顺序、剩余时间），exam_attempt_answers 每道已作答的题一行。
+ * 自动保存只写入变化的部分：多行 INSERT ... ON DUPLICATE KEY UPDATE，一条语句覆盖多名学生的改动。
+ */
+public class ExamAttemptDAO {
+    private static final int MAX_ROWS_PER_STATEMENT = 500;
+
+    private Connection connection;
+
+    public ExamAttemptDAO() {
+        this.connection = null;
+    }
+
+    /**
+     * 使用调用方管理的连接（例如事务连接）
+     * DAO 内部关闭连接时不会真正关闭或归还它，由调用方负责结束其生命周期
+     */
+    public ExamAttemptDAO(Connection connection) {
+        this.connection = DatabaseManager.nonClosingView(connection);
+    }
+
+    private Connection getConnection() throws SQLException {
+        if (this.connection != null) {
+            return this.connection;
+        } else {
+            return DatabaseManager.getInstance().getConnection();
+        }
+    }
+
+    /**
+     * 写入考试行，已存在时只更新剩余时间
+     */
+    public void upsertAttempts(List<ExamAttempt> attempts) throws SQLException {
+        try (Connection conn = getConnection()) {
+            for (int from = 0; from < attempts.size(); from += MAX_ROWS_PER_STATEMENT) {
+                List<ExamAttempt> chunk = attempts.subList(from, Math.min(attempts.size(), from + MAX_ROWS_PER_STATEMENT));
+                String sql = "INSERT INTO exam_attempts_in_progress (attempt_id, student_id, subject, question_ids, remaining_seconds) VALUES " +
+                        rows(chunk.size(), "(?, ?, ?, ?, ?)") +
+                        " ON DUPLICATE KEY UPDATE remaining_seconds = VALUES(remaining_seconds), updated_at = CURRENT_TIMESTAMP";
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    int index = 1;
+                    for (ExamAttempt attempt : chunk) {
+                        pstmt.setString(index++, attempt.getAttemptId());
+                        pstmt.setString(index++, attempt.getStudentId());
+                        pstmt.setString(index++, attempt.getSubject());
+                        pstmt.setString(index++, joinIds(attempt.getQuestionIds()));
+                        pstmt.setInt(index++, attempt.getRemainingSeconds());
+                    }
+                    pstmt.executeUpdate();
+                }
+            }
+        }
+    }
+
+    /**
+     * 写入作答，同一道题已有答案时覆盖
+     * @param answersByAttempt 考试ID到（题目ID到答案）的映射
+     */
+    public void upsertAnswers(Map<String, Map<Integer, String>> answersByAttempt) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        for (Map.Entry<String, Map<Integer, String>> attempt : answersByAttempt.entrySet()) {
+            for (Map.Entry<Integer, String> answer : attempt.getValue().entrySet()) {
+                rows.add(new Object[]{attempt.getKey(), answer.getKey(), answer.getValue()});
+            }
+        }
+        try (Connection conn = getConnection()) {
+            for (int from = 0; from < rows.size(); from += MAX_ROWS_PER_STATEMENT) {
+                List<Object[]> chunk = rows.subList(from, Math.min(rows.size(), from + MAX_ROWS_PER_STATEMENT));
+                String sql = "INSERT INTO exam_attempt_answers (attempt_id, question_id, answer) VALUES " +
+                        rows(chunk.size(), "(?, ?, ?)") + " ON DUPLICATE KEY UPDATE answer = VALUES(answer)";
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    int index = 1;
+                    for (Object[] row : chunk) {
+                        pstmt.setString(index++, (String) row[0]);
+                        pstmt.setInt(index++, (Integer) row[1]);
+                        pstmt.setString(index++, (String) row[2]);
+                    }
+                    pstmt.executeUpdate();
+                }
+            }
+        }
+    }
+
+    /**
+     * 删除这些学生除指定考试以外的进行中考试（每名学生只保留最新的一场）
+     */
+    public void deleteOtherAttempts(List<ExamAttempt> attempts) throws SQLException {
+        String sql = "DELETE FROM exam_attempts_in_progress WHERE student_id = ? AND attempt_id <> ?";
+        try (Connection conn = getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (ExamAttempt attempt : attempts) {
+                pstmt.setString(1, attempt.getStudentId());
+                pstmt.setString(2, attempt.getAttemptId());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * 删除进行中的考试，作答随外键级联删除
+     */
+    public void deleteAttempts(Collection<String> attemptIds) throws SQLException {
+        List<String> ids = new ArrayList<>(attemptIds);
+        try (Connection conn = getConnection()) {
+            for (int from = 0; from < ids.size(); from += MAX_ROWS_PER_STATEMENT) {
+                List<String> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_ROWS_PER_STATEMENT));
+                String sql = "DELETE FROM exam_attempts_in_progress WHERE attempt_id IN (" + rows(chunk.size(), "?") + ")";
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        pstmt.setString(i + 1, chunk.get(i));
+                    }
+                    pstmt.executeUpdate();
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取学生最近一场进行中的考试及其作答，没有时返回 null
+     */
+    public ExamAttempt findLatestAttempt(String studentId) throws SQLException {
+        String attemptSql = "SELECT attempt_id, subject, question_ids, remaining_seconds, updated_at " +
+                "FROM exam_attempts_in_progress WHERE student_id = ? ORDER BY updated_at DESC LIMIT 1";
+        String answersSql = "SELECT question_id, answer FROM exam_attempt_answers WHERE attempt_id = ?";
+        try (Connection conn = getConnection()) {
+            ExamAttempt attempt;
+            try (PreparedStatement pstmt = conn.prepareStatement(attemptSql)) {
+                pstmt.setString(1, studentId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    attempt = new ExamAttempt(rs.getString("attempt_id"), studentId, rs.getString("subject"),
+                            parseIds(rs.getString("question_ids")), rs.getInt("remaining_seconds"));
+                    attempt.setUpdatedAt(rs.getTimestamp("updated_at"));
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(answersSql)) {
+                pstmt.setString(1, attempt.getAttemptId());
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        attempt.getAnswers().put(rs.getInt("question_id"), rs.getString("answer"));
+                    }
+                }
+            }
+            return attempt;
+        }
+    }
+
+    private static String rows(int count, String row) {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (int i = 0; i < count; i++) {
+            joiner.add(row);
+        }
+        return joiner.toString();
+    }
+
+    private static String joinIds(int[] ids) {
+        StringJoiner joiner = new StringJoiner(",");
+        for (int id : ids) {
+            joiner.add(Integer.toString(id));
+        }
+        return joiner.toString();
+    }
+
+    private static int[] parseIds(String value) {
+        if (value == null || value.isEmpty()) {
+            return new int[0];
+        }
+        String[] parts = value.split(",");
+        int[] ids = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            ids[i] = Integer.parseInt(parts[i].trim());
+        }
+        return ids;
+    }
+}
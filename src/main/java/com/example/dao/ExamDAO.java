@@ -5,7 +5,11 @@ import com.example.model.ExamRecord;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -13,13 +17,29 @@ public class ExamDAO {
     private static final Logger LOGGER = Logger.getLogger(ExamDAO.class.getName());
     private Connection connection;
 
+    /**
+     * 逐行接收考试记录的回调，各列以基本类型传入，不创建 ExamRecord 对象
+     */
+    @FunctionalInterface
+    public interface ExamRecordRowHandler {
+        /**
+         * @param settled 记录写入已超过 settleSeconds 秒，见 scanExamRecordsAfter
+         */
+        void accept(int id, String studentId, String subject, int score, int totalQuestions, long examDateMillis,
+                    boolean settled) throws SQLException;
+    }
+
     public ExamDAO() {
         // Default constructor, uses DatabaseManager to get connection
         this.connection = null; // Will get connection on demand
     }
 
+    /**
+     * 使用调用方管理的连接（例如事务连接）
+     * DAO 内部关闭连接时不会真正关闭或归还它，由调用方负责结束其生命周期
+     */
     public ExamDAO(Connection connection) {
-        this.connection = connection;
+        this.connection = DatabaseManager.nonClosingView(connection);
     }
 
     private Connection getConnection() throws SQLException {
@@ -38,17 +58,47 @@ public class ExamDAO {
      * @throws SQLException 如果数据库操作失败
      */
     public boolean addExamRecord(ExamRecord record) throws SQLException {
-        String sql = "INSERT INTO exam_records (student_id, subject, score, exam_date, total_questions) " +
-                    "VALUES (?, ?, ?, ?, ?)";
+        return addExamRecord(record, null);
+    }
+
+    /**
+     * 添加考试记录，并把整场考试的作答以紧凑编码一起保存（见 AnswerBlobCodec）
+     *
+     * @param record 考试记录对象
+     * @param answersBlob 编码后的作答，为 null 时作答保存在 student_answer_details 中
+     * @return 是否成功添加
+     * @throws SQLException 如果数据库操作失败
+     */
+    public boolean addExamRecord(ExamRecord record, byte[] answersBlob) throws SQLException {
+        return addExamRecord(record, answersBlob, null);
+    }
+
+    /**
+     * 添加考试记录，同时记录交卷ID
+     * submission_id 有唯一约束，同一次交卷重复写入时会失败，用于提交队列重放时去重
+     * 不更新成绩统计，调用方应在同一事务中调用 StudentSubjectStatsDAO.recordExam（见 SubmissionWriter）
+     *
+     * @param record 考试记录对象
+     * @param answersBlob 编码后的作答，可以为 null
+     * @param submissionId 交卷ID，可以为 null
+     * @return 是否成功添加
+     * @throws SQLException 如果数据库操作失败
+     */
+    public boolean addExamRecord(ExamRecord record, byte[] answersBlob, String submissionId) throws SQLException {
+        String sql = "INSERT INTO exam_records (student_id, subject, score, exam_date, total_questions, answers_blob, submission_id) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
         
         LOGGER.log(Level.FINE, "Attempting to add exam record for student: " + record.getStudentId());
         
-        try (PreparedStatement pstmt = getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             pstmt.setString(1, String.valueOf(record.getStudentId()));
             pstmt.setString(2, record.getSubject());
             pstmt.setInt(3, record.getScore());
             pstmt.setTimestamp(4, new Timestamp(record.getExamDate().getTime()));
             pstmt.setInt(5, record.getTotalQuestions());
+            pstmt.setBytes(6, answersBlob);
+            pstmt.setString(7, submissionId);
 
             int affectedRows = pstmt.executeUpdate();
 
@@ -85,7 +135,8 @@ public class ExamDAO {
 
         LOGGER.log(Level.FINE, "Retrieving exam records for student: " + studentId);
 
-        try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, studentId);
             try (ResultSet rs = pstmt.executeQuery()) {
@@ -134,7 +185,8 @@ public class ExamDAO {
 
         LOGGER.log(Level.FINE, "Retrieving all exam records");
 
-        try (Statement stmt = getConnection().createStatement();
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
@@ -167,21 +219,20 @@ public class ExamDAO {
     }
 
     /**
-     * 删除考试记录
+     * 删除考试记录，并在同一事务中重新聚合其 (学生, 科目) 的成绩统计
+     * 使用调用方的连接时在调用方的事务中执行
      *
      * @param recordId 考试记录ID
      * @return 是否成功删除
      * @throws SQLException 如果数据库操作失败
      */
     public boolean deleteExamRecord(int recordId) throws SQLException {
-        String sql = "DELETE FROM exam_records WHERE id = ?";
-        
         LOGGER.log(Level.FINE, "Attempting to delete exam record with ID: " + recordId);
         
-        try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, recordId);
-
-            int affectedRows = pstmt.executeUpdate();
+        try {
+            int affectedRows = connection != null
+                    ? deleteExamRecord(connection, recordId)
+                    : DatabaseManager.getInstance().inTransaction(conn -> deleteExamRecord(conn, recordId));
             
             if (affectedRows > 0) {
                 LOGGER.log(Level.INFO, "Successfully deleted exam record with ID: " + recordId);
@@ -197,6 +248,21 @@ public class ExamDAO {
         }
     }
 
+    private static int deleteExamRecord(Connection conn, int recordId) throws SQLException {
+        StudentSubjectStatsDAO statsDAO = new StudentSubjectStatsDAO(conn);
+        Map<String, Set<String>> studentSubjects = statsDAO.findStudentSubjects(List.of(recordId));
+        int affectedRows;
+        try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM exam_records WHERE id = ?")) {
+            pstmt.setInt(1, recordId);
+            affectedRows = pstmt.executeUpdate();
+        }
+        statsDAO.refresh(studentSubjects);
+        if (affectedRows > 0) {
+            new ExamDAO(conn).bumpExamRecordsVersion();
+        }
+        return affectedRows;
+    }
+
     /**
      * 根据学生ID和科目获取最佳成绩记录
      *
@@ -212,7 +278,8 @@ public class ExamDAO {
 
         LOGGER.log(Level.FINE, "Retrieving best score for student: " + studentId + ", subject: " + subject);
 
-        try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, studentId);
             pstmt.setString(2, subject);
@@ -253,11 +320,12 @@ public class ExamDAO {
      * @throws SQLException 如果数据库操作失败
      */
     public double getAverageScoreByStudent(String studentId) throws SQLException {
-        String sql = "SELECT AVG(score) AS average_score FROM exam_records WHERE student_id = ?";
+        String sql = "SELECT SUM(score_sum) / SUM(exam_count) AS average_score FROM student_subject_stats WHERE student_id = ?";
         
         LOGGER.log(Level.FINE, "Calculating average score for student: " + studentId);
 
-        try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, studentId);
 
@@ -279,4 +347,149 @@ public class ExamDAO {
             throw e;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 按增量批量调整考试记录的分数，用于重新评分
+     * 按考试记录 ID 顺序更新，多个任务同时运行时加锁顺序一致
+     *
+     * @param scoreDeltas 考试记录ID到分数变化量的映射
+     * @throws SQLException 如果数据库操作失败
+     */
+    public void applyScoreDeltas(SortedMap<Integer, Integer> scoreDeltas) throws SQLException {
+        String sql = "UPDATE exam_records SET score = score + ? WHERE id = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int batched = 0;
+            for (Map.Entry<Integer, Integer> entry : scoreDeltas.entrySet()) {
+                if (entry.getValue() == 0) {
+                    continue;
+                }
+                pstmt.setInt(1, entry.getValue());
+                pstmt.setInt(2, entry.getKey());
+                pstmt.addBatch();
+                batched++;
+            }
+            if (batched > 0) {
+                pstmt.executeBatch();
+            }
+            LOGGER.log(Level.FINE, "Adjusted scores of " + batched + " exam records");
+        }
+    }
+
+    /**
+     * 统计以紧凑编码保存作答的考试记录数量
+     */
+    public int countAnswerBlobs() throws SQLException {
+        String sql = "SELECT COUNT(*) FROM exam_records WHERE answers_blob IS NOT NULL";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * 按 ID 顺序读取 afterId 之后的 limit 条紧凑编码作答，返回考试记录ID到编码的有序映射
+     */
+    public Map<Integer, byte[]> getAnswerBlobsAfter(int afterId, int limit) throws SQLException {
+        String sql = "SELECT id, answers_blob FROM exam_records WHERE answers_blob IS NOT NULL AND id > ? ORDER BY id LIMIT ?";
+        Map<Integer, byte[]> blobs = new LinkedHashMap<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            pstmt.setInt(1, afterId);
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    blobs.put(rs.getInt(1), rs.getBytes(2));
+                }
+            }
+        }
+        return blobs;
+    }
+
+    /**
+     * 按 ID 顺序读取 afterId 之后的至多 limit 条考试记录（不含评语），逐行交给 handler，返回读取的行数
+     * 自增ID在提交时才可见，较小的ID可能晚于较大的ID提交；写入不足 settleSeconds 秒的记录 settled 为 false，
+     * 调用方不应越过这样的记录推进水位
+     */
+    public int scanExamRecordsAfter(int afterId, int settleSeconds, int limit, ExamRecordRowHandler handler) throws SQLException {
+        String sql = "SELECT id, student_id, subject, score, total_questions, exam_date, " +
+                "created_at IS NULL OR created_at <= NOW() - INTERVAL ? SECOND AS settled " +
+                "FROM exam_records WHERE id > ? ORDER BY id LIMIT ?";
+        int rows = 0;
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            pstmt.setInt(1, settleSeconds);
+            pstmt.setInt(2, afterId);
+            pstmt.setInt(3, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp examDate = rs.getTimestamp(6);
+                    handler.accept(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getInt(4), rs.getInt(5),
+                            examDate != null ? examDate.getTime() : 0L, rs.getBoolean(7));
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 已有考试记录的修改计数（删除考试记录、删除学生、重新评分时加一），尚无记录时为 0
+     * 新增考试记录不计入；ExamRecordSnapshot 据此发现其他客户端对已读取记录的修改
+     */
+    public long getExamRecordsVersion() throws SQLException {
+        String sql = "SELECT version FROM data_versions WHERE name = 'exam_records'";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * 修改计数加一，应与修改考试记录在同一事务中、在最后调用（计数行的锁持有到提交）
+     */
+    public void bumpExamRecordsVersion() throws SQLException {
+        String sql = "INSERT INTO data_versions (name, version) VALUES ('exam_records', 1) " +
+                "ON DUPLICATE KEY UPDATE version = version + 1";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * 替换考试记录的紧凑编码作答并调整分数
+     * 只有当前编码仍为 expected 时才会更新，避免两个评分任务同时运行时重复计分
+     *
+     * @return 是否已更新
+     */
+    public boolean replaceAnswerBlob(int recordId, byte[] expected, byte[] replacement, int scoreDelta) throws SQLException {
+        String sql = "UPDATE exam_records SET answers_blob = ?, score = score + ? WHERE id = ? AND answers_blob = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setBytes(1, replacement);
+            pstmt.setInt(2, scoreDelta);
+            pstmt.setInt(3, recordId);
+            pstmt.setBytes(4, expected);
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * 按交卷ID查找考试记录ID
+     *
+     * @return 考试记录ID，不存在时返回 -1
+     */
+    public int findExamRecordIdBySubmissionId(String submissionId) throws SQLException {
+        String sql = "SELECT id FROM exam_records WHERE submission_id = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, submissionId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+}
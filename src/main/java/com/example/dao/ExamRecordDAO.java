@@ -3,35 +3,63 @@ package com.example.dao;
 import com.example.database.DatabaseManager;
 import com.example.model.ExamRecord;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * 考试记录数据访问对象
  */
 public class ExamRecordDAO {
+    private static final Logger LOGGER = Logger.getLogger(ExamRecordDAO.class.getName());
     private DatabaseManager dbManager;
 
+    /**
+     * 逐行接收导出的考试结果，返回 false 时停止读取
+     */
+    @FunctionalInterface
+    public interface ExamResultHandler {
+        boolean accept(int id, String studentId, String studentName, String subject, int score, int totalQuestions,
+                       Timestamp examDate, String comment) throws IOException;
+    }
+
     public ExamRecordDAO() {
         this.dbManager = DatabaseManager.getInstance();
     }
 
     /**
-     * 保存考试记录
+     * 保存考试记录，并在同一事务中累加到成绩统计
      */
     public boolean saveExamRecord(ExamRecord record) {
-        String sql = "INSERT INTO exam_records (student_id, subject, score, total_questions, comment) VALUES (?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO exam_records (student_id, subject, score, total_questions, exam_date, comment) VALUES (?, ?, ?, ?, ?, ?)";
+        Timestamp examDate = record.getExamDate() != null ? record.getExamDate() : new Timestamp(System.currentTimeMillis());
         
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setString(1, record.getStudentId());
-            pstmt.setString(2, record.getSubject());
-            pstmt.setInt(3, record.getScore());
-            pstmt.setInt(4, record.getTotalQuestions());
-            pstmt.setString(5, record.getComment());
-            
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
+        try {
+            return dbManager.inTransaction(conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    pstmt.setString(1, record.getStudentId());
+                    pstmt.setString(2, record.getSubject());
+                    pstmt.setInt(3, record.getScore());
+                    pstmt.setInt(4, record.getTotalQuestions());
+                    pstmt.setTimestamp(5, examDate);
+                    pstmt.setString(6, record.getComment());
+                    pstmt.executeUpdate();
+                    try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                        if (!keys.next()) {
+                            return false;
+                        }
+                        record.setId(keys.getInt(1));
+                    }
+                }
+                record.setExamDate(examDate);
+                new StudentSubjectStatsDAO(conn).recordExam(record);
+                return true;
+            });
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
@@ -45,7 +73,8 @@ public class ExamRecordDAO {
         List<ExamRecord> records = new ArrayList<>();
         String sql = "SELECT id, student_id, subject, score, total_questions, exam_date, comment FROM exam_records WHERE student_id = ? ORDER BY exam_date DESC";
         
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, studentId);
             ResultSet rs = pstmt.executeQuery();
             
@@ -75,7 +104,8 @@ public class ExamRecordDAO {
         List<ExamRecord> records = new ArrayList<>();
         String sql = "SELECT id, student_id, subject, score, total_questions, exam_date, comment FROM exam_records WHERE student_id = ? AND subject = ? ORDER BY exam_date DESC";
         
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, studentId);
             pstmt.setString(2, subject);
             ResultSet rs = pstmt.executeQuery();
@@ -103,9 +133,13 @@ public class ExamRecordDAO {
      * 获取学生在特定科目的最高分
      */
     public ExamRecord getBestScoreByStudentAndSubject(String studentId, String subject) {
-        String sql = "SELECT id, student_id, subject, score, total_questions, exam_date, comment FROM exam_records WHERE student_id = ? AND subject = ? ORDER BY score DESC, exam_date DESC LIMIT 1";
+        // 最高分对应的考试记录由 student_subject_stats 维护，这里只是两次主键查找
+        String sql = "SELECT r.id, r.student_id, r.subject, r.score, r.total_questions, r.exam_date, r.comment " +
+                "FROM student_subject_stats s JOIN exam_records r ON r.id = s.best_record_id " +
+                "WHERE s.student_id = ? AND s.subject = ?";
         
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, studentId);
             pstmt.setString(2, subject);
             ResultSet rs = pstmt.executeQuery();
@@ -135,7 +169,8 @@ public class ExamRecordDAO {
         List<ExamRecord> records = new ArrayList<>();
         String sql = "SELECT id, student_id, subject, score, total_questions, exam_date, comment FROM exam_records ORDER BY exam_date DESC";
         
-        try (Statement stmt = dbManager.getConnection().createStatement();
+        try (Connection conn = dbManager.getConnection();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
             while (rs.next()) {
@@ -157,6 +192,138 @@ public class ExamRecordDAO {
         return records;
     }
 
+    /**
+     * 获取考试记录总数
+     */
+    public int countExamRecords() throws SQLException {
+        try (Connection conn = dbManager.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM exam_records")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * 以只进游标按 ID 顺序流式读取全部考试记录及学生姓名，逐行交给 handler，返回读取的行数
+     * 结果集逐行从服务器读取，不在内存中保留，读取期间独占一个连接。
+     * handler 返回 false 或抛出异常时先取消查询再关闭结果集，否则驱动关闭流式结果集时会读完剩余的全部行
+     */
+    public long forEachExamResult(ExamResultHandler handler) throws SQLException, IOException {
+        String sql = "SELECT r.id, r.student_id, s.name, r.subject, r.score, r.total_questions, r.exam_date, r.comment " +
+                "FROM exam_records r LEFT JOIN students s ON s.student_id = r.student_id ORDER BY r.id";
+        long rows = 0;
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            pstmt.setFetchSize(Integer.MIN_VALUE); // MySQL 驱动据此逐行流式返回结果
+            ResultSet rs = pstmt.executeQuery();
+            boolean exhausted = false;
+            try {
+                while (true) {
+                    if (!rs.next()) {
+                        exhausted = true;
+                        break;
+                    }
+                    rows++;
+                    if (!handler.accept(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getInt(5),
+                            rs.getInt(6), rs.getTimestamp(7), rs.getString(8))) {
+                        break;
+                    }
+                }
+            } finally {
+                if (exhausted) {
+                    rs.close();
+                } else {
+                    abortStreaming(pstmt, rs);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 让服务器终止流式查询后再关闭结果集，剩余的行不再传输
+     */
+    private static void abortStreaming(Statement stmt, ResultSet rs) {
+        try {
+            stmt.cancel();
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "取消导出查询失败，关闭结果集时将读完剩余的行: " + e.getMessage());
+        }
+        try {
+            rs.close();
+        } catch (SQLException e) {
+            // 查询已被终止，驱动可能报告查询中断
+            LOGGER.log(Level.FINE, "关闭已取消的流式结果集: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 按 (exam_date DESC, id DESC) 顺序读取排在 after 之后的 limit 条记录（键集分页）
+     * after 为 null 时从第一条开始。exam_date 为 NULL 的记录排在最后。
+     * 与 OFFSET 分页不同，翻到多深的位置查询代价都一样。
+     */
+    public List<ExamRecord> getExamRecordsAfter(ExamRecord after, int limit) throws SQLException {
+        String columns = "SELECT id, student_id, subject, score, total_questions, exam_date, comment FROM exam_records ";
+        String sql;
+        if (after == null) {
+            sql = columns + "ORDER BY exam_date DESC, id DESC LIMIT ?";
+        } else if (after.getExamDate() != null) {
+            sql = columns + "WHERE exam_date < ? OR (exam_date = ? AND id < ?) OR exam_date IS NULL "
+                    + "ORDER BY exam_date DESC, id DESC LIMIT ?";
+        } else {
+            sql = columns + "WHERE exam_date IS NULL AND id < ? ORDER BY id DESC LIMIT ?";
+        }
+
+        List<ExamRecord> records = new ArrayList<>(limit);
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            if (after != null && after.getExamDate() != null) {
+                pstmt.setTimestamp(index++, after.getExamDate());
+                pstmt.setTimestamp(index++, after.getExamDate());
+            }
+            if (after != null) {
+                pstmt.setInt(index++, after.getId());
+            }
+            pstmt.setInt(index, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    records.add(new ExamRecord(
+                        rs.getInt("id"),
+                        rs.getString("student_id"),
+                        rs.getString("subject"),
+                        rs.getInt("score"),
+                        rs.getInt("total_questions"),
+                        rs.getTimestamp("exam_date"),
+                        rs.getString("comment")
+                    ));
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 按 (exam_date DESC, id DESC) 顺序定位第 offset 条记录的排序键（只含 id 和 exam_date）
+     * 用于直接跳转到很深的位置后再用键集分页读取，只扫描索引列，不读取整行
+     */
+    public ExamRecord seekExamRecord(int offset) throws SQLException {
+        String sql = "SELECT id, exam_date FROM exam_records ORDER BY exam_date DESC, id DESC LIMIT 1 OFFSET ?";
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, offset);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    ExamRecord key = new ExamRecord();
+                    key.setId(rs.getInt("id"));
+                    key.setExamDate(rs.getTimestamp("exam_date"));
+                    return key;
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * 获取特定科目的所有考试记录
      */
@@ -164,7 +331,8 @@ public class ExamRecordDAO {
         List<ExamRecord> records = new ArrayList<>();
         String sql = "SELECT id, student_id, subject, score, total_questions, exam_date, comment FROM exam_records WHERE subject = ? ORDER BY exam_date DESC";
         
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, subject);
             ResultSet rs = pstmt.executeQuery();
             
@@ -193,11 +361,22 @@ public class ExamRecordDAO {
     public boolean deleteExamRecord(int id) {
         String sql = "DELETE FROM exam_records WHERE id = ?";
         
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, id);
-            
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
+        try {
+            // 删除记录和更新成绩统计在同一事务中完成
+            return dbManager.inTransaction(conn -> {
+                StudentSubjectStatsDAO statsDAO = new StudentSubjectStatsDAO(conn);
+                Map<String, Set<String>> studentSubjects = statsDAO.findStudentSubjects(List.of(id));
+                int rowsAffected;
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, id);
+                    rowsAffected = pstmt.executeUpdate();
+                }
+                statsDAO.refresh(studentSubjects);
+                if (rowsAffected > 0) {
+                    new ExamDAO(conn).bumpExamRecordsVersion();
+                }
+                return rowsAffected > 0;
+            });
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
@@ -208,9 +387,10 @@ public class ExamRecordDAO {
      * 获取学生的考试次数
      */
     public int getExamCountByStudent(String studentId) {
-        String sql = "SELECT COUNT(*) FROM exam_records WHERE student_id = ?";
+        String sql = "SELECT COALESCE(SUM(exam_count), 0) FROM student_subject_stats WHERE student_id = ?";
         
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, studentId);
             ResultSet rs = pstmt.executeQuery();
             
@@ -225,12 +405,16 @@ public class ExamRecordDAO {
     }
 
     /**
-     * 获取学生的平均分
+     * 获取学生的平均分（所有考试得分率的平均值，0-100）
+     * 题目数为 0 的考试按得分率 0 计入：统计表只保存考试次数和得分率之和，
+     * 原来直接对 exam_records 求 AVG 时这样的考试得分率为 NULL，不计入平均
      */
     public double getAverageScoreByStudent(String studentId) {
-        String sql = "SELECT AVG(CAST(score AS FLOAT) / total_questions * 100) FROM exam_records WHERE student_id = ?";
+        // 各科得分率之和除以考试次数，即所有考试得分率的平均值
+        String sql = "SELECT SUM(percentage_sum) / SUM(exam_count) FROM student_subject_stats WHERE student_id = ?";
         
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, studentId);
             ResultSet rs = pstmt.executeQuery();
             
@@ -250,7 +434,8 @@ public class ExamRecordDAO {
     public boolean updateExamRecordComment(int examRecordId, String comment) {
         String sql = "UPDATE exam_records SET comment = ? WHERE id = ?";
 
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, comment);
             pstmt.setInt(2, examRecordId);
 
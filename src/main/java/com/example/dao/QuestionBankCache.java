@@ -0,0 +1,240 @@
+package com.example.dao;
+
+import com.example.model.Difficulty;
+import com.example.model.Question;
+import com.example.model.QuestionType;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 题库缓存
+ * 按科目缓存题目的不可变快照。同一科目的并发加载只会触发一次数据库查询，
+ * 题目增删改时由 QuestionDAO 使对应科目失效，同时把该科目的题库版本加一（无论该科目是否已缓存），
+ * 预生成的试卷记录生成时的版本，据此判断生成之后题库是否被修改过。
+ */
+public class QuestionBankCache {
+    private static final Logger LOGGER = Logger.getLogger(QuestionBankCache.class.getName());
+    private static final QuestionBankCache instance = new QuestionBankCache();
+
+    // 其他客户端修改题库时本进程收不到失效通知，因此缓存还有一个最长存活时间
+    private static final long TTL_MILLIS = Long.getLong("exam.questionCache.ttlSeconds", 300L) * 1000;
+
+    private final ConcurrentHashMap<String, SubjectBank> banks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    // invalidateAll 时加一，计入所有科目的版本
+    private final AtomicLong globalVersion = new AtomicLong();
+
+    private QuestionBankCache() {
+    }
+
+    public static QuestionBankCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * 从数据库加载某科目全部题目的回调
+     */
+    @FunctionalInterface
+    public interface Loader {
+        List<Question> load(String subject) throws SQLException;
+    }
+
+    /**
+     * 获取科目题库，未缓存或已过期时通过 loader 加载
+     * 同一科目的并发调用会等待同一次加载完成
+     *
+     * @throws SQLException 如果加载失败（失败结果不会被缓存）
+     */
+    public SubjectBank getOrLoad(String subject, Loader loader) throws SQLException {
+        SubjectBank cached = banks.get(subject);
+        if (cached != null && !cached.isExpired()) {
+            return cached;
+        }
+        try {
+            return banks.compute(subject, (key, existing) -> {
+                if (existing != null && !existing.isExpired()) {
+                    return existing; // 其他线程刚刚完成加载
+                }
+                try {
+                    SubjectBank bank = new SubjectBank(key, loader.load(key));
+                    LOGGER.log(Level.INFO, "Loaded " + bank.size() + " questions into cache for subject: " + key);
+                    return bank;
+                } catch (SQLException e) {
+                    throw new LoadFailure(e);
+                }
+            });
+        } catch (LoadFailure e) {
+            throw e.cause;
+        }
+    }
+
+    /**
+     * 获取已缓存且未过期的科目题库，不触发加载
+     */
+    public SubjectBank peek(String subject) {
+        SubjectBank bank = banks.get(subject);
+        return bank != null && !bank.isExpired() ? bank : null;
+    }
+
+    /**
+     * 科目题库的当前版本，本进程中该科目的题目每次增删改后加一
+     */
+    public long version(String subject) {
+        AtomicLong version = versions.get(subject);
+        return globalVersion.get() + (version == null ? 0 : version.get());
+    }
+
+    /**
+     * 使指定科目的缓存失效，并把该科目的题库版本加一
+     */
+    public void invalidate(String subject) {
+        if (subject == null) {
+            return;
+        }
+        versions.computeIfAbsent(subject, k -> new AtomicLong()).incrementAndGet();
+        if (banks.remove(subject) != null) {
+            LOGGER.log(Level.FINE, "Invalidated question cache for subject: " + subject);
+        }
+    }
+
+    /**
+     * 使包含指定题目的科目缓存失效（题目修改科目或被删除时原科目未知）
+     */
+    public void invalidateQuestion(int questionId) {
+        for (SubjectBank bank : banks.values()) {
+            if (bank.getById(questionId) != null) {
+                invalidate(bank.getSubject());
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        globalVersion.incrementAndGet();
+        banks.clear();
+    }
+
+    private static final class LoadFailure extends RuntimeException {
+        private final SQLException cause;
+
+        LoadFailure(SQLException cause) {
+            super(cause);
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * 单个科目的题库快照
+     * 题目按 ID 升序保存，保存的是只读副本，对外提供的题目需再复制一份
+     */
+    public static final class SubjectBank {
+        private final String subject;
+        private final Question[] questions;
+        private final Map<Integer, Question> byId;
+        // 分层组卷用的下标数组：[题型] 和 [题型][难度]，元素为 questions 中的下标
+        private final int[][] typeIndexes;
+        private final int[][][] typeDifficultyIndexes;
+        private final long loadedAt;
+
+        SubjectBank(String subject, List<Question> loaded) {
+            this.subject = subject;
+            this.questions = new Question[loaded.size()];
+            List<Question> sorted = new ArrayList<>(loaded);
+            sorted.sort(Comparator.comparingInt(Question::getId));
+            Map<Integer, Question> index = new HashMap<>(sorted.size() * 2);
+            for (int i = 0; i < sorted.size(); i++) {
+                Question snapshot = new Question(sorted.get(i));
+                if (snapshot.getCorrectAnswers() != null) {
+                    snapshot.setCorrectAnswers(Collections.unmodifiableList(snapshot.getCorrectAnswers()));
+                }
+                questions[i] = snapshot;
+                index.put(snapshot.getId(), snapshot);
+            }
+            this.byId = Collections.unmodifiableMap(index);
+            this.typeIndexes = new int[QuestionType.values().length][];
+            this.typeDifficultyIndexes = new int[QuestionType.values().length][Difficulty.values().length][];
+            for (QuestionType type : QuestionType.values()) {
+                typeIndexes[type.ordinal()] = indexesMatching(type, null);
+                for (Difficulty difficulty : Difficulty.values()) {
+                    typeDifficultyIndexes[type.ordinal()][difficulty.ordinal()] = indexesMatching(type, difficulty);
+                }
+            }
+            this.loadedAt = System.currentTimeMillis();
+        }
+
+        private int[] indexesMatching(QuestionType type, Difficulty difficulty) {
+            int count = 0;
+            int[] matched = new int[questions.length];
+            for (int i = 0; i < questions.length; i++) {
+                if (questions[i].getType() == type
+                        && (difficulty == null || questions[i].getDifficulty() == difficulty)) {
+                    matched[count++] = i;
+                }
+            }
+            return Arrays.copyOf(matched, count);
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public int size() {
+            return questions.length;
+        }
+
+        /**
+         * 返回第 index 道题的快照（只读，不要修改）
+         */
+        public Question get(int index) {
+            return questions[index];
+        }
+
+        /**
+         * 按题目 ID 查找快照（只读，不要修改），不存在时返回 null
+         */
+        public Question getById(int questionId) {
+            return byId.get(questionId);
+        }
+
+        /**
+         * 某题型（及难度）下的题目数量，difficulty 为 null 表示不限难度
+         */
+        public int stratumSize(QuestionType type, Difficulty difficulty) {
+            return stratum(type, difficulty).length;
+        }
+
+        /**
+         * 某题型（及难度）下第 position 道题在整个题库中的下标，可传给 get/copyOf
+         */
+        public int stratumIndex(QuestionType type, Difficulty difficulty, int position) {
+            return stratum(type, difficulty)[position];
+        }
+
+        private int[] stratum(QuestionType type, Difficulty difficulty) {
+            return difficulty == null
+                    ? typeIndexes[type.ordinal()]
+                    : typeDifficultyIndexes[type.ordinal()][difficulty.ordinal()];
+        }
+
+        /**
+         * 返回第 index 道题的可修改副本
+         */
+        public Question copyOf(int index) {
+            return new Question(questions[index]);
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() - loadedAt > TTL_MILLIS;
+        }
+    }
+}
@@ -1,23 +1,35 @@
 package com.example.dao;
 
 import com.example.database.DatabaseManager;
+import com.example.model.Difficulty;
 import com.example.model.Question;
 import com.example.model.QuestionType;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
 
 /**
  * 题目数据访问对象
  */
 public class QuestionDAO {
+    // 单条 IN 查询的最大参数个数，超出时分批查询
+    private static final int MAX_IN_LIST_SIZE = 1000;
+    // 题目列表只读取显示需要的列；question_stats 也有 option_a 等与 questions 同名的列，
+    // 因此使用筛选条件（appendWhere）的查询都把 questions 写作别名 q，条件中的列名一律加 q. 前缀
+    private static final String SUMMARY_SELECT = "SELECT q.id, q.question_type, q.difficulty, q.question_text, q.subject, s.p_value ";
+    private static final String RATED_FROM = " FROM question_stats s JOIN questions q ON q.id = s.question_id";
+    private static final String UNRATED_FROM = " FROM questions q LEFT JOIN question_stats s ON s.question_id = q.id";
     private DatabaseManager dbManager;
+    private QuestionBankCache bankCache;
 
     public QuestionDAO() {
         this.dbManager = DatabaseManager.getInstance();
+        this.bankCache = QuestionBankCache.getInstance();
     }
 
     /**
@@ -27,7 +39,8 @@ public class QuestionDAO {
         List<Question> questions = new ArrayList<>();
         String sql = "SELECT * FROM questions ORDER BY id";
         
-        try (Statement stmt = dbManager.getConnection().createStatement();
+        try (Connection conn = dbManager.getConnection();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
             while (rs.next()) {
@@ -43,39 +56,60 @@ public class QuestionDAO {
 
     /**
      * 根据科目获取题目列表
+     * 数据来自题库缓存，返回的是可以自由修改的副本
      */
     public List<Question> getQuestionsBySubject(String subject) {
         List<Question> questions = new ArrayList<>();
-        String sql = "SELECT * FROM questions WHERE subject = ?";
-        
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setString(1, subject);
-            ResultSet rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                Question question = createQuestionFromResultSet(rs);
-                questions.add(question);
+        try {
+            QuestionBankCache.SubjectBank bank = getQuestionBank(subject);
+            for (int i = 0; i < bank.size(); i++) {
+                questions.add(bank.copyOf(i));
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        
         return questions;
     }
 
     /**
-     * 随机获取指定数量的题目
+     * 获取科目题库快照，同一科目只在首次使用或失效后读取一次数据库
      */
-    public List<Question> getRandomQuestions(String subject, int count) {
-        List<Question> allQuestions = getQuestionsBySubject(subject);
-        
-        if (allQuestions.size() <= count) {
-            Collections.shuffle(allQuestions);
-            return allQuestions;
+    public QuestionBankCache.SubjectBank getQuestionBank(String subject) throws SQLException {
+        return bankCache.getOrLoad(subject, this::loadQuestionsBySubject);
+    }
+
+    /**
+     * 科目题库的版本，见 QuestionBankCache.version
+     */
+    public long getQuestionBankVersion(String subject) {
+        return bankCache.version(subject);
+    }
+
+    /**
+     * 获取已缓存的科目题库，未缓存时返回 null，不访问数据库
+     */
+    public QuestionBankCache.SubjectBank peekQuestionBank(String subject) {
+        return bankCache.peek(subject);
+    }
+
+    /**
+     * 从数据库读取某科目的全部题目
+     */
+    private List<Question> loadQuestionsBySubject(String subject) throws SQLException {
+        List<Question> questions = new ArrayList<>();
+        String sql = "SELECT * FROM questions WHERE subject = ? ORDER BY id";
+
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, subject);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    questions.add(createQuestionFromResultSet(rs));
+                }
+            }
         }
-        
-        Collections.shuffle(allQuestions);
-        return allQuestions.subList(0, count);
+
+        return questions;
     }
 
     /**
@@ -85,7 +119,8 @@ public class QuestionDAO {
         List<String> subjects = new ArrayList<>();
         String sql = "SELECT DISTINCT subject FROM questions ORDER BY subject";
         
-        try (Statement stmt = dbManager.getConnection().createStatement();
+        try (Connection conn = dbManager.getConnection();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
             while (rs.next()) {
@@ -104,7 +139,8 @@ public class QuestionDAO {
     public Question getQuestionById(int id) {
         String sql = "SELECT * FROM questions WHERE id = ?";
         
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, id);
             ResultSet rs = pstmt.executeQuery();
             
@@ -126,11 +162,12 @@ public class QuestionDAO {
             INSERT INTO questions (
                 question_text, option_a, option_b, option_c, option_d, 
                 correct_answer, correct_answers, fill_blank_answer, 
-                question_type, subject
-            ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                question_type, subject, difficulty
+            ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
             """;
         
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, question.getQuestionText());
             pstmt.setString(2, question.getOptionA());
             pstmt.setString(3, question.getOptionB());
@@ -142,8 +179,10 @@ public class QuestionDAO {
             pstmt.setString(8, question.getFillBlankAnswer());
             pstmt.setString(9, question.getType().name());
             pstmt.setString(10, question.getSubject());
+            pstmt.setString(11, question.getDifficulty() != null ? question.getDifficulty().name() : null);
             
             int rowsAffected = pstmt.executeUpdate();
+            bankCache.invalidate(question.getSubject());
             return rowsAffected > 0;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -159,11 +198,13 @@ public class QuestionDAO {
             UPDATE questions SET 
                 question_text = ?, option_a = ?, option_b = ?, option_c = ?, option_d = ?, 
                 correct_answer = ?, correct_answers = ?, fill_blank_answer = ?, 
-                question_type = ?, subject = ? 
+                question_type = ?, subject = ?, difficulty = ? 
             WHERE id = ?
             """;
         
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            String previousSubject = findSubject(conn, question.getId());
             pstmt.setString(1, question.getQuestionText());
             pstmt.setString(2, question.getOptionA());
             pstmt.setString(3, question.getOptionB());
@@ -175,9 +216,13 @@ public class QuestionDAO {
             pstmt.setString(8, question.getFillBlankAnswer());
             pstmt.setString(9, question.getType().name());
             pstmt.setString(10, question.getSubject());
-            pstmt.setInt(11, question.getId());
+            pstmt.setString(11, question.getDifficulty() != null ? question.getDifficulty().name() : null);
+            pstmt.setInt(12, question.getId());
             
             int rowsAffected = pstmt.executeUpdate();
+            // 题目可能换了科目，原科目和新科目都要失效
+            bankCache.invalidate(previousSubject);
+            bankCache.invalidate(question.getSubject());
             return rowsAffected > 0;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -191,10 +236,13 @@ public class QuestionDAO {
     public boolean deleteQuestion(int id) {
         String sql = "DELETE FROM questions WHERE id = ?";
         
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            String subject = findSubject(conn, id);
             pstmt.setInt(1, id);
             
             int rowsAffected = pstmt.executeUpdate();
+            bankCache.invalidate(subject);
             return rowsAffected > 0;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -202,13 +250,27 @@ public class QuestionDAO {
         }
     }
 
+    /**
+     * 题目所属的科目，修改或删除前查询，题目不存在时返回 null
+     * 所属科目未缓存（例如在数据库端选题的大科目）时也需要据此使其预生成的试卷过期
+     */
+    private String findSubject(Connection conn, int id) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT subject FROM questions WHERE id = ?")) {
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
     /**
      * 获取指定科目的题目数量
      */
     public int getQuestionCountBySubject(String subject) {
         String sql = "SELECT COUNT(*) FROM questions WHERE subject = ?";
         
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, subject);
             ResultSet rs = pstmt.executeQuery();
             
@@ -222,6 +284,384 @@ public class QuestionDAO {
         return 0;
     }
 
+    /**
+     * 获取指定科目题目 ID 的最小值和最大值，用于在主键范围内随机取样
+     *
+     * @return {最小ID, 最大ID}，科目没有题目时返回 null
+     */
+    public int[] getQuestionIdRange(String subject) throws SQLException {
+        return getQuestionIdRange(subject, null, null);
+    }
+
+    /**
+     * 获取科目中某题型（及难度）题目 ID 的最小值和最大值，type 或 difficulty 为 null 时不限
+     * 按题型取样时走 idx_questions_subject_type
+     *
+     * @return {最小ID, 最大ID}，没有符合条件的题目时返回 null
+     */
+    public int[] getQuestionIdRange(String subject, QuestionType type, Difficulty difficulty) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT MIN(id), MAX(id) FROM questions WHERE " + stratumCondition(params, subject, type, difficulty);
+
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = prepare(conn, sql, params);
+             ResultSet rs = pstmt.executeQuery()) {
+            if (rs.next()) {
+                int min = rs.getInt(1);
+                if (!rs.wasNull()) {
+                    return new int[]{min, rs.getInt(2)};
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 统计科目中某题型（及难度）的题目数量，type 或 difficulty 为 null 时不限
+     */
+    public int countQuestions(String subject, QuestionType type, Difficulty difficulty) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT COUNT(*) FROM questions WHERE " + stratumCondition(params, subject, type, difficulty);
+
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = prepare(conn, sql, params);
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * 从候选 ID 中筛选出确实存在且属于该科目的题目 ID（一次查询）
+     * 返回结果按 ID 升序排列
+     */
+    public int[] findQuestionIds(String subject, int[] candidateIds) throws SQLException {
+        return findQuestionIds(subject, null, null, candidateIds);
+    }
+
+    /**
+     * 从候选 ID 中筛选出确实存在且属于该科目、题型（及难度）的题目 ID（一次查询），type 或 difficulty 为 null 时不限
+     * 返回结果按 ID 升序排列
+     */
+    public int[] findQuestionIds(String subject, QuestionType type, Difficulty difficulty, int[] candidateIds) throws SQLException {
+        if (candidateIds.length == 0) {
+            return new int[0];
+        }
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT id FROM questions WHERE " + stratumCondition(params, subject, type, difficulty)
+                + " AND id IN (" + placeholders(candidateIds.length) + ") ORDER BY id";
+        for (int id : candidateIds) {
+            params.add(id);
+        }
+        List<Integer> found = new ArrayList<>();
+
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = prepare(conn, sql, params);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                found.add(rs.getInt(1));
+            }
+        }
+        return found.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * 以只进游标流式读取某科目的全部题目 ID，不在内存中保留整个科目
+     */
+    public void forEachQuestionId(String subject, IntConsumer consumer) throws SQLException {
+        forEachQuestionId(subject, null, null, consumer);
+    }
+
+    /**
+     * 以只进游标流式读取科目中某题型（及难度）的全部题目 ID，type 或 difficulty 为 null 时不限
+     */
+    public void forEachQuestionId(String subject, QuestionType type, Difficulty difficulty, IntConsumer consumer) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT id FROM questions WHERE " + stratumCondition(params, subject, type, difficulty) + " ORDER BY id";
+
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            pstmt.setFetchSize(Integer.MIN_VALUE); // MySQL 驱动据此逐行流式返回结果
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(rs.getInt(1));
+                }
+            }
+        }
+    }
+
+    /**
+     * 科目、题型和难度的查询条件，参数按顺序放入 params
+     */
+    private static String stratumCondition(List<Object> params, String subject, QuestionType type, Difficulty difficulty) {
+        StringBuilder condition = new StringBuilder("subject = ?");
+        params.add(subject);
+        if (type != null) {
+            condition.append(" AND question_type = ?");
+            params.add(type.name());
+        }
+        if (difficulty != null) {
+            condition.append(" AND difficulty = ?");
+            params.add(difficulty.name());
+        }
+        return condition.toString();
+    }
+
+    /**
+     * 按 ID 批量获取题目，只读取被选中的行
+     * 返回顺序与传入的 ID 顺序一致，不存在的 ID 会被跳过
+     */
+    public List<Question> getQuestionsByIds(int[] ids) throws SQLException {
+        Map<Integer, Question> byId = new HashMap<>(ids.length * 2);
+
+        try (Connection conn = dbManager.getConnection()) {
+            for (int from = 0; from < ids.length; from += MAX_IN_LIST_SIZE) {
+                int to = Math.min(ids.length, from + MAX_IN_LIST_SIZE);
+                String sql = "SELECT * FROM questions WHERE id IN (" + placeholders(to - from) + ")";
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (int i = from; i < to; i++) {
+                        pstmt.setInt(i - from + 1, ids[i]);
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            Question question = createQuestionFromResultSet(rs);
+                            byId.put(question.getId(), question);
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Question> questions = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Question question = byId.get(id);
+            if (question != null) {
+                questions.add(question);
+            }
+        }
+        return questions;
+    }
+
+    /**
+     * 统计符合条件的题目数量
+     */
+    public int countQuestions(QuestionFilter filter) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM questions q");
+        List<Object> params = new ArrayList<>();
+        appendWhere(sql, params, filter, null);
+
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = prepare(conn, sql.toString(), params);
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * 按 ID 升序读取 ID 大于 afterId 的 limit 道符合条件的题目（键集分页，从头读取时传 0）
+     * 只读取列表显示需要的列（ID、类型、难度、题目内容、科目、答对率），选项和答案需要时再用 getQuestionById 读取
+     */
+    public List<Question> findQuestionSummaries(QuestionFilter filter, int afterId, int limit) throws SQLException {
+        StringBuilder sql = new StringBuilder(SUMMARY_SELECT + UNRATED_FROM);
+        List<Object> params = new ArrayList<>();
+        appendWhere(sql, params, filter, afterId);
+        sql.append(" ORDER BY q.id LIMIT ?");
+        params.add(limit);
+        return querySummaries(sql.toString(), params, limit);
+    }
+
+    /**
+     * 返回按 ID 升序排在第 offset 位的符合条件的题目 ID，超出范围时返回 -1
+     * 用于直接跳到很深的位置后再用键集分页读取
+     */
+    public int seekQuestionId(QuestionFilter filter, int offset) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT q.id FROM questions q");
+        List<Object> params = new ArrayList<>();
+        appendWhere(sql, params, filter, null);
+        sql.append(" ORDER BY q.id LIMIT 1 OFFSET ?");
+        params.add(offset);
+
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = prepare(conn, sql.toString(), params);
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : -1;
+        }
+    }
+
+    /**
+     * 按难度（答对率从低到高）读取排在 after 之后的 limit 道符合条件的题目，after 为 null 时从头读取
+     * 已有统计的题目在前，按 (答对率, ID) 键集分页，沿 question_stats 的 (p_value, question_id) 索引读取；
+     * 尚未统计的题目排在最后，按 ID 键集分页
+     */
+    public List<Question> findQuestionSummariesByCorrectRate(QuestionFilter filter, Question after, int limit) throws SQLException {
+        List<Question> questions = new ArrayList<>(limit);
+        if (after == null || after.getCorrectRate() != null) {
+            StringBuilder sql = new StringBuilder(SUMMARY_SELECT + RATED_FROM);
+            List<Object> params = new ArrayList<>();
+            String keyset = "s.p_value IS NOT NULL";
+            if (after != null) {
+                // 展开写法：MySQL 不会把行构造器比较转换为索引上的范围扫描
+                keyset += " AND (s.p_value > ? OR (s.p_value = ? AND s.question_id > ?))";
+                params.add(after.getCorrectRate());
+                params.add(after.getCorrectRate());
+                params.add(after.getId());
+            }
+            appendWhere(sql, params, filter, null, keyset);
+            sql.append(" ORDER BY s.p_value, s.question_id LIMIT ?");
+            params.add(limit);
+            questions.addAll(querySummaries(sql.toString(), params, limit));
+            if (questions.size() == limit) {
+                return questions;
+            }
+        }
+        int afterId = after != null && after.getCorrectRate() == null ? after.getId() : 0;
+        StringBuilder sql = new StringBuilder(SUMMARY_SELECT + UNRATED_FROM);
+        List<Object> params = new ArrayList<>();
+        appendWhere(sql, params, filter, afterId, "s.p_value IS NULL");
+        sql.append(" ORDER BY q.id LIMIT ?");
+        params.add(limit - questions.size());
+        questions.addAll(querySummaries(sql.toString(), params, limit - questions.size()));
+        return questions;
+    }
+
+    /**
+     * 返回按难度排在第 offset 位的符合条件的题目（只含 ID 和答对率），超出范围时返回 null
+     */
+    public Question seekQuestionByCorrectRate(QuestionFilter filter, int offset) throws SQLException {
+        StringBuilder countSql = new StringBuilder("SELECT COUNT(*)" + RATED_FROM);
+        List<Object> countParams = new ArrayList<>();
+        appendWhere(countSql, countParams, filter, null, "s.p_value IS NOT NULL");
+        try (Connection conn = dbManager.getConnection()) {
+            int rated;
+            try (PreparedStatement pstmt = prepare(conn, countSql.toString(), countParams);
+                 ResultSet rs = pstmt.executeQuery()) {
+                rated = rs.next() ? rs.getInt(1) : 0;
+            }
+
+            StringBuilder sql = new StringBuilder("SELECT q.id, s.p_value");
+            List<Object> params = new ArrayList<>();
+            if (offset < rated) {
+                sql.append(RATED_FROM);
+                appendWhere(sql, params, filter, null, "s.p_value IS NOT NULL");
+                sql.append(" ORDER BY s.p_value, s.question_id LIMIT 1 OFFSET ?");
+                params.add(offset);
+            } else {
+                sql.append(UNRATED_FROM);
+                appendWhere(sql, params, filter, null, "s.p_value IS NULL");
+                sql.append(" ORDER BY q.id LIMIT 1 OFFSET ?");
+                params.add(offset - rated);
+            }
+            try (PreparedStatement pstmt = prepare(conn, sql.toString(), params);
+                 ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                Question key = new Question();
+                key.setId(rs.getInt(1));
+                double rate = rs.getDouble(2);
+                key.setCorrectRate(rs.wasNull() ? null : rate);
+                return key;
+            }
+        }
+    }
+
+    private List<Question> querySummaries(String sql, List<Object> params, int limit) throws SQLException {
+        List<Question> questions = new ArrayList<>(limit);
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = prepare(conn, sql, params);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                Question question = new Question();
+                question.setId(rs.getInt("id"));
+                question.setType(QuestionType.valueOf(rs.getString("question_type")));
+                String difficultyStr = rs.getString("difficulty");
+                if (difficultyStr != null) {
+                    question.setDifficulty(Difficulty.valueOf(difficultyStr));
+                }
+                question.setQuestionText(rs.getString("question_text"));
+                question.setSubject(rs.getString("subject"));
+                double correctRate = rs.getDouble("p_value");
+                question.setCorrectRate(rs.wasNull() ? null : correctRate);
+                questions.add(question);
+            }
+        }
+        return questions;
+    }
+
+    /**
+     * 把筛选条件拼接为 WHERE 子句，参数按顺序放入 params
+     */
+    private static void appendWhere(StringBuilder sql, List<Object> params, QuestionFilter filter, Integer afterId) {
+        appendWhere(sql, params, filter, afterId, null);
+    }
+
+    /**
+     * extraCondition 排在筛选条件之前，它的参数应在调用前放入 params
+     */
+    private static void appendWhere(StringBuilder sql, List<Object> params, QuestionFilter filter, Integer afterId,
+                                    String extraCondition) {
+        List<String> conditions = new ArrayList<>();
+        if (extraCondition != null) {
+            conditions.add(extraCondition);
+        }
+        if (filter != null) {
+            if (filter.getSubject() != null) {
+                conditions.add("q.subject = ?");
+                params.add(filter.getSubject());
+            }
+            if (filter.getType() != null) {
+                conditions.add("q.question_type = ?");
+                params.add(filter.getType().name());
+            }
+            if (filter.getTextContains() != null && !filter.getTextContains().isEmpty()) {
+                conditions.add("q.question_text LIKE ? ESCAPE '!'");
+                params.add("%" + escapeLike(filter.getTextContains()) + "%");
+            }
+            if (filter.getMinId() != null) {
+                conditions.add("q.id >= ?");
+                params.add(filter.getMinId());
+            }
+            if (filter.getMaxId() != null) {
+                conditions.add("q.id <= ?");
+                params.add(filter.getMaxId());
+            }
+        }
+        if (afterId != null) {
+            conditions.add("q.id > ?");
+            params.add(afterId);
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    private static PreparedStatement prepare(Connection conn, String sql, List<Object> params) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql);
+        try {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+        } catch (SQLException e) {
+            pstmt.close();
+            throw e;
+        }
+        return pstmt;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ",?");
+        }
+        return sb.toString();
+    }
+
     /**
      * 从ResultSet创建Question对象
      */
@@ -239,6 +679,11 @@ public class QuestionDAO {
         // 设置题目类型
         String typeStr = rs.getString("question_type");
         question.setType(QuestionType.valueOf(typeStr));
+
+        String difficultyStr = rs.getString("difficulty");
+        if (difficultyStr != null) {
+            question.setDifficulty(Difficulty.valueOf(difficultyStr));
+        }
         
         // 根据题目类型设置相应的答案
         switch (question.getType()) {
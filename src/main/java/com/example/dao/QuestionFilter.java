@@ -0,0 +1,58 @@
+package com.example.dao;
+
+import com.example.model.QuestionType;
+
+/**
+ * 题目查询条件
+ * 为 null 的条件不参与筛选，所有条件之间是“并且”的关系。
+ */
+public class QuestionFilter {
+    private String subject;
+    private QuestionType type;
+    private String textContains;
+    private Integer minId;
+    private Integer maxId;
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public QuestionType getType() {
+        return type;
+    }
+
+    public void setType(QuestionType type) {
+        this.type = type;
+    }
+
+    /**
+     * 题目内容中包含的文字（不区分 SQL 通配符，按字面匹配）
+     */
+    public String getTextContains() {
+        return textContains;
+    }
+
+    public void setTextContains(String textContains) {
+        this.textContains = textContains;
+    }
+
+    public Integer getMinId() {
+        return minId;
+    }
+
+    public void setMinId(Integer minId) {
+        this.minId = minId;
+    }
+
+    public Integer getMaxId() {
+        return maxId;
+    }
+
+    public void setMaxId(Integer maxId) {
+        this.maxId = maxId;
+    }
+}
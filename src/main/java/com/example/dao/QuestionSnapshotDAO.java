@@ -0,0 +1,271 @@
+package com.example.dao;
+
+import com.example.database.DatabaseManager;
+import com.example.model.QuestionType;
+import com.example.model.StudentAnswerDetail;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 题目快照 DAO
+ * 答题详情不再逐行复制题干、选项和正确答案，而是引用 question_snapshots 中的一行。
+ * 快照按内容（题目ID、题型、题干、选项、正确答案）的 SHA-256 去重，写入后不再修改，
+ * 同一版本的题目无论被作答多少次都只保存一份；题目修改后产生新的快照，旧的答题详情仍指向旧版本。
+ */
+public class QuestionSnapshotDAO {
+    private static final Logger LOGGER = Logger.getLogger(QuestionSnapshotDAO.class.getName());
+    private static final int MAX_ROWS_PER_STATEMENT = 200;
+    private static final int MAX_CACHED_SNAPSHOTS = 20000;
+    // 内容哈希到快照ID的缓存，快照不可变，因此缓存永远不会过期；超过上限时整体清空
+    private static final Map<String, Integer> snapshotIdsByHash = new ConcurrentHashMap<>();
+    // 快照ID到快照内容的缓存，用于解码紧凑存储的作答
+    private static final Map<Integer, StudentAnswerDetail> snapshotsById = new ConcurrentHashMap<>();
+
+    private Connection connection;
+
+    public QuestionSnapshotDAO() {
+        this.connection = null;
+    }
+
+    /**
+     * 使用调用方管理的连接
+     * DAO 内部关闭连接时不会真正关闭或归还它，由调用方负责结束其生命周期
+     */
+    public QuestionSnapshotDAO(Connection connection) {
+        this.connection = DatabaseManager.nonClosingView(connection);
+    }
+
+    private Connection getConnection() throws SQLException {
+        if (this.connection != null) {
+            return this.connection;
+        } else {
+            return DatabaseManager.getInstance().getConnection();
+        }
+    }
+
+    /**
+     * 为每条答题详情找到（必要时创建）对应的题目快照，并设置其 snapshotId
+     * 快照内容取自详情中的题目ID、题型、题干、选项和正确答案。
+     * 不要在可能回滚的事务连接上调用：回滚后快照不存在，但 ID 已经进入缓存。
+     */
+    public void assignSnapshotIds(List<StudentAnswerDetail> details) throws SQLException {
+        Map<String, List<StudentAnswerDetail>> missing = new LinkedHashMap<>();
+        for (StudentAnswerDetail detail : details) {
+            String hash = contentHash(detail);
+            Integer snapshotId = snapshotIdsByHash.get(hash);
+            if (snapshotId != null) {
+                detail.setSnapshotId(snapshotId);
+            } else {
+                missing.computeIfAbsent(hash, k -> new ArrayList<>()).add(detail);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        List<String> hashes = new ArrayList<>(missing.keySet());
+        try (Connection conn = getConnection()) {
+            for (int from = 0; from < hashes.size(); from += MAX_ROWS_PER_STATEMENT) {
+                List<String> chunk = hashes.subList(from, Math.min(hashes.size(), from + MAX_ROWS_PER_STATEMENT));
+                insertSnapshots(conn, chunk, missing);
+                loadSnapshotIds(conn, chunk, missing);
+            }
+        }
+        if (snapshotIdsByHash.size() > MAX_CACHED_SNAPSHOTS) {
+            snapshotIdsByHash.clear();
+        }
+    }
+
+    /**
+     * 按每条答题详情的 snapshotId 填入题干、选项、正确答案和题型
+     * 快照不可变，已读取过的快照直接从缓存中取得；其余的用一次 IN 查询读取
+     */
+    public void fillSnapshotContent(List<StudentAnswerDetail> details) throws SQLException {
+        Map<Integer, StudentAnswerDetail> snapshots = new HashMap<>();
+        Set<Integer> missing = new HashSet<>();
+        for (StudentAnswerDetail detail : details) {
+            StudentAnswerDetail cached = snapshotsById.get(detail.getSnapshotId());
+            if (cached != null) {
+                snapshots.put(detail.getSnapshotId(), cached);
+            } else if (detail.getSnapshotId() > 0) {
+                missing.add(detail.getSnapshotId());
+            }
+        }
+        if (!missing.isEmpty()) {
+            List<Integer> ids = new ArrayList<>(missing);
+            try (Connection conn = getConnection()) {
+                for (int from = 0; from < ids.size(); from += MAX_ROWS_PER_STATEMENT) {
+                    loadSnapshots(conn, ids.subList(from, Math.min(ids.size(), from + MAX_ROWS_PER_STATEMENT)), snapshots);
+                }
+            }
+        }
+        for (StudentAnswerDetail detail : details) {
+            StudentAnswerDetail snapshot = snapshots.get(detail.getSnapshotId());
+            if (snapshot == null) {
+                continue; // 快照不存在（数据不一致），只显示作答本身
+            }
+            detail.setQuestionType(snapshot.getQuestionType());
+            detail.setQuestionText(snapshot.getQuestionText());
+            detail.setOptionA(snapshot.getOptionA());
+            detail.setOptionB(snapshot.getOptionB());
+            detail.setOptionC(snapshot.getOptionC());
+            detail.setOptionD(snapshot.getOptionD());
+            detail.setCorrectAnswer(snapshot.getCorrectAnswer());
+        }
+        if (snapshotsById.size() > MAX_CACHED_SNAPSHOTS) {
+            snapshotsById.clear();
+        }
+    }
+
+    private void loadSnapshots(Connection conn, List<Integer> ids, Map<Integer, StudentAnswerDetail> snapshots) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT id, question_type, question_text, option_a, option_b, option_c, option_d, " +
+                "correct_answer FROM question_snapshots WHERE id IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(")");
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < ids.size(); i++) {
+                pstmt.setInt(i + 1, ids.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    StudentAnswerDetail snapshot = new StudentAnswerDetail();
+                    String type = rs.getString(2);
+                    try {
+                        snapshot.setQuestionType(type == null ? null : QuestionType.valueOf(type));
+                    } catch (IllegalArgumentException e) {
+                        LOGGER.log(Level.WARNING, "Invalid question type found in snapshot: " + type, e);
+                    }
+                    snapshot.setQuestionText(rs.getString(3));
+                    snapshot.setOptionA(rs.getString(4));
+                    snapshot.setOptionB(rs.getString(5));
+                    snapshot.setOptionC(rs.getString(6));
+                    snapshot.setOptionD(rs.getString(7));
+                    snapshot.setCorrectAnswer(rs.getString(8));
+                    snapshots.put(rs.getInt(1), snapshot);
+                    snapshotsById.put(rs.getInt(1), snapshot);
+                }
+            }
+        }
+    }
+
+    private void insertSnapshots(Connection conn, List<String> hashes, Map<String, List<StudentAnswerDetail>> byHash) throws SQLException {
+        StringBuilder sql = new StringBuilder("INSERT INTO question_snapshots (content_hash, question_id, question_type, " +
+                "question_text, option_a, option_b, option_c, option_d, correct_answer) VALUES ");
+        for (int i = 0; i < hashes.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append("(?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        }
+        // 其他连接可能刚好写入了同样的快照，此时保留已有的行
+        sql.append(" ON DUPLICATE KEY UPDATE id = id");
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            for (String hash : hashes) {
+                StudentAnswerDetail detail = byHash.get(hash).get(0);
+                pstmt.setBytes(index++, HexFormat.of().parseHex(hash));
+                if (detail.getQuestionId() > 0) {
+                    pstmt.setInt(index++, detail.getQuestionId());
+                } else {
+                    pstmt.setNull(index++, Types.INTEGER);
+                }
+                pstmt.setString(index++, detail.getQuestionType() != null ? detail.getQuestionType().name() : null);
+                pstmt.setString(index++, detail.getQuestionText());
+                pstmt.setString(index++, detail.getOptionA());
+                pstmt.setString(index++, detail.getOptionB());
+                pstmt.setString(index++, detail.getOptionC());
+                pstmt.setString(index++, detail.getOptionD());
+                pstmt.setString(index++, detail.getCorrectAnswer());
+            }
+            pstmt.executeUpdate();
+        }
+    }
+
+    private void loadSnapshotIds(Connection conn, List<String> hashes, Map<String, List<StudentAnswerDetail>> byHash) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT id, content_hash FROM question_snapshots WHERE content_hash IN (");
+        for (int i = 0; i < hashes.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(")");
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < hashes.size(); i++) {
+                pstmt.setBytes(i + 1, HexFormat.of().parseHex(hashes.get(i)));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int snapshotId = rs.getInt(1);
+                    String hash = HexFormat.of().formatHex(rs.getBytes(2));
+                    List<StudentAnswerDetail> details = byHash.get(hash);
+                    if (details != null) {
+                        for (StudentAnswerDetail detail : details) {
+                            detail.setSnapshotId(snapshotId);
+                        }
+                        snapshotIdsByHash.put(hash, snapshotId);
+                    }
+                }
+            }
+        }
+        for (String hash : hashes) {
+            if (byHash.get(hash).get(0).getSnapshotId() <= 0) {
+                LOGGER.log(Level.SEVERE, "Question snapshot not found after insert, hash: " + hash);
+                throw new SQLException("保存题目快照失败");
+            }
+        }
+    }
+
+    /**
+     * 计算快照内容的 SHA-256（十六进制）
+     * 每个字段写入长度前缀，null 与空字符串区分开，字段边界不会产生歧义
+     */
+    static String contentHash(StudentAnswerDetail detail) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+        updateInt(digest, detail.getQuestionId());
+        updateString(digest, detail.getQuestionType() != null ? detail.getQuestionType().name() : null);
+        updateString(digest, detail.getQuestionText());
+        updateString(digest, detail.getOptionA());
+        updateString(digest, detail.getOptionB());
+        updateString(digest, detail.getOptionC());
+        updateString(digest, detail.getOptionD());
+        updateString(digest, detail.getCorrectAnswer());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void updateString(MessageDigest digest, String value) {
+        if (value == null) {
+            updateInt(digest, -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        updateInt(digest, bytes.length);
+        digest.update(bytes);
+    }
+
+    private static void updateInt(MessageDigest digest, int value) {
+        digest.update((byte) (value >>> 24));
+        digest.update((byte) (value >>> 16));
+        digest.update((byte) (value >>> 8));
+        digest.update((byte) value);
+    }
+}
@@ -0,0 +1,325 @@
+package com.example.dao;
+
+import com.example.database.DatabaseManager;
+import com.example.model.QuestionStats;
+import com.example.model.StudentAnswerDetail;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 题目作答统计 DAO
+ * question_stats 每道题一行，保存可累加的统计量和由它们算出的答对率、区分度；
+ * analytics_watermarks 记录已经累加到哪一条考试记录，统计只需读取水位之后的新考试记录。
+ * 读取水位之后的作答时兼容两种存储方式：逐题详情（student_answer_details）和紧凑编码（exam_records.answers_blob）。
+ */
+public class QuestionStatsDAO {
+    private static final Logger LOGGER = Logger.getLogger(QuestionStatsDAO.class.getName());
+    private static final int MAX_ROWS_PER_STATEMENT = 200;
+    private static final String COLUMNS = "question_id, responses, correct_count, total_sum, total_sq_sum, correct_total_sum, " +
+            "option_a, option_b, option_c, option_d, blank_count, p_value, discrimination";
+
+    /**
+     * 一段考试记录的作答
+     */
+    public static final class AnswerChunk {
+        private final int lastRecordId;
+        private final Map<Integer, Double> percentages;
+        private final List<StudentAnswerDetail> answers;
+
+        AnswerChunk(int lastRecordId, Map<Integer, Double> percentages, List<StudentAnswerDetail> answers) {
+            this.lastRecordId = lastRecordId;
+            this.percentages = percentages;
+            this.answers = answers;
+        }
+
+        /**
+         * 这一段中最后一条考试记录的ID，没有读到记录时为 0
+         */
+        public int getLastRecordId() {
+            return lastRecordId;
+        }
+
+        public int getRecordCount() {
+            return percentages.size();
+        }
+
+        /**
+         * 考试记录ID到该次考试得分率（0-100）的映射
+         */
+        public Map<Integer, Double> getPercentages() {
+            return percentages;
+        }
+
+        /**
+         * 作答，只包含考试记录ID、题目ID、快照ID、学生答案和是否正确
+         */
+        public List<StudentAnswerDetail> getAnswers() {
+            return answers;
+        }
+    }
+
+    private Connection connection;
+
+    public QuestionStatsDAO() {
+        this.connection = null;
+    }
+
+    /**
+     * 使用调用方管理的连接（例如事务连接）
+     * DAO 内部关闭连接时不会真正关闭或归还它，由调用方负责结束其生命周期
+     */
+    public QuestionStatsDAO(Connection connection) {
+        this.connection = DatabaseManager.nonClosingView(connection);
+    }
+
+    private Connection getConnection() throws SQLException {
+        if (this.connection != null) {
+            return this.connection;
+        } else {
+            return DatabaseManager.getInstance().getConnection();
+        }
+    }
+
+    /**
+     * 读取并锁定水位，不存在时从 0 开始，应在事务中调用
+     * 锁定后其他客户端的统计更新会等待本事务结束，同一段考试记录不会被累加两次
+     */
+    public int lockWatermark(String name) throws SQLException {
+        try (Connection conn = getConnection()) {
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT IGNORE INTO analytics_watermarks (name, last_exam_record_id) VALUES (?, 0)")) {
+                insert.setString(1, name);
+                insert.executeUpdate();
+            }
+            try (PreparedStatement select = conn.prepareStatement(
+                    "SELECT last_exam_record_id FROM analytics_watermarks WHERE name = ? FOR UPDATE")) {
+                select.setString(1, name);
+                try (ResultSet rs = select.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            }
+        }
+    }
+
+    public void setWatermark(String name, int lastExamRecordId) throws SQLException {
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "UPDATE analytics_watermarks SET last_exam_record_id = ? WHERE name = ?")) {
+            pstmt.setInt(1, lastExamRecordId);
+            pstmt.setString(2, name);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * 水位之后第一条尚未“稳定”的考试记录ID，没有时返回 Integer.MAX_VALUE
+     * 自增ID在插入时分配、在提交时才可见，较小的ID可能晚于较大的ID提交；
+     * 只累加写入超过 settleSeconds 秒的记录，并在第一条较新的记录前停下，以免跳过仍在提交中的记录
+     */
+    public int findFirstUnsettledRecordId(int afterId, int settleSeconds) throws SQLException {
+        String sql = "SELECT MIN(id) FROM exam_records WHERE id > ? AND created_at > NOW() - INTERVAL ? SECOND";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, afterId);
+            pstmt.setInt(2, settleSeconds);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    int id = rs.getInt(1);
+                    if (!rs.wasNull()) {
+                        return id;
+                    }
+                }
+                return Integer.MAX_VALUE;
+            }
+        }
+    }
+
+    /**
+     * 按ID顺序读取 (afterId, beforeId) 之间至多 limit 条考试记录的作答
+     * 紧凑存储的记录直接解码 answers_blob，其余的按考试记录ID范围读取逐题详情（走 exam_record_id 外键索引）
+     */
+    public AnswerChunk readAnswersAfter(int afterId, int beforeId, int limit) throws SQLException {
+        String recordSql = "SELECT id, score, total_questions, answers_blob FROM exam_records " +
+                "WHERE id > ? AND id < ? ORDER BY id LIMIT ?";
+        String detailSql = "SELECT exam_record_id, question_id, snapshot_id, student_answer, is_correct " +
+                "FROM student_answer_details WHERE exam_record_id BETWEEN ? AND ?";
+        Map<Integer, Double> percentages = new HashMap<>();
+        List<StudentAnswerDetail> answers = new ArrayList<>();
+        int lastRecordId = 0;
+        int firstRowRecordId = 0;
+        try (Connection conn = getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(recordSql)) {
+                pstmt.setInt(1, afterId);
+                pstmt.setInt(2, beforeId);
+                pstmt.setInt(3, limit);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        int id = rs.getInt("id");
+                        int total = rs.getInt("total_questions");
+                        percentages.put(id, total > 0 ? rs.getInt("score") * 100.0 / total : 0.0);
+                        lastRecordId = id;
+                        byte[] blob = rs.getBytes("answers_blob");
+                        if (blob == null) {
+                            if (firstRowRecordId == 0) {
+                                firstRowRecordId = id;
+                            }
+                            continue;
+                        }
+                        try {
+                            answers.addAll(AnswerBlobCodec.decode(id, blob));
+                        } catch (IllegalArgumentException e) {
+                            LOGGER.log(Level.WARNING, "Skip undecodable answers of exam record " + id, e);
+                        }
+                    }
+                }
+            }
+            if (firstRowRecordId > 0) {
+                try (PreparedStatement pstmt = conn.prepareStatement(detailSql)) {
+                    pstmt.setInt(1, firstRowRecordId);
+                    pstmt.setInt(2, lastRecordId);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            StudentAnswerDetail detail = new StudentAnswerDetail();
+                            detail.setExamRecordId(rs.getInt("exam_record_id"));
+                            detail.setQuestionId(rs.getInt("question_id"));
+                            detail.setSnapshotId(rs.getInt("snapshot_id"));
+                            detail.setStudentAnswer(rs.getString("student_answer"));
+                            detail.setCorrect(rs.getBoolean("is_correct"));
+                            answers.add(detail);
+                        }
+                    }
+                }
+            }
+        }
+        return new AnswerChunk(lastRecordId, percentages, answers);
+    }
+
+    /**
+     * 读取若干道题当前的统计并加锁，应在事务中调用
+     */
+    public Map<Integer, QuestionStats> lockStats(Collection<Integer> questionIds) throws SQLException {
+        Map<Integer, QuestionStats> stats = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(questionIds);
+        try (Connection conn = getConnection()) {
+            for (int from = 0; from < ids.size(); from += MAX_ROWS_PER_STATEMENT) {
+                List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_ROWS_PER_STATEMENT));
+                StringJoiner placeholders = new StringJoiner(", ");
+                chunk.forEach(id -> placeholders.add("?"));
+                String sql = "SELECT " + COLUMNS + " FROM question_stats WHERE question_id IN (" + placeholders + ") FOR UPDATE";
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        pstmt.setInt(i + 1, chunk.get(i));
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            QuestionStats row = mapRow(rs);
+                            stats.put(row.getQuestionId(), row);
+                        }
+                    }
+                }
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * 写入统计（整行覆盖），答对率和区分度按累加后的统计量重新计算
+     */
+    public void saveStats(Collection<QuestionStats> stats) throws SQLException {
+        List<QuestionStats> rows = new ArrayList<>(stats);
+        try (Connection conn = getConnection()) {
+            for (int from = 0; from < rows.size(); from += MAX_ROWS_PER_STATEMENT) {
+                List<QuestionStats> chunk = rows.subList(from, Math.min(rows.size(), from + MAX_ROWS_PER_STATEMENT));
+                StringJoiner values = new StringJoiner(", ");
+                chunk.forEach(row -> values.add("(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"));
+                String sql = "INSERT INTO question_stats (" + COLUMNS + ") VALUES " + values + " ON DUPLICATE KEY UPDATE " +
+                        "responses = VALUES(responses), correct_count = VALUES(correct_count), total_sum = VALUES(total_sum), " +
+                        "total_sq_sum = VALUES(total_sq_sum), correct_total_sum = VALUES(correct_total_sum), " +
+                        "option_a = VALUES(option_a), option_b = VALUES(option_b), option_c = VALUES(option_c), " +
+                        "option_d = VALUES(option_d), blank_count = VALUES(blank_count), " +
+                        "p_value = VALUES(p_value), discrimination = VALUES(discrimination)";
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    int index = 1;
+                    for (QuestionStats row : chunk) {
+                        pstmt.setInt(index++, row.getQuestionId());
+                        pstmt.setInt(index++, row.getResponses());
+                        pstmt.setInt(index++, row.getCorrectCount());
+                        pstmt.setDouble(index++, row.getTotalSum());
+                        pstmt.setDouble(index++, row.getTotalSquareSum());
+                        pstmt.setDouble(index++, row.getCorrectTotalSum());
+                        for (char option = 'A'; option <= 'D'; option++) {
+                            pstmt.setInt(index++, row.getOptionCount(option));
+                        }
+                        pstmt.setInt(index++, row.getBlankCount());
+                        setNullableDouble(pstmt, index++, row.getPValue());
+                        setNullableDouble(pstmt, index++, row.getDiscrimination());
+                    }
+                    pstmt.executeUpdate();
+                }
+            }
+        }
+    }
+
+    /**
+     * 清空统计并把水位归零，应在事务中调用
+     * 删除考试记录或重新评分后已累加的统计无法扣减，需要清空后从头累加
+     */
+    public void reset(String watermarkName) throws SQLException {
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM question_stats");
+        }
+        lockWatermark(watermarkName);
+        setWatermark(watermarkName, 0);
+    }
+
+    /**
+     * 获取一道题的统计，尚未统计时返回 null
+     */
+    public QuestionStats getStats(int questionId) throws SQLException {
+        String sql = "SELECT " + COLUMNS + " FROM question_stats WHERE question_id = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, questionId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapRow(rs) : null;
+            }
+        }
+    }
+
+    private static void setNullableDouble(PreparedStatement pstmt, int index, Double value) throws SQLException {
+        if (value != null) {
+            pstmt.setDouble(index, value);
+        } else {
+            pstmt.setNull(index, Types.DOUBLE);
+        }
+    }
+
+    private static QuestionStats mapRow(ResultSet rs) throws SQLException {
+        QuestionStats row = new QuestionStats(rs.getInt("question_id"));
+        row.setResponses(rs.getInt("responses"));
+        row.setCorrectCount(rs.getInt("correct_count"));
+        row.setTotalSum(rs.getDouble("total_sum"));
+        row.setTotalSquareSum(rs.getDouble("total_sq_sum"));
+        row.setCorrectTotalSum(rs.getDouble("correct_total_sum"));
+        row.setOptionCount('A', rs.getInt("option_a"));
+        row.setOptionCount('B', rs.getInt("option_b"));
+        row.setOptionCount('C', rs.getInt("option_c"));
+        row.setOptionCount('D', rs.getInt("option_d"));
+        row.setBlankCount(rs.getInt("blank_count"));
+        return row;
+    }
+}
@@ -21,7 +21,6 @@ import java.util.logging.Logger;
 public class StudentAnswerDetailDAO {
 
     private static final Logger LOGGER = Logger.getLogger(StudentAnswerDetailDAO.class.getName());
-    private static final int BATCH_SIZE = 100;
     private Connection connection;
 
     public StudentAnswerDetailDAO() {
@@ -29,8 +28,12 @@ public class StudentAnswerDetailDAO {
         this.connection = null;
     }
 
+    /**
+     * 使用调用方管理的连接（例如事务连接）
+     * DAO 内部关闭连接时不会真正关闭或归还它，由调用方负责结束其生命周期
+     */
     public StudentAnswerDetailDAO(Connection connection) {
-        this.connection = connection;
+        this.connection = DatabaseManager.nonClosingView(connection);
     }
 
     private Connection getConnection() throws SQLException {
@@ -47,22 +50,21 @@ public class StudentAnswerDetailDAO {
      * @return 保存成功返回true，否则返回false
      */
     public boolean saveStudentAnswerDetail(StudentAnswerDetail detail) throws SQLException {
-        String sql = "INSERT INTO student_answer_details (exam_record_id, question_id, student_answer, " +
-                    "is_correct, correct_answer, question_text, option_a, option_b, option_c, option_d, question_type) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO student_answer_details (exam_record_id, question_id, snapshot_id, student_answer, is_correct) " +
+                    "VALUES (?, ?, ?, ?, ?)";
+
+        if (detail.getSnapshotId() <= 0) {
+            // 快照在独立连接上自动提交，不随调用方的事务回滚
+            new QuestionSnapshotDAO().assignSnapshotIds(List.of(detail));
+        }
         
-        try (PreparedStatement pstmt = getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             pstmt.setInt(1, detail.getExamRecordId());
             pstmt.setInt(2, detail.getQuestionId());
-            pstmt.setString(3, detail.getStudentAnswer());
-            pstmt.setBoolean(4, detail.isCorrect());
-            pstmt.setString(5, detail.getCorrectAnswer());
-            pstmt.setString(6, detail.getQuestionText());
-            pstmt.setString(7, detail.getOptionA());
-            pstmt.setString(8, detail.getOptionB());
-            pstmt.setString(9, detail.getOptionC());
-            pstmt.setString(10, detail.getOptionD());
-            pstmt.setString(11, detail.getQuestionType() != null ? detail.getQuestionType().name() : null);
+            pstmt.setInt(3, detail.getSnapshotId());
+            pstmt.setString(4, detail.getStudentAnswer());
+            pstmt.setBoolean(5, detail.isCorrect());
 
             int affectedRows = pstmt.executeUpdate();
 
@@ -84,7 +86,9 @@ public class StudentAnswerDetailDAO {
     }
 
     /**
-     * 批量保存学生答题记录，使用批处理提高性能
+     * 批量保存学生答题记录
+     * 使用多行 INSERT，每 250 行一次数据库往返，不回填答题详情的 ID
+     * 每条详情都必须已经设置了 snapshotId（见 QuestionSnapshotDAO.assignSnapshotIds）
      * @param details 学生答题详情列表
      * @throws SQLException 如果数据库操作失败
      */
@@ -94,44 +98,9 @@ public class StudentAnswerDetailDAO {
             return;
         }
 
-        String sql = "INSERT INTO student_answer_details (exam_record_id, question_id, student_answer, " +
-                    "is_correct, correct_answer, question_text, option_a, option_b, option_c, option_d, question_type) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        
-        try (PreparedStatement pstmt = getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            int count = 0;
-            
-            for (StudentAnswerDetail detail : details) {
-                pstmt.setInt(1, detail.getExamRecordId());
-                pstmt.setInt(2, detail.getQuestionId());
-                pstmt.setString(3, detail.getStudentAnswer());
-                pstmt.setBoolean(4, detail.isCorrect());
-                pstmt.setString(5, detail.getCorrectAnswer());
-                pstmt.setString(6, detail.getQuestionText());
-                pstmt.setString(7, detail.getOptionA());
-                pstmt.setString(8, detail.getOptionB());
-                pstmt.setString(9, detail.getOptionC());
-                pstmt.setString(10, detail.getOptionD());
-                pstmt.setString(11, detail.getQuestionType() != null ? detail.getQuestionType().name() : null);
-                
-                pstmt.addBatch();
-                count++;
-                
-                // 每BATCH_SIZE条记录执行一次批处理
-                if (count % BATCH_SIZE == 0) {
-                    pstmt.executeBatch();
-                    LOGGER.log(Level.FINE, "Executed batch of " + BATCH_SIZE + " records");
-                }
-            }
-            
-            // 执行剩余的批处理
-            if (count % BATCH_SIZE != 0) {
-                pstmt.executeBatch();
-                LOGGER.log(Level.FINE, "Executed final batch of " + (count % BATCH_SIZE) + " records");
-            }
-            
-            LOGGER.log(Level.INFO, "Successfully saved " + details.size() + " answer details");
-            
+        try (Connection conn = getConnection()) {
+            int statements = AnswerDetailWriter.write(conn, details);
+            LOGGER.log(Level.INFO, "Successfully saved " + details.size() + " answer details in " + statements + " statement(s)");
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error saving answer details batch: " + e.getMessage(), e);
             throw e;
@@ -145,10 +114,24 @@ public class StudentAnswerDetailDAO {
      * @throws SQLException 如果数据库操作失败
      */
     public List<StudentAnswerDetail> getStudentAnswerDetailsByExamRecordId(int examRecordId) throws SQLException {
+        // 紧凑存储模式下的考试记录：按主键读出编码后的作答，题目内容从快照缓存中补齐
+        byte[] answersBlob = getAnswersBlob(examRecordId);
+        if (answersBlob != null) {
+            List<StudentAnswerDetail> decoded = AnswerBlobCodec.decode(examRecordId, answersBlob);
+            new QuestionSnapshotDAO().fillSnapshotContent(decoded);
+            LOGGER.log(Level.FINE, "Decoded " + decoded.size() + " packed answers for exam record ID: " + examRecordId);
+            return decoded;
+        }
+
         List<StudentAnswerDetail> details = new ArrayList<>();
-        String sql = "SELECT * FROM student_answer_details WHERE exam_record_id = ?";
+        // 题干、选项和正确答案从答题时的题目快照中读取
+        String sql = "SELECT d.id, d.exam_record_id, d.question_id, d.snapshot_id, d.student_answer, d.is_correct, " +
+                    "s.correct_answer, s.question_text, s.option_a, s.option_b, s.option_c, s.option_d, s.question_type " +
+                    "FROM student_answer_details d LEFT JOIN question_snapshots s ON s.id = d.snapshot_id " +
+                    "WHERE d.exam_record_id = ? ORDER BY d.id";
         
-        try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, examRecordId);
             
@@ -159,6 +142,7 @@ public class StudentAnswerDetailDAO {
                         detail.setId(rs.getInt("id"));
                         detail.setExamRecordId(rs.getInt("exam_record_id"));
                         detail.setQuestionId(rs.getInt("question_id"));
+                        detail.setSnapshotId(rs.getInt("snapshot_id"));
                         detail.setStudentAnswer(rs.getString("student_answer"));
                         detail.setCorrect(rs.getBoolean("is_correct"));
                         detail.setCorrectAnswer(rs.getString("correct_answer"));
@@ -201,4 +185,91 @@ public class StudentAnswerDetailDAO {
         
         return details;
     }
-} 
\ No newline at end of file
+
+    private byte[] getAnswersBlob(int examRecordId) throws SQLException {
+        String sql = "SELECT answers_blob FROM exam_records WHERE id = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, examRecordId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getBytes(1) : null;
+            }
+        }
+    }
+
+    /**
+     * 统计某道题的作答详情数量
+     */
+    public int countAnswersByQuestionId(int questionId) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM student_answer_details WHERE question_id = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, questionId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * 按 ID 顺序读取某道题在 afterId 之后的 limit 条作答详情，用于重新评分
+     * 只读取评分需要的列（ID、考试记录ID、题目快照ID、学生答案、是否正确），
+     * 按 (question_id, id) 索引向前扫描，每次只把一段数据读入内存
+     */
+    public List<StudentAnswerDetail> getAnswersByQuestionIdAfter(int questionId, int afterId, int limit) throws SQLException {
+        String sql = "SELECT id, exam_record_id, snapshot_id, student_answer, is_correct " +
+                    "FROM student_answer_details WHERE question_id = ? AND id > ? ORDER BY id LIMIT ?";
+        List<StudentAnswerDetail> details = new ArrayList<>(limit);
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            pstmt.setInt(1, questionId);
+            pstmt.setInt(2, afterId);
+            pstmt.setInt(3, limit);
+            pstmt.setFetchSize(limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    StudentAnswerDetail detail = new StudentAnswerDetail();
+                    detail.setId(rs.getInt(1));
+                    detail.setExamRecordId(rs.getInt(2));
+                    detail.setQuestionId(questionId);
+                    detail.setSnapshotId(rs.getInt(3));
+                    detail.setStudentAnswer(rs.getString(4));
+                    detail.setCorrect(rs.getBoolean(5));
+                    details.add(detail);
+                }
+            }
+        }
+        return details;
+    }
+
+    /**
+     * 批量更新作答详情的评分结果，并让每条详情指向 snapshotIds[i] 对应的新题目快照
+     * 只有 is_correct 仍为 previousCorrect[i] 时才会更新，避免两个评分任务同时运行时重复计分
+     * @return 每条详情是否被更新
+     */
+    public boolean[] updateCorrectness(int[] detailIds, boolean[] previousCorrect, boolean[] correct,
+                                       int[] snapshotIds, int count) throws SQLException {
+        String sql = "UPDATE student_answer_details SET is_correct = ?, snapshot_id = ? " +
+                    "WHERE id = ? AND COALESCE(is_correct, 0) = ?";
+        boolean[] updated = new boolean[count];
+        if (count == 0) {
+            return updated;
+        }
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < count; i++) {
+                pstmt.setBoolean(1, correct[i]);
+                pstmt.setInt(2, snapshotIds[i]);
+                pstmt.setInt(3, detailIds[i]);
+                pstmt.setBoolean(4, previousCorrect[i]);
+                pstmt.addBatch();
+            }
+            int[] results = pstmt.executeBatch();
+            for (int i = 0; i < count; i++) {
+                // 驱动合并批处理时可能只返回 SUCCESS_NO_INFO
+                updated[i] = results[i] > 0 || results[i] == Statement.SUCCESS_NO_INFO;
+            }
+        }
+        return updated;
+    }
+}
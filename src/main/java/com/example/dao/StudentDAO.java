@@ -22,7 +22,8 @@ public class StudentDAO {
      */
     public Student validateLogin(String studentId, String password) {
         String sql = "SELECT * FROM students WHERE student_id = ? AND password = ?";
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, studentId);
             pstmt.setString(2, password);
             
@@ -46,7 +47,8 @@ public class StudentDAO {
      */
     public Student findByStudentId(String studentId) {
         String sql = "SELECT * FROM students WHERE student_id = ?";
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, studentId);
             
             ResultSet rs = pstmt.executeQuery();
@@ -69,7 +71,8 @@ public class StudentDAO {
      */
     public boolean addStudent(Student student) {
         String sql = "INSERT INTO students (student_id, name, password) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, student.getStudentId());
             pstmt.setString(2, student.getName());
             pstmt.setString(3, student.getPassword());
@@ -89,7 +92,8 @@ public class StudentDAO {
      */
     public boolean updateStudent(Student student) {
         String sql = "UPDATE students SET name = ?, password = ? WHERE student_id = ?";
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, student.getName());
             pstmt.setString(2, student.getPassword());
             pstmt.setString(3, student.getStudentId());
@@ -109,7 +113,8 @@ public class StudentDAO {
         List<Student> students = new ArrayList<>();
         String sql = "SELECT * FROM students ORDER BY student_id";
         
-        try (Statement stmt = dbManager.getConnection().createStatement();
+        try (Connection conn = dbManager.getConnection();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
             while (rs.next()) {
@@ -130,14 +135,22 @@ public class StudentDAO {
 
     /**
      * 删除学生
+     * 考试记录随外键级联删除，级联删除不触发任何逻辑，因此在同一事务中增加考试记录的修改计数
      */
     public boolean deleteStudent(int id) {
         String sql = "DELETE FROM students WHERE id = ?";
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, id);
-            
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
+        try {
+            return dbManager.inTransaction(conn -> {
+                int rowsAffected;
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, id);
+                    rowsAffected = pstmt.executeUpdate();
+                }
+                if (rowsAffected > 0) {
+                    new ExamDAO(conn).bumpExamRecordsVersion();
+                }
+                return rowsAffected > 0;
+            });
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
@@ -0,0 +1,202 @@
+package com.example.dao;
+
+import com.example.database.DatabaseManager;
+import com.example.model.ExamRecord;
+import com.example.model.StudentSubjectStats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 学生单科成绩统计 DAO
+ * student_subject_stats 每个 (学生, 科目) 一行，保存考试次数、总分、得分率之和、最高分及其考试记录、最近考试时间，
+ * 成绩查询只需读取一行，不再每次聚合学生的全部考试记录。
+ * 新增考试记录时在同一事务中增量累加；删除或重新评分后最高分可能变化，无法增量计算，
+ * 改为按 (学生, 科目) 从 exam_records 重新聚合（走 (student_id, subject, score, exam_date) 覆盖索引）。
+ * 统计与考试记录不一致时（例如直接修改了数据库）可以用 rebuildAll 全部重建。
+ */
+public class StudentSubjectStatsDAO {
+    private static final Logger LOGGER = Logger.getLogger(StudentSubjectStatsDAO.class.getName());
+    private static final int MAX_IN_LIST_SIZE = 500;
+
+    // 重新聚合的 SELECT 部分，最高分相同时取最近一次考试，与原来的 ORDER BY score DESC, exam_date DESC 一致
+    private static final String AGGREGATE_SELECT = "SELECT r.student_id, r.subject, COUNT(*), SUM(r.score), " +
+            "SUM(CASE WHEN r.total_questions > 0 THEN r.score * 100.0 / r.total_questions ELSE 0 END), MAX(r.score), " +
+            "(SELECT b.id FROM exam_records b WHERE b.student_id = r.student_id AND b.subject = r.subject " +
+            "ORDER BY b.score DESC, b.exam_date DESC, b.id DESC LIMIT 1), MAX(r.exam_date) FROM exam_records r ";
+    private static final String INSERT_COLUMNS = "INSERT INTO student_subject_stats (student_id, subject, exam_count, " +
+            "score_sum, percentage_sum, best_score, best_record_id, last_exam_date) ";
+
+    private Connection connection;
+
+    public StudentSubjectStatsDAO() {
+        this.connection = null;
+    }
+
+    /**
+     * 使用调用方管理的连接（例如事务连接）
+     * DAO 内部关闭连接时不会真正关闭或归还它，由调用方负责结束其生命周期
+     */
+    public StudentSubjectStatsDAO(Connection connection) {
+        this.connection = DatabaseManager.nonClosingView(connection);
+    }
+
+    private Connection getConnection() throws SQLException {
+        if (this.connection != null) {
+            return this.connection;
+        } else {
+            return DatabaseManager.getInstance().getConnection();
+        }
+    }
+
+    /**
+     * 把一条新的考试记录累加到统计中，应与插入考试记录在同一事务中调用
+     * ON DUPLICATE KEY UPDATE 的赋值从左到右执行，best_record_id 必须在 best_score 之前更新。
+     * 最高分相同时与 AGGREGATE_SELECT 一样取考试时间较晚、其次ID较大的记录：
+     * 交卷队列写入的记录不一定按考试时间先后到达，不能简单地取最后写入的一条
+     */
+    public void recordExam(ExamRecord record) throws SQLException {
+        String sql = INSERT_COLUMNS + "VALUES (?, ?, 1, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE " +
+                "exam_count = exam_count + 1, " +
+                "score_sum = score_sum + VALUES(score_sum), " +
+                "percentage_sum = percentage_sum + VALUES(percentage_sum), " +
+                "best_record_id = IF(best_record_id IS NULL OR ? > best_score OR (? = best_score AND NOT EXISTS (" +
+                "SELECT 1 FROM exam_records b WHERE b.id = best_record_id AND (b.exam_date > ? OR (b.exam_date = ? AND b.id > ?)))), " +
+                "VALUES(best_record_id), best_record_id), " +
+                "best_score = GREATEST(best_score, VALUES(best_score)), " +
+                "last_exam_date = GREATEST(COALESCE(last_exam_date, VALUES(last_exam_date)), VALUES(last_exam_date))";
+        Timestamp examDate = record.getExamDate() != null ? record.getExamDate() : new Timestamp(System.currentTimeMillis());
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, record.getStudentId());
+            pstmt.setString(2, record.getSubject());
+            pstmt.setInt(3, record.getScore());
+            pstmt.setDouble(4, record.getTotalQuestions() > 0 ? record.getScore() * 100.0 / record.getTotalQuestions() : 0);
+            pstmt.setInt(5, record.getScore());
+            pstmt.setInt(6, record.getId());
+            pstmt.setTimestamp(7, examDate);
+            pstmt.setInt(8, record.getScore());
+            pstmt.setInt(9, record.getScore());
+            pstmt.setTimestamp(10, examDate);
+            pstmt.setTimestamp(11, examDate);
+            pstmt.setInt(12, record.getId());
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * 查询考试记录所属的 (学生, 科目)，返回学生ID到科目集合的映射
+     * 删除考试记录前调用，删除后再用 refresh 重新聚合
+     */
+    public Map<String, Set<String>> findStudentSubjects(Collection<Integer> recordIds) throws SQLException {
+        Map<String, Set<String>> studentSubjects = new TreeMap<>();
+        List<Integer> ids = new ArrayList<>(recordIds);
+        try (Connection conn = getConnection()) {
+            for (int from = 0; from < ids.size(); from += MAX_IN_LIST_SIZE) {
+                List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_IN_LIST_SIZE));
+                StringJoiner placeholders = new StringJoiner(", ");
+                chunk.forEach(id -> placeholders.add("?"));
+                String sql = "SELECT DISTINCT student_id, subject FROM exam_records WHERE id IN (" + placeholders + ")";
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        pstmt.setInt(i + 1, chunk.get(i));
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            studentSubjects.computeIfAbsent(rs.getString(1), k -> new TreeSet<>()).add(rs.getString(2));
+                        }
+                    }
+                }
+            }
+        }
+        return studentSubjects;
+    }
+
+    /**
+     * 从 exam_records 重新聚合指定 (学生, 科目) 的统计，没有考试记录时删除该行
+     * 按学生ID、科目的顺序处理，多个事务同时刷新时加锁顺序一致
+     */
+    public void refresh(Map<String, Set<String>> studentSubjects) throws SQLException {
+        String deleteSql = "DELETE FROM student_subject_stats WHERE student_id = ? AND subject = ?";
+        String insertSql = INSERT_COLUMNS + AGGREGATE_SELECT + "WHERE r.student_id = ? AND r.subject = ? GROUP BY r.student_id, r.subject";
+        try (Connection conn = getConnection();
+             PreparedStatement delete = conn.prepareStatement(deleteSql);
+             PreparedStatement insert = conn.prepareStatement(insertSql)) {
+            for (Map.Entry<String, Set<String>> entry : new TreeMap<>(studentSubjects).entrySet()) {
+                for (String subject : new TreeSet<>(entry.getValue())) {
+                    delete.setString(1, entry.getKey());
+                    delete.setString(2, subject);
+                    delete.executeUpdate();
+                    insert.setString(1, entry.getKey());
+                    insert.setString(2, subject);
+                    insert.executeUpdate();
+                }
+            }
+        }
+    }
+
+    /**
+     * 重新聚合这些考试记录所属的 (学生, 科目)，用于分数被修改之后
+     */
+    public void refreshForRecords(Collection<Integer> recordIds) throws SQLException {
+        if (!recordIds.isEmpty()) {
+            refresh(findStudentSubjects(recordIds));
+        }
+    }
+
+    /**
+     * 清空并从 exam_records 重建全部统计，应在事务中调用
+     * @return 重建后的统计行数
+     */
+    public int rebuildAll() throws SQLException {
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM student_subject_stats");
+            int rows = stmt.executeUpdate(INSERT_COLUMNS + AGGREGATE_SELECT + "GROUP BY r.student_id, r.subject");
+            LOGGER.log(Level.INFO, "Rebuilt student subject stats, rows: " + rows);
+            return rows;
+        }
+    }
+
+    /**
+     * 获取学生各科的统计
+     */
+    public List<StudentSubjectStats> getStatsByStudent(String studentId) throws SQLException {
+        String sql = "SELECT student_id, subject, exam_count, score_sum, percentage_sum, best_score, best_record_id, last_exam_date " +
+                "FROM student_subject_stats WHERE student_id = ? ORDER BY subject";
+        List<StudentSubjectStats> stats = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, studentId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    StudentSubjectStats row = new StudentSubjectStats();
+                    row.setStudentId(rs.getString("student_id"));
+                    row.setSubject(rs.getString("subject"));
+                    row.setExamCount(rs.getInt("exam_count"));
+                    row.setScoreSum(rs.getLong("score_sum"));
+                    row.setPercentageSum(rs.getDouble("percentage_sum"));
+                    row.setBestScore(rs.getInt("best_score"));
+                    row.setBestRecordId(rs.getInt("best_record_id"));
+                    row.setLastExamDate(rs.getTimestamp("last_exam_date"));
+                    stats.add(row);
+                }
+            }
+        }
+        return stats;
+    }
+}
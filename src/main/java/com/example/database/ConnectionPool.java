@@ -0,0 +1,371 @@
+package com.example.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 数据库连接池
+ * 维护一组可复用的 JDBC 连接，借出的连接在 close() 时归还到池中而不是真正断开。
+ * 支持最小/最大连接数、空闲回收、借出校验、借出超时以及连接泄漏检测。
+ */
+public class ConnectionPool {
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final Config config;
+
+    // 空闲连接按 LIFO 使用，最近归还的连接最“热”，也让多余的连接更容易因空闲而被回收
+    private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowedConnections = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, String user, String password, Config config) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxSize(), true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = config.getHousekeepingIntervalMillis();
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 从池中借出一个连接
+     * 调用方必须关闭返回的连接（推荐 try-with-resources），关闭即归还
+     *
+     * @return 借出的连接
+     * @throws SQLTimeoutException 如果在借出超时时间内没有可用连接
+     * @throws SQLException 如果创建新连接失败
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLNonTransientConnectionException("连接池已关闭", "08003");
+        }
+        try {
+            if (!permits.tryAcquire(config.getBorrowTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("等待数据库连接超时 (" + config.getBorrowTimeoutMillis()
+                        + "ms)，当前连接数: " + totalConnections.get() + "/" + config.getMaxSize());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("等待数据库连接时被中断", "08000", e);
+        }
+
+        try {
+            while (true) {
+                PooledConnection pooled = idleConnections.pollFirst();
+                if (pooled == null) {
+                    pooled = createConnection();
+                } else if (!validate(pooled)) {
+                    destroy(pooled);
+                    continue;
+                }
+                pooled.onBorrow(config.getLeakDetectionThresholdMillis() > 0
+                        ? new Throwable("连接借出位置") : null);
+                borrowedConnections.add(pooled);
+                return pooled.proxy;
+            }
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 关闭连接池，断开所有空闲连接；借出中的连接在归还时断开
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            destroy(pooled);
+        }
+        LOGGER.log(Level.INFO, "Connection pool closed, " + borrowedConnections.size()
+                + " connection(s) still borrowed");
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idleConnections.size();
+    }
+
+    public int getBorrowedConnections() {
+        return borrowedConnections.size();
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        Connection raw = DriverManager.getConnection(url, user, password);
+        totalConnections.incrementAndGet();
+        LOGGER.log(Level.FINE, "Opened new pooled connection, total: " + totalConnections.get());
+        return new PooledConnection(raw);
+    }
+
+    private boolean validate(PooledConnection pooled) {
+        // 刚刚使用过的连接几乎不可能失效，跳过一次网络往返
+        if (System.currentTimeMillis() - pooled.lastReturnedAt < config.getValidationBypassMillis()) {
+            return true;
+        }
+        try {
+            return pooled.raw.isValid(config.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Pooled connection failed validation", e);
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        if (!borrowedConnections.remove(pooled)) {
+            return; // 重复关闭
+        }
+        try {
+            boolean healthy = resetState(pooled.raw);
+            if (healthy && !closed) {
+                pooled.lastReturnedAt = System.currentTimeMillis();
+                idleConnections.offerFirst(pooled);
+            } else {
+                destroy(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 归还前恢复连接状态，避免未提交的事务泄漏给下一个借用者
+     */
+    private boolean resetState(Connection raw) {
+        try {
+            if (raw.isClosed()) {
+                return false;
+            }
+            if (!raw.getAutoCommit()) {
+                LOGGER.log(Level.WARNING, "Connection returned with an open transaction, rolling back");
+                raw.rollback();
+                raw.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Failed to reset pooled connection, discarding it", e);
+            return false;
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        try {
+            pooled.raw.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Error closing pooled connection", e);
+        }
+    }
+
+    /**
+     * 定期维护：回收空闲超时的连接、补足最小连接数、报告疑似泄漏的连接
+     */
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+
+            Iterator<PooledConnection> it = idleConnections.descendingIterator();
+            while (it.hasNext() && totalConnections.get() > config.getMinSize()) {
+                PooledConnection pooled = it.next();
+                if (now - pooled.lastReturnedAt > config.getIdleTimeoutMillis() && idleConnections.remove(pooled)) {
+                    destroy(pooled);
+                    LOGGER.log(Level.FINE, "Evicted idle connection, total: " + totalConnections.get());
+                }
+            }
+
+            while (!closed && totalConnections.get() < config.getMinSize() && permits.tryAcquire()) {
+                try {
+                    PooledConnection pooled = createConnection();
+                    pooled.lastReturnedAt = now;
+                    idleConnections.offerLast(pooled);
+                } finally {
+                    permits.release();
+                }
+            }
+
+            long leakThreshold = config.getLeakDetectionThresholdMillis();
+            if (leakThreshold > 0) {
+                for (PooledConnection pooled : borrowedConnections) {
+                    if (!pooled.leakReported && now - pooled.borrowedAt > leakThreshold) {
+                        pooled.leakReported = true;
+                        LOGGER.log(Level.WARNING, "Possible connection leak: connection borrowed "
+                                + (now - pooled.borrowedAt) + "ms ago and not returned", pooled.borrowSite);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Failed to replenish connection pool: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Unexpected error in connection pool housekeeping", e);
+        }
+    }
+
+    /**
+     * 池中的一个物理连接，以及借出给调用方的代理
+     */
+    private final class PooledConnection implements InvocationHandler {
+        private final Connection raw;
+        private final Connection proxy;
+        private volatile long borrowedAt;
+        private volatile long lastReturnedAt;
+        private volatile Throwable borrowSite;
+        private volatile boolean leakReported;
+        private volatile boolean returned = true;
+
+        PooledConnection(Connection raw) {
+            this.raw = raw;
+            this.proxy = (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+        }
+
+        void onBorrow(Throwable site) {
+            borrowedAt = System.currentTimeMillis();
+            borrowSite = site;
+            leakReported = false;
+            returned = false;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || raw.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + raw + "]";
+                default:
+                    if (returned) {
+                        throw new SQLException("连接已归还连接池，不能继续使用");
+                    }
+                    try {
+                        return method.invoke(raw, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+
+    /**
+     * 连接池配置
+     * 默认值可通过系统属性覆盖，例如 -Dexam.db.pool.maxSize=50
+     */
+    public static class Config {
+        private int minSize = Integer.getInteger("exam.db.pool.minSize", 2);
+        private int maxSize = Integer.getInteger("exam.db.pool.maxSize", 20);
+        private long borrowTimeoutMillis = Long.getLong("exam.db.pool.borrowTimeoutMillis", 10_000L);
+        private long idleTimeoutMillis = Long.getLong("exam.db.pool.idleTimeoutMillis", 600_000L);
+        private int validationTimeoutSeconds = Integer.getInteger("exam.db.pool.validationTimeoutSeconds", 3);
+        private long validationBypassMillis = Long.getLong("exam.db.pool.validationBypassMillis", 500L);
+        private long leakDetectionThresholdMillis = Long.getLong("exam.db.pool.leakDetectionThresholdMillis", 60_000L);
+        private long housekeepingIntervalMillis = Long.getLong("exam.db.pool.housekeepingIntervalMillis", 30_000L);
+
+        public int getMinSize() {
+            return minSize;
+        }
+
+        public void setMinSize(int minSize) {
+            this.minSize = minSize;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public long getBorrowTimeoutMillis() {
+            return borrowTimeoutMillis;
+        }
+
+        public void setBorrowTimeoutMillis(long borrowTimeoutMillis) {
+            this.borrowTimeoutMillis = borrowTimeoutMillis;
+        }
+
+        public long getIdleTimeoutMillis() {
+            return idleTimeoutMillis;
+        }
+
+        public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+            this.idleTimeoutMillis = idleTimeoutMillis;
+        }
+
+        public int getValidationTimeoutSeconds() {
+            return validationTimeoutSeconds;
+        }
+
+        public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+            this.validationTimeoutSeconds = validationTimeoutSeconds;
+        }
+
+        public long getValidationBypassMillis() {
+            return validationBypassMillis;
+        }
+
+        public void setValidationBypassMillis(long validationBypassMillis) {
+            this.validationBypassMillis = validationBypassMillis;
+        }
+
+        public long getLeakDetectionThresholdMillis() {
+            return leakDetectionThresholdMillis;
+        }
+
+        public void setLeakDetectionThresholdMillis(long leakDetectionThresholdMillis) {
+            this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+        }
+
+        public long getHousekeepingIntervalMillis() {
+            return housekeepingIntervalMillis;
+        }
+
+        public void setHousekeepingIntervalMillis(long housekeepingIntervalMillis) {
+            this.housekeepingIntervalMillis = housekeepingIntervalMillis;
+        }
+    }
+}
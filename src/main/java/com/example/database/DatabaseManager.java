@@ -1,50 +1,76 @@
 package com.example.database;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 数据库管理类
- * 负责数据库连接、表创建和基本操作
+ * 负责数据库连接池、表创建和基本操作
  */
 public class DatabaseManager {
-    // 数据库连接配置
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/exam_system?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true";
+    // 数据库连接配置（rewriteBatchedStatements 让驱动把 JDBC 批处理合并为多行语句，减少往返次数）
+    private static final String DB_URL = "jdbc:mysql://localhost:3306/exam_system?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true";
     private static final String DB_USER = "root";
     private static final String DB_PASSWORD = "Yzznb6782!";
     private static final DatabaseManager instance = new DatabaseManager();
-    private final ThreadLocal<Connection> connectionHolder = new ThreadLocal<>();
+    private final ConnectionPool connectionPool;
+    // 执行后台数据库任务的线程池，开启 exam.db.virtualThreads 且运行在 Java 21+ 时使用虚拟线程
+    private final ExecutorService dbExecutor;
+    private final boolean virtualThreads;
+    // 同时持有连接的后台任务数不超过连接池上限，其余任务在这里排队，不会因借连接超时而失败
+    private final Semaphore dbTaskPermits;
 
     private DatabaseManager() {
         // 私有构造函数
-    }
-
-    public static DatabaseManager getInstance() {
-        return instance;
+        ConnectionPool.Config poolConfig = new ConnectionPool.Config();
+        this.connectionPool = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD, poolConfig);
+        this.dbTaskPermits = new Semaphore(poolConfig.getMaxSize(), true);
+        ExecutorService virtualExecutor = Boolean.getBoolean("exam.db.virtualThreads") ? newVirtualThreadExecutor() : null;
+        this.virtualThreads = virtualExecutor != null;
+        this.dbExecutor = virtualThreads ? virtualExecutor : newPlatformThreadExecutor(poolConfig.getMaxSize());
     }
 
     /**
-     * 获取当前线程的数据库连接
-     * 如果连接不存在或已关闭，创建新的连接
+     * 通过反射创建虚拟线程执行器，以便在 Java 17 下编译、在 Java 21+ 下启用
      */
-    private Connection getThreadConnection() throws SQLException {
-        Connection conn = connectionHolder.get();
-        if (conn == null || conn.isClosed()) {
-            conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-            connectionHolder.set(conn);
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("DatabaseManager: Virtual threads are not available on this JVM, using platform threads.");
+            return null;
         }
-        return conn;
+    }
+
+    private static ExecutorService newPlatformThreadExecutor(int threads) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "db-worker-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static DatabaseManager getInstance() {
+        return instance;
     }
 
     /**
-     * 在应用程序启动时调用此方法来初始化数据库（创建表，插入示例数据）。
+     * 在应用程序启动时调用此方法来初始化数据库（执行尚未执行的结构迁移，插入示例数据）。
      * 确保只在第一次运行时执行此操作。
      */
     public void initializeDatabase() {
-        try (Connection conn = getThreadConnection()) {
+        try (Connection conn = getConnection()) {
             System.out.println("DatabaseManager: Initializing database (creating tables and inserting sample data if not exists)...");
-            createTables(conn);
+            new SchemaMigrator(conn).migrate();
             insertSampleData(conn); // This method will check for existing data
             System.out.println("DatabaseManager: Database initialization completed.");
         } catch (SQLException e) {
@@ -53,109 +79,6 @@ public class DatabaseManager {
         }
     }
 
-    /**
-     * 创建数据库表
-     */
-    private void createTables(Connection conn) throws SQLException {
-        // 创建学生表
-        String createStudentTable = """
-            CREATE TABLE IF NOT EXISTS students (
-                id INT PRIMARY KEY AUTO_INCREMENT,
-                student_id VARCHAR(50) UNIQUE NOT NULL,
-                name VARCHAR(100) NOT NULL,
-                password VARCHAR(100) NOT NULL
-            )
-            """;
-
-        // 创建题目表
-        String createQuestionTable = """
-            CREATE TABLE IF NOT EXISTS questions (
-                id INT PRIMARY KEY AUTO_INCREMENT,
-                question_text TEXT NOT NULL,
-                option_a VARCHAR(200),
-                option_b VARCHAR(200),
-                option_c VARCHAR(200),
-                option_d VARCHAR(200),
-                correct_answer VARCHAR(200),
-                correct_answers TEXT,
-                fill_blank_answer TEXT,
-                question_type VARCHAR(20) NOT NULL,
-                subject VARCHAR(50) NOT NULL
-            )
-            """;
-
-        // 创建考试记录表
-        String createExamRecordTable = """
-            CREATE TABLE IF NOT EXISTS exam_records (
-                id              int auto_increment
-        primary key,
-    student_id      varchar(50)                         not null,
-    subject         varchar(50)                         not null,
-    score           int                                 not null,
-    total_questions int                                 not null,
-    exam_date       timestamp default CURRENT_TIMESTAMP null,
-    comment         text                                null,
-    constraint exam_records_ibfk_1
-        foreign key (student_id) references students (student_id)
-            on delete cascade
-            )
-              """;
-
-        // 创建管理员表
-        String createAdminTable = """
-            CREATE TABLE IF NOT EXISTS admins (
-                id INT PRIMARY KEY AUTO_INCREMENT,
-                username VARCHAR(50) UNIQUE NOT NULL,
-                password VARCHAR(100) NOT NULL
-            )
-            """;
-
-            String createStudentAnswerDetailsTable = """
-                create table IF NOT EXISTS student_answer_details
-(
-    id             int auto_increment
-        primary key,
-    exam_record_id int         null,
-    question_id    int         null,
-    student_answer text        null,
-    is_correct     tinyint(1)  null,
-    correct_answer text        null,
-    question_text  text        null,
-    option_a       text        null,
-    option_b       text        null,
-    option_c       text        null,
-    option_d       text        null,
-    question_type  varchar(50) null,
-    constraint student_answer_details_ibfk_1
-        foreign key (exam_record_id) references exam_records (id)
-            on delete cascade,
-    constraint student_answer_details_ibfk_2
-        foreign key (question_id) references questions (id)
-            on delete set null
-)
-                """;
-
-                String createSubjectsTable = """
-                    create table IF NOT EXISTS subjects
-(
-    id   int auto_increment
-        primary key,
-    name varchar(255) not null,
-    constraint name
-        unique (name)
-)
-                    """;
-
-        Statement stmt = conn.createStatement();
-        stmt.execute(createStudentTable);
-        stmt.execute(createQuestionTable);
-        stmt.execute(createExamRecordTable);
-        stmt.execute(createAdminTable);
-        stmt.execute(createStudentAnswerDetailsTable);
-        stmt.execute(createSubjectsTable);
-        stmt.close();
-    }
-
     /**
      * 插入示例数据
      */
@@ -254,60 +177,142 @@ public class DatabaseManager {
         pstmt.close();
     }
 
+    /**
+     * 在一个连接上执行的数据库操作
+     */
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T execute(Connection conn) throws SQLException;
+    }
+
     /**
      * 获取数据库连接
-     * 每个线程获取自己的连接实例
+     * 从连接池借出连接，调用方用完后必须关闭（即归还连接池）。
+     * 需要事务时使用 inTransaction，不再有与线程绑定的事务连接。
      */
     public Connection getConnection() throws SQLException {
-        return getThreadConnection();
+        return connectionPool.borrow();
     }
 
     /**
-     * 关闭当前线程的数据库连接
+     * 借出一个连接执行 work，结束后自动归还
      */
-    public void closeConnection() {
-        try {
-            Connection conn = connectionHolder.get();
-            if (conn != null && !conn.isClosed()) {
-                conn.close();
+    public <T> T withConnection(SqlWork<T> work) throws SQLException {
+        try (Connection conn = connectionPool.borrow()) {
+            return work.execute(conn);
+        }
+    }
+
+    /**
+     * 在一个事务中执行 work
+     * 连接显式传给 work，不与线程绑定，因此在虚拟线程或任意线程池中都能正确使用。
+     * work 正常返回则提交，抛出任何异常则回滚并重新抛出。
+     */
+    public <T> T inTransaction(SqlWork<T> work) throws SQLException {
+        try (Connection conn = connectionPool.borrow()) {
+            conn.setAutoCommit(false);
+            try {
+                T result = work.execute(conn);
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException | Error e) {
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackError) {
+                    e.addSuppressed(rollbackError);
+                }
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
-            connectionHolder.remove(); // 从ThreadLocal中移除连接
-        } catch (SQLException e) {
-            System.err.println("DatabaseManager: Error closing connection: " + e.getMessage());
-            e.printStackTrace();
         }
     }
 
     /**
-     * 开始事务
+     * 在后台数据库线程中执行 task（开启虚拟线程模式时每个任务一个虚拟线程）
+     * 适合批量评分、导入等需要并发大量数据库任务的场景。同时执行的任务数不超过连接池上限，
+     * 因此 task 同一时间最多只能持有一个连接，否则可能互相等待直到借连接超时。
      */
-    public void beginTransaction() throws SQLException {
-        Connection conn = getThreadConnection();
-        conn.setAutoCommit(false);
+    public <T> CompletableFuture<T> supplyAsync(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            dbExecutor.execute(() -> {
+                try {
+                    dbTaskPermits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    future.completeExceptionally(e);
+                    return;
+                }
+                try {
+                    future.complete(task.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    dbTaskPermits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
     }
 
     /**
-     * 提交事务
+     * 后台数据库任务是否运行在虚拟线程上
      */
-    public void commitTransaction() throws SQLException {
-        Connection conn = getThreadConnection();
-        conn.commit();
-        conn.setAutoCommit(true);
+    public boolean isVirtualThreadMode() {
+        return virtualThreads;
     }
 
     /**
-     * 回滚事务
+     * 是否为重试可能成功的暂时性错误：连接中断、借连接超时、死锁或锁等待超时（SQLState 08、40 类）
+     * 其他错误（约束冲突、数据截断、语法错误等）重试也不会成功
      */
-    public void rollbackTransaction() {
-        try {
-            Connection conn = connectionHolder.get();
-            if (conn != null && !conn.isClosed()) {
-                conn.rollback();
-                conn.setAutoCommit(true);
-            }
-        } catch (SQLException e) {
-            System.err.println("DatabaseManager: Error rolling back transaction: " + e.getMessage());
-            e.printStackTrace();
+    public static boolean isTransient(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLTransientException || e instanceof SQLRecoverableException
+                || state != null && (state.startsWith("08") || state.startsWith("40"));
+    }
+
+    /**
+     * 返回连接的不可关闭视图
+     * 用于把事务连接交给 DAO：DAO 按惯例关闭连接时不会把它提前归还连接池
+     */
+    public static Connection nonClosingView(Connection conn) {
+        if (conn == null) {
+            return null;
         }
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            return null;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            try {
+                                return method.invoke(conn, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+    }
+
+    /**
+     * 关闭后台数据库线程和连接池，在应用程序退出时调用
+     */
+    public void shutdown() {
+        dbExecutor.shutdown();
+        connectionPool.close();
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,139 @@
+package com.example.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 热点查询的执行计划检查
+ * 对 DAO 中的热点查询执行 EXPLAIN，某个查询退化为全表扫描（type = ALL）或需要额外排序（Using filesort）时报告失败。
+ * 表很小时优化器可能认为全表扫描更快，因此只有估计行数不少于 exam.explain.minRows（默认 1000）时才判为失败，
+ * 应在有真实数据量的数据库上运行：
+ *   java -cp ... com.example.database.QueryPlanCheck
+ * 全部通过时退出码为 0，否则为 1。修改 DAO 中的查询或索引时同步修改这里的查询。
+ */
+public class QueryPlanCheck {
+    private static final long MIN_ROWS = Long.getLong("exam.explain.minRows", 1000);
+
+    /**
+     * 一个需要检查的查询，params 为 EXPLAIN 时使用的示例参数
+     */
+    private static final class HotQuery {
+        final String name;
+        final String sql;
+        final boolean ordered;
+        final Object[] params;
+
+        HotQuery(String name, String sql, boolean ordered, Object... params) {
+            this.name = name;
+            this.sql = sql;
+            this.ordered = ordered;
+            this.params = params;
+        }
+    }
+
+    private static final List<HotQuery> HOT_QUERIES = List.of(
+            // QuestionDAO
+            new HotQuery("按科目读取题目", "SELECT * FROM questions WHERE subject = ? ORDER BY id", true, "Java"),
+            new HotQuery("按科目统计题目数", "SELECT COUNT(*) FROM questions WHERE subject = ?", false, "Java"),
+            new HotQuery("科目列表", "SELECT DISTINCT subject FROM questions ORDER BY subject", true),
+            new HotQuery("科目题目ID范围", "SELECT MIN(id), MAX(id) FROM questions WHERE subject = ?", false, "Java"),
+            new HotQuery("按科目和题型分页", "SELECT q.id, q.question_type, q.difficulty, q.question_text, q.subject, s.p_value " +
+                    "FROM questions q LEFT JOIN question_stats s ON s.question_id = q.id " +
+                    "WHERE q.subject = ? AND q.question_type = ? AND q.id > ? ORDER BY q.id LIMIT ?", true, "Java", "SINGLE_CHOICE", 0, 50),
+            new HotQuery("按难度分页", "SELECT q.id, q.question_type, q.difficulty, q.question_text, q.subject, s.p_value " +
+                    "FROM question_stats s JOIN questions q ON q.id = s.question_id " +
+                    "WHERE s.p_value IS NOT NULL AND (s.p_value > ? OR (s.p_value = ? AND s.question_id > ?)) " +
+                    "ORDER BY s.p_value, s.question_id LIMIT ?", true, 0.5, 0.5, 0, 50),
+            // ExamRecordDAO / ExamDAO
+            new HotQuery("学生考试历史", "SELECT id, student_id, subject, score, total_questions, exam_date, comment " +
+                    "FROM exam_records WHERE student_id = ? ORDER BY exam_date DESC", true, "2023001"),
+            new HotQuery("学生最佳成绩", "SELECT r.id, r.student_id, r.subject, r.score, r.total_questions, r.exam_date, r.comment " +
+                    "FROM student_subject_stats s JOIN exam_records r ON r.id = s.best_record_id " +
+                    "WHERE s.student_id = ? AND s.subject = ?", false, "2023001", "Java"),
+            new HotQuery("学生平均得分率", "SELECT SUM(percentage_sum) / SUM(exam_count) FROM student_subject_stats " +
+                    "WHERE student_id = ?", false, "2023001"),
+            new HotQuery("学生平均分", "SELECT SUM(score_sum) / SUM(exam_count) AS average_score FROM student_subject_stats " +
+                    "WHERE student_id = ?", false, "2023001"),
+            new HotQuery("学生考试次数", "SELECT COALESCE(SUM(exam_count), 0) FROM student_subject_stats WHERE student_id = ?",
+                    false, "2023001"),
+            new HotQuery("考试记录首页", "SELECT id, student_id, subject, score, total_questions, exam_date, comment " +
+                    "FROM exam_records ORDER BY exam_date DESC, id DESC LIMIT ?", true, 50),
+            new HotQuery("考试记录按科目", "SELECT id, student_id, subject, score, total_questions, exam_date, comment " +
+                    "FROM exam_records WHERE subject = ? ORDER BY exam_date DESC", true, "Java"),
+            new HotQuery("按交卷ID去重", "SELECT id FROM exam_records WHERE submission_id = ?", false,
+                    "00000000-0000-0000-0000-000000000000"),
+            // StudentSubjectStatsDAO
+            new HotQuery("学生各科统计", "SELECT student_id, subject, exam_count, score_sum, percentage_sum, best_score, " +
+                    "best_record_id, last_exam_date FROM student_subject_stats WHERE student_id = ? ORDER BY subject", true, "2023001"),
+            // 考试记录变化后重新聚合一个 (学生, 科目)，相关子查询沿 idx_exam_records_student_subject_score 倒序取最高分
+            new HotQuery("重新聚合单科统计", "SELECT r.student_id, r.subject, COUNT(*), SUM(r.score), " +
+                    "SUM(CASE WHEN r.total_questions > 0 THEN r.score * 100.0 / r.total_questions ELSE 0 END), MAX(r.score), " +
+                    "(SELECT b.id FROM exam_records b WHERE b.student_id = r.student_id AND b.subject = r.subject " +
+                    "ORDER BY b.score DESC, b.exam_date DESC, b.id DESC LIMIT 1), MAX(r.exam_date) FROM exam_records r " +
+                    "WHERE r.student_id = ? AND r.subject = ? GROUP BY r.student_id, r.subject", true, "2023001", "Java"),
+            // StudentAnswerDetailDAO
+            new HotQuery("考试的答题详情", "SELECT d.id, d.exam_record_id, d.question_id, d.snapshot_id, d.student_answer, " +
+                    "d.is_correct, s.question_text FROM student_answer_details d " +
+                    "LEFT JOIN question_snapshots s ON s.id = d.snapshot_id WHERE d.exam_record_id = ? ORDER BY d.id", true, 1),
+            new HotQuery("按题目分段读取作答", "SELECT id, exam_record_id, snapshot_id, student_answer, is_correct " +
+                    "FROM student_answer_details WHERE question_id = ? AND id > ? ORDER BY id LIMIT ?", true, 1, 0, 500),
+            // ExamAttemptDAO
+            new HotQuery("未完成的考试", "SELECT attempt_id, subject, question_ids, remaining_seconds, updated_at " +
+                    "FROM exam_attempts_in_progress WHERE student_id = ? ORDER BY updated_at DESC LIMIT 1", true, "2023001")
+    );
+
+    /**
+     * 检查所有热点查询，返回发现的问题，空列表表示全部通过
+     */
+    public List<String> check(Connection conn) throws SQLException {
+        List<String> problems = new ArrayList<>();
+        for (HotQuery query : HOT_QUERIES) {
+            try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN " + query.sql)) {
+                for (int i = 0; i < query.params.length; i++) {
+                    pstmt.setObject(i + 1, query.params[i]);
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        String table = rs.getString("table");
+                        String type = rs.getString("type");
+                        long rows = rs.getLong("rows");
+                        String extra = rs.getString("Extra");
+                        if (rows < MIN_ROWS) {
+                            continue;
+                        }
+                        if ("ALL".equals(type)) {
+                            problems.add(query.name + ": 表 " + table + " 全表扫描，估计 " + rows + " 行");
+                        } else if (query.ordered && extra != null && extra.contains("Using filesort")) {
+                            problems.add(query.name + ": 表 " + table + " 需要额外排序，估计 " + rows + " 行");
+                        }
+                    }
+                }
+            }
+        }
+        return problems;
+    }
+
+    public static void main(String[] args) {
+        int exitCode;
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+            List<String> problems = new QueryPlanCheck().check(conn);
+            for (String problem : problems) {
+                System.out.println("FAIL " + problem);
+            }
+            System.out.println(problems.isEmpty()
+                    ? "全部 " + HOT_QUERIES.size() + " 个热点查询均使用索引"
+                    : problems.size() + " 个问题");
+            exitCode = problems.isEmpty() ? 0 : 1;
+        } catch (SQLException e) {
+            System.err.println("执行计划检查失败: " + e.getMessage());
+            exitCode = 1;
+        } finally {
+            DatabaseManager.getInstance().shutdown();
+        }
+        System.exit(exitCode);
+    }
+}
@@ -0,0 +1,511 @@
+package com.example.database;
+
+import com.example.dao.QuestionSnapshotDAO;
+import com.example.dao.StudentSubjectStatsDAO;
+import com.example.model.QuestionType;
+import com.example.model.StudentAnswerDetail;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 数据库结构的版本化迁移
+ * schema_version 表记录已经执行过的迁移版本，启动时按版本号顺序执行尚未执行的迁移，每个版本只执行一次。
+ * 多个客户端同时启动时用 GET_LOCK 串行化，只有第一个客户端执行迁移，其余的等待后发现已是最新版本。
+ * 修改表结构时在 migrations 末尾追加新版本，不要修改已经发布的版本。
+ */
+final class SchemaMigrator {
+    private static final String LOCK_NAME = "exam_system_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+    private static final int SNAPSHOT_MIGRATION_CHUNK = 1000;
+
+    /**
+     * 一个版本的迁移步骤
+     */
+    @FunctionalInterface
+    private interface Step {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private static final class Migration {
+        final int version;
+        final String description;
+        final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    private final Connection conn;
+    private final List<Migration> migrations = List.of(
+            new Migration(1, "基础表结构", this::createBaseTables),
+            new Migration(2, "热点查询的复合索引和覆盖索引", this::createQueryIndexes),
+            new Migration(3, "学生单科成绩统计", this::createStudentSubjectStats),
+            new Migration(4, "题目作答统计", this::createQuestionStats),
+            new Migration(5, "数据修改计数", this::createDataVersions)
+    );
+
+    SchemaMigrator(Connection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * 执行所有尚未执行的迁移
+     * MySQL 的 DDL 会隐式提交，迁移不在事务中执行；一个版本中途失败时不记录该版本，下次启动重新执行，
+     * 因此每一步都先检查是否已经完成（CREATE TABLE IF NOT EXISTS、addColumnIfMissing、createIndexIfMissing）
+     */
+    void migrate() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS schema_version (
+                    version     INT PRIMARY KEY,
+                    description VARCHAR(200) NOT NULL,
+                    applied_at  TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                )
+                """);
+        }
+        acquireLock();
+        try {
+            int current = currentVersion();
+            for (Migration migration : migrations) {
+                if (migration.version <= current) {
+                    continue;
+                }
+                System.out.println("DatabaseManager: Applying schema version " + migration.version + " (" + migration.description + ")...");
+                migration.step.apply(conn);
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                    pstmt.setInt(1, migration.version);
+                    pstmt.setString(2, migration.description);
+                    pstmt.executeUpdate();
+                }
+            }
+        } finally {
+            releaseLock();
+        }
+    }
+
+    private int currentVersion() throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private void acquireLock() throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            pstmt.setString(1, LOCK_NAME);
+            pstmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("等待其他客户端完成数据库迁移超时");
+                }
+            }
+        }
+    }
+
+    private void releaseLock() throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            pstmt.setString(1, LOCK_NAME);
+            pstmt.executeQuery().close();
+        }
+    }
+
+    /**
+     * 版本 1：引入版本表之前的建表语句和补列逻辑
+     * 旧版本创建的数据库没有版本记录，也会执行这一版本，因此每一步都必须可以安全地重复执行
+     */
+    private void createBaseTables(Connection conn) throws SQLException {
+        // 创建学生表
+        String createStudentTable = """
+            CREATE TABLE IF NOT EXISTS students (
+                id INT PRIMARY KEY AUTO_INCREMENT,
+                student_id VARCHAR(50) UNIQUE NOT NULL,
+                name VARCHAR(100) NOT NULL,
+                password VARCHAR(100) NOT NULL
+            )
+            """;
+
+        // 创建题目表
+        String createQuestionTable = """
+            CREATE TABLE IF NOT EXISTS questions (
+                id INT PRIMARY KEY AUTO_INCREMENT,
+                question_text TEXT NOT NULL,
+                option_a VARCHAR(200),
+                option_b VARCHAR(200),
+                option_c VARCHAR(200),
+                option_d VARCHAR(200),
+                correct_answer VARCHAR(200),
+                correct_answers TEXT,
+                fill_blank_answer TEXT,
+                question_type VARCHAR(20) NOT NULL,
+                subject VARCHAR(50) NOT NULL,
+                difficulty VARCHAR(20) NULL
+            )
+            """;
+
+        // 创建考试记录表
+        String createExamRecordTable = """
+            CREATE TABLE IF NOT EXISTS exam_records (
+                id              int auto_increment
+        primary key,
+    student_id      varchar(50)                         not null,
+    subject         varchar(50)                         not null,
+    score           int                                 not null,
+    total_questions int                                 not null,
+    exam_date       timestamp default CURRENT_TIMESTAMP null,
+    comment         text                                null,
+    answers_blob    mediumblob                          null,
+    submission_id   varchar(36)                         null,
+    constraint exam_records_submission_id
+        unique (submission_id),
+    constraint exam_records_ibfk_1
+        foreign key (student_id) references students (student_id)
+            on delete cascade
+            )
+              """;
+
+        // 创建管理员表
+        String createAdminTable = """
+            CREATE TABLE IF NOT EXISTS admins (
+                id INT PRIMARY KEY AUTO_INCREMENT,
+                username VARCHAR(50) UNIQUE NOT NULL,
+                password VARCHAR(100) NOT NULL
+            )
+            """;
+
+            // 题目快照：答题时题目的内容（题干、选项、正确答案），按内容哈希去重，写入后不再修改
+            String createQuestionSnapshotsTable = """
+                create table IF NOT EXISTS question_snapshots
+(
+    id             int auto_increment
+        primary key,
+    content_hash   binary(32)  not null,
+    question_id    int         null,
+    question_type  varchar(50) null,
+    question_text  text        null,
+    option_a       text        null,
+    option_b       text        null,
+    option_c       text        null,
+    option_d       text        null,
+    correct_answer text        null,
+    created_at     timestamp default CURRENT_TIMESTAMP null,
+    constraint question_snapshots_hash
+        unique (content_hash),
+    constraint question_snapshots_ibfk_1
+        foreign key (question_id) references questions (id)
+            on delete set null
+)
+                """;
+
+            // 答题详情只保存作答本身，题目内容通过 snapshot_id 引用题目快照
+            String createStudentAnswerDetailsTable = """
+                create table IF NOT EXISTS student_answer_details
+(
+    id             int auto_increment
+        primary key,
+    exam_record_id int         null,
+    question_id    int         null,
+    snapshot_id    int         null,
+    student_answer text        null,
+    is_correct     tinyint(1)  null,
+    constraint student_answer_details_ibfk_1
+        foreign key (exam_record_id) references exam_records (id)
+            on delete cascade,
+    constraint student_answer_details_ibfk_2
+        foreign key (question_id) references questions (id)
+            on delete set null,
+    constraint student_answer_details_ibfk_3
+        foreign key (snapshot_id) references question_snapshots (id)
+)
+                """;
+
+                String createSubjectsTable = """
+                    create table IF NOT EXISTS subjects
+(
+    id   int auto_increment
+        primary key,
+    name varchar(255) not null,
+    constraint name
+        unique (name)
+)
+                    """;
+
+                // 进行中的考试：试卷题目顺序和剩余时间，以及逐题的作答，交卷后删除
+                String createExamAttemptsTable = """
+                    create table IF NOT EXISTS exam_attempts_in_progress
+(
+    attempt_id        varchar(36)                         not null
+        primary key,
+    student_id        varchar(50)                         not null,
+    subject           varchar(50)                         not null,
+    question_ids      text                                not null,
+    remaining_seconds int                                 not null,
+    started_at        timestamp default CURRENT_TIMESTAMP null,
+    updated_at        timestamp default CURRENT_TIMESTAMP null on update CURRENT_TIMESTAMP,
+    constraint exam_attempts_in_progress_ibfk_1
+        foreign key (student_id) references students (student_id)
+            on delete cascade
+)
+                    """;
+
+                String createExamAttemptAnswersTable = """
+                    create table IF NOT EXISTS exam_attempt_answers
+(
+    attempt_id  varchar(36) not null,
+    question_id int         not null,
+    answer      text        null,
+    primary key (attempt_id, question_id),
+    constraint exam_attempt_answers_ibfk_1
+        foreign key (attempt_id) references exam_attempts_in_progress (attempt_id)
+            on delete cascade
+)
+                    """;
+
+        Statement stmt = conn.createStatement();
+        stmt.execute(createStudentTable);
+        stmt.execute(createQuestionTable);
+        stmt.execute(createExamRecordTable);
+        stmt.execute(createAdminTable);
+        stmt.execute(createQuestionSnapshotsTable);
+        stmt.execute(createStudentAnswerDetailsTable);
+        stmt.execute(createSubjectsTable);
+        stmt.execute(createExamAttemptsTable);
+        stmt.execute(createExamAttemptAnswersTable);
+        stmt.close();
+
+        // 旧版本创建的表缺少后来新增的列，在这里补齐
+        addColumnIfMissing(conn, "questions", "difficulty", "VARCHAR(20) NULL");
+        addColumnIfMissing(conn, "exam_records", "answers_blob", "MEDIUMBLOB NULL");
+        addColumnIfMissing(conn, "exam_records", "submission_id", "VARCHAR(36) NULL, ADD CONSTRAINT exam_records_submission_id " +
+                "UNIQUE (submission_id)");
+        addColumnIfMissing(conn, "student_answer_details", "snapshot_id", "INT NULL, ADD CONSTRAINT student_answer_details_ibfk_3 " +
+                "FOREIGN KEY (snapshot_id) REFERENCES question_snapshots (id)");
+        if (columnExists(conn, "student_answer_details", "question_text")) {
+            migrateAnswerDetailsToSnapshots(conn);
+        }
+    }
+
+    private boolean columnExists(Connection conn, String table, String column) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        try (ResultSet rs = metaData.getColumns(conn.getCatalog(), null, table, column)) {
+            return rs.next();
+        }
+    }
+
+    /**
+     * 如果表中不存在指定列则添加该列
+     */
+    private void addColumnIfMissing(Connection conn, String table, String column, String definition) throws SQLException {
+        if (columnExists(conn, table, column)) {
+            return;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+            System.out.println("DatabaseManager: Added column " + table + "." + column);
+        }
+    }
+
+    /**
+     * 把旧版本答题详情中逐行复制的题目内容迁移到题目快照
+     * 按 ID 分段处理，每段写入快照后回填 snapshot_id，中途中断时下次启动会从未迁移的行继续；
+     * 所有行都迁移完成后删除答题详情表中的冗余列
+     */
+    private void migrateAnswerDetailsToSnapshots(Connection conn) throws SQLException {
+        String selectSql = "SELECT id, question_id, question_type, question_text, option_a, option_b, option_c, option_d, " +
+                "correct_answer FROM student_answer_details WHERE snapshot_id IS NULL AND id > ? ORDER BY id LIMIT ?";
+        String updateSql = "UPDATE student_answer_details SET snapshot_id = ? WHERE id = ?";
+        QuestionSnapshotDAO snapshotDAO = new QuestionSnapshotDAO(conn);
+        int migrated = 0;
+        int afterId = 0;
+        try (PreparedStatement select = conn.prepareStatement(selectSql);
+             PreparedStatement update = conn.prepareStatement(updateSql)) {
+            while (true) {
+                List<StudentAnswerDetail> chunk = new ArrayList<>(SNAPSHOT_MIGRATION_CHUNK);
+                select.setInt(1, afterId);
+                select.setInt(2, SNAPSHOT_MIGRATION_CHUNK);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        StudentAnswerDetail detail = new StudentAnswerDetail();
+                        detail.setId(rs.getInt(1));
+                        detail.setQuestionId(rs.getInt(2));
+                        String type = rs.getString(3);
+                        try {
+                            detail.setQuestionType(type == null ? null : QuestionType.valueOf(type));
+                        } catch (IllegalArgumentException e) {
+                            detail.setQuestionType(null);
+                        }
+                        detail.setQuestionText(rs.getString(4));
+                        detail.setOptionA(rs.getString(5));
+                        detail.setOptionB(rs.getString(6));
+                        detail.setOptionC(rs.getString(7));
+                        detail.setOptionD(rs.getString(8));
+                        detail.setCorrectAnswer(rs.getString(9));
+                        chunk.add(detail);
+                    }
+                }
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                snapshotDAO.assignSnapshotIds(chunk);
+                for (StudentAnswerDetail detail : chunk) {
+                    update.setInt(1, detail.getSnapshotId());
+                    update.setInt(2, detail.getId());
+                    update.addBatch();
+                }
+                update.executeBatch();
+                migrated += chunk.size();
+                afterId = chunk.get(chunk.size() - 1).getId();
+                System.out.println("DatabaseManager: Migrated " + migrated + " answer details to question snapshots...");
+            }
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE student_answer_details DROP COLUMN question_text, DROP COLUMN option_a, " +
+                    "DROP COLUMN option_b, DROP COLUMN option_c, DROP COLUMN option_d, " +
+                    "DROP COLUMN correct_answer, DROP COLUMN question_type");
+        }
+        System.out.println("DatabaseManager: Answer detail migration completed, " + migrated + " rows moved to question snapshots.");
+    }
+
+    /**
+     * 版本 2：为 DAO 的热点查询建立索引
+     * InnoDB 的二级索引隐含主键列，(subject) 同时满足 WHERE subject = ? ORDER BY id 的排序；
+     * 成绩相关的索引包含查询用到的全部列，不需要回表。QueryPlanCheck 用 EXPLAIN 检查这些查询。
+     */
+    private void createQueryIndexes(Connection conn) throws SQLException {
+        // 按科目抽题、统计题目数、DISTINCT subject
+        createIndexIfMissing(conn, "questions", "idx_questions_subject", "subject");
+        // 题库管理按科目和题型筛选并按 id 分页
+        createIndexIfMissing(conn, "questions", "idx_questions_subject_type", "subject, question_type");
+        // 学生考试历史（ORDER BY exam_date DESC）和考试次数
+        createIndexIfMissing(conn, "exam_records", "idx_exam_records_student_date", "student_id, exam_date");
+        // 最佳成绩（ORDER BY score DESC, exam_date DESC LIMIT 1）和平均分，覆盖索引
+        createIndexIfMissing(conn, "exam_records", "idx_exam_records_student_subject_score",
+                "student_id, subject, score, exam_date");
+        // 管理端按时间倒序分页和定位
+        createIndexIfMissing(conn, "exam_records", "idx_exam_records_date", "exam_date");
+        // 按科目查看考试记录
+        createIndexIfMissing(conn, "exam_records", "idx_exam_records_subject_date", "subject, exam_date");
+        // 继续未完成的考试
+        createIndexIfMissing(conn, "exam_attempts_in_progress", "idx_exam_attempts_student", "student_id, updated_at");
+    }
+
+    /**
+     * 版本 3：学生单科成绩统计表，并从已有的考试记录生成统计
+     */
+    private void createStudentSubjectStats(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                create table IF NOT EXISTS student_subject_stats
+(
+    student_id     varchar(50) not null,
+    subject        varchar(50) not null,
+    exam_count     int         not null,
+    score_sum      bigint      not null,
+    percentage_sum double      not null,
+    best_score     int         not null,
+    best_record_id int         null,
+    last_exam_date timestamp   null,
+    primary key (student_id, subject),
+    constraint student_subject_stats_ibfk_1
+        foreign key (student_id) references students (student_id)
+            on delete cascade
+)
+                """);
+        }
+        new StudentSubjectStatsDAO(conn).rebuildAll();
+    }
+
+    /**
+     * 版本 4：题目作答统计表和统计水位表
+     * exam_records.created_at 记录写入时间（exam_date 是交卷时间，离线排队的交卷可能很久之后才写入），
+     * 统计只累加写入已有一段时间的记录；已有记录的 created_at 为迁移时间，稍后即会被累加
+     */
+    private void createQuestionStats(Connection conn) throws SQLException {
+        addColumnIfMissing(conn, "exam_records", "created_at", "TIMESTAMP NULL DEFAULT CURRENT_TIMESTAMP");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                create table IF NOT EXISTS question_stats
+(
+    question_id       int         not null
+        primary key,
+    responses         int         not null,
+    correct_count     int         not null,
+    total_sum         double      not null,
+    total_sq_sum      double      not null,
+    correct_total_sum double      not null,
+    option_a          int         not null,
+    option_b          int         not null,
+    option_c          int         not null,
+    option_d          int         not null,
+    blank_count       int         not null,
+    p_value           double      null,
+    discrimination    double      null,
+    updated_at        timestamp default CURRENT_TIMESTAMP null on update CURRENT_TIMESTAMP
+)
+                """);
+            stmt.execute("""
+                create table IF NOT EXISTS analytics_watermarks
+(
+    name                varchar(50) not null
+        primary key,
+    last_exam_record_id int         not null
+)
+                """);
+        }
+        // 按难度排序的题目列表：(答对率, 题目ID) 键集分页
+        createIndexIfMissing(conn, "question_stats", "idx_question_stats_p_value", "p_value, question_id");
+    }
+
+    /**
+     * 版本 5：数据修改计数表
+     * 每行一个计数，修改已有数据时加一，其他客户端的内存快照据此判断是否需要重新读取
+     */
+    private void createDataVersions(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                create table IF NOT EXISTS data_versions
+(
+    name    varchar(50) not null
+        primary key,
+    version bigint      not null
+)
+                """);
+        }
+    }
+
+    private boolean indexExists(Connection conn, String table, String index) throws SQLException {
+        String sql = "SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ? LIMIT 1";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, table);
+            pstmt.setString(2, index);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * 如果表中不存在指定名称的索引则创建
+     */
+    private void createIndexIfMissing(Connection conn, String table, String index, String columns) throws SQLException {
+        if (indexExists(conn, table, index)) {
+            return;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE INDEX " + index + " ON " + table + " (" + columns + ")");
+            System.out.println("DatabaseManager: Created index " + table + "." + index);
+        }
+    }
+}
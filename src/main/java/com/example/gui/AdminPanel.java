@@ -6,15 +6,25 @@ import com.example.model.Question;
 import com.example.model.ExamRecord;
 import com.example.model.Subject;
 import com.example.model.QuestionType;
+import com.example.model.Difficulty;
 import com.example.dao.*;
+import com.example.service.ExamRecordSnapshot;
+import com.example.service.ExamResultExporter;
+import com.example.service.ExamService;
+import com.example.service.GradingEngine;
+import com.example.service.RegradeJob;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ItemEvent;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 
 public class AdminPanel extends JPanel {
     private MainFrame mainFrame; // 引用主框架
@@ -50,6 +60,7 @@ public class AdminPanel extends JPanel {
     // Components for Manage Questions Panel
     private JTextField questionTextField;
     private JComboBox<QuestionType> typeComboBoxForQuestions;
+    private JComboBox<Difficulty> difficultyComboBoxForQuestions;
     private JTextField optionAField, optionBField, optionCField, optionDField;
     private JTextField correctAnswerField;
     private JTextField fillBlankAnswerFieldForQuestions;
@@ -61,9 +72,15 @@ public class AdminPanel extends JPanel {
     private JLabel optionALabel, optionBLabel, optionCLabel, optionDLabel;
     private JLabel correctAnswerLabel;
     private JLabel fillBlankAnswerLabelForQuestions;
+    private LazyPagedTableModel<Question> questionsModel;
+    // 题目表格当前的筛选条件，每次修改时整体替换，后台加载线程读取的始终是完整的一组条件
+    private volatile QuestionFilter questionFilter = new QuestionFilter();
+    // 为 true 时题目表格按难度（答对率从低到高）排序，否则按 ID 排序
+    private volatile boolean sortQuestionsByCorrectRate;
 
     // Components for Manage Exams Panel
     private JTable examRecordsTable;
+    private LazyPagedTableModel<ExamRecord> examRecordsModel;
     private JScrollPane examRecordsScrollPane;
     private JButton deleteExamRecordButton;
 
@@ -225,7 +242,10 @@ public class AdminPanel extends JPanel {
     }
 
     private void loadStudentsTable() {
-        List<Student> students = studentDAO.getAllStudents();
+        mainFrame.runAsync(studentDAO::getAllStudents, this::showStudentsTable);
+    }
+
+    private void showStudentsTable(List<Student> students) {
         String[] columnNames = {"ID", "学号", "姓名"};
         Object[][] data = new Object[students.size()][columnNames.length];
 
@@ -265,13 +285,15 @@ public class AdminPanel extends JPanel {
                 JOptionPane.WARNING_MESSAGE);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            boolean success = studentDAO.deleteStudent(studentId);
-            if (success) {
-                JOptionPane.showMessageDialog(this, "学生删除成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
-                loadStudentsTable(); // 刷新学生列表
-            } else {
-                JOptionPane.showMessageDialog(this, "删除失败，请检查数据库连接", "错误", JOptionPane.ERROR_MESSAGE);
-            }
+            mainFrame.runAsync(() -> studentDAO.deleteStudent(studentId), success -> {
+                if (success) {
+                    ExamRecordSnapshot.getInstance().invalidate(); // 学生的考试记录被级联删除
+                    JOptionPane.showMessageDialog(this, "学生删除成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
+                    loadStudentsTable(); // 刷新学生列表
+                } else {
+                    JOptionPane.showMessageDialog(this, "删除失败，请检查数据库连接", "错误", JOptionPane.ERROR_MESSAGE);
+                }
+            });
         }
     }
 
@@ -284,22 +306,26 @@ public class AdminPanel extends JPanel {
             JOptionPane.showMessageDialog(this, "学号、姓名和密码都不能为空！", "输入错误", JOptionPane.WARNING_MESSAGE);
             return;
         }
-        if (studentDAO.findByStudentId(studentId) != null) {
-            JOptionPane.showMessageDialog(this, "学号 " + studentId + " 已存在！", "添加失败", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
         Student newStudent = new Student(0, studentId, name, password);
-        boolean success = studentDAO.addStudent(newStudent);
-        if (success) {
-            JOptionPane.showMessageDialog(this, "学生 " + name + " 添加成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
-            newStudentIdField.setText("");
-            newStudentNameField.setText("");
-            newStudentPasswordField.setText("");
-            // 刷新学生列表
-            loadStudentsTable();
-        } else {
-            JOptionPane.showMessageDialog(this, "学生添加失败，请检查日志或数据库连接。", "失败", JOptionPane.ERROR_MESSAGE);
-        }
+        mainFrame.runAsync(() -> {
+            if (studentDAO.findByStudentId(studentId) != null) {
+                return null;
+            }
+            return studentDAO.addStudent(newStudent);
+        }, success -> {
+            if (success == null) {
+                JOptionPane.showMessageDialog(this, "学号 " + studentId + " 已存在！", "添加失败", JOptionPane.ERROR_MESSAGE);
+            } else if (success) {
+                JOptionPane.showMessageDialog(this, "学生 " + name + " 添加成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
+                newStudentIdField.setText("");
+                newStudentNameField.setText("");
+                newStudentPasswordField.setText("");
+                // 刷新学生列表
+                loadStudentsTable();
+            } else {
+                JOptionPane.showMessageDialog(this, "学生添加失败，请检查日志或数据库连接。", "失败", JOptionPane.ERROR_MESSAGE);
+            }
+        });
     }
 
     /**
@@ -326,27 +352,67 @@ public class AdminPanel extends JPanel {
         JPanel centerPanel = new JPanel(new BorderLayout(5, 5));
         centerPanel.setOpaque(false);
 
-        // Add subject filter
+        // Add subject / type / keyword filters (filtered in the database)
         JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
         filterPanel.setOpaque(false);
         filterPanel.add(new JLabel("按科目筛选:"));
         JComboBox<String> subjectFilterComboBox = new JComboBox<>();
         subjectFilterComboBox.addItem("全部科目");
-        List<Subject> subjects = subjectDAO.getAllSubjects();
-        for (Subject subject : subjects) {
-            subjectFilterComboBox.addItem(subject.getName());
-        }
-        subjectFilterComboBox.addActionListener(e -> {
-            String selectedSubject = (String) subjectFilterComboBox.getSelectedItem();
-            if (selectedSubject != null) {
-                loadQuestionsTable(selectedSubject.equals("全部科目") ? null : selectedSubject);
+        mainFrame.runAsync(subjectDAO::getAllSubjects, subjects -> {
+            for (Subject subject : subjects) {
+                subjectFilterComboBox.addItem(subject.getName());
             }
         });
         filterPanel.add(subjectFilterComboBox);
+        filterPanel.add(new JLabel("题型:"));
+        JComboBox<QuestionType> typeFilterComboBox = new JComboBox<>();
+        typeFilterComboBox.addItem(null);
+        for (QuestionType type : QuestionType.values()) {
+            typeFilterComboBox.addItem(type);
+        }
+        typeFilterComboBox.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                String text = value == null ? "全部题型" : ((QuestionType) value).getDescription();
+                return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+            }
+        });
+        filterPanel.add(typeFilterComboBox);
+        filterPanel.add(new JLabel("关键字:"));
+        JTextField keywordFilterField = new JTextField(12);
+        filterPanel.add(keywordFilterField);
+        filterPanel.add(new JLabel("排序:"));
+        JComboBox<String> sortComboBox = new JComboBox<>(new String[]{"按ID", "按难度（答对率从低到高）"});
+        filterPanel.add(sortComboBox);
+        JButton searchButton = new JButton("搜索");
+        filterPanel.add(searchButton);
+
+        java.awt.event.ActionListener applyFilter = e -> {
+            QuestionFilter filter = new QuestionFilter();
+            String selectedSubject = (String) subjectFilterComboBox.getSelectedItem();
+            filter.setSubject(selectedSubject == null || selectedSubject.equals("全部科目") ? null : selectedSubject);
+            filter.setType((QuestionType) typeFilterComboBox.getSelectedItem());
+            String keyword = keywordFilterField.getText().trim();
+            filter.setTextContains(keyword.isEmpty() ? null : keyword);
+            questionFilter = filter;
+            sortQuestionsByCorrectRate = sortComboBox.getSelectedIndex() == 1;
+            loadQuestionsTable();
+        };
+        subjectFilterComboBox.addActionListener(applyFilter);
+        sortComboBox.addActionListener(applyFilter);
+        typeFilterComboBox.addActionListener(applyFilter);
+        keywordFilterField.addActionListener(applyFilter);
+        searchButton.addActionListener(applyFilter);
         centerPanel.add(filterPanel, BorderLayout.NORTH);
 
         // Questions Table
-        questionsTable = new JTable();
+        questionsModel = createQuestionsModel();
+        questionsTable = new JTable(questionsModel);
+        questionsTable.getColumnModel().getColumn(0).setPreferredWidth(40);
+        questionsTable.getColumnModel().getColumn(1).setPreferredWidth(80);
+        questionsTable.getColumnModel().getColumn(2).setPreferredWidth(300);
+        questionsTable.getColumnModel().getColumn(4).setPreferredWidth(60);
         questionsScrollPane = new JScrollPane(questionsTable);
         centerPanel.add(questionsScrollPane, BorderLayout.CENTER);
         
@@ -366,6 +432,10 @@ public class AdminPanel extends JPanel {
         formPanel.add(new JLabel("题目类型:"), gbcData(gbc, 0, gridY, 1, 1));
         typeComboBoxForQuestions = new JComboBox<>(QuestionType.values());
         formPanel.add(typeComboBoxForQuestions, gbcData(gbc, 1, gridY++, 2, 1));
+        // Difficulty
+        formPanel.add(new JLabel("难度:"), gbcData(gbc, 0, gridY, 1, 1));
+        difficultyComboBoxForQuestions = createDifficultyComboBox();
+        formPanel.add(difficultyComboBoxForQuestions, gbcData(gbc, 1, gridY++, 2, 1));
         // Question Text
         formPanel.add(new JLabel("题目内容:"), gbcData(gbc, 0, gridY, 1, 1));
         questionTextField = new JTextField(30);
@@ -417,10 +487,16 @@ public class AdminPanel extends JPanel {
         updateQuestionButton.addActionListener(e -> updateQuestion());
         JButton deleteQuestionButton = new JButton("删除选中题目");
         deleteQuestionButton.addActionListener(e -> deleteQuestion());
+        JButton regradeQuestionButton = new JButton("重新评分选中题目");
+        regradeQuestionButton.addActionListener(e -> regradeSelectedQuestion());
+        JButton questionStatsButton = new JButton("更新题目统计");
+        questionStatsButton.addActionListener(e -> updateQuestionStats(questionStatsButton));
         
         actionButtonPanel.add(addQuestionButton);
         actionButtonPanel.add(updateQuestionButton);
         actionButtonPanel.add(deleteQuestionButton);
+        actionButtonPanel.add(regradeQuestionButton);
+        actionButtonPanel.add(questionStatsButton);
         gbc.gridx = 0; gbc.gridy = gridY; gbc.gridwidth = 3;
         gbc.anchor = GridBagConstraints.CENTER;
         formPanel.add(actionButtonPanel, gbc);
@@ -488,58 +564,92 @@ public class AdminPanel extends JPanel {
     }
 
     private void updateSubjectComboBoxForQuestionManagement() {
-        subjectComboBoxForQuestions.removeAllItems();
-        List<Subject> subjects = subjectDAO.getAllSubjects();
-        for (Subject subject : subjects) {
-            subjectComboBoxForQuestions.addItem(subject.getName());
-        }
+        mainFrame.runAsync(subjectDAO::getAllSubjects, subjects -> {
+            subjectComboBoxForQuestions.removeAllItems();
+            for (Subject subject : subjects) {
+                subjectComboBoxForQuestions.addItem(subject.getName());
+            }
+        });
     }
 
     private void loadQuestionsTable() {
-        loadQuestionsTable(null);
+        questionsModel.refresh();
     }
 
-    private void loadQuestionsTable(String subjectFilter) {
-        List<Question> questions;
-        if (subjectFilter == null || subjectFilter.isEmpty()) {
-            questions = questionDAO.getAllQuestions();
-        } else {
-            questions = questionDAO.getAllQuestions().stream()
-                .filter(q -> subjectFilter.equals(q.getSubject()))
-                .toList();
-        }
-        
-        String[] columnNames = {"ID", "类型", "题目", "科目"};
-        Object[][] data = new Object[questions.size()][columnNames.length];
-
-        for (int i = 0; i < questions.size(); i++) {
-            Question q = questions.get(i);
-            data[i][0] = q.getId();
-            data[i][1] = q.getType() != null ? q.getType().getDescription() : "未知";
-            data[i][2] = q.getQuestionText();
-            data[i][3] = q.getSubject();
-        }
-        DefaultTableModel model = new DefaultTableModel(data, columnNames) {
-            @Override public boolean isCellEditable(int row, int column) { return false; }
+    /**
+     * 题目表格模型：按当前筛选条件在数据库端过滤，只加载滚动到的页
+     */
+    private LazyPagedTableModel<Question> createQuestionsModel() {
+        LazyPagedTableModel.PageSource<Question> source = new LazyPagedTableModel.PageSource<>() {
+            @Override
+            public int count() throws SQLException {
+                return questionDAO.countQuestions(questionFilter);
+            }
+
+            @Override
+            public List<Question> fetchAfter(Question after, int limit) throws SQLException {
+                if (sortQuestionsByCorrectRate) {
+                    return questionDAO.findQuestionSummariesByCorrectRate(questionFilter, after, limit);
+                }
+                return questionDAO.findQuestionSummaries(questionFilter, after == null ? 0 : after.getId(), limit);
+            }
+
+            @Override
+            public Question seek(int offset) throws SQLException {
+                if (sortQuestionsByCorrectRate) {
+                    return questionDAO.seekQuestionByCorrectRate(questionFilter, offset);
+                }
+                int id = questionDAO.seekQuestionId(questionFilter, offset);
+                if (id < 0) {
+                    return null;
+                }
+                Question key = new Question();
+                key.setId(id);
+                return key;
+            }
+        };
+        return new LazyPagedTableModel<>(new String[]{"ID", "类型", "题目", "科目", "答对率"}, source) {
+            @Override
+            protected Object getColumnValue(Question q, int column) {
+                switch (column) {
+                    case 0: return q.getId();
+                    case 1: return q.getType() != null ? q.getType().getDescription() : "未知";
+                    case 2: return q.getQuestionText();
+                    case 3: return q.getSubject();
+                    case 4: return q.getCorrectRate() != null ? String.format("%.1f%%", q.getCorrectRate() * 100) : "-";
+                    default: return null;
+                }
+            }
         };
-        questionsTable.setModel(model);
-        // Set column widths, etc. as needed
-        questionsTable.getColumnModel().getColumn(0).setPreferredWidth(40);
-        questionsTable.getColumnModel().getColumn(1).setPreferredWidth(80);
-        questionsTable.getColumnModel().getColumn(2).setPreferredWidth(300);
     }
 
-    private void populateQuestionFormFromTable() {
+    /**
+     * 返回表格中选中的题目（只含列表显示的字段），没有选中或所在页尚未加载时返回 null
+     */
+    private Question getSelectedQuestionSummary() {
         int selectedRow = questionsTable.getSelectedRow();
-        if (selectedRow == -1) return;
+        return selectedRow == -1 ? null : questionsModel.getRow(questionsTable.convertRowIndexToModel(selectedRow));
+    }
 
-        int questionId = (int) questionsTable.getValueAt(selectedRow, 0);
-        Question q = questionDAO.getQuestionById(questionId);
-        if (q == null) return;
+    private void populateQuestionFormFromTable() {
+        Question selected = getSelectedQuestionSummary();
+        if (selected == null) return;
+
+        int questionId = selected.getId();
+        mainFrame.runAsync(() -> questionDAO.getQuestionById(questionId), q -> {
+            // 加载期间选中行可能已经改变
+            Question stillSelected = getSelectedQuestionSummary();
+            if (q != null && stillSelected != null && stillSelected.getId() == questionId) {
+                populateQuestionForm(q);
+            }
+        });
+    }
 
+    private void populateQuestionForm(Question q) {
         questionTextField.setText(q.getQuestionText());
         subjectComboBoxForQuestions.setSelectedItem(q.getSubject());
         typeComboBoxForQuestions.setSelectedItem(q.getType());
+        difficultyComboBoxForQuestions.setSelectedItem(q.getDifficulty());
         updateQuestionFormFieldVisibility(q.getType()); // Crucial to update visibility first
 
         if (q.getType() == QuestionType.SINGLE_CHOICE || q.getType() == QuestionType.MULTIPLE_CHOICE) {
@@ -569,10 +679,31 @@ public class AdminPanel extends JPanel {
             subjectComboBoxForQuestions.setSelectedIndex(0);
         }
         typeComboBoxForQuestions.setSelectedItem(QuestionType.SINGLE_CHOICE);
+        difficultyComboBoxForQuestions.setSelectedItem(null);
         updateQuestionFormFieldVisibility(QuestionType.SINGLE_CHOICE);
         questionsTable.clearSelection();
     }
 
+    /**
+     * 难度下拉框，第一项为空表示未设置难度
+     */
+    private JComboBox<Difficulty> createDifficultyComboBox() {
+        JComboBox<Difficulty> comboBox = new JComboBox<>();
+        comboBox.addItem(null);
+        for (Difficulty difficulty : Difficulty.values()) {
+            comboBox.addItem(difficulty);
+        }
+        comboBox.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                return super.getListCellRendererComponent(list, value == null ? "未设置" : value,
+                        index, isSelected, cellHasFocus);
+            }
+        });
+        return comboBox;
+    }
+
     private void showAddQuestionDialog() {
         JDialog addDialog = new JDialog(mainFrame, "添加新题目", true); 
         addDialog.setSize(650, 550);
@@ -598,17 +729,26 @@ public class AdminPanel extends JPanel {
         dialogFormPanel.add(dialogTypeComboBox, gbc);
         gridY++;
 
+        // Difficulty
+        gbc.gridx = 0; gbc.gridy = gridY; gbc.gridwidth = 1;
+        dialogFormPanel.add(new JLabel("难度:"), gbc);
+        JComboBox<Difficulty> dialogDifficultyComboBox = createDifficultyComboBox();
+        gbc.gridx = 1; gbc.gridwidth = 2;
+        dialogFormPanel.add(dialogDifficultyComboBox, gbc);
+        gridY++;
+
         // Subject
         gbc.gridx = 0; gbc.gridy = gridY; gbc.gridwidth = 1;
         dialogFormPanel.add(new JLabel("科目:"), gbc);
         JComboBox<String> dialogSubjectComboBox = new JComboBox<>();
-        List<Subject> subjects = subjectDAO.getAllSubjects();
-        for (Subject subject : subjects) {
-            dialogSubjectComboBox.addItem(subject.getName());
-        }
-        if (dialogSubjectComboBox.getItemCount() > 0) {
-            dialogSubjectComboBox.setSelectedIndex(0);
-        }
+        mainFrame.runAsync(subjectDAO::getAllSubjects, subjects -> {
+            for (Subject subject : subjects) {
+                dialogSubjectComboBox.addItem(subject.getName());
+            }
+            if (dialogSubjectComboBox.getItemCount() > 0) {
+                dialogSubjectComboBox.setSelectedIndex(0);
+            }
+        });
         gbc.gridx = 1; gbc.gridwidth = 2;
         dialogFormPanel.add(dialogSubjectComboBox, gbc);
         gridY++;
@@ -737,6 +877,7 @@ public class AdminPanel extends JPanel {
             newQuestion.setQuestionText(questionText);
             newQuestion.setSubject(subjectName);
             newQuestion.setType(type);
+            newQuestion.setDifficulty((Difficulty) dialogDifficultyComboBox.getSelectedItem());
 
             if (type == QuestionType.SINGLE_CHOICE || type == QuestionType.MULTIPLE_CHOICE) {
                 String optA = dialogOptionA.getText().trim();
@@ -789,15 +930,17 @@ public class AdminPanel extends JPanel {
                 newQuestion.setFillBlankAnswer(fillAnswer);
             }
 
-            boolean success = questionDAO.addQuestion(newQuestion);
-            if (success) {
-                JOptionPane.showMessageDialog(addDialog, "题目添加成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
-                addDialog.dispose();
-                loadQuestionsTable(); // Refresh table in the main admin panel
-                clearQuestionForm();  // Clear the form in the main admin panel
-            } else {
-                JOptionPane.showMessageDialog(addDialog, "题目添加失败，请检查输入或数据库连接。", "错误", JOptionPane.ERROR_MESSAGE);
-            }
+            confirmAddButton.setEnabled(false);
+            mainFrame.runAsync(() -> questionDAO.addQuestion(newQuestion), success -> {
+                if (success) {
+                    JOptionPane.showMessageDialog(addDialog, "题目添加成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
+                    addDialog.dispose();
+                    loadQuestionsTable(); // Refresh table in the main admin panel
+                    clearQuestionForm();  // Clear the form in the main admin panel
+                } else {
+                    JOptionPane.showMessageDialog(addDialog, "题目添加失败，请检查输入或数据库连接。", "错误", JOptionPane.ERROR_MESSAGE);
+                }
+            }, () -> confirmAddButton.setEnabled(true));
         });
         cancelButton.addActionListener(e -> addDialog.dispose());
 
@@ -807,17 +950,25 @@ public class AdminPanel extends JPanel {
     }
 
     private void updateQuestion() {
-        int selectedRow = questionsTable.getSelectedRow();
-        if (selectedRow == -1) {
+        Question selected = getSelectedQuestionSummary();
+        if (selected == null) {
             JOptionPane.showMessageDialog(this, "请先在表格中选择一个要更新的题目。", "提示", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
-        int questionId = (int) questionsTable.getValueAt(selectedRow, 0);
-        Question qToUpdate = questionDAO.getQuestionById(questionId);
-        if (qToUpdate == null) {
-            JOptionPane.showMessageDialog(this, "无法找到要更新的题目 (ID: " + questionId + ")。", "错误", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
+        int questionId = selected.getId();
+        mainFrame.runAsync(() -> questionDAO.getQuestionById(questionId), qToUpdate -> {
+            if (qToUpdate == null) {
+                JOptionPane.showMessageDialog(this, "无法找到要更新的题目 (ID: " + questionId + ")。", "错误", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            updateQuestion(qToUpdate);
+        });
+    }
+
+    private void updateQuestion(Question qToUpdate) {
+        // 记下修改前的答案，答案变化时提示重新评分历史作答
+        String previousAnswer = qToUpdate.getType() == null ? null : GradingEngine.compile(qToUpdate).getCorrectAnswerText();
+        QuestionType previousType = qToUpdate.getType();
 
         // Populate a Question object from the form fields
         String questionText = questionTextField.getText().trim();
@@ -831,6 +982,7 @@ public class AdminPanel extends JPanel {
         qToUpdate.setQuestionText(questionText);
         qToUpdate.setSubject(subjectName);
         qToUpdate.setType(type);
+        qToUpdate.setDifficulty((Difficulty) difficultyComboBoxForQuestions.getSelectedItem());
         qToUpdate.setOptionA(null); qToUpdate.setOptionB(null); qToUpdate.setOptionC(null); qToUpdate.setOptionD(null); // Clear options first
         qToUpdate.setCorrectAnswer(null); qToUpdate.setCorrectAnswers(null); qToUpdate.setFillBlankAnswer(null); // Clear answers
 
@@ -882,41 +1034,110 @@ public class AdminPanel extends JPanel {
             qToUpdate.setFillBlankAnswer(fillAnswer);
         }
 
-        boolean success = questionDAO.updateQuestion(qToUpdate);
-        if (success) {
-            JOptionPane.showMessageDialog(this, "题目 ID: " + qToUpdate.getId() + " 更新成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
-            loadQuestionsTable();
-            clearQuestionForm();
-        } else {
-            JOptionPane.showMessageDialog(this, "题目更新失败。", "错误", JOptionPane.ERROR_MESSAGE);
-        }
+        mainFrame.runAsync(() -> questionDAO.updateQuestion(qToUpdate), success -> {
+            if (success) {
+                JOptionPane.showMessageDialog(this, "题目 ID: " + qToUpdate.getId() + " 更新成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
+                loadQuestionsTable();
+                clearQuestionForm();
+                if (previousType != qToUpdate.getType()
+                        || !Objects.equals(previousAnswer, GradingEngine.compile(qToUpdate).getCorrectAnswerText())) {
+                    int regrade = JOptionPane.showConfirmDialog(this,
+                            "题目答案已修改，是否按新答案重新评分该题的历史作答？", "重新评分", JOptionPane.YES_NO_OPTION);
+                    if (regrade == JOptionPane.YES_OPTION) {
+                        regradeQuestions(qToUpdate.getId());
+                    }
+                }
+            } else {
+                JOptionPane.showMessageDialog(this, "题目更新失败。", "错误", JOptionPane.ERROR_MESSAGE);
+            }
+        });
     }
 
     private void deleteQuestion() {
-        int selectedRow = questionsTable.getSelectedRow();
-        if (selectedRow == -1) {
+        Question selected = getSelectedQuestionSummary();
+        if (selected == null) {
             JOptionPane.showMessageDialog(this, "请先在表格中选择一个要删除的题目。", "提示", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
-        int questionId = (int) questionsTable.getValueAt(selectedRow, 0);
-        String questionText = (String) questionsTable.getValueAt(selectedRow, 2); // Get text for confirmation
+        int questionId = selected.getId();
+        String questionText = selected.getQuestionText(); // Get text for confirmation
 
         int confirm = JOptionPane.showConfirmDialog(this,
                 "确定要删除选中的题目吗？\nID: " + questionId + "\n题目: " + questionText,
                 "确认删除题目", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            boolean success = questionDAO.deleteQuestion(questionId);
-            if (success) {
-                JOptionPane.showMessageDialog(this, "题目 ID: " + questionId + " 删除成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
-                loadQuestionsTable();
-                clearQuestionForm(); // Clear form as the selected item is gone
-            } else {
-                JOptionPane.showMessageDialog(this, "题目删除失败。", "错误", JOptionPane.ERROR_MESSAGE);
-            }
+            mainFrame.runAsync(() -> questionDAO.deleteQuestion(questionId), success -> {
+                if (success) {
+                    JOptionPane.showMessageDialog(this, "题目 ID: " + questionId + " 删除成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
+                    loadQuestionsTable();
+                    clearQuestionForm(); // Clear form as the selected item is gone
+                } else {
+                    JOptionPane.showMessageDialog(this, "题目删除失败。", "错误", JOptionPane.ERROR_MESSAGE);
+                }
+            });
         }
     }
 
+    private void regradeSelectedQuestion() {
+        Question selected = getSelectedQuestionSummary();
+        if (selected == null) {
+            JOptionPane.showMessageDialog(this, "请先在表格中选择一个要重新评分的题目。", "提示", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        int confirm = JOptionPane.showConfirmDialog(this,
+                "确定要按当前答案重新评分该题的所有历史作答吗？\nID: " + selected.getId(),
+                "确认重新评分", JOptionPane.YES_NO_OPTION);
+        if (confirm == JOptionPane.YES_OPTION) {
+            regradeQuestions(selected.getId());
+        }
+    }
+
+    /**
+     * 更新题目作答统计：默认只累加新的考试记录；删除考试记录或重新评分之后应选择重新统计
+     */
+    private void updateQuestionStats(JButton button) {
+        Object[] options = {"累加新考试记录", "清空后重新统计", "取消"};
+        int choice = JOptionPane.showOptionDialog(this, "更新题目的答对率、区分度和选项分布统计。\n删除考试记录或重新评分之后请选择“清空后重新统计”。",
+                "更新题目统计", JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+        if (choice != 0 && choice != 1) {
+            return;
+        }
+        boolean rebuild = choice == 1;
+        button.setEnabled(false);
+        mainFrame.runAsync(() -> rebuild ? mainFrame.getExamService().rebuildQuestionStats() : mainFrame.getExamService().updateQuestionStats(),
+                records -> {
+                    JOptionPane.showMessageDialog(this, "题目统计已更新，累加考试记录 " + records + " 条。", "成功", JOptionPane.INFORMATION_MESSAGE);
+                    loadQuestionsTable();
+                },
+                () -> button.setEnabled(true));
+    }
+
+    /**
+     * 在后台重新评分指定题目的历史作答，用进度对话框显示进度，可以中途取消
+     */
+    private void regradeQuestions(int... questionIds) {
+        RegradeJob job = new RegradeJob(questionIds);
+        ProgressMonitor monitor = new ProgressMonitor(this, "正在重新评分历史作答...", null, 0, 1000);
+        monitor.setMillisToDecideToPopup(200);
+        monitor.setMillisToPopup(200);
+        mainFrame.runAsync(() -> job.run((processed, total) -> SwingUtilities.invokeLater(() -> {
+            if (monitor.isCanceled()) {
+                job.cancel();
+                return;
+            }
+            monitor.setProgress(total == 0 ? 1000 : (int) (processed * 1000 / total));
+            monitor.setNote("已处理 " + processed + " / " + total + " 条作答");
+        })), result -> {
+            String message = (result.isCancelled() ? "重新评分已取消。" : "重新评分完成。")
+                    + "\n扫描作答: " + result.getScanned() + " 条\n对错变化: " + result.getChanged() + " 条";
+            JOptionPane.showMessageDialog(this, message, "重新评分", JOptionPane.INFORMATION_MESSAGE);
+            if (examRecordsModel != null) {
+                examRecordsModel.refresh();
+            }
+        }, monitor::close);
+    }
+
     // Placeholder methods for other admin functionalities
     // 管理考试记录功能
     private JPanel createManageExamsPanel() {
@@ -937,7 +1158,16 @@ public class AdminPanel extends JPanel {
         manageExamsPanel.add(topNavPanel, BorderLayout.NORTH);
 
         String[] columnNames = {"ID", "学生ID", "科目", "分数", "考试日期", "评语"};
-        examRecordsTable = new JTable();
+        examRecordsModel = createExamRecordsModel(columnNames);
+        examRecordsTable = new JTable(examRecordsModel);
+        examRecordsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        // Set column widths for better display
+        examRecordsTable.getColumnModel().getColumn(0).setPreferredWidth(40); // ID
+        examRecordsTable.getColumnModel().getColumn(1).setPreferredWidth(80); // Student ID
+        examRecordsTable.getColumnModel().getColumn(2).setPreferredWidth(100); // Subject
+        examRecordsTable.getColumnModel().getColumn(3).setPreferredWidth(60); // Score
+        examRecordsTable.getColumnModel().getColumn(4).setPreferredWidth(120); // Exam Date
+        examRecordsTable.getColumnModel().getColumn(5).setPreferredWidth(200); // Comment
         examRecordsScrollPane = new JScrollPane(examRecordsTable);
         manageExamsPanel.add(examRecordsScrollPane, BorderLayout.CENTER);
 
@@ -947,13 +1177,30 @@ public class AdminPanel extends JPanel {
         JButton addCommentButton = new JButton("添加/编辑评语"); // New button
         addCommentButton.setFont(new Font("微软雅黑", Font.PLAIN, 14));
 
+        JButton rebuildStatsButton = new JButton("重建成绩统计");
+        rebuildStatsButton.setFont(new Font("微软雅黑", Font.PLAIN, 14));
+        JButton subjectSummaryButton = new JButton("科目成绩概况");
+        subjectSummaryButton.setFont(new Font("微软雅黑", Font.PLAIN, 14));
+        JButton cohortReportButton = new JButton("成绩分析报告");
+        cohortReportButton.setFont(new Font("微软雅黑", Font.PLAIN, 14));
+        JButton exportButton = new JButton("导出考试记录");
+        exportButton.setFont(new Font("微软雅黑", Font.PLAIN, 14));
+
         buttonPanel.add(deleteExamRecordButton);
         buttonPanel.add(addCommentButton); // Add new button
+        buttonPanel.add(rebuildStatsButton);
+        buttonPanel.add(subjectSummaryButton);
+        buttonPanel.add(cohortReportButton);
+        buttonPanel.add(exportButton);
 
         manageExamsPanel.add(buttonPanel, BorderLayout.SOUTH);
 
         deleteExamRecordButton.addActionListener(e -> deleteExamRecord());
         addCommentButton.addActionListener(e -> showCommentDialog()); // Action listener for new button
+        rebuildStatsButton.addActionListener(e -> rebuildStudentSubjectStats(rebuildStatsButton));
+        subjectSummaryButton.addActionListener(e -> showSubjectSummaries(subjectSummaryButton));
+        cohortReportButton.addActionListener(e -> showCohortReport(cohortReportButton));
+        exportButton.addActionListener(e -> exportExamResults(exportButton));
 
         return manageExamsPanel;
     }
@@ -964,33 +1211,44 @@ public class AdminPanel extends JPanel {
     }
 
     private void loadExamRecordsTable() {
-        List<ExamRecord> records = mainFrame.getExamService().getAllExamRecords(); // Changed to get all records
-        String[] columnNames = {"ID", "学生ID", "科目", "分数", "考试日期", "评语"};
-        Object[][] data = new Object[records.size()][columnNames.length];
-
-        for (int i = 0; i < records.size(); i++) {
-            ExamRecord r = records.get(i);
-            data[i][0] = r.getId();
-            data[i][1] = r.getStudentId();
-            data[i][2] = r.getSubject();
-            data[i][3] = r.getScore();
-            data[i][4] = r.getExamDate();
-            data[i][5] = r.getComment(); // Populate comment column
-        }
+        examRecordsModel.refresh();
+    }
 
-        examRecordsTable.setModel(new javax.swing.table.DefaultTableModel(data, columnNames) {
+    /**
+     * 考试记录表格模型：按考试时间倒序，滚动到哪一页才加载哪一页
+     */
+    private LazyPagedTableModel<ExamRecord> createExamRecordsModel(String[] columnNames) {
+        ExamService examService = mainFrame.getExamService();
+        LazyPagedTableModel.PageSource<ExamRecord> source = new LazyPagedTableModel.PageSource<>() {
             @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table non-editable
+            public int count() throws SQLException {
+                return examService.getExamRecordCount();
             }
-        });
-        // Set column widths for better display
-        examRecordsTable.getColumnModel().getColumn(0).setPreferredWidth(40); // ID
-        examRecordsTable.getColumnModel().getColumn(1).setPreferredWidth(80); // Student ID
-        examRecordsTable.getColumnModel().getColumn(2).setPreferredWidth(100); // Subject
-        examRecordsTable.getColumnModel().getColumn(3).setPreferredWidth(60); // Score
-        examRecordsTable.getColumnModel().getColumn(4).setPreferredWidth(120); // Exam Date
-        examRecordsTable.getColumnModel().getColumn(5).setPreferredWidth(200); // Comment
+
+            @Override
+            public List<ExamRecord> fetchAfter(ExamRecord after, int limit) throws SQLException {
+                return examService.getExamRecordsAfter(after, limit);
+            }
+
+            @Override
+            public ExamRecord seek(int offset) throws SQLException {
+                return examService.seekExamRecord(offset);
+            }
+        };
+        return new LazyPagedTableModel<>(columnNames, source) {
+            @Override
+            protected Object getColumnValue(ExamRecord r, int column) {
+                switch (column) {
+                    case 0: return r.getId();
+                    case 1: return r.getStudentId();
+                    case 2: return r.getSubject();
+                    case 3: return r.getScore();
+                    case 4: return r.getExamDate();
+                    case 5: return r.getComment();
+                    default: return null;
+                }
+            }
+        };
     }
 
     private void deleteExamRecord() {
@@ -1000,18 +1258,158 @@ public class AdminPanel extends JPanel {
             return;
         }
 
-        int recordId = (int) examRecordsTable.getValueAt(selectedRow, 0);
+        ExamRecord selectedRecord = examRecordsModel.getRow(examRecordsTable.convertRowIndexToModel(selectedRow));
+        if (selectedRecord == null) {
+            return; // 所在页尚未加载完成
+        }
+        int recordId = selectedRecord.getId();
 
         int confirm = JOptionPane.showConfirmDialog(this, "确定要删除选中的考试记录吗？", "确认删除", JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            boolean success = mainFrame.getExamService().deleteExamRecord(recordId); // Changed to use ExamService
-            if (success) {
-                JOptionPane.showMessageDialog(this, "考试记录删除成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
-                loadExamRecordsTable();
+            mainFrame.runAsync(() -> mainFrame.getExamService().deleteExamRecord(recordId), success -> {
+                if (success) {
+                    JOptionPane.showMessageDialog(this, "考试记录删除成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
+                    loadExamRecordsTable();
+                } else {
+                    JOptionPane.showMessageDialog(this, "考试记录删除失败，请检查数据库连接。", "错误", JOptionPane.ERROR_MESSAGE);
+                }
+            });
+        }
+    }
+
+    /**
+     * 从考试记录重建学生成绩统计，用于统计与考试记录不一致时（例如直接修改过数据库）
+     */
+    private void rebuildStudentSubjectStats(JButton button) {
+        int confirm = JOptionPane.showConfirmDialog(this, "确定要从全部考试记录重建学生成绩统计吗？", "确认重建", JOptionPane.YES_NO_OPTION);
+        if (confirm != JOptionPane.YES_OPTION) {
+            return;
+        }
+        button.setEnabled(false);
+        mainFrame.runAsync(() -> mainFrame.getExamService().rebuildStudentSubjectStats(),
+                rows -> JOptionPane.showMessageDialog(this, "成绩统计已重建，共 " + rows + " 条。", "成功", JOptionPane.INFORMATION_MESSAGE),
+                () -> button.setEnabled(true));
+    }
+
+    /**
+     * 显示各科目的考试次数、平均得分率和及格率
+     */
+    private void showSubjectSummaries(JButton button) {
+        button.setEnabled(false);
+        mainFrame.runAsync(() -> mainFrame.getExamService().getSubjectSummaries(), summaries -> {
+            DefaultTableModel model = new DefaultTableModel(new String[]{"科目", "考试次数", "平均得分率", "及格率"}, 0) {
+                @Override
+                public boolean isCellEditable(int row, int column) {
+                    return false;
+                }
+            };
+            for (ExamRecordSnapshot.SubjectSummary summary : summaries) {
+                model.addRow(new Object[]{summary.getSubject(), summary.getExamCount(),
+                        String.format("%.1f%%", summary.getAveragePercentage()),
+                        String.format("%.1f%%", summary.getPassRate() * 100)});
+            }
+            JScrollPane scrollPane = new JScrollPane(new JTable(model));
+            scrollPane.setPreferredSize(new Dimension(480, 260));
+            JOptionPane.showMessageDialog(this, scrollPane, "科目成绩概况", JOptionPane.PLAIN_MESSAGE);
+        }, () -> button.setEnabled(true));
+    }
+
+    /**
+     * 把全部考试记录流式导出为 CSV 或 JSON Lines 文件（按扩展名选择格式），可以中途取消
+     */
+    private void exportExamResults(JButton button) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("导出考试记录");
+        chooser.setSelectedFile(new java.io.File("exam_results.csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        java.nio.file.Path target = chooser.getSelectedFile().toPath();
+        ExamResultExporter exporter = new ExamResultExporter();
+        ProgressMonitor monitor = new ProgressMonitor(this, "正在导出考试记录...", null, 0, 1);
+        monitor.setMillisToDecideToPopup(200);
+        monitor.setMillisToPopup(200);
+        button.setEnabled(false);
+        mainFrame.runAsync(() -> exporter.export(target, ExamResultExporter.Format.forPath(target),
+                written -> SwingUtilities.invokeLater(() -> {
+                    if (monitor.isCanceled()) {
+                        exporter.cancel();
+                        return;
+                    }
+                    monitor.setNote("已导出 " + written + " 行");
+                })), rows -> {
+            if (rows < 0) {
+                JOptionPane.showMessageDialog(this, "导出已取消。", "导出考试记录", JOptionPane.INFORMATION_MESSAGE);
             } else {
-                JOptionPane.showMessageDialog(this, "考试记录删除失败，请检查数据库连接。", "错误", JOptionPane.ERROR_MESSAGE);
+                JOptionPane.showMessageDialog(this, "已导出 " + rows + " 条考试记录到\n" + target, "导出考试记录", JOptionPane.INFORMATION_MESSAGE);
             }
+        }, () -> {
+            monitor.close();
+            button.setEnabled(true);
+        });
+    }
+
+    /**
+     * 选择科目和日期范围后显示成绩分析报告
+     */
+    private void showCohortReport(JButton button) {
+        JComboBox<String> subjectBox = new JComboBox<>();
+        subjectBox.addItem("全部科目");
+        ExamRecordSnapshot.View view = ExamRecordSnapshot.getInstance().current();
+        for (int code = 0; code < view.getSubjectCount(); code++) {
+            subjectBox.addItem(view.subjectName(code));
+        }
+        subjectBox.setEditable(true);
+        JTextField fromField = new JTextField(10);
+        JTextField toField = new JTextField(10);
+        JPanel form = new JPanel(new GridLayout(3, 2, 5, 5));
+        form.add(new JLabel("科目:"));
+        form.add(subjectBox);
+        form.add(new JLabel("起始日期 (yyyy-MM-dd，可空):"));
+        form.add(fromField);
+        form.add(new JLabel("结束日期 (yyyy-MM-dd，可空):"));
+        form.add(toField);
+        if (JOptionPane.showConfirmDialog(this, form, "成绩分析报告", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        String selected = Objects.toString(subjectBox.getSelectedItem(), "").trim();
+        String subject = selected.isEmpty() || selected.equals("全部科目") ? null : selected;
+        LocalDate from;
+        LocalDate to;
+        try {
+            from = fromField.getText().isBlank() ? null : LocalDate.parse(fromField.getText().trim());
+            to = toField.getText().isBlank() ? null : LocalDate.parse(toField.getText().trim());
+        } catch (DateTimeParseException ex) {
+            JOptionPane.showMessageDialog(this, "日期格式应为 yyyy-MM-dd。", "输入错误", JOptionPane.ERROR_MESSAGE);
+            return;
         }
+
+        button.setEnabled(false);
+        mainFrame.runAsync(() -> mainFrame.getExamService().getCohortReport(subject, from, to), report -> {
+            StringBuilder text = new StringBuilder();
+            text.append("科目: ").append(subject != null ? subject : "全部科目").append('\n');
+            text.append("日期: ").append(from != null ? from : "不限").append(" 至 ").append(to != null ? to : "不限").append('\n');
+            text.append("考试次数: ").append(report.getCount()).append('\n');
+            if (report.getCount() > 0) {
+                text.append(String.format("平均得分率: %.1f%%    标准差: %.1f    及格率: %.1f%%%n",
+                        report.getMean(), report.getStandardDeviation(), report.getPassRate() * 100));
+                text.append(String.format("P10: %.1f%%  P25: %.1f%%  中位数: %.1f%%  P75: %.1f%%  P90: %.1f%%%n%n",
+                        report.getPercentile(10), report.getPercentile(25), report.getPercentile(50),
+                        report.getPercentile(75), report.getPercentile(90)));
+                long[] histogram = report.getHistogram(10);
+                long max = Arrays.stream(histogram).max().orElse(1);
+                for (int i = 0; i < histogram.length; i++) {
+                    String range = i == histogram.length - 1 ? String.format("%3d-100", i * 10) : String.format("%3d-%3d", i * 10, i * 10 + 9);
+                    text.append(range).append(" | ").append("#".repeat((int) (histogram[i] * 40 / Math.max(1, max))))
+                            .append(' ').append(histogram[i]).append('\n');
+                }
+            }
+            JTextArea area = new JTextArea(text.toString());
+            area.setEditable(false);
+            area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 13));
+            JOptionPane.showMessageDialog(this, new JScrollPane(area), "成绩分析报告", JOptionPane.PLAIN_MESSAGE);
+        }, () -> button.setEnabled(true));
     }
 
     /**
@@ -1024,8 +1422,12 @@ public class AdminPanel extends JPanel {
             return;
         }
 
-        int examRecordId = (int) examRecordsTable.getValueAt(selectedRow, 0);
-        String currentComment = (String) examRecordsTable.getValueAt(selectedRow, 5);
+        ExamRecord selectedRecord = examRecordsModel.getRow(examRecordsTable.convertRowIndexToModel(selectedRow));
+        if (selectedRecord == null) {
+            return; // 所在页尚未加载完成
+        }
+        int examRecordId = selectedRecord.getId();
+        String currentComment = selectedRecord.getComment();
         if (currentComment == null) {
             currentComment = "";
         }
@@ -1044,14 +1446,14 @@ public class AdminPanel extends JPanel {
 
         if (option == JOptionPane.OK_OPTION) {
             String newComment = commentArea.getText().trim();
-            boolean success = mainFrame.getExamService().updateExamRecordComment(examRecordId, newComment);
-
-            if (success) {
-                JOptionPane.showMessageDialog(this, "评语保存成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
-                loadExamRecordsTable(); // Refresh the table to show the new comment
-            } else {
-                JOptionPane.showMessageDialog(this, "评语保存失败，请检查数据库连接。", "错误", JOptionPane.ERROR_MESSAGE);
-            }
+            mainFrame.runAsync(() -> mainFrame.getExamService().updateExamRecordComment(examRecordId, newComment), success -> {
+                if (success) {
+                    JOptionPane.showMessageDialog(this, "评语保存成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
+                    loadExamRecordsTable(); // Refresh the table to show the new comment
+                } else {
+                    JOptionPane.showMessageDialog(this, "评语保存失败，请检查数据库连接。", "错误", JOptionPane.ERROR_MESSAGE);
+                }
+            });
         }
     }
 
@@ -1107,7 +1509,10 @@ public class AdminPanel extends JPanel {
      }
 
      private void loadSubjectsTable() {
-         List<Subject> subjects = mainFrame.getSubjectDAO().getAllSubjects();
+         mainFrame.runAsync(subjectDAO::getAllSubjects, this::showSubjectsTable);
+     }
+
+     private void showSubjectsTable(List<Subject> subjects) {
          String[] columnNames = {"ID", "科目名称"};
          Object[][] data = new Object[subjects.size()][2];
 
@@ -1130,19 +1535,22 @@ public class AdminPanel extends JPanel {
              return;
          }
 
-         if (mainFrame.getSubjectDAO().findSubjectByName(subjectName) != null) {
-             JOptionPane.showMessageDialog(this, "科目已存在！", "添加失败", JOptionPane.ERROR_MESSAGE);
-             return;
-         }
-
-         boolean success = mainFrame.getSubjectDAO().addSubject(subjectName);
-         if (success) {
-             JOptionPane.showMessageDialog(this, "科目添加成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
-             subjectNameField.setText("");
-             loadSubjectsTable();
-         } else {
-             JOptionPane.showMessageDialog(this, "科目添加失败，请检查输入或数据库连接！", "失败", JOptionPane.ERROR_MESSAGE);
-         }
+         mainFrame.runAsync(() -> {
+             if (subjectDAO.findSubjectByName(subjectName) != null) {
+                 return null;
+             }
+             return subjectDAO.addSubject(subjectName);
+         }, success -> {
+             if (success == null) {
+                 JOptionPane.showMessageDialog(this, "科目已存在！", "添加失败", JOptionPane.ERROR_MESSAGE);
+             } else if (success) {
+                 JOptionPane.showMessageDialog(this, "科目添加成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
+                 subjectNameField.setText("");
+                 loadSubjectsTable();
+             } else {
+                 JOptionPane.showMessageDialog(this, "科目添加失败，请检查输入或数据库连接！", "失败", JOptionPane.ERROR_MESSAGE);
+             }
+         });
      }
 
      private void deleteSubject() {
@@ -1156,13 +1564,14 @@ public class AdminPanel extends JPanel {
 
          int confirm = JOptionPane.showConfirmDialog(this, "确定要删除选中的科目吗？", "确认删除", JOptionPane.YES_NO_OPTION);
          if (confirm == JOptionPane.YES_OPTION) {
-             boolean success = mainFrame.getSubjectDAO().deleteSubject(subjectId);
-             if (success) {
-                 JOptionPane.showMessageDialog(this, "科目删除成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
-                 loadSubjectsTable();
-             } else {
-                 JOptionPane.showMessageDialog(this, "科目删除失败，请检查数据库连接。", "错误", JOptionPane.ERROR_MESSAGE);
-             }
+             mainFrame.runAsync(() -> subjectDAO.deleteSubject(subjectId), success -> {
+                 if (success) {
+                     JOptionPane.showMessageDialog(this, "科目删除成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
+                     loadSubjectsTable();
+                 } else {
+                     JOptionPane.showMessageDialog(this, "科目删除失败，请检查数据库连接。", "错误", JOptionPane.ERROR_MESSAGE);
+                 }
+             });
          }
      }
  }
\ No newline at end of file
@@ -0,0 +1,189 @@
+package com.example.gui;
+
+import com.example.service.AsyncService;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 按需分页加载的表格模型
+ * 只有滚动到的行所在的页才会从数据库读取，已加载的页按 LRU 保留固定数量，
+ * 因此无论表中有多少行，打开表格的耗时和占用的内存都基本不变。
+ * 页通过键集分页读取：已知上一页最后一行时直接从它之后读取，
+ * 直接跳到很深的位置时先用 seek 定位上一页最后一行的排序键。
+ * 所有方法都应在 EDT 上调用，数据库访问在后台线程执行。
+ */
+public abstract class LazyPagedTableModel<T> extends AbstractTableModel {
+    private static final Logger LOGGER = Logger.getLogger(LazyPagedTableModel.class.getName());
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int DEFAULT_MAX_CACHED_PAGES = 20;
+    // 记录各页最后一行（下一页的起点）的数量上限
+    private static final int MAX_PAGE_ANCHORS = 1024;
+
+    /**
+     * 分页数据来源，方法在后台线程调用
+     */
+    public interface PageSource<T> {
+        int count() throws SQLException;
+
+        /**
+         * 读取排在 after 之后的 limit 行，after 为 null 时从第一行开始
+         */
+        List<T> fetchAfter(T after, int limit) throws SQLException;
+
+        /**
+         * 返回第 offset 行（至少包含排序键），超出范围时返回 null
+         */
+        T seek(int offset) throws SQLException;
+    }
+
+    private final String[] columnNames;
+    private final PageSource<T> source;
+    private final int pageSize;
+    private final Map<Integer, List<T>> pages;
+    private final Map<Integer, T> pageAnchors;
+    private final Set<Integer> pendingPages = new HashSet<>();
+    private final Set<Integer> failedPages = new HashSet<>();
+    private int rowCount;
+    // 每次 refresh 递增，丢弃刷新之前发出的加载结果
+    private int generation;
+
+    protected LazyPagedTableModel(String[] columnNames, PageSource<T> source) {
+        this(columnNames, source, DEFAULT_PAGE_SIZE, DEFAULT_MAX_CACHED_PAGES);
+    }
+
+    protected LazyPagedTableModel(String[] columnNames, PageSource<T> source, int pageSize, int maxCachedPages) {
+        this.columnNames = columnNames;
+        this.source = source;
+        this.pageSize = pageSize;
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+                return size() > maxCachedPages;
+            }
+        };
+        this.pageAnchors = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, T> eldest) {
+                return size() > MAX_PAGE_ANCHORS;
+            }
+        };
+    }
+
+    /**
+     * 返回某行某列显示的值
+     */
+    protected abstract Object getColumnValue(T row, int column);
+
+    /**
+     * 丢弃所有已加载的页并重新统计行数
+     */
+    public void refresh() {
+        int requestGeneration = ++generation;
+        pages.clear();
+        pageAnchors.clear();
+        pendingPages.clear();
+        failedPages.clear();
+        AsyncService.getInstance().submit(source::count).whenComplete((count, error) ->
+                SwingUtilities.invokeLater(() -> {
+                    if (requestGeneration != generation) {
+                        return;
+                    }
+                    if (error != null) {
+                        LOGGER.log(Level.SEVERE, "统计表格行数失败", AsyncService.unwrap(error));
+                        return;
+                    }
+                    rowCount = count;
+                    fireTableDataChanged();
+                }));
+    }
+
+    /**
+     * 返回某行的数据，所在页尚未加载时返回 null 并开始加载
+     */
+    public T getRow(int rowIndex) {
+        int pageIndex = rowIndex / pageSize;
+        List<T> page = pages.get(pageIndex);
+        if (page == null) {
+            requestPage(pageIndex);
+            return null;
+        }
+        int offset = rowIndex % pageSize;
+        return offset < page.size() ? page.get(offset) : null;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        T row = getRow(rowIndex);
+        return row == null ? null : getColumnValue(row, columnIndex);
+    }
+
+    @Override
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+        return false;
+    }
+
+    private void requestPage(int pageIndex) {
+        if (pendingPages.contains(pageIndex) || failedPages.contains(pageIndex)) {
+            return;
+        }
+        pendingPages.add(pageIndex);
+        int requestGeneration = generation;
+        boolean firstPage = pageIndex == 0;
+        T anchor = pageAnchors.get(pageIndex);
+        AsyncService.getInstance().submit(() -> {
+            T after = anchor;
+            if (after == null && !firstPage) {
+                after = source.seek(pageIndex * pageSize - 1);
+                if (after == null) {
+                    return List.<T>of(); // 行数已减少，该页已不存在
+                }
+            }
+            return source.fetchAfter(after, pageSize);
+        }).whenComplete((rows, error) -> SwingUtilities.invokeLater(() -> {
+            if (requestGeneration != generation) {
+                return;
+            }
+            pendingPages.remove(pageIndex);
+            if (error != null) {
+                // 不自动重试，避免每次重绘都发起失败的查询；refresh 后会重新加载
+                failedPages.add(pageIndex);
+                LOGGER.log(Level.SEVERE, "加载第 " + pageIndex + " 页失败", AsyncService.unwrap(error));
+                return;
+            }
+            pages.put(pageIndex, rows);
+            if (rows.size() == pageSize) {
+                pageAnchors.put(pageIndex + 1, rows.get(rows.size() - 1));
+            }
+            int firstRow = pageIndex * pageSize;
+            int lastRow = Math.min(firstRow + pageSize, rowCount) - 1;
+            if (lastRow >= firstRow) {
+                fireTableRowsUpdated(firstRow, lastRow);
+            }
+        }));
+    }
+}
@@ -2,12 +2,18 @@ package com.example.gui;
 
 import com.example.dao.*;
 import com.example.model.*;
+import com.example.service.AsyncService;
 import com.example.service.ExamService;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class MainFrame extends JFrame {
+    private static final Logger LOGGER = Logger.getLogger(MainFrame.class.getName());
 
     private CardLayout cardLayout;
     private JPanel mainPanel;
@@ -20,6 +26,7 @@ public class MainFrame extends JFrame {
     private SubjectDAO subjectDAO;
     private StudentAnswerDetailDAO studentAnswerDetailDAO;
     private ExamService examService;
+    private AsyncService asyncService;
     
     // 当前登录用户
     private Student currentStudent;
@@ -29,6 +36,7 @@ public class MainFrame extends JFrame {
     private JTextField studentIdField;
     private JPasswordField passwordField;
     private JComboBox<String> loginTypeComboBox;
+    private JButton loginButton;
 
     // 面板常量，用于CardLayout导航
     public static final String LOGIN_PANEL = "LOGIN";
@@ -44,6 +52,7 @@ public class MainFrame extends JFrame {
         this.subjectDAO = new SubjectDAO();
         this.studentAnswerDetailDAO = new StudentAnswerDetailDAO();
         this.examService = new ExamService(); // ExamService 内部会初始化它自己的DAO依赖
+        this.asyncService = AsyncService.getInstance();
 
         initializeGUI();
     }
@@ -118,7 +127,7 @@ public class MainFrame extends JFrame {
         gbc.insets = new Insets(10, 5, 10, 15);
         loginPanel.add(passwordField, gbc);
     
-        JButton loginButton = new JButton("登录");
+        loginButton = new JButton("登录");
         loginButton.setBackground(new Color(0, 102, 204));
         loginButton.setForeground(Color.WHITE);
         loginButton.setFont(new Font("微软雅黑", Font.BOLD, 18));
@@ -161,30 +170,64 @@ public class MainFrame extends JFrame {
         String id = studentIdField.getText();
         String password = new String(passwordField.getPassword());
 
+        loginButton.setEnabled(false);
         if ("学生".equals(loginType)) {
-            Student student = studentDAO.validateLogin(id, password);
-            if (student != null) {
-                setCurrentStudent(student);
-                StudentPanel studentPanel = new StudentPanel(this, student);
-                mainPanel.add(studentPanel, STUDENT_PANEL);
-                cardLayout.show(mainPanel, STUDENT_PANEL);
-            } else {
-                JOptionPane.showMessageDialog(this, "学号或密码错误！", "登录失败", JOptionPane.ERROR_MESSAGE);
-            }
+            runAsync(() -> studentDAO.validateLogin(id, password), student -> {
+                if (student != null) {
+                    setCurrentStudent(student);
+                    StudentPanel studentPanel = new StudentPanel(this, student);
+                    mainPanel.add(studentPanel, STUDENT_PANEL);
+                    cardLayout.show(mainPanel, STUDENT_PANEL);
+                } else {
+                    JOptionPane.showMessageDialog(this, "学号或密码错误！", "登录失败", JOptionPane.ERROR_MESSAGE);
+                }
+            }, () -> loginButton.setEnabled(true));
         } else if ("管理员".equals(loginType)) {
-            Admin admin = adminDAO.validateLogin(id, password);
-            if (admin != null) {
-                setCurrentAdmin(admin);
-                AdminPanel adminPanel = new AdminPanel(this, admin);
-                mainPanel.add(adminPanel, ADMIN_PANEL);
-                cardLayout.show(mainPanel, ADMIN_PANEL);
-                studentIdField.setText("");
-                passwordField.setText("");
-            } else {
-                JOptionPane.showMessageDialog(this, "用户名或密码错误！", "登录失败", JOptionPane.ERROR_MESSAGE);
-            }
+            runAsync(() -> adminDAO.validateLogin(id, password), admin -> {
+                if (admin != null) {
+                    setCurrentAdmin(admin);
+                    AdminPanel adminPanel = new AdminPanel(this, admin);
+                    mainPanel.add(adminPanel, ADMIN_PANEL);
+                    cardLayout.show(mainPanel, ADMIN_PANEL);
+                    studentIdField.setText("");
+                    passwordField.setText("");
+                } else {
+                    JOptionPane.showMessageDialog(this, "用户名或密码错误！", "登录失败", JOptionPane.ERROR_MESSAGE);
+                }
+            }, () -> loginButton.setEnabled(true));
+        } else {
+            loginButton.setEnabled(true);
         }
     }
+
+    /**
+     * 在后台线程执行数据库操作，完成后回到 EDT 调用 onSuccess
+     * 操作失败时在 EDT 上弹出错误提示
+     */
+    public <T> void runAsync(Callable<T> task, Consumer<T> onSuccess) {
+        runAsync(task, onSuccess, null);
+    }
+
+    /**
+     * 同上，onFinally 无论成功失败都会在 EDT 上执行，用于恢复按钮状态等
+     */
+    public <T> void runAsync(Callable<T> task, Consumer<T> onSuccess, Runnable onFinally) {
+        asyncService.submit(task).whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            try {
+                if (error == null) {
+                    onSuccess.accept(result);
+                } else {
+                    Throwable cause = AsyncService.unwrap(error);
+                    LOGGER.log(Level.SEVERE, "后台操作失败: " + cause.getMessage(), cause);
+                    JOptionPane.showMessageDialog(this, "操作失败: " + cause.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+                }
+            } finally {
+                if (onFinally != null) {
+                    onFinally.run();
+                }
+            }
+        }));
+    }
     
     public void logout() { // 改为 public，以便子面板调用
         setCurrentStudent(null);
@@ -271,19 +314,24 @@ public class MainFrame extends JFrame {
                 return;
             }
 
-            // 检查学号是否已存在
-            if (studentDAO.findByStudentId(studentId) != null) {
-                JOptionPane.showMessageDialog(registerDialog, "学号已存在，请更换！", "注册失败", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
+            // 检查学号是否已存在，然后注册
             Student newStudent = new Student(studentId, name, password);
-            if (studentDAO.addStudent(newStudent)) {
-                JOptionPane.showMessageDialog(registerDialog, "注册成功！请使用学号和密码登录。", "注册成功", JOptionPane.INFORMATION_MESSAGE);
-                registerDialog.dispose(); // 关闭注册对话框
-            } else {
-                JOptionPane.showMessageDialog(registerDialog, "注册失败，请稍后再试。", "注册失败", JOptionPane.ERROR_MESSAGE);
-            }
+            registerButton.setEnabled(false);
+            runAsync(() -> {
+                if (studentDAO.findByStudentId(studentId) != null) {
+                    return null;
+                }
+                return studentDAO.addStudent(newStudent);
+            }, added -> {
+                if (added == null) {
+                    JOptionPane.showMessageDialog(registerDialog, "学号已存在，请更换！", "注册失败", JOptionPane.ERROR_MESSAGE);
+                } else if (added) {
+                    JOptionPane.showMessageDialog(registerDialog, "注册成功！请使用学号和密码登录。", "注册成功", JOptionPane.INFORMATION_MESSAGE);
+                    registerDialog.dispose(); // 关闭注册对话框
+                } else {
+                    JOptionPane.showMessageDialog(registerDialog, "注册失败，请稍后再试。", "注册失败", JOptionPane.ERROR_MESSAGE);
+                }
+            }, () -> registerButton.setEnabled(true));
         });
 
         gbc.gridx = 0; gbc.gridy = 4; gbc.gridwidth = 2;
@@ -334,6 +382,10 @@ public class MainFrame extends JFrame {
         return examService;
     }
 
+    public AsyncService getAsyncService() {
+        return asyncService;
+    }
+
     public Student getCurrentStudent() {
         return currentStudent;
     }
@@ -2,10 +2,13 @@ package com.example.gui;
 
 import com.example.model.Student;
 import com.example.model.Question;
+import com.example.model.ExamAttempt;
 import com.example.model.ExamRecord;
 import com.example.model.StudentAnswerDetail;
 import com.example.model.QuestionType;
+import com.example.service.AttemptJournal;
 import com.example.service.ExamService;
+import com.example.service.LiveAttempt;
 import com.example.dao.StudentAnswerDetailDAO;
 
 import javax.swing.*;
@@ -30,6 +33,8 @@ public class StudentPanel extends JPanel {
     private JLabel welcomeLabel;
     private List<Question> currentQuestions;
     private Map<Integer, String> studentAnswers;
+    private AttemptJournal.Attempt currentAttempt; // 自动保存当前考试的答题进度
+    private LiveAttempt liveAttempt; // 保存答案时即时评分
     private int currentQuestionIndex;
     private JPanel mainContentPanel; // 用于切换学生界面的不同视图 (菜单/考试)
     private CardLayout studentCardLayout; // 用于在学生界面内部切换
@@ -125,7 +130,27 @@ public class StudentPanel extends JPanel {
     }
 
     private void showSubjectSelection() {
-        List<String> subjects = examService.getAvailableSubjects();
+        // 上次考试未交卷就退出时，先询问是否继续
+        mainFrame.runAsync(() -> AttemptJournal.getInstance().findUnfinishedAttempt(currentStudent.getStudentId()),
+                this::offerResume);
+    }
+
+    private void offerResume(ExamAttempt attempt) {
+        if (attempt != null) {
+            int choice = JOptionPane.showConfirmDialog(this,
+                    String.format("检测到未完成的考试（科目：%s，已作答 %d 题），是否继续？",
+                            attempt.getSubject(), attempt.getAnswers().size()),
+                    "继续考试", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
+            if (choice == JOptionPane.YES_OPTION) {
+                mainFrame.runAsync(() -> examService.resumeExam(attempt), questions -> beginExam(questions, attempt));
+                return;
+            }
+            AttemptJournal.getInstance().discard(attempt);
+        }
+        mainFrame.runAsync(examService::getAvailableSubjects, this::showSubjectSelection);
+    }
+
+    private void showSubjectSelection(List<String> subjects) {
         if (subjects.isEmpty()) {
             JOptionPane.showMessageDialog(this, "暂无可用的考试科目！", "提示", JOptionPane.INFORMATION_MESSAGE);
             return;
@@ -148,24 +173,43 @@ public class StudentPanel extends JPanel {
     }
     
     private void startExam(String subject) {
-        int questionCount = examService.getQuestionCount(subject);
-        currentQuestions = examService.startExam(subject, questionCount);
-    
+        mainFrame.runAsync(() -> examService.startExam(subject, examService.getQuestionCount(subject)),
+                this::beginExam);
+    }
+
+    private void beginExam(List<Question> questions) {
+        beginExam(questions, null);
+    }
+
+    /**
+     * 开始考试，resumed 不为 null 时恢复其中保存的答案和剩余时间
+     */
+    private void beginExam(List<Question> questions, ExamAttempt resumed) {
+        currentQuestions = questions;
         if (currentQuestions.isEmpty()) {
             JOptionPane.showMessageDialog(this, "该科目暂无题目或题目数量不足！", "提示", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
         
         studentAnswers.clear();
+        liveAttempt = examService.startLiveAttempt(currentQuestions);
+        if (resumed != null) {
+            studentAnswers.putAll(resumed.getAnswers());
+            resumed.getAnswers().forEach(liveAttempt::recordAnswer);
+        }
         currentQuestionIndex = 0;
+        submitButton.setEnabled(true);
         createQuestionDirectory(); // 创建题目目录
         displayQuestion(currentQuestions.get(currentQuestionIndex));
         updateQuestionButtonColors(); // 初始化按钮颜色
         studentCardLayout.show(mainContentPanel, STUDENT_EXAM_PANEL); // 切换到考试面板
         
         // 初始化并启动计时器
-        remainingTime = currentQuestions.size() * 20; // 每道题20秒
+        remainingTime = resumed != null ? resumed.getRemainingSeconds() : currentQuestions.size() * 20; // 每道题20秒
         updateTimerLabel();
+        AttemptJournal journal = AttemptJournal.getInstance();
+        currentAttempt = resumed != null ? journal.resume(resumed)
+                : journal.begin(currentStudent.getStudentId(), currentQuestions.get(0).getSubject(), currentQuestions, remainingTime);
         if (examTimer != null && examTimer.isRunning()) {
             examTimer.stop();
         }
@@ -174,6 +218,7 @@ public class StudentPanel extends JPanel {
             public void actionPerformed(java.awt.event.ActionEvent e) {
                 remainingTime--;
                 updateTimerLabel();
+                currentAttempt.recordRemainingTime(remainingTime);
                 if (remainingTime <= 0) {
                     examTimer.stop();
                     JOptionPane.showMessageDialog(StudentPanel.this, "考试时间到！系统将自动提交您的答案。", "时间到", JOptionPane.WARNING_MESSAGE);
@@ -396,31 +441,44 @@ public class StudentPanel extends JPanel {
                 break;
         }
         studentAnswers.put(currentQuestion.getId(), answer);
+        liveAttempt.recordAnswer(currentQuestion.getId(), answer);
+        if (currentAttempt != null) {
+            currentAttempt.recordAnswer(currentQuestion.getId(), answer);
+        }
         updateQuestionButtonColors(); // 更新按钮颜色
     }
 
     private void submitExam() {
-        saveCurrentAnswer();
-        ExamService.ExamResult examResult = examService.submitExam(
-            currentStudent.getStudentId(),
-            currentQuestions.get(0).getSubject(),
-            currentQuestions, 
-            studentAnswers
-        );
-
-        if (examResult.getExamRecordId() > 0) {
-            JOptionPane.showMessageDialog(this,
-                String.format("考试完成！得分：%d/%d (%.1f%%)",
-                    examResult.getCorrectCount(), examResult.getTotalQuestions(), examResult.getPercentage()),
-                "考试结果", JOptionPane.INFORMATION_MESSAGE);
-        } else {
-            JOptionPane.showMessageDialog(this, "提交考试失败或未能保存考试记录！", "错误", JOptionPane.ERROR_MESSAGE);
+        if (!submitButton.isEnabled()) {
+            return; // 已在提交中（例如计时结束时恰好点击了提交）
         }
+        saveCurrentAnswer();
+        submitButton.setEnabled(false);
         // 停止计时器
         if (examTimer != null && examTimer.isRunning()) {
             examTimer.stop();
         }
-        studentCardLayout.show(mainContentPanel, STUDENT_MENU_PANEL); // 返回学生主菜单
+        // 得分已在保存答案时算好，交卷只需要保存
+        LiveAttempt live = liveAttempt;
+        String subject = currentQuestions.get(0).getSubject();
+        AttemptJournal.Attempt attempt = currentAttempt;
+        mainFrame.runAsync(() -> examService.submitExam(
+            currentStudent.getStudentId(),
+            subject,
+            live
+        ), examResult -> {
+            if (examResult != null && examResult.isSaved()) {
+                attempt.finish(); // 交卷已保存，不再需要答题进度；保存失败时保留，下次可以继续
+                String message = String.format("考试完成！得分：%d/%d (%.1f%%)",
+                        examResult.getCorrectCount(), examResult.getTotalQuestions(), examResult.getPercentage());
+                if (examResult.isQueued()) {
+                    message += "\n答卷已保存，稍后会出现在考试记录中。";
+                }
+                JOptionPane.showMessageDialog(this, message, "考试结果", JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(this, "提交考试失败或未能保存考试记录！", "错误", JOptionPane.ERROR_MESSAGE);
+            }
+        }, () -> studentCardLayout.show(mainContentPanel, STUDENT_MENU_PANEL)); // 返回学生主菜单
     }
     
     @Override
@@ -428,7 +486,11 @@ public class StudentPanel extends JPanel {
         super.setVisible(aFlag);
     }
     private void showExamHistory() {
-        List<ExamRecord> records = examService.getStudentExamHistory(currentStudent.getStudentId());
+        mainFrame.runAsync(() -> examService.getStudentExamHistory(currentStudent.getStudentId()),
+                this::showExamHistory);
+    }
+
+    private void showExamHistory(List<ExamRecord> records) {
         if (records.isEmpty()) {
             JOptionPane.showMessageDialog(this, "暂无考试记录！", "提示", JOptionPane.INFORMATION_MESSAGE);
             return;
@@ -462,88 +524,86 @@ public class StudentPanel extends JPanel {
     }
 
     public void showExamDetailDialog(ExamRecord record) { // Made public to be called by ButtonEditor
-        try {
-            List<StudentAnswerDetail> details = studentAnswerDetailDAO.getStudentAnswerDetailsByExamRecordId(record.getId());
-            if (details.isEmpty()) {
-                JOptionPane.showMessageDialog(this, "未能加载到该次考试的详细答题记录。", "提示", JOptionPane.INFORMATION_MESSAGE);
-                return;
-            }
-            JDialog detailDialog = new JDialog(mainFrame, "考试详情 - " + record.getSubject(), true); 
-            detailDialog.setSize(700, 500);
-            detailDialog.setLocationRelativeTo(mainFrame);
-            detailDialog.setLayout(new BorderLayout());
-
-            // Display Exam Comment at the top of the dialog
-            JTextArea commentDisplayArea = new JTextArea("管理员评语: " + record.getComment());
-            commentDisplayArea.setLineWrap(true);
-            commentDisplayArea.setWrapStyleWord(true);
-            commentDisplayArea.setEditable(false);
-            commentDisplayArea.setOpaque(true);
-            commentDisplayArea.setBackground(new Color(245, 245, 220)); // Light yellow background for comments
-            commentDisplayArea.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-            commentDisplayArea.setFont(new Font("微软雅黑", Font.ITALIC, 13));
-            
-            // Only add if there is a comment
-            if (record.getComment() != null && !record.getComment().trim().isEmpty()) {
-                detailDialog.add(commentDisplayArea, BorderLayout.NORTH);
-            }
-
-            JPanel questionsDisplayPanel = new JPanel();
-            questionsDisplayPanel.setLayout(new BoxLayout(questionsDisplayPanel, BoxLayout.Y_AXIS));
-            questionsDisplayPanel.setBorder(BorderFactory.createEmptyBorder(10,10,10,10));
-            for (int i = 0; i < details.size(); i++) {
-                StudentAnswerDetail detail = details.get(i);
-                JPanel singleQuestionPanel = new JPanel(new BorderLayout(5,5));
-                singleQuestionPanel.setBorder(BorderFactory.createCompoundBorder(
-                    BorderFactory.createMatteBorder(0, 0, 1, 0, Color.LIGHT_GRAY),
-                    BorderFactory.createEmptyBorder(10, 5, 10, 5)
-                ));
-                JTextArea questionTextLabel = new JTextArea((i + 1) + ". " + detail.getQuestionText());
-                questionTextLabel.setWrapStyleWord(true); questionTextLabel.setLineWrap(true);
-                questionTextLabel.setEditable(false); questionTextLabel.setOpaque(false);
-                questionTextLabel.setFont(new Font("微软雅黑", Font.BOLD, 14));
-                singleQuestionPanel.add(questionTextLabel, BorderLayout.NORTH);
-                JPanel answerPanel = new JPanel();
-                answerPanel.setLayout(new BoxLayout(answerPanel, BoxLayout.Y_AXIS));
-                answerPanel.setOpaque(false);
-                if (detail.getQuestionType() == QuestionType.SINGLE_CHOICE || detail.getQuestionType() == QuestionType.MULTIPLE_CHOICE) {
-                    if (detail.getOptionA() != null) answerPanel.add(new JLabel("A. " + detail.getOptionA()));
-                    if (detail.getOptionB() != null) answerPanel.add(new JLabel("B. " + detail.getOptionB()));
-                    if (detail.getOptionC() != null) answerPanel.add(new JLabel("C. " + detail.getOptionC()));
-                    if (detail.getOptionD() != null) answerPanel.add(new JLabel("D. " + detail.getOptionD()));
-                    answerPanel.add(Box.createVerticalStrut(5));
-                }
-                String studentAnswerDisplay = formatAnswerWithOptions(detail, detail.getStudentAnswer());
-                JLabel studentAnswerLabel = new JLabel("你的答案: " + studentAnswerDisplay);
-                studentAnswerLabel.setForeground(detail.isCorrect() ? new Color(0,128,0) : Color.RED);
-                answerPanel.add(studentAnswerLabel);
-                String correctAnswerDisplay = formatAnswerWithOptions(detail, detail.getCorrectAnswer());
-                JLabel correctAnswerLabel = new JLabel("正确答案: " + correctAnswerDisplay);
-                answerPanel.add(correctAnswerLabel);
-                singleQuestionPanel.add(answerPanel, BorderLayout.CENTER);
-                questionsDisplayPanel.add(singleQuestionPanel);
-            }
-            JScrollPane scrollPane = new JScrollPane(questionsDisplayPanel);
-            scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
-            detailDialog.add(scrollPane, BorderLayout.CENTER);
-
-            // 确保在对话框完全显示和布局后滚动到顶部
-            // 这一步必须在dialog.setVisible(true)之前执行，以确保在对话框显示时就处于顶部
-            SwingUtilities.invokeLater(() -> {
-                scrollPane.getVerticalScrollBar().setValue(0);
-            });
+        mainFrame.runAsync(() -> studentAnswerDetailDAO.getStudentAnswerDetailsByExamRecordId(record.getId()),
+                details -> showExamDetailDialog(record, details));
+    }
 
-            JButton closeButton = new JButton("关闭");
-            closeButton.addActionListener(e -> detailDialog.dispose());
-            JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
-            buttonPanel.add(closeButton);
-            detailDialog.add(buttonPanel, BorderLayout.SOUTH);
-            detailDialog.setVisible(true);
+    private void showExamDetailDialog(ExamRecord record, List<StudentAnswerDetail> details) {
+        if (details.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "未能加载到该次考试的详细答题记录。", "提示", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        JDialog detailDialog = new JDialog(mainFrame, "考试详情 - " + record.getSubject(), true); 
+        detailDialog.setSize(700, 500);
+        detailDialog.setLocationRelativeTo(mainFrame);
+        detailDialog.setLayout(new BorderLayout());
+
+        // Display Exam Comment at the top of the dialog
+        JTextArea commentDisplayArea = new JTextArea("管理员评语: " + record.getComment());
+        commentDisplayArea.setLineWrap(true);
+        commentDisplayArea.setWrapStyleWord(true);
+        commentDisplayArea.setEditable(false);
+        commentDisplayArea.setOpaque(true);
+        commentDisplayArea.setBackground(new Color(245, 245, 220)); // Light yellow background for comments
+        commentDisplayArea.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        commentDisplayArea.setFont(new Font("微软雅黑", Font.ITALIC, 13));
+        
+        // Only add if there is a comment
+        if (record.getComment() != null && !record.getComment().trim().isEmpty()) {
+            detailDialog.add(commentDisplayArea, BorderLayout.NORTH);
+        }
 
-        } catch (java.sql.SQLException e) {
-            JOptionPane.showMessageDialog(this, "加载考试详情时发生数据库错误: " + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
-            e.printStackTrace();
+        JPanel questionsDisplayPanel = new JPanel();
+        questionsDisplayPanel.setLayout(new BoxLayout(questionsDisplayPanel, BoxLayout.Y_AXIS));
+        questionsDisplayPanel.setBorder(BorderFactory.createEmptyBorder(10,10,10,10));
+        for (int i = 0; i < details.size(); i++) {
+            StudentAnswerDetail detail = details.get(i);
+            JPanel singleQuestionPanel = new JPanel(new BorderLayout(5,5));
+            singleQuestionPanel.setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createMatteBorder(0, 0, 1, 0, Color.LIGHT_GRAY),
+                BorderFactory.createEmptyBorder(10, 5, 10, 5)
+            ));
+            JTextArea questionTextLabel = new JTextArea((i + 1) + ". " + detail.getQuestionText());
+            questionTextLabel.setWrapStyleWord(true); questionTextLabel.setLineWrap(true);
+            questionTextLabel.setEditable(false); questionTextLabel.setOpaque(false);
+            questionTextLabel.setFont(new Font("微软雅黑", Font.BOLD, 14));
+            singleQuestionPanel.add(questionTextLabel, BorderLayout.NORTH);
+            JPanel answerPanel = new JPanel();
+            answerPanel.setLayout(new BoxLayout(answerPanel, BoxLayout.Y_AXIS));
+            answerPanel.setOpaque(false);
+            if (detail.getQuestionType() == QuestionType.SINGLE_CHOICE || detail.getQuestionType() == QuestionType.MULTIPLE_CHOICE) {
+                if (detail.getOptionA() != null) answerPanel.add(new JLabel("A. " + detail.getOptionA()));
+                if (detail.getOptionB() != null) answerPanel.add(new JLabel("B. " + detail.getOptionB()));
+                if (detail.getOptionC() != null) answerPanel.add(new JLabel("C. " + detail.getOptionC()));
+                if (detail.getOptionD() != null) answerPanel.add(new JLabel("D. " + detail.getOptionD()));
+                answerPanel.add(Box.createVerticalStrut(5));
+            }
+            String studentAnswerDisplay = formatAnswerWithOptions(detail, detail.getStudentAnswer());
+            JLabel studentAnswerLabel = new JLabel("你的答案: " + studentAnswerDisplay);
+            studentAnswerLabel.setForeground(detail.isCorrect() ? new Color(0,128,0) : Color.RED);
+            answerPanel.add(studentAnswerLabel);
+            String correctAnswerDisplay = formatAnswerWithOptions(detail, detail.getCorrectAnswer());
+            JLabel correctAnswerLabel = new JLabel("正确答案: " + correctAnswerDisplay);
+            answerPanel.add(correctAnswerLabel);
+            singleQuestionPanel.add(answerPanel, BorderLayout.CENTER);
+            questionsDisplayPanel.add(singleQuestionPanel);
         }
+        JScrollPane scrollPane = new JScrollPane(questionsDisplayPanel);
+        scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
+        detailDialog.add(scrollPane, BorderLayout.CENTER);
+
+        // 确保在对话框完全显示和布局后滚动到顶部
+        // 这一步必须在dialog.setVisible(true)之前执行，以确保在对话框显示时就处于顶部
+        SwingUtilities.invokeLater(() -> {
+            scrollPane.getVerticalScrollBar().setValue(0);
+        });
+
+        JButton closeButton = new JButton("关闭");
+        closeButton.addActionListener(e -> detailDialog.dispose());
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.add(closeButton);
+        detailDialog.add(buttonPanel, BorderLayout.SOUTH);
+        detailDialog.setVisible(true);
     }
 
     private String formatAnswerWithOptions(StudentAnswerDetail detail, String answerLetters) {
@@ -0,0 +1,26 @@
+package com.example.model;
+
+/**
+ * 题目难度枚举
+ * 难度标签是可选的，未设置难度的题目在组卷时只匹配“不限难度”的配额
+ */
+public enum Difficulty {
+    EASY("简单"),
+    MEDIUM("中等"),
+    HARD("困难");
+
+    private final String description;
+
+    Difficulty(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
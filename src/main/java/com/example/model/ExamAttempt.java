@@ -0,0 +1,88 @@
+package com.example.model;
+
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 进行中的考试实体类
+ * 记录试卷的题目顺序、已作答的答案和剩余时间，程序异常退出后可以据此继续考试
+ */
+public class ExamAttempt {
+    private String attemptId;
+    private String studentId;
+    private String subject;
+    private int[] questionIds;
+    private int remainingSeconds;
+    private Timestamp updatedAt;
+    private Map<Integer, String> answers = new LinkedHashMap<>();
+
+    public ExamAttempt() {}
+
+    public ExamAttempt(String attemptId, String studentId, String subject, int[] questionIds, int remainingSeconds) {
+        this.attemptId = attemptId;
+        this.studentId = studentId;
+        this.subject = subject;
+        this.questionIds = questionIds;
+        this.remainingSeconds = remainingSeconds;
+    }
+
+    public String getAttemptId() {
+        return attemptId;
+    }
+
+    public void setAttemptId(String attemptId) {
+        this.attemptId = attemptId;
+    }
+
+    public String getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(String studentId) {
+        this.studentId = studentId;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public int[] getQuestionIds() {
+        return questionIds;
+    }
+
+    public void setQuestionIds(int[] questionIds) {
+        this.questionIds = questionIds;
+    }
+
+    public int getRemainingSeconds() {
+        return remainingSeconds;
+    }
+
+    public void setRemainingSeconds(int remainingSeconds) {
+        this.remainingSeconds = remainingSeconds;
+    }
+
+    public Timestamp getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Timestamp updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * 已作答的答案，键为题目ID
+     */
+    public Map<Integer, String> getAnswers() {
+        return answers;
+    }
+
+    public void setAnswers(Map<Integer, String> answers) {
+        this.answers = answers;
+    }
+}
@@ -18,6 +18,8 @@ public class Question {
     private QuestionType type;
     private List<String> correctAnswers; // 用于多选题的多个正确答案
     private String fillBlankAnswer; // 用于填空题的答案
+    private Difficulty difficulty; // 可选的难度标签，未设置时为 null
+    private Double correctRate; // 作答统计中的答对率（0-1），只在题目列表中读取，尚未统计时为 null
 
     public Question() {
         this.type = QuestionType.SINGLE_CHOICE; // 默认为单选题
@@ -72,6 +74,25 @@ public class Question {
         this.subject = subject;
     }
 
+    /**
+     * 复制构造函数，多选题答案列表会被复制，副本与原对象互不影响
+     */
+    public Question(Question other) {
+        this.id = other.id;
+        this.questionText = other.questionText;
+        this.optionA = other.optionA;
+        this.optionB = other.optionB;
+        this.optionC = other.optionC;
+        this.optionD = other.optionD;
+        this.correctAnswer = other.correctAnswer;
+        this.subject = other.subject;
+        this.type = other.type;
+        this.correctAnswers = other.correctAnswers != null ? new ArrayList<>(other.correctAnswers) : null;
+        this.fillBlankAnswer = other.fillBlankAnswer;
+        this.difficulty = other.difficulty;
+        this.correctRate = other.correctRate;
+    }
+
     // Getters and Setters
     public int getId() {
         return id;
@@ -161,6 +182,22 @@ public class Question {
         this.fillBlankAnswer = fillBlankAnswer;
     }
 
+    public Difficulty getDifficulty() {
+        return difficulty;
+    }
+
+    public void setDifficulty(Difficulty difficulty) {
+        this.difficulty = difficulty;
+    }
+
+    public Double getCorrectRate() {
+        return correctRate;
+    }
+
+    public void setCorrectRate(Double correctRate) {
+        this.correctRate = correctRate;
+    }
+
     @Override
     public String toString() {
         return "Question{" +
@@ -0,0 +1,160 @@
+package com.example.model;
+
+/**
+ * 题目作答统计实体类
+ * 保存可以累加的充分统计量（作答数、答对数、考试得分率之和与平方和、答对者的得分率之和、各选项被选次数），
+ * 答对率（p 值）和点二列区分度由这些量算出，新的作答只需累加，不需要重新扫描历史作答。
+ * 得分率指该次考试的 score / total_questions * 100。
+ */
+public class QuestionStats {
+    private int questionId;
+    private int responses;
+    private int correctCount;
+    private double totalSum;
+    private double totalSquareSum;
+    private double correctTotalSum;
+    private final int[] optionCounts = new int[4];
+    private int blankCount;
+
+    public QuestionStats() {}
+
+    public QuestionStats(int questionId) {
+        this.questionId = questionId;
+    }
+
+    /**
+     * 累加一次作答
+     * @param percentage 该次考试的得分率（0-100）
+     * @param answer 学生答案，选择题为逗号分隔的选项字母
+     * @param countOptions 是否统计选项分布（选择题）
+     */
+    public void addResponse(double percentage, String answer, boolean correct, boolean countOptions) {
+        responses++;
+        totalSum += percentage;
+        totalSquareSum += percentage * percentage;
+        if (correct) {
+            correctCount++;
+            correctTotalSum += percentage;
+        }
+        if (answer == null || answer.isBlank()) {
+            blankCount++;
+            return;
+        }
+        if (countOptions) {
+            for (String part : answer.split(",")) {
+                String letter = part.trim();
+                if (letter.length() == 1 && letter.charAt(0) >= 'A' && letter.charAt(0) <= 'D') {
+                    optionCounts[letter.charAt(0) - 'A']++;
+                }
+            }
+        }
+    }
+
+    /**
+     * 把另一份统计（同一道题）累加进来
+     */
+    public void add(QuestionStats other) {
+        responses += other.responses;
+        correctCount += other.correctCount;
+        totalSum += other.totalSum;
+        totalSquareSum += other.totalSquareSum;
+        correctTotalSum += other.correctTotalSum;
+        for (int i = 0; i < optionCounts.length; i++) {
+            optionCounts[i] += other.optionCounts[i];
+        }
+        blankCount += other.blankCount;
+    }
+
+    /**
+     * 答对率（p 值），没有作答时返回 null
+     */
+    public Double getPValue() {
+        return responses > 0 ? (double) correctCount / responses : null;
+    }
+
+    /**
+     * 点二列区分度：答对者与答错者的平均得分率之差除以得分率的标准差，再乘以 sqrt(p(1-p))
+     * 全部答对、全部答错或得分率没有差异时无法计算，返回 null
+     */
+    public Double getDiscrimination() {
+        if (correctCount == 0 || correctCount == responses) {
+            return null;
+        }
+        double mean = totalSum / responses;
+        double variance = totalSquareSum / responses - mean * mean;
+        if (variance <= 1e-9) {
+            return null;
+        }
+        double correctMean = correctTotalSum / correctCount;
+        double incorrectMean = (totalSum - correctTotalSum) / (responses - correctCount);
+        double p = (double) correctCount / responses;
+        return (correctMean - incorrectMean) / Math.sqrt(variance) * Math.sqrt(p * (1 - p));
+    }
+
+    public int getQuestionId() {
+        return questionId;
+    }
+
+    public void setQuestionId(int questionId) {
+        this.questionId = questionId;
+    }
+
+    public int getResponses() {
+        return responses;
+    }
+
+    public void setResponses(int responses) {
+        this.responses = responses;
+    }
+
+    public int getCorrectCount() {
+        return correctCount;
+    }
+
+    public void setCorrectCount(int correctCount) {
+        this.correctCount = correctCount;
+    }
+
+    public double getTotalSum() {
+        return totalSum;
+    }
+
+    public void setTotalSum(double totalSum) {
+        this.totalSum = totalSum;
+    }
+
+    public double getTotalSquareSum() {
+        return totalSquareSum;
+    }
+
+    public void setTotalSquareSum(double totalSquareSum) {
+        this.totalSquareSum = totalSquareSum;
+    }
+
+    public double getCorrectTotalSum() {
+        return correctTotalSum;
+    }
+
+    public void setCorrectTotalSum(double correctTotalSum) {
+        this.correctTotalSum = correctTotalSum;
+    }
+
+    /**
+     * 选项被选次数，option 为 'A'-'D'
+     */
+    public int getOptionCount(char option) {
+        return optionCounts[option - 'A'];
+    }
+
+    public void setOptionCount(char option, int count) {
+        optionCounts[option - 'A'] = count;
+    }
+
+    public int getBlankCount() {
+        return blankCount;
+    }
+
+    public void setBlankCount(int blankCount) {
+        this.blankCount = blankCount;
+    }
+}
@@ -7,10 +7,11 @@ public class StudentAnswerDetail {
     private int id; // 自增ID
     private int examRecordId; // 关联的考试记录ID
     private int questionId; // 题目ID
+    private int snapshotId; // 题目快照ID，题干、选项和正确答案保存在 question_snapshots 中
     private String studentAnswer; // 学生答案
     private boolean isCorrect; // 是否正确
-    private String correctAnswer; // 题目的正确答案 (冗余存储，方便查询)
-    private String questionText; // 题干 (冗余存储，方便查询)
+    private String correctAnswer; // 题目的正确答案 (读取时从题目快照中取得)
+    private String questionText; // 题干 (读取时从题目快照中取得)
     private String optionA;
     private String optionB;
     private String optionC;
@@ -63,6 +64,14 @@ public class StudentAnswerDetail {
         this.questionId = questionId;
     }
 
+    public int getSnapshotId() {
+        return snapshotId;
+    }
+
+    public void setSnapshotId(int snapshotId) {
+        this.snapshotId = snapshotId;
+    }
+
     public String getStudentAnswer() {
         return studentAnswer;
     }
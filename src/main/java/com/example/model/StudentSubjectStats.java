@@ -0,0 +1,94 @@
+package com.example.model;
+
+import java.sql.Timestamp;
+
+/**
+ * 学生单科成绩统计实体类
+ * 对应 student_subject_stats 中的一行，随考试记录的增删和重新评分增量维护
+ */
+public class StudentSubjectStats {
+    private String studentId;
+    private String subject;
+    private int examCount;
+    private long scoreSum;
+    private double percentageSum;
+    private int bestScore;
+    private int bestRecordId;
+    private Timestamp lastExamDate;
+
+    public StudentSubjectStats() {}
+
+    public String getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(String studentId) {
+        this.studentId = studentId;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public int getExamCount() {
+        return examCount;
+    }
+
+    public void setExamCount(int examCount) {
+        this.examCount = examCount;
+    }
+
+    public long getScoreSum() {
+        return scoreSum;
+    }
+
+    public void setScoreSum(long scoreSum) {
+        this.scoreSum = scoreSum;
+    }
+
+    /**
+     * 各次考试得分率（百分比）之和
+     */
+    public double getPercentageSum() {
+        return percentageSum;
+    }
+
+    public void setPercentageSum(double percentageSum) {
+        this.percentageSum = percentageSum;
+    }
+
+    public int getBestScore() {
+        return bestScore;
+    }
+
+    public void setBestScore(int bestScore) {
+        this.bestScore = bestScore;
+    }
+
+    public int getBestRecordId() {
+        return bestRecordId;
+    }
+
+    public void setBestRecordId(int bestRecordId) {
+        this.bestRecordId = bestRecordId;
+    }
+
+    public Timestamp getLastExamDate() {
+        return lastExamDate;
+    }
+
+    public void setLastExamDate(Timestamp lastExamDate) {
+        this.lastExamDate = lastExamDate;
+    }
+
+    /**
+     * 平均得分率（百分比）
+     */
+    public double getAveragePercentage() {
+        return examCount > 0 ? percentageSum / examCount : 0.0;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 异步服务
+ * 在有界的后台线程池中执行 ExamService 和 DAO 调用，返回 CompletableFuture，
+ * 界面线程（EDT）不再等待数据库往返。结果需由调用方切回 EDT 再更新界面。
+ */
+public class AsyncService {
+    private static final Logger LOGGER = Logger.getLogger(AsyncService.class.getName());
+    private static final AsyncService instance = new AsyncService();
+
+    private final ThreadPoolExecutor executor;
+
+    private AsyncService() {
+        int threads = Integer.getInteger("exam.async.threads", 4);
+        int queueCapacity = Integer.getInteger("exam.async.queueCapacity", 200);
+        AtomicInteger threadIndex = new AtomicInteger();
+        // 任务堆积超过队列容量时直接拒绝，不能用 CallerRunsPolicy，否则会退回到 EDT 上执行
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "exam-async-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static AsyncService getInstance() {
+        return instance;
+    }
+
+    /**
+     * 在后台线程执行任务，任务抛出的异常（包括 SQLException）会使返回的 future 异常完成
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(task.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.WARNING, "后台任务队列已满，任务被拒绝");
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 取出 CompletableFuture 包装后的原始异常
+     */
+    public static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * 当前排队中的任务数量
+     */
+    public int getQueuedTaskCount() {
+        return executor.getQueue().size();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,368 @@
+package com.example.service;
+
+import com.example.dao.ExamAttemptDAO;
+import com.example.database.DatabaseManager;
+import com.example.model.ExamAttempt;
+import com.example.model.Question;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 答题进度的自动保存
+ * 学生切换题目时记录当前答案，只在内存中登记改动；后台线程每隔 exam.autosave.intervalMillis 毫秒（默认 2000）
+ * 把所有学生在这段时间内的改动合并后写入数据库。同一道题在一个间隔内改多次只写最后一次，
+ * 答案没有变化不写，所有学生的改动在一个事务中用多行 upsert 写入，数百名学生同时答题时每个间隔只有几条语句。
+ * 剩余时间每变化 TIME_SAVE_STEP_SECONDS 秒才写入一次，恢复后最多多出这么多时间。
+ * 数据库暂时不可用（连接中断、超时、死锁等）时改动放回，下个间隔重试；其他错误重试也不会成功，逐场写入找出无法写入的考试，
+ * 按内存中的完整进度重新创建这场考试，仍然失败则放弃它的这次改动，不影响其他学生。
+ */
+public class AttemptJournal {
+    private static final Logger LOGGER = Logger.getLogger(AttemptJournal.class.getName());
+    private static final int TIME_SAVE_STEP_SECONDS = 15;
+
+    private final long intervalMillis;
+    private final Set<Attempt> dirty = ConcurrentHashMap.newKeySet();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private static final class Holder {
+        static final AttemptJournal INSTANCE = new AttemptJournal(
+                Math.max(100, Integer.getInteger("exam.autosave.intervalMillis", 2000)));
+    }
+
+    private AttemptJournal(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+        this.flusher = new Thread(this::flushLoop, "attempt-autosave");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public static AttemptJournal getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * 开始一场新的考试，返回用于记录进度的对象
+     * 同一名学生之前未完成的考试在写入时被替换
+     */
+    public Attempt begin(String studentId, String subject, List<Question> questions, int remainingSeconds) {
+        int[] questionIds = new int[questions.size()];
+        for (int i = 0; i < questionIds.length; i++) {
+            questionIds[i] = questions.get(i).getId();
+        }
+        Attempt attempt = new Attempt(new ExamAttempt(UUID.randomUUID().toString(), studentId, subject,
+                questionIds, remainingSeconds), false);
+        markDirty(attempt);
+        return attempt;
+    }
+
+    /**
+     * 继续一场已保存的考试
+     */
+    public Attempt resume(ExamAttempt saved) {
+        return new Attempt(saved, true);
+    }
+
+    /**
+     * 获取学生上次未完成的考试，没有时返回 null
+     */
+    public ExamAttempt findUnfinishedAttempt(String studentId) throws SQLException {
+        flush(); // 刚交卷的考试可能还没有从数据库中删除
+        ExamAttempt attempt = new ExamAttemptDAO().findLatestAttempt(studentId);
+        if (attempt != null) {
+            for (Attempt pending : dirty) {
+                if (pending.isFinished() && pending.getAttemptId().equals(attempt.getAttemptId())) {
+                    return null; // 已交卷，删除还没有写入成功
+                }
+            }
+        }
+        return attempt;
+    }
+
+    /**
+     * 放弃一场已保存的考试
+     */
+    public void discard(ExamAttempt saved) {
+        resume(saved).finish();
+    }
+
+    /**
+     * 停止后台线程并写入尚未保存的改动
+     */
+    public void shutdown() {
+        running = false;
+        flusher.interrupt();
+        flush();
+    }
+
+    private void markDirty(Attempt attempt) {
+        dirty.add(attempt);
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            flush();
+        }
+    }
+
+    /**
+     * 把登记的改动写入数据库，暂时失败时改动放回，下个间隔重试
+     */
+    synchronized void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<Pending> batch = new ArrayList<>();
+        for (Attempt attempt : dirty) {
+            dirty.remove(attempt);
+            batch.add(attempt.takePending());
+        }
+
+        try {
+            write(batch);
+            LOGGER.log(Level.FINE, "自动保存完成，考试数: " + batch.size());
+            return;
+        } catch (SQLException e) {
+            if (DatabaseManager.isTransient(e)) {
+                LOGGER.log(Level.WARNING, "自动保存答题进度失败，稍后重试: " + e.getMessage());
+                for (Pending pending : batch) {
+                    pending.attempt.restore(pending);
+                }
+                return;
+            }
+            LOGGER.log(Level.WARNING, "自动保存答题进度失败，逐场重试: " + e.getMessage());
+        }
+        // 找出无法写入的考试，其余的逐场写入
+        for (Pending pending : batch) {
+            if (batch.size() > 1) {
+                try {
+                    write(List.of(pending));
+                    continue;
+                } catch (SQLException e) {
+                    if (DatabaseManager.isTransient(e)) {
+                        pending.attempt.restore(pending);
+                        continue;
+                    }
+                }
+            }
+            recreateOrDrop(pending);
+        }
+    }
+
+    /**
+     * 一场考试的改动无法写入时（例如进度已被删除，答案引用的考试不存在），按内存中的完整进度重新创建；
+     * 仍然无法写入则放弃这次改动，之后登记的改动照常写入
+     */
+    private void recreateOrDrop(Pending pending) {
+        SQLException failure = null;
+        if (!pending.finished) {
+            Pending recreated = pending.attempt.recreatePending();
+            try {
+                write(List.of(recreated));
+                LOGGER.log(Level.INFO, "已重新创建考试 " + pending.attempt.getAttemptId() + " 的答题进度");
+                return;
+            } catch (SQLException e) {
+                if (DatabaseManager.isTransient(e)) {
+                    pending.attempt.restore(recreated);
+                    return;
+                }
+                failure = e;
+            }
+        }
+        LOGGER.log(Level.SEVERE, "考试 " + pending.attempt.getAttemptId() + " 的答题进度无法写入数据库，已放弃这次改动", failure);
+    }
+
+    /**
+     * 在一个事务中写入一组改动
+     */
+    private void write(List<Pending> batch) throws SQLException {
+        List<ExamAttempt> created = new ArrayList<>();
+        List<ExamAttempt> upserts = new ArrayList<>();
+        Map<String, Map<Integer, String>> answers = new LinkedHashMap<>();
+        List<String> finished = new ArrayList<>();
+        for (Pending pending : batch) {
+            ExamAttempt attempt = pending.attempt.state;
+            if (pending.finished) {
+                if (pending.wasPersisted) {
+                    finished.add(attempt.getAttemptId());
+                }
+                continue;
+            }
+            if (!pending.wasPersisted) {
+                created.add(attempt);
+            }
+            if (!pending.wasPersisted || pending.timeChanged) {
+                upserts.add(new ExamAttempt(attempt.getAttemptId(), attempt.getStudentId(), attempt.getSubject(),
+                        attempt.getQuestionIds(), pending.remainingSeconds));
+            }
+            if (!pending.answers.isEmpty()) {
+                answers.put(attempt.getAttemptId(), pending.answers);
+            }
+        }
+        if (created.isEmpty() && upserts.isEmpty() && answers.isEmpty() && finished.isEmpty()) {
+            return;
+        }
+
+        DatabaseManager.getInstance().inTransaction(conn -> {
+            ExamAttemptDAO dao = new ExamAttemptDAO(conn);
+            if (!finished.isEmpty()) {
+                dao.deleteAttempts(finished);
+            }
+            if (!created.isEmpty()) {
+                dao.deleteOtherAttempts(created);
+            }
+            if (!upserts.isEmpty()) {
+                dao.upsertAttempts(upserts);
+            }
+            if (!answers.isEmpty()) {
+                dao.upsertAnswers(answers);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 一次写入时从 Attempt 中取出的改动
+     */
+    private static final class Pending {
+        final Attempt attempt;
+        final boolean wasPersisted;
+        final boolean finished;
+        final int remainingSeconds;
+        final boolean timeChanged;
+        final Map<Integer, String> answers;
+
+        Pending(Attempt attempt, boolean wasPersisted, boolean finished, int remainingSeconds, boolean timeChanged,
+                Map<Integer, String> answers) {
+            this.attempt = attempt;
+            this.wasPersisted = wasPersisted;
+            this.finished = finished;
+            this.remainingSeconds = remainingSeconds;
+            this.timeChanged = timeChanged;
+            this.answers = answers;
+        }
+    }
+
+    /**
+     * 一场进行中的考试，在 EDT 上登记改动，由后台线程写入
+     */
+    public final class Attempt {
+        private final ExamAttempt state;
+        private final Map<Integer, String> recorded;
+        private Map<Integer, String> changed = new HashMap<>();
+        private boolean persisted;
+        private boolean finished;
+        private int remainingSeconds;
+        private int savedRemainingSeconds;
+        private boolean timeChanged;
+
+        private Attempt(ExamAttempt state, boolean persisted) {
+            this.state = state;
+            this.recorded = new HashMap<>(state.getAnswers());
+            this.persisted = persisted;
+            this.remainingSeconds = state.getRemainingSeconds();
+            this.savedRemainingSeconds = state.getRemainingSeconds();
+        }
+
+        public String getAttemptId() {
+            return state.getAttemptId();
+        }
+
+        private synchronized boolean isFinished() {
+            return finished;
+        }
+
+        /**
+         * 记录一道题的当前答案，与上次记录的相同时不产生写入
+         */
+        public void recordAnswer(int questionId, String answer) {
+            synchronized (this) {
+                // 未作答的题目切换时记录为空字符串，不需要写入
+                if (finished || Objects.equals(recorded.getOrDefault(questionId, ""), answer)) {
+                    return;
+                }
+                recorded.put(questionId, answer);
+                changed.put(questionId, answer);
+            }
+            markDirty(this);
+        }
+
+        /**
+         * 记录剩余时间，与上次写入相差不到 TIME_SAVE_STEP_SECONDS 秒时不产生写入
+         */
+        public void recordRemainingTime(int seconds) {
+            synchronized (this) {
+                remainingSeconds = seconds;
+                if (finished || Math.abs(savedRemainingSeconds - seconds) < TIME_SAVE_STEP_SECONDS) {
+                    return;
+                }
+                timeChanged = true;
+            }
+            markDirty(this);
+        }
+
+        /**
+         * 考试已交卷（或放弃），删除保存的进度
+         */
+        public void finish() {
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+            }
+            markDirty(this);
+        }
+
+        private synchronized Pending takePending() {
+            Pending pending = new Pending(this, persisted, finished, remainingSeconds, timeChanged, changed);
+            changed = new HashMap<>();
+            savedRemainingSeconds = remainingSeconds;
+            timeChanged = false;
+            persisted = true;
+            return pending;
+        }
+
+        /**
+         * 按当前的全部答案和剩余时间重新创建这场考试的改动
+         */
+        private synchronized Pending recreatePending() {
+            return new Pending(this, false, finished, remainingSeconds, true, new HashMap<>(recorded));
+        }
+
+        /**
+         * 写入失败后放回改动，之后登记的更新的答案优先
+         */
+        private void restore(Pending pending) {
+            synchronized (this) {
+                if (!pending.wasPersisted) {
+                    persisted = false;
+                }
+                for (Map.Entry<Integer, String> entry : pending.answers.entrySet()) {
+                    changed.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+                if (pending.timeChanged) {
+                    timeChanged = true;
+                }
+            }
+            markDirty(this);
+        }
+    }
+}
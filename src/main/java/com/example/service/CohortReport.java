@@ -0,0 +1,205 @@
+package com.example.service;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 成绩分析报告：一组考试（某科目、某时间段）的得分率分布、百分位数、平均值、标准差和及格率
+ * 在考试记录列式快照（ExamRecordSnapshot.View）的基本类型数组上用 fork-join 分段计算：
+ * 每段得到一个可合并的中间结果（次数、均值与离差平方和、及格次数、千分位直方图），两两合并得到整体结果。
+ * 得分率按千分位（0-1000，即 0.1%）计入直方图，百分位数由直方图求出，精度为 0.1 个百分点。
+ */
+public final class CohortReport {
+    private static final int PASS_PERCENTAGE = Integer.getInteger("exam.report.passPercentage", 60);
+    // 每段不超过这么多行时直接顺序计算
+    static final int LEAF_ROWS = 1 << 15;
+    private static final int PER_MILLE_BUCKETS = 1001;
+
+    private final String subject;
+    private final long fromMillis;
+    private final long toMillis;
+    private final long count;
+    private final double mean;
+    private final double standardDeviation;
+    private final long passCount;
+    private final long[] perMilleHistogram;
+
+    private CohortReport(String subject, long fromMillis, long toMillis, Accumulator total) {
+        this.subject = subject;
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        this.count = total.count;
+        this.mean = total.count > 0 ? total.mean : 0.0;
+        this.standardDeviation = total.count > 0 ? Math.sqrt(total.m2 / total.count) : 0.0;
+        this.passCount = total.passCount;
+        this.perMilleHistogram = total.histogram;
+    }
+
+    /**
+     * 计算报告
+     * @param subject 科目，为 null 时统计全部科目
+     * @param fromMillis 考试时间下限（含）
+     * @param toMillis 考试时间上限（不含）
+     */
+    public static CohortReport compute(ExamRecordSnapshot.View view, String subject, long fromMillis, long toMillis) {
+        int subjectCode = subject == null ? -1 : view.subjectCode(subject);
+        Accumulator total;
+        if (subject != null && subjectCode < 0) {
+            total = new Accumulator(); // 快照中没有该科目
+        } else {
+            total = ForkJoinPool.commonPool().invoke(new Task(view, subjectCode, fromMillis, toMillis, 0, view.size()));
+        }
+        return new CohortReport(subject, fromMillis, toMillis, total);
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public long getFromMillis() {
+        return fromMillis;
+    }
+
+    public long getToMillis() {
+        return toMillis;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 平均得分率（0-100）
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * 得分率的总体标准差
+     */
+    public double getStandardDeviation() {
+        return standardDeviation;
+    }
+
+    /**
+     * 得分率不低于 exam.report.passPercentage（默认 60）的考试所占比例（0-1）
+     */
+    public double getPassRate() {
+        return count > 0 ? (double) passCount / count : 0.0;
+    }
+
+    /**
+     * 第 p 百分位数（最近秩法），p 取 0-100，返回得分率（0-100）；没有考试时返回 0
+     */
+    public double getPercentile(double p) {
+        if (count == 0) {
+            return 0.0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * count));
+        long cumulative = 0;
+        for (int perMille = 0; perMille < PER_MILLE_BUCKETS; perMille++) {
+            cumulative += perMilleHistogram[perMille];
+            if (cumulative >= rank) {
+                return perMille / 10.0;
+            }
+        }
+        return 100.0;
+    }
+
+    /**
+     * 把得分率 0-100 等分为 bucketCount 段的直方图，100 分计入最后一段
+     */
+    public long[] getHistogram(int bucketCount) {
+        long[] buckets = new long[bucketCount];
+        for (int perMille = 0; perMille < PER_MILLE_BUCKETS; perMille++) {
+            buckets[Math.min(bucketCount - 1, perMille * bucketCount / 1000)] += perMilleHistogram[perMille];
+        }
+        return buckets;
+    }
+
+    /**
+     * 一段记录的中间结果，均值和离差平方和按 Chan 等人的公式合并，避免先求平方和再相减的精度损失
+     */
+    private static final class Accumulator {
+        long count;
+        double mean;
+        double m2;
+        long passCount;
+        final long[] histogram = new long[PER_MILLE_BUCKETS];
+
+        void add(int score, int totalQuestions) {
+            double percentage = totalQuestions > 0 ? score * 100.0 / totalQuestions : 0.0;
+            count++;
+            double delta = percentage - mean;
+            mean += delta / count;
+            m2 += delta * (percentage - mean);
+            if ((long) score * 100 >= (long) PASS_PERCENTAGE * totalQuestions && totalQuestions > 0) {
+                passCount++;
+            }
+            int perMille = totalQuestions > 0 ? (int) ((long) score * 1000 / totalQuestions) : 0;
+            histogram[Math.min(1000, Math.max(0, perMille))]++;
+        }
+
+        Accumulator merge(Accumulator other) {
+            if (other.count == 0) {
+                return this;
+            }
+            long combined = count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / combined;
+            m2 += other.m2 + delta * delta * ((double) count * other.count / combined);
+            count = combined;
+            passCount += other.passCount;
+            for (int i = 0; i < PER_MILLE_BUCKETS; i++) {
+                histogram[i] += other.histogram[i];
+            }
+            return this;
+        }
+    }
+
+    /**
+     * 把 [from, to) 行二分到不超过 LEAF_ROWS 行后顺序累加，再逐层合并
+     */
+    private static final class Task extends RecursiveTask<Accumulator> {
+        private final ExamRecordSnapshot.View view;
+        private final int subjectCode;
+        private final long fromMillis;
+        private final long toMillis;
+        private final int from;
+        private final int to;
+
+        Task(ExamRecordSnapshot.View view, int subjectCode, long fromMillis, long toMillis, int from, int to) {
+            this.view = view;
+            this.subjectCode = subjectCode;
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Accumulator compute() {
+            if (to - from <= LEAF_ROWS) {
+                Accumulator acc = new Accumulator();
+                for (int row = from; row < to; row++) {
+                    if (subjectCode >= 0 && view.getSubjectCode(row) != subjectCode) {
+                        continue;
+                    }
+                    long examMillis = view.getExamMillis(row);
+                    if (examMillis < fromMillis || examMillis >= toMillis) {
+                        continue;
+                    }
+                    acc.add(view.getScore(row), view.getTotalQuestions(row));
+                }
+                return acc;
+            }
+            int middle = (from + to) >>> 1;
+            Task left = new Task(view, subjectCode, fromMillis, toMillis, from, middle);
+            Task right = new Task(view, subjectCode, fromMillis, toMillis, middle, to);
+            left.fork();
+            Accumulator rightResult = right.compute();
+            return left.join().merge(rightResult);
+        }
+    }
+}
@@ -0,0 +1,476 @@
+package com.example.service;
+
+import com.example.dao.ExamDAO;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * 考试记录的内存列式快照，供管理端统计报表使用
+ * 每列保存在一个基本类型数组中（分数、题目数为 int[]，考试时间为毫秒 long[]），学生ID和科目按字典编码为 int，
+ * 统计时只在数组上循环，不创建 ExamRecord 和 Timestamp 对象，数百万条记录的聚合在毫秒级完成。
+ * 快照按考试记录ID水位增量刷新：只读取水位之后的新记录；写入不足 exam.snapshot.settleSeconds 秒（默认 60）的记录
+ * 先放在末尾，下次刷新时重新读取，以免跳过ID较小但提交较晚的记录。
+ * 删除考试记录、删除学生或重新评分会修改已读取的记录：本进程中的修改随即调用 invalidate；
+ * 这些操作还会在同一事务中增加数据库中的修改计数（ExamDAO.getExamRecordsVersion），
+ * 每次刷新先读取这一行，与上次全部读取时不同（其他管理端修改过）就重新全部读取。
+ * refresh 返回不可变的 View，查询期间刷新不会影响已经取得的 View。
+ */
+public final class ExamRecordSnapshot {
+    private static final Logger LOGGER = Logger.getLogger(ExamRecordSnapshot.class.getName());
+    private static final int LOAD_CHUNK = Integer.getInteger("exam.snapshot.loadChunk", 50000);
+    private static final int SETTLE_SECONDS = Integer.getInteger("exam.snapshot.settleSeconds", 60);
+    private static final int PASS_PERCENTAGE = Integer.getInteger("exam.report.passPercentage", 60);
+    // 并行聚合时每段的行数
+    private static final int PARALLEL_CHUNK = 1 << 16;
+
+    private static class Holder {
+        private static final ExamRecordSnapshot INSTANCE = new ExamRecordSnapshot();
+    }
+
+    public static ExamRecordSnapshot getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    // 以下字段只在 refresh 中（持有对象锁时）修改
+    private int[] ids = new int[0];
+    private int[] studentCodes = new int[0];
+    private int[] subjectCodes = new int[0];
+    private int[] scores = new int[0];
+    private int[] totals = new int[0];
+    private long[] examMillis = new long[0];
+    private int size;
+    // [0, settledSize) 之间的记录已经稳定，settledWatermark 是其中最大的考试记录ID
+    private int settledSize;
+    private int settledWatermark;
+    // 读取已有记录时数据库中的修改计数
+    private long loadedVersion = -1;
+    private String[] students = new String[0];
+    private String[] subjects = new String[0];
+    private int studentCount;
+    private int subjectCount;
+    private final Map<String, Integer> studentIndex = new HashMap<>();
+    private final Map<String, Integer> subjectIndex = new HashMap<>();
+
+    private volatile boolean invalidated;
+    private volatile View current = new View(this);
+
+    private ExamRecordSnapshot() {}
+
+    /**
+     * 读取新的考试记录并返回最新的 View
+     */
+    public synchronized View refresh() throws SQLException {
+        long startNanos = System.nanoTime();
+        ExamDAO examDAO = new ExamDAO();
+        // 先读计数再读记录：读取期间发生的修改会使下次刷新重新全部读取
+        long version = examDAO.getExamRecordsVersion();
+        if (invalidated || version != loadedVersion) {
+            if (!invalidated && loadedVersion >= 0) {
+                LOGGER.log(Level.INFO, "Exam records modified by another client, reloading snapshot");
+            }
+            invalidated = false;
+            reset();
+            loadedVersion = version;
+        }
+        if (size > settledSize) {
+            // 末尾尚未稳定的记录可能已被已发布的 View 引用，复制后再覆盖
+            truncateTail();
+        }
+        boolean[] settledPrefix = {true};
+        int read;
+        do {
+            int afterId = size > 0 ? ids[size - 1] : 0;
+            read = examDAO.scanExamRecordsAfter(afterId, SETTLE_SECONDS, LOAD_CHUNK,
+                    (id, studentId, subject, score, totalQuestions, examDateMillis, settled) -> {
+                        append(id, studentId, subject, score, totalQuestions, examDateMillis);
+                        if (settled && settledPrefix[0]) {
+                            settledSize = size;
+                            settledWatermark = id;
+                        } else {
+                            settledPrefix[0] = false;
+                        }
+                    });
+        } while (read == LOAD_CHUNK);
+        View view = new View(this);
+        current = view;
+        LOGGER.log(Level.FINE, "Exam record snapshot refreshed, rows: " + size + ", settled id: " + settledWatermark
+                + ", " + (System.nanoTime() - startNanos) / 1_000_000 + " ms");
+        return view;
+    }
+
+    /**
+     * 最近一次刷新得到的 View，不访问数据库
+     */
+    public View current() {
+        return current;
+    }
+
+    /**
+     * 已读取的考试记录被修改或删除，下次刷新时重新全部读取
+     */
+    public void invalidate() {
+        invalidated = true;
+    }
+
+    private void reset() {
+        ids = new int[0];
+        studentCodes = new int[0];
+        subjectCodes = new int[0];
+        scores = new int[0];
+        totals = new int[0];
+        examMillis = new long[0];
+        size = 0;
+        settledSize = 0;
+        settledWatermark = 0;
+        students = new String[0];
+        subjects = new String[0];
+        studentCount = 0;
+        subjectCount = 0;
+        studentIndex.clear();
+        subjectIndex.clear();
+    }
+
+    private void truncateTail() {
+        int capacity = Math.max(settledSize, ids.length);
+        ids = Arrays.copyOf(ids, capacity);
+        studentCodes = Arrays.copyOf(studentCodes, capacity);
+        subjectCodes = Arrays.copyOf(subjectCodes, capacity);
+        scores = Arrays.copyOf(scores, capacity);
+        totals = Arrays.copyOf(totals, capacity);
+        examMillis = Arrays.copyOf(examMillis, capacity);
+        size = settledSize;
+    }
+
+    private void append(int id, String studentId, String subject, int score, int totalQuestions, long examDateMillis) {
+        if (size == ids.length) {
+            int capacity = Math.max(1024, ids.length + (ids.length >> 1));
+            ids = Arrays.copyOf(ids, capacity);
+            studentCodes = Arrays.copyOf(studentCodes, capacity);
+            subjectCodes = Arrays.copyOf(subjectCodes, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+            totals = Arrays.copyOf(totals, capacity);
+            examMillis = Arrays.copyOf(examMillis, capacity);
+        }
+        ids[size] = id;
+        studentCodes[size] = encodeStudent(studentId);
+        subjectCodes[size] = encodeSubject(subject);
+        scores[size] = score;
+        totals[size] = totalQuestions;
+        examMillis[size] = examDateMillis;
+        size++;
+    }
+
+    private int encodeStudent(String studentId) {
+        Integer code = studentIndex.get(studentId);
+        if (code == null) {
+            if (studentCount == students.length) {
+                students = Arrays.copyOf(students, Math.max(256, studentCount * 2));
+            }
+            code = studentCount;
+            students[studentCount++] = studentId;
+            studentIndex.put(studentId, code);
+        }
+        return code;
+    }
+
+    private int encodeSubject(String subject) {
+        Integer code = subjectIndex.get(subject);
+        if (code == null) {
+            if (subjectCount == subjects.length) {
+                subjects = Arrays.copyOf(subjects, Math.max(16, subjectCount * 2));
+            }
+            code = subjectCount;
+            subjects[subjectCount++] = subject;
+            subjectIndex.put(subject, code);
+        }
+        return code;
+    }
+
+    /**
+     * 某一时刻的快照，只读
+     * 数组在之后的刷新中只会在 size 之后追加，或者整体替换，因此 View 看到的前 size 行不会改变
+     */
+    public static final class View {
+        private final int[] ids;
+        private final int[] studentCodes;
+        private final int[] subjectCodes;
+        private final int[] scores;
+        private final int[] totals;
+        private final long[] examMillis;
+        private final int size;
+        private final String[] students;
+        private final String[] subjects;
+        private final int subjectCount;
+
+        private View(ExamRecordSnapshot snapshot) {
+            this(snapshot.ids, snapshot.studentCodes, snapshot.subjectCodes, snapshot.scores, snapshot.totals,
+                    snapshot.examMillis, snapshot.size, snapshot.students, snapshot.subjects, snapshot.subjectCount);
+        }
+
+        /**
+         * 直接由列数组构造，供测试在不连接数据库的情况下生成快照
+         */
+        View(int[] ids, int[] studentCodes, int[] subjectCodes, int[] scores, int[] totals, long[] examMillis, int size,
+             String[] students, String[] subjects, int subjectCount) {
+            this.ids = ids;
+            this.studentCodes = studentCodes;
+            this.subjectCodes = subjectCodes;
+            this.scores = scores;
+            this.totals = totals;
+            this.examMillis = examMillis;
+            this.size = size;
+            this.students = students;
+            this.subjects = subjects;
+            this.subjectCount = subjectCount;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int getId(int row) {
+            return ids[row];
+        }
+
+        public int getStudentCode(int row) {
+            return studentCodes[row];
+        }
+
+        public String getStudentId(int row) {
+            return students[studentCodes[row]];
+        }
+
+        public int getSubjectCode(int row) {
+            return subjectCodes[row];
+        }
+
+        public String getSubject(int row) {
+            return subjects[subjectCodes[row]];
+        }
+
+        public int getScore(int row) {
+            return scores[row];
+        }
+
+        public int getTotalQuestions(int row) {
+            return totals[row];
+        }
+
+        public long getExamMillis(int row) {
+            return examMillis[row];
+        }
+
+        /**
+         * 得分率（0-100），题目数为 0 时为 0
+         */
+        public double getPercentage(int row) {
+            return totals[row] > 0 ? scores[row] * 100.0 / totals[row] : 0.0;
+        }
+
+        public int getSubjectCount() {
+            return subjectCount;
+        }
+
+        /**
+         * 科目的字典编码，快照中没有该科目时返回 -1
+         */
+        public int subjectCode(String subject) {
+            for (int code = 0; code < subjectCount; code++) {
+                if (subjects[code].equals(subject)) {
+                    return code;
+                }
+            }
+            return -1;
+        }
+
+        public String subjectName(int code) {
+            return subjects[code];
+        }
+
+        /**
+         * 各科目的考试次数、平均得分率和及格率，按科目名称排序
+         * 记录较多时分段并行累加，再合并各段的结果
+         */
+        public List<SubjectSummary> subjectSummaries() {
+            int chunks = (size + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+            SubjectAccumulator total = IntStream.range(0, chunks)
+                    .parallel()
+                    .mapToObj(chunk -> accumulate(chunk * PARALLEL_CHUNK, Math.min(size, (chunk + 1) * PARALLEL_CHUNK)))
+                    .reduce(SubjectAccumulator::merge)
+                    .orElseGet(() -> new SubjectAccumulator(subjectCount));
+            List<SubjectSummary> summaries = new ArrayList<>();
+            for (int code = 0; code < subjectCount; code++) {
+                if (total.counts[code] > 0) {
+                    summaries.add(new SubjectSummary(subjects[code], total.counts[code],
+                            total.percentageSums[code] / total.counts[code],
+                            (double) total.passCounts[code] / total.counts[code]));
+                }
+            }
+            summaries.sort((a, b) -> a.getSubject().compareTo(b.getSubject()));
+            return summaries;
+        }
+
+        private SubjectAccumulator accumulate(int from, int to) {
+            SubjectAccumulator acc = new SubjectAccumulator(subjectCount);
+            for (int row = from; row < to; row++) {
+                int code = subjectCodes[row];
+                double percentage = totals[row] > 0 ? scores[row] * 100.0 / totals[row] : 0.0;
+                acc.counts[code]++;
+                acc.percentageSums[code] += percentage;
+                if (percentage >= PASS_PERCENTAGE) {
+                    acc.passCounts[code]++;
+                }
+            }
+            return acc;
+        }
+
+        /**
+         * 某科目的得分率分布，返回 11 个计数：[0,10)、[10,20)……[90,100) 和 100 分
+         */
+        public int[] scoreDistribution(String subject) {
+            int[] buckets = new int[11];
+            int code = subjectCode(subject);
+            if (code < 0) {
+                return buckets;
+            }
+            for (int row = 0; row < size; row++) {
+                if (subjectCodes[row] == code && totals[row] > 0) {
+                    buckets[Math.min(10, Math.max(0, scores[row] * 10 / totals[row]))]++;
+                }
+            }
+            return buckets;
+        }
+
+        /**
+         * 某科目每天的考试次数和平均得分率，日期按系统默认时区计算
+         */
+        public SortedMap<LocalDate, TrendPoint> dailyTrend(String subject) {
+            int code = subjectCode(subject);
+            if (code < 0) {
+                return Collections.emptySortedMap();
+            }
+            ZoneId zone = ZoneId.systemDefault();
+            ZoneRules rules = zone.getRules();
+            // 没有夏令时的时区（例如 Asia/Shanghai）直接按固定偏移计算日期，不为每行创建对象
+            boolean fixedOffset = rules.isFixedOffset();
+            long offsetMillis = fixedOffset ? rules.getOffset(Instant.EPOCH).getTotalSeconds() * 1000L : 0L;
+            Map<Long, double[]> byDay = new HashMap<>();
+            for (int row = 0; row < size; row++) {
+                if (subjectCodes[row] != code) {
+                    continue;
+                }
+                long epochDay = fixedOffset
+                        ? Math.floorDiv(examMillis[row] + offsetMillis, 86_400_000L)
+                        : LocalDate.ofInstant(Instant.ofEpochMilli(examMillis[row]), zone).toEpochDay();
+                double[] point = byDay.computeIfAbsent(epochDay, k -> new double[2]);
+                point[0]++;
+                point[1] += totals[row] > 0 ? scores[row] * 100.0 / totals[row] : 0.0;
+            }
+            SortedMap<LocalDate, TrendPoint> trend = new TreeMap<>();
+            for (Map.Entry<Long, double[]> entry : byDay.entrySet()) {
+                double[] point = entry.getValue();
+                trend.put(LocalDate.ofEpochDay(entry.getKey()), new TrendPoint((int) point[0], point[1] / point[0]));
+            }
+            return trend;
+        }
+    }
+
+    /**
+     * 一段记录按科目累加的中间结果，数组下标为科目编码
+     */
+    private static final class SubjectAccumulator {
+        final int[] counts;
+        final double[] percentageSums;
+        final int[] passCounts;
+
+        SubjectAccumulator(int subjectCount) {
+            counts = new int[subjectCount];
+            percentageSums = new double[subjectCount];
+            passCounts = new int[subjectCount];
+        }
+
+        SubjectAccumulator merge(SubjectAccumulator other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+                percentageSums[i] += other.percentageSums[i];
+                passCounts[i] += other.passCounts[i];
+            }
+            return this;
+        }
+    }
+
+    /**
+     * 一个科目的成绩概况
+     */
+    public static final class SubjectSummary {
+        private final String subject;
+        private final int examCount;
+        private final double averagePercentage;
+        private final double passRate;
+
+        SubjectSummary(String subject, int examCount, double averagePercentage, double passRate) {
+            this.subject = subject;
+            this.examCount = examCount;
+            this.averagePercentage = averagePercentage;
+            this.passRate = passRate;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public int getExamCount() {
+            return examCount;
+        }
+
+        /**
+         * 平均得分率（0-100）
+         */
+        public double getAveragePercentage() {
+            return averagePercentage;
+        }
+
+        /**
+         * 得分率不低于 exam.report.passPercentage（默认 60）的考试所占比例（0-1）
+         */
+        public double getPassRate() {
+            return passRate;
+        }
+    }
+
+    /**
+     * 一天的考试次数和平均得分率
+     */
+    public static final class TrendPoint {
+        private final int examCount;
+        private final double averagePercentage;
+
+        TrendPoint(int examCount, double averagePercentage) {
+            this.examCount = examCount;
+            this.averagePercentage = averagePercentage;
+        }
+
+        public int getExamCount() {
+            return examCount;
+        }
+
+        public double getAveragePercentage() {
+            return averagePercentage;
+        }
+    }
+}
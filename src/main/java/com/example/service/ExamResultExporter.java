@@ -0,0 +1,305 @@
+package com.example.service;
+
+import com.example.dao.ExamRecordDAO;
+import com.example.database.DatabaseManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 考试结果导出
+ * 以只进游标流式读取 exam_records（连同学生姓名），每行编码后写入固定大小的缓冲区，缓冲区满时写入文件通道，
+ * 无论导出多少行，内存占用都只有一行和一个缓冲区（默认 64 KB，-Dexam.export.bufferSize）。
+ * 支持 CSV（UTF-8 带 BOM，Excel 可直接打开）和 JSON Lines（每行一个 JSON 对象）。
+ * 先写入同目录下的 .part 临时文件，完成后再改名为目标文件，中途失败或取消时不会留下不完整的导出文件。
+ * 也可以在命令行中运行：
+ *   java -cp ... com.example.service.ExamResultExporter 输出文件 [csv|jsonl]
+ * 不指定格式时按文件扩展名判断（.jsonl / .json 为 JSON Lines，其余为 CSV）。
+ */
+public class ExamResultExporter {
+    private static final Logger LOGGER = Logger.getLogger(ExamResultExporter.class.getName());
+    // 至少能容纳一个完整的 UTF-8 字符
+    private static final int BUFFER_SIZE = Math.max(16, Integer.getInteger("exam.export.bufferSize", 64 * 1024));
+    private static final int PROGRESS_INTERVAL = 10000;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String[] CSV_HEADER = {"考试记录ID", "学号", "姓名", "科目", "得分", "题目数", "得分率", "考试时间", "评语"};
+
+    public enum Format {
+        CSV, JSONL;
+
+        /**
+         * 按文件扩展名判断格式
+         */
+        public static Format forPath(Path path) {
+            String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+            return name.endsWith(".jsonl") || name.endsWith(".json") ? JSONL : CSV;
+        }
+    }
+
+    /**
+     * 进度回调，在执行导出的线程中调用
+     */
+    public interface ProgressListener {
+        void onProgress(long written);
+    }
+
+    private final ExamRecordDAO examRecordDAO = new ExamRecordDAO();
+    private volatile boolean cancelled;
+
+    // 每行复用的编码状态
+    private final StringBuilder line = new StringBuilder(256);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private FileChannel channel;
+
+    /**
+     * 请求取消导出，当前行写完后停止，不生成目标文件
+     * 数据库中的查询随即被取消，不再传输剩余的行，连接立即归还
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * 导出全部考试记录，listener 可以为 null；每个导出器只使用一次
+     * @return 导出的行数（不含表头）；取消时返回 -1
+     */
+    public synchronized long export(Path target, Format format, ProgressListener listener) throws SQLException, IOException {
+        long startNanos = System.nanoTime();
+        Path absolute = target.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".part");
+        long[] written = {0};
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel = out;
+            buffer.clear();
+            line.setLength(0);
+            if (format == Format.CSV) {
+                line.append('\uFEFF'); // BOM，Excel 据此按 UTF-8 打开
+                for (int i = 0; i < CSV_HEADER.length; i++) {
+                    if (i > 0) {
+                        line.append(',');
+                    }
+                    line.append(CSV_HEADER[i]);
+                }
+                line.append("\r\n");
+                writeLine();
+            }
+            examRecordDAO.forEachExamResult((id, studentId, studentName, subject, score, totalQuestions, examDate, comment) -> {
+                if (cancelled) {
+                    return false;
+                }
+                line.setLength(0);
+                if (format == Format.CSV) {
+                    appendCsvRow(id, studentId, studentName, subject, score, totalQuestions, examDate, comment);
+                } else {
+                    appendJsonRow(id, studentId, studentName, subject, score, totalQuestions, examDate, comment);
+                }
+                writeLine();
+                if (++written[0] % PROGRESS_INTERVAL == 0 && listener != null) {
+                    listener.onProgress(written[0]);
+                }
+                return true;
+            });
+            flushBuffer();
+            out.force(false);
+        } catch (SQLException | IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        } finally {
+            channel = null;
+        }
+
+        if (cancelled) {
+            Files.deleteIfExists(temp);
+            LOGGER.log(Level.INFO, "Export cancelled after " + written[0] + " rows");
+            return -1;
+        }
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (listener != null) {
+            listener.onProgress(written[0]);
+        }
+        LOGGER.log(Level.INFO, "Exported " + written[0] + " exam results to " + absolute + " in "
+                + (System.nanoTime() - startNanos) / 1_000_000 + " ms");
+        return written[0];
+    }
+
+    private void appendCsvRow(int id, String studentId, String studentName, String subject, int score, int totalQuestions,
+                              Timestamp examDate, String comment) {
+        line.append(id).append(',');
+        appendCsvField(studentId);
+        line.append(',');
+        appendCsvField(studentName);
+        line.append(',');
+        appendCsvField(subject);
+        line.append(',').append(score).append(',').append(totalQuestions).append(',');
+        appendPercentage(score, totalQuestions);
+        line.append(',');
+        if (examDate != null) {
+            DATE_FORMAT.formatTo(examDate.toLocalDateTime(), line);
+        }
+        line.append(',');
+        appendCsvField(comment);
+        line.append("\r\n");
+    }
+
+    /**
+     * RFC 4180：包含逗号、引号或换行的字段用引号括起，字段中的引号写两次；null 写为空字段
+     */
+    private void appendCsvField(String value) {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    private void appendJsonRow(int id, String studentId, String studentName, String subject, int score, int totalQuestions,
+                               Timestamp examDate, String comment) {
+        line.append("{\"id\":").append(id);
+        line.append(",\"studentId\":");
+        appendJsonString(studentId);
+        line.append(",\"studentName\":");
+        appendJsonString(studentName);
+        line.append(",\"subject\":");
+        appendJsonString(subject);
+        line.append(",\"score\":").append(score);
+        line.append(",\"totalQuestions\":").append(totalQuestions);
+        line.append(",\"percentage\":");
+        appendPercentage(score, totalQuestions);
+        line.append(",\"examDate\":");
+        if (examDate != null) {
+            line.append('"');
+            DATE_FORMAT.formatTo(examDate.toLocalDateTime(), line);
+            line.append('"');
+        } else {
+            line.append("null");
+        }
+        line.append(",\"comment\":");
+        appendJsonString(comment);
+        line.append("}\n");
+    }
+
+    private void appendJsonString(String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': line.append("\\\""); break;
+                case '\\': line.append("\\\\"); break;
+                case '\n': line.append("\\n"); break;
+                case '\r': line.append("\\r"); break;
+                case '\t': line.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+            }
+        }
+        line.append('"');
+    }
+
+    /**
+     * 得分率保留一位小数，按整数运算，不创建格式化对象
+     */
+    private void appendPercentage(int score, int totalQuestions) {
+        long tenths = totalQuestions > 0 ? Math.round(score * 1000.0 / totalQuestions) : 0;
+        line.append(tenths / 10).append('.').append(tenths % 10);
+    }
+
+    /**
+     * 把当前行编码到缓冲区，缓冲区满时先写入文件
+     */
+    private void writeLine() throws IOException {
+        CharBuffer chars = CharBuffer.wrap(line);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                flushBuffer();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("用法: ExamResultExporter 输出文件 [csv|jsonl]");
+            System.exit(2);
+        }
+        Path target = Paths.get(args[0]);
+        Format format;
+        try {
+            format = args.length == 2 ? Format.valueOf(args[1].toUpperCase(Locale.ROOT)) : Format.forPath(target);
+        } catch (IllegalArgumentException e) {
+            System.err.println("不支持的格式: " + args[1]);
+            System.exit(2);
+            return;
+        }
+        int exitCode;
+        try {
+            long rows = new ExamResultExporter().export(target, format,
+                    written -> System.out.println("已导出 " + written + " 行"));
+            System.out.println("导出完成: " + target.toAbsolutePath() + "，共 " + rows + " 行");
+            exitCode = 0;
+        } catch (SQLException | IOException e) {
+            System.err.println("导出失败: " + e.getMessage());
+            exitCode = 1;
+        } finally {
+            DatabaseManager.getInstance().shutdown();
+        }
+        System.exit(exitCode);
+    }
+}
@@ -1,21 +1,31 @@
 package com.example.service;
 
+import com.example.dao.QuestionBankCache;
 import com.example.dao.QuestionDAO;
 import com.example.dao.ExamRecordDAO;
 import com.example.model.Question;
+import com.example.model.ExamAttempt;
 import com.example.model.ExamRecord;
-import com.example.model.StudentAnswerDetail;
+import com.example.model.StudentSubjectStats;
 import com.example.dao.StudentAnswerDetailDAO;
+import com.example.dao.StudentSubjectStatsDAO;
 import com.example.model.QuestionType;
-import com.example.dao.ExamDAO;
+import com.example.model.Difficulty;
 import com.example.database.DatabaseManager;
 
-import java.sql.Connection;
+import java.io.IOException;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -27,13 +37,20 @@ public class ExamService {
     private QuestionDAO questionDAO;
     private ExamRecordDAO examRecordDAO;
     private StudentAnswerDetailDAO studentAnswerDetailDAO;
+    private final PaperPool paperPool;
 
     private static final Logger LOGGER = Logger.getLogger(ExamService.class.getName());
 
+    // 题目数量超过该值的科目在数据库端选题，不把整个科目读入内存
+    private static final int DB_SELECTION_THRESHOLD = Integer.getInteger("exam.paper.dbSelectionThreshold", 20000);
+    private static final int MAX_KEY_RANGE_ROUNDS = 4;
+    private static final int MAX_KEY_RANGE_CANDIDATES = 5000;
+
     public ExamService() {
         this.questionDAO = new QuestionDAO();
         this.examRecordDAO = new ExamRecordDAO();
         this.studentAnswerDetailDAO = new StudentAnswerDetailDAO();
+        this.paperPool = new PaperPool(this);
     }
 
     /**
@@ -45,138 +62,318 @@ public class ExamService {
 
     /**
      * 获取指定科目的题目数量
+     * 已缓存的科目直接返回缓存中的数量，不访问数据库
      */
     public int getQuestionCount(String subject) {
+        QuestionBankCache.SubjectBank bank = questionDAO.peekQuestionBank(subject);
+        if (bank != null) {
+            return bank.size();
+        }
         return questionDAO.getQuestionCountBySubject(subject);
     }
 
     /**
      * 开始考试 - 获取随机题目
+     * 优先从预生成试卷池中取卷，池中没有时再同步生成
      */
     public List<Question> startExam(String subject, int questionCount) {
-        List<Question> questions = questionDAO.getRandomQuestions(subject, questionCount);
+        ExamPaper paper = paperPool.poll(subject, questionCount);
+        if (paper == null) {
+            paper = generatePaper(subject, questionCount, PaperSampler.newSeed());
+        }
+        List<Question> questions = paper.getQuestions();
         LOGGER.log(Level.INFO, "加载到题目数量：" + questions.size());
         return questions;
     }
 
     /**
-     * 提交考试答案并计算分数
-     * 同时保存详细的答题记录
+     * 按保存的题目顺序重新加载未完成考试的试卷，已被删除的题目会被跳过
      */
-    public ExamResult submitExam(String studentId, String subject, 
-                                List<Question> questions, Map<Integer, String> answers) {
-        ExamResult examResult = null;
-        DatabaseManager dbManager = DatabaseManager.getInstance();
-        
+    public List<Question> resumeExam(ExamAttempt attempt) throws SQLException {
+        List<Question> questions = questionDAO.getQuestionsByIds(attempt.getQuestionIds());
+        LOGGER.log(Level.INFO, "继续未完成的考试，题目数量：" + questions.size());
+        return questions;
+    }
+
+    public PaperPool getPaperPool() {
+        return paperPool;
+    }
+
+    /**
+     * 试卷生成后题库是否未被修改
+     * 按科目题库版本判断，数据库端选题、未缓存题库的科目同样适用
+     */
+    boolean isPaperCurrent(ExamPaper paper) {
+        return paper.getBankVersion() == questionDAO.getQuestionBankVersion(paper.getSubject());
+    }
+
+    /**
+     * 按种子生成试卷
+     * 题库不变时，同样的 (科目, 题目数量, 种子) 总是生成同样的题目和顺序，
+     * 因此只需保存种子即可重新生成试卷。
+     * 题目数量超过阈值的科目不整体缓存，改为在数据库端选题，只读取被选中的题目。
+     */
+    public ExamPaper generatePaper(String subject, int questionCount, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Question> questions = new ArrayList<>();
+        // 选题之前取得版本，选题期间题库被修改时试卷随即过期
+        long bankVersion = questionDAO.getQuestionBankVersion(subject);
         try {
-            // 开始事务
-            dbManager.beginTransaction();
-            
-            // 获取数据库连接
-            Connection conn = dbManager.getConnection();
-            ExamDAO examDAO = new ExamDAO(conn);
-            StudentAnswerDetailDAO studentAnswerDetailDAO = new StudentAnswerDetailDAO(conn);
-
-            int correctCount = 0;
-            int totalQuestions = questions.size();
-            List<StudentAnswerDetail> answerDetails = new ArrayList<>();
-
-            // 计算正确答案数量并准备详细记录
-            for (Question question : questions) {
-                String userAnswer = answers.get(question.getId());
-                if (userAnswer == null) userAnswer = "";
-                boolean isCorrect = false;
-                String correctAnswerText = "";
-
-                switch (question.getType()) {
-                    case SINGLE_CHOICE:
-                        correctAnswerText = question.getCorrectAnswer();
-                        if (userAnswer.equals(correctAnswerText)) {
-                            isCorrect = true;
-                            correctCount++;
-                        }
-                        break;
-                    case MULTIPLE_CHOICE:
-                        List<String> correctOptionLetters = question.getCorrectAnswers();
-                        List<String> studentSelectedOptionLetters = new ArrayList<>();
-                        if (userAnswer != null && !userAnswer.isEmpty()) {
-                            studentSelectedOptionLetters.addAll(Arrays.asList(userAnswer.split(",")));
-                        }
-
-                        List<String> sortedCorrectOptions = correctOptionLetters.stream().map(String::trim).sorted().collect(java.util.stream.Collectors.toList());
-                        List<String> sortedStudentOptions = studentSelectedOptionLetters.stream().map(String::trim).sorted().collect(java.util.stream.Collectors.toList());
-
-                        if (sortedStudentOptions.equals(sortedCorrectOptions)) {
-                            isCorrect = true;
-                            correctCount++;
-                        }
-                        correctAnswerText = String.join(",", correctOptionLetters);
-                        break;
-                    case FILL_BLANK:
-                        correctAnswerText = question.getFillBlankAnswer();
-                        if (userAnswer.trim().equalsIgnoreCase(correctAnswerText == null ? "" : correctAnswerText.trim())) {
-                            isCorrect = true;
-                            correctCount++;
-                        }
-                        break;
+            QuestionBankCache.SubjectBank bank = questionDAO.peekQuestionBank(subject);
+            int subjectSize = bank == null ? questionDAO.getQuestionCountBySubject(subject) : bank.size();
+            if (bank == null && subjectSize > DB_SELECTION_THRESHOLD) {
+                int[] ids = selectQuestionIdsFromDatabase(subject, null, null, questionCount, subjectSize,
+                        Set.of(), random);
+                questions = questionDAO.getQuestionsByIds(ids);
+            } else {
+                if (bank == null) {
+                    bank = questionDAO.getQuestionBank(subject);
+                }
+                int[] picked = PaperSampler.sampleIndexes(bank.size(), questionCount, random);
+                for (int index : picked) {
+                    questions.add(bank.copyOf(index));
                 }
-                // Create StudentAnswerDetail object
-                StudentAnswerDetail detail = new StudentAnswerDetail(0, 
-                                                                    question.getId(), 
-                                                                    userAnswer,         // Store student answer (letter for single/multiple choice, text for fill-in-the-blank)
-                                                                    isCorrect, 
-                                                                    correctAnswerText,  // Store correct answer (letter for single/multiple choice, text for fill-in-the-blank)
-                                                                    question.getQuestionText(),
-                                                                    question.getType(),
-                                                                    question.getOptionA(),
-                                                                    question.getOptionB(),
-                                                                    question.getOptionC(),
-                                                                    question.getOptionD()
-                                                                    );
-                answerDetails.add(detail);
             }
-            
-            // 1. 保存考试记录
-            ExamRecord record = new ExamRecord(studentId, subject, correctCount, totalQuestions);
-            record.setExamDate(new java.sql.Timestamp(System.currentTimeMillis()));
-            record.setTotalQuestions(totalQuestions);
-            
-            boolean recordSaved = examDAO.addExamRecord(record);
-            
-            if (!recordSaved || record.getId() <= 0) {
-                LOGGER.log(Level.SEVERE, "保存考试记录失败");
-                dbManager.rollbackTransaction();
-                return null;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "加载科目题库失败: " + e.getMessage(), e);
+        }
+        return new ExamPaper(subject, seed, questions, bankVersion);
+    }
+
+    /**
+     * 按蓝图开始考试，各题型数量由蓝图决定
+     */
+    public List<Question> startExam(String subject, PaperBlueprint blueprint) {
+        List<Question> questions = generatePaper(subject, blueprint, PaperSampler.newSeed()).getQuestions();
+        LOGGER.log(Level.INFO, "按蓝图加载到题目数量：" + questions.size());
+        return questions;
+    }
+
+    /**
+     * 按蓝图和种子生成分层试卷
+     * 每条配额在题库缓存中对应题型（及难度）的下标数组上抽样，耗时只与题目数量有关，
+     * 不需要每次考试都遍历整个科目。指定难度的配额先抽，不限难度的配额再从剩余题目中补齐，
+     * 同一道题不会出现两次。题目不足的配额尽量多取并记录警告。
+     * 试卷按配额顺序分为若干部分，同样的 (科目, 蓝图, 种子) 总是生成同一份试卷。
+     * 与按数量组卷一样，题目数量超过阈值且未缓存的科目不整体读入内存，改为每条配额在数据库端按题型选题。
+     */
+    public ExamPaper generatePaper(String subject, PaperBlueprint blueprint, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<PaperBlueprint.Quota> quotas = blueprint.getQuotas();
+        List<List<Question>> sections = new ArrayList<>();
+        for (int i = 0; i < quotas.size(); i++) {
+            sections.add(new ArrayList<>());
+        }
+        long bankVersion = questionDAO.getQuestionBankVersion(subject);
+        try {
+            QuestionBankCache.SubjectBank bank = questionDAO.peekQuestionBank(subject);
+            if (bank == null && questionDAO.getQuestionCountBySubject(subject) > DB_SELECTION_THRESHOLD) {
+                selectSectionsFromDatabase(subject, quotas, sections, random);
+            } else {
+                if (bank == null) {
+                    bank = questionDAO.getQuestionBank(subject);
+                }
+                selectSectionsFromBank(subject, bank, quotas, sections, random);
             }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "加载科目题库失败: " + e.getMessage(), e);
+        }
+        List<Question> questions = new ArrayList<>(blueprint.getTotalCount());
+        for (List<Question> section : sections) {
+            questions.addAll(section);
+        }
+        return new ExamPaper(subject, seed, questions, bankVersion);
+    }
 
-            // 2. 保存详细答题记录
-            for (StudentAnswerDetail detail : answerDetails) {
-                detail.setExamRecordId(record.getId());
+    /**
+     * 在题库缓存的分层下标上按配额抽样
+     */
+    private void selectSectionsFromBank(String subject, QuestionBankCache.SubjectBank bank,
+                                        List<PaperBlueprint.Quota> quotas, List<List<Question>> sections,
+                                        SplittableRandom random) {
+        Set<Integer> pickedIndexes = new HashSet<>();
+        int[] pickedPerType = new int[QuestionType.values().length];
+        // 先处理指定难度的配额，再处理不限难度的配额
+        for (int pass = 0; pass < 2; pass++) {
+            for (int q = 0; q < quotas.size(); q++) {
+                PaperBlueprint.Quota quota = quotas.get(q);
+                if ((quota.getDifficulty() != null) != (pass == 0)) {
+                    continue;
+                }
+                QuestionType type = quota.getType();
+                Difficulty difficulty = quota.getDifficulty();
+                // 多抽已被选走的数量，跳过重复后仍然是剩余题目中的均匀抽样
+                int[] positions = PaperSampler.sampleIndexes(bank.stratumSize(type, difficulty),
+                        quota.getCount() + pickedPerType[type.ordinal()], random);
+                List<Question> section = sections.get(q);
+                for (int i = 0; i < positions.length && section.size() < quota.getCount(); i++) {
+                    int index = bank.stratumIndex(type, difficulty, positions[i]);
+                    if (pickedIndexes.add(index)) {
+                        section.add(bank.copyOf(index));
+                    }
+                }
+                pickedPerType[type.ordinal()] += section.size();
+                warnIfShort(subject, quota, section.size());
+            }
+        }
+    }
+
+    /**
+     * 数据库端按配额选题，每条配额只读取被选中的题目，已被前面配额选走的题目不再入选
+     */
+    private void selectSectionsFromDatabase(String subject, List<PaperBlueprint.Quota> quotas,
+                                            List<List<Question>> sections, SplittableRandom random) throws SQLException {
+        Set<Integer> pickedIds = new HashSet<>();
+        // 先处理指定难度的配额，再处理不限难度的配额
+        for (int pass = 0; pass < 2; pass++) {
+            for (int q = 0; q < quotas.size(); q++) {
+                PaperBlueprint.Quota quota = quotas.get(q);
+                if ((quota.getDifficulty() != null) != (pass == 0)) {
+                    continue;
+                }
+                QuestionType type = quota.getType();
+                Difficulty difficulty = quota.getDifficulty();
+                int stratumSize = questionDAO.countQuestions(subject, type, difficulty);
+                int[] ids = selectQuestionIdsFromDatabase(subject, type, difficulty, quota.getCount(), stratumSize,
+                        pickedIds, random);
+                for (int id : ids) {
+                    pickedIds.add(id);
+                }
+                List<Question> section = sections.get(q);
+                section.addAll(questionDAO.getQuestionsByIds(ids));
+                warnIfShort(subject, quota, section.size());
             }
-            
+        }
+    }
+
+    private static void warnIfShort(String subject, PaperBlueprint.Quota quota, int actual) {
+        if (actual < quota.getCount()) {
+            Difficulty difficulty = quota.getDifficulty();
+            LOGGER.log(Level.WARNING, "科目 " + subject + " 的" + quota.getType().getDescription()
+                    + (difficulty == null ? "" : "（" + difficulty + "）")
+                    + "题目不足，需要 " + quota.getCount() + " 道，实际 " + actual + " 道");
+        }
+    }
+
+    /**
+     * 数据库端选题，type 或 difficulty 为 null 时不限
+     * 先在符合条件的题目的主键范围内随机生成候选 ID，用一次 IN 查询确认哪些存在，
+     * 按密度放大候选数量，不足时再补几轮；主键过于稀疏时退回到流式蓄水池抽样。
+     * excluded 中的题目不会入选。返回选中的题目 ID，调用方再用一次 WHERE id IN (...) 查询读取这些题目。
+     */
+    private int[] selectQuestionIdsFromDatabase(String subject, QuestionType type, Difficulty difficulty,
+                                                int questionCount, int stratumSize, Set<Integer> excluded,
+                                                SplittableRandom random) throws SQLException {
+        int target = Math.min(questionCount, stratumSize);
+        int[] range = target > 0 ? questionDAO.getQuestionIdRange(subject, type, difficulty) : null;
+        if (range == null) {
+            return new int[0];
+        }
+
+        long span = (long) range[1] - range[0] + 1;
+        Set<Integer> picked = new LinkedHashSet<>();
+        if (span <= Integer.MAX_VALUE) {
+            double density = Math.min(1.0, (double) stratumSize / span);
+            for (int round = 0; round < MAX_KEY_RANGE_ROUNDS && picked.size() < target; round++) {
+                int need = target - picked.size();
+                int candidateCount = (int) Math.min(Math.min(span, MAX_KEY_RANGE_CANDIDATES),
+                        Math.ceil(need / density * 1.3) + 8);
+                int[] candidates = PaperSampler.sampleIndexes((int) span, candidateCount, random);
+                for (int i = 0; i < candidates.length; i++) {
+                    candidates[i] += range[0];
+                }
+                int[] found = questionDAO.findQuestionIds(subject, type, difficulty, candidates);
+                PaperSampler.shuffle(found, random);
+                for (int i = 0; i < found.length && picked.size() < target; i++) {
+                    if (!excluded.contains(found[i])) {
+                        picked.add(found[i]);
+                    }
+                }
+            }
+        }
+
+        int[] ids;
+        if (picked.size() >= target) {
+            ids = picked.stream().mapToInt(Integer::intValue).toArray();
+        } else {
+            LOGGER.log(Level.INFO, "主键范围取样不足，改用流式蓄水池抽样，科目: " + subject
+                    + (type == null ? "" : "，题型: " + type.getDescription()));
+            PaperSampler.Reservoir reservoir = new PaperSampler.Reservoir(target, random);
+            questionDAO.forEachQuestionId(subject, type, difficulty, id -> {
+                if (!excluded.contains(id)) {
+                    reservoir.offer(id);
+                }
+            });
+            ids = reservoir.result();
+        }
+        return ids;
+    }
+
+    /**
+     * 提交考试答案并计算分数
+     * 同时保存详细的答题记录
+     * 考试记录和答题详情在同一个事务中写入，任一步失败则全部回滚并返回 null
+     */
+    public ExamResult submitExam(String studentId, String subject, 
+                                List<Question> questions, Map<Integer, String> answers) {
+        LiveAttempt attempt = startLiveAttempt(questions);
+        for (Question question : questions) {
+            attempt.recordAnswer(question.getId(), answers.get(question.getId()));
+        }
+        return submitExam(studentId, subject, attempt);
+    }
+
+    /**
+     * 开始一场边答边评分的考试，保存答案时调用 LiveAttempt.recordAnswer
+     */
+    public LiveAttempt startLiveAttempt(List<Question> questions) {
+        return new LiveAttempt(questions);
+    }
+
+    /**
+     * 提交边答边评分的考试，得分已在作答过程中算好，这里只负责保存
+     */
+    public ExamResult submitExam(String studentId, String subject, LiveAttempt attempt) {
+        Submission submission = attempt.close(studentId, subject);
+        int correctCount = submission.getCorrectCount();
+        int totalQuestions = submission.getTotalQuestions();
+        List<Question> questions = attempt.getQuestions();
+        Map<Integer, String> answers = attempt.getAnswers();
+
+        // 开启交卷日志时，交卷写入本地日志后立即返回，由后台线程写入数据库
+        SubmissionQueue submissionQueue = SubmissionQueue.getInstance();
+        if (submissionQueue != null) {
             try {
-                studentAnswerDetailDAO.saveAllStudentAnswerDetails(answerDetails);
-                
-                // 提交事务
-                dbManager.commitTransaction();
-                
-                // 创建并返回考试结果
-                examResult = new ExamResult(correctCount, totalQuestions, questions, answers, record.getId());
-                LOGGER.log(Level.INFO, "考试提交成功，考试记录ID: " + record.getId());
-                
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "保存答题详情失败: " + e.getMessage(), e);
-                dbManager.rollbackTransaction();
-                return null;
+                submissionQueue.submit(submission);
+                LOGGER.log(Level.INFO, "交卷已写入本地日志，等待写入数据库: " + submission.getSubmissionId());
+                return new ExamResult(correctCount, totalQuestions, questions, answers, 0, true);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "写入交卷日志失败，改为直接写入数据库", e);
             }
-            
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "提交考试时发生数据库错误: " + e.getMessage(), e);
-            dbManager.rollbackTransaction();
-        } finally {
-            dbManager.closeConnection();
         }
-        return examResult; // Return exam result
+
+        try {
+            // 同时交卷的学生合并到一个事务中提交，等待所在的组提交完成
+            int examRecordId = GroupCommitCoordinator.getInstance().submit(submission).get();
+            LOGGER.log(Level.INFO, "考试提交成功，考试记录ID: " + examRecordId);
+            return new ExamResult(correctCount, totalQuestions, questions, answers, examRecordId);
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.SEVERE, "提交考试时发生数据库错误: " + e.getCause().getMessage(), e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.log(Level.WARNING, "等待交卷提交时被中断: " + submission.getSubmissionId());
+            return null;
+        }
+    }
+
+    /**
+     * 在后台数据库线程中提交考试，供批量导入或评分等无界面任务并发调用
+     * 开启 exam.db.virtualThreads 时每次提交运行在一个虚拟线程上
+     */
+    public CompletableFuture<ExamResult> submitExamAsync(String studentId, String subject,
+                                                         List<Question> questions, Map<Integer, String> answers) {
+        return DatabaseManager.getInstance().supplyAsync(() -> submitExam(studentId, subject, questions, answers));
     }
 
     // Helper method, get option text by letter (if Question model does not provide)
@@ -206,6 +403,13 @@ public class ExamService {
         return examRecordDAO.getBestScoreByStudentAndSubject(studentId, subject);
     }
 
+    /**
+     * 获取学生各科的成绩统计（考试次数、平均得分率、最高分、最近考试时间）
+     */
+    public List<StudentSubjectStats> getStudentSubjectStats(String studentId) throws SQLException {
+        return new StudentSubjectStatsDAO().getStatsByStudent(studentId);
+    }
+
     /**
      * 获取学生的平均分
      */
@@ -220,6 +424,27 @@ public class ExamService {
         return examRecordDAO.getAllExamRecords();
     }
 
+    /**
+     * 获取考试记录总数
+     */
+    public int getExamRecordCount() throws SQLException {
+        return examRecordDAO.countExamRecords();
+    }
+
+    /**
+     * 按考试时间倒序分页读取考试记录，after 为上一页最后一条（第一页传 null）
+     */
+    public List<ExamRecord> getExamRecordsAfter(ExamRecord after, int limit) throws SQLException {
+        return examRecordDAO.getExamRecordsAfter(after, limit);
+    }
+
+    /**
+     * 定位按考试时间倒序排在第 offset 位的考试记录的排序键
+     */
+    public ExamRecord seekExamRecord(int offset) throws SQLException {
+        return examRecordDAO.seekExamRecord(offset);
+    }
+
     /**
      * 更新考试记录的评语
      */
@@ -231,7 +456,97 @@ public class ExamService {
      * 删除考试记录
      */
     public boolean deleteExamRecord(int recordId) {
-        return examRecordDAO.deleteExamRecord(recordId);
+        boolean deleted = examRecordDAO.deleteExamRecord(recordId);
+        if (deleted) {
+            ExamRecordSnapshot.getInstance().invalidate();
+        }
+        return deleted;
+    }
+
+    /**
+     * 各科目的考试次数、平均得分率和及格率，从考试记录的列式快照计算（先增量读取新记录）
+     */
+    public List<ExamRecordSnapshot.SubjectSummary> getSubjectSummaries() throws SQLException {
+        return ExamRecordSnapshot.getInstance().refresh().subjectSummaries();
+    }
+
+    /**
+     * 成绩分析报告：得分率分布、百分位数、平均值、标准差和及格率
+     * @param subject 科目，为 null 时统计全部科目
+     * @param from 起始日期（含），为 null 时不限
+     * @param to 结束日期（含），为 null 时不限
+     */
+    public CohortReport getCohortReport(String subject, LocalDate from, LocalDate to) throws SQLException {
+        ZoneId zone = ZoneId.systemDefault();
+        long fromMillis = from != null ? from.atStartOfDay(zone).toInstant().toEpochMilli() : Long.MIN_VALUE;
+        long toMillis = to != null ? to.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() : Long.MAX_VALUE;
+        return CohortReport.compute(ExamRecordSnapshot.getInstance().refresh(), subject, fromMillis, toMillis);
+    }
+
+    /**
+     * 从考试记录重建全部学生单科成绩统计，返回统计行数
+     */
+    public int rebuildStudentSubjectStats() throws SQLException {
+        return DatabaseManager.getInstance().inTransaction(conn -> new StudentSubjectStatsDAO(conn).rebuildAll());
+    }
+
+    /**
+     * 把新的考试记录累加到题目作答统计（答对率、区分度、选项分布），返回累加的考试记录数
+     */
+    public int updateQuestionStats() throws SQLException {
+        return new QuestionAnalyticsService().update();
+    }
+
+    /**
+     * 清空并重新计算题目作答统计，用于删除考试记录或重新评分之后，返回累加的考试记录数
+     */
+    public int rebuildQuestionStats() throws SQLException {
+        return new QuestionAnalyticsService().rebuild();
+    }
+
+    /**
+     * 试卷内部类
+     * 记录生成试卷所用的种子，便于按 (科目, 种子) 重新生成
+     */
+    public static class ExamPaper {
+        private final String subject;
+        private final long seed;
+        private final List<Question> questions;
+        // 生成试卷时的科目题库版本，用于判断预生成的试卷是否过期；-1 表示未知，总是视为过期
+        private final long bankVersion;
+        private final long createdAt;
+
+        public ExamPaper(String subject, long seed, List<Question> questions) {
+            this(subject, seed, questions, -1);
+        }
+
+        ExamPaper(String subject, long seed, List<Question> questions, long bankVersion) {
+            this.subject = subject;
+            this.seed = seed;
+            this.questions = questions;
+            this.bankVersion = bankVersion;
+            this.createdAt = System.currentTimeMillis();
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public List<Question> getQuestions() {
+            return questions;
+        }
+
+        long getBankVersion() {
+            return bankVersion;
+        }
+
+        long getCreatedAt() {
+            return createdAt;
+        }
     }
 
     /**
@@ -244,15 +559,25 @@ public class ExamService {
         private List<Question> questions;
         private Map<Integer, String> studentAnswers;
         private int examRecordId;
+        private boolean queued;
         
         public ExamResult(int correctCount, int totalQuestions, 
                          List<Question> questions, Map<Integer, String> studentAnswers, int examRecordId) {
+            this(correctCount, totalQuestions, questions, studentAnswers, examRecordId, false);
+        }
+
+        /**
+         * @param queued 交卷已写入本地日志、尚未写入数据库（此时 examRecordId 为 0）
+         */
+        public ExamResult(int correctCount, int totalQuestions, List<Question> questions,
+                          Map<Integer, String> studentAnswers, int examRecordId, boolean queued) {
             this.correctCount = correctCount;
             this.totalQuestions = totalQuestions;
             this.percentage = totalQuestions > 0 ? (double) correctCount / totalQuestions * 100 : 0;
             this.questions = questions;
             this.studentAnswers = studentAnswers;
             this.examRecordId = examRecordId;
+            this.queued = queued;
         }
         
         // Getters
@@ -279,6 +604,17 @@ public class ExamService {
         public int getExamRecordId() {
             return examRecordId;
         }
+
+        /**
+         * 交卷是否已可靠保存（已写入数据库，或已写入本地交卷日志等待写入数据库）
+         */
+        public boolean isSaved() {
+            return examRecordId > 0 || queued;
+        }
+
+        public boolean isQueued() {
+            return queued;
+        }
         
         public String getGrade() {
             if (percentage >= 90) return "优秀";
@@ -0,0 +1,206 @@
+package com.example.service;
+
+import com.example.model.Question;
+import com.example.model.QuestionType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 评分引擎
+ * 先把题目编译为紧凑的答案键（选择题为 4 位选项掩码，填空题为去掉首尾空白的答案），
+ * 之后每次评分只做掩码或字符比较，不创建任何对象。
+ * 同一道题的答案键可以在大量作答记录之间复用，适合批量重新评分。
+ *
+ * 判定规则与原来的 ExamService.submitExam 一致：
+ * 单选题答案必须与正确答案完全相同；多选题按逗号分隔、去掉每项首尾空白后与正确选项集合比较，
+ * 重复或无法识别的选项判为错误；填空题去掉首尾空白后不区分大小写比较。
+ */
+public final class GradingEngine {
+    private static final int INVALID_MASK = -1;
+
+    private GradingEngine() {
+    }
+
+    /**
+     * 编译单道题的答案键
+     */
+    public static AnswerKey compile(Question question) {
+        QuestionType type = question.getType();
+        switch (type) {
+            case SINGLE_CHOICE: {
+                String correct = question.getCorrectAnswer();
+                return new AnswerKey(question.getId(), type, 0, correct, null, correct);
+            }
+            case MULTIPLE_CHOICE: {
+                List<String> letters = question.getCorrectAnswers();
+                if (letters == null) {
+                    return new AnswerKey(question.getId(), type, INVALID_MASK, null, null, "");
+                }
+                int mask = 0;
+                for (String letter : letters) {
+                    int bit = optionBit(letter, 0, letter.length());
+                    if (bit == 0 || (mask & bit) != 0) {
+                        mask = INVALID_MASK; // 正确答案本身不是规范的选项字母，退回到逐项比较
+                        break;
+                    }
+                    mask |= bit;
+                }
+                String[] sorted = null;
+                if (mask == INVALID_MASK) {
+                    sorted = letters.stream().map(String::trim).sorted().toArray(String[]::new);
+                }
+                return new AnswerKey(question.getId(), type, mask, null, sorted, String.join(",", letters));
+            }
+            case FILL_BLANK: {
+                String answer = question.getFillBlankAnswer();
+                String normalized = answer == null ? "" : answer.trim();
+                return new AnswerKey(question.getId(), type, 0, normalized, null, answer);
+            }
+            default:
+                throw new IllegalArgumentException("未知题型: " + type);
+        }
+    }
+
+    /**
+     * 编译一组题目的答案键，按题目 ID 索引
+     */
+    public static Map<Integer, AnswerKey> compileAll(Collection<Question> questions) {
+        Map<Integer, AnswerKey> keys = new HashMap<>(questions.size() * 2);
+        for (Question question : questions) {
+            keys.put(question.getId(), compile(question));
+        }
+        return keys;
+    }
+
+    /**
+     * 判断作答是否正确，answer 为 null 视为未作答
+     */
+    public static boolean isCorrect(AnswerKey key, String answer) {
+        if (answer == null) {
+            answer = "";
+        }
+        switch (key.type) {
+            case SINGLE_CHOICE:
+                return answer.equals(key.text);
+            case MULTIPLE_CHOICE:
+                if (key.mask == INVALID_MASK) {
+                    return key.sortedLetters != null && matchesSorted(key.sortedLetters, answer);
+                }
+                return parseMask(answer) == key.mask;
+            case FILL_BLANK: {
+                int start = 0;
+                int end = answer.length();
+                while (start < end && answer.charAt(start) <= ' ') {
+                    start++;
+                }
+                while (end > start && answer.charAt(end - 1) <= ' ') {
+                    end--;
+                }
+                return end - start == key.text.length() && answer.regionMatches(true, start, key.text, 0, end - start);
+            }
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 把逗号分隔的选项字母解析为掩码，有重复、空项或无法识别的选项时返回 INVALID_MASK
+     * 与 String.split(",") 一致，末尾的空项被忽略
+     */
+    static int parseMask(String answer) {
+        int length = answer.length();
+        // split 会丢弃末尾的空项
+        while (length > 0 && answer.charAt(length - 1) == ',') {
+            length--;
+        }
+        int mask = 0;
+        int tokenStart = 0;
+        while (tokenStart < length) {
+            int tokenEnd = answer.indexOf(',', tokenStart);
+            if (tokenEnd < 0 || tokenEnd > length) {
+                tokenEnd = length;
+            }
+            int bit = optionBit(answer, tokenStart, tokenEnd);
+            if (bit == 0 || (mask & bit) != 0) {
+                return INVALID_MASK;
+            }
+            mask |= bit;
+            tokenStart = tokenEnd + 1;
+        }
+        return mask;
+    }
+
+    /**
+     * 返回 [start, end) 范围内去掉首尾空白后的单个选项字母对应的位，不是 A-D 中的单个字母时返回 0
+     */
+    private static int optionBit(String s, int start, int end) {
+        while (start < end && s.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (end - start != 1) {
+            return 0;
+        }
+        char c = s.charAt(start);
+        return c >= 'A' && c <= 'D' ? 1 << (c - 'A') : 0;
+    }
+
+    /**
+     * 正确答案不规范时的比较方式，与原实现完全相同（会创建临时对象，只用于这类少见的数据）
+     */
+    private static boolean matchesSorted(String[] sortedCorrect, String answer) {
+        List<String> selected = new ArrayList<>();
+        if (!answer.isEmpty()) {
+            for (String letter : answer.split(",")) {
+                selected.add(letter.trim());
+            }
+        }
+        String[] sortedSelected = selected.stream().sorted().toArray(String[]::new);
+        return Arrays.equals(sortedSelected, sortedCorrect);
+    }
+
+    /**
+     * 编译后的答案键
+     */
+    public static final class AnswerKey {
+        private final int questionId;
+        private final QuestionType type;
+        private final int mask;
+        // 单选题为原始正确答案，填空题为去掉首尾空白的正确答案
+        private final String text;
+        private final String[] sortedLetters;
+        private final String correctAnswerText;
+
+        private AnswerKey(int questionId, QuestionType type, int mask, String text,
+                          String[] sortedLetters, String correctAnswerText) {
+            this.questionId = questionId;
+            this.type = type;
+            this.mask = mask;
+            this.text = text;
+            this.sortedLetters = sortedLetters;
+            this.correctAnswerText = correctAnswerText;
+        }
+
+        public int getQuestionId() {
+            return questionId;
+        }
+
+        public QuestionType getType() {
+            return type;
+        }
+
+        /**
+         * 保存到答题详情中的正确答案文本（多选题为逗号分隔的字母）
+         */
+        public String getCorrectAnswerText() {
+            return correctAnswerText;
+        }
+    }
+}
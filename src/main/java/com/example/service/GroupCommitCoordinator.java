@@ -0,0 +1,124 @@
+package com.example.service;
+
+import com.example.database.DatabaseManager;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 交卷的组提交
+ * 同时到达的多份交卷合并到一个事务中写入数据库，一次提交（服务器端一次刷盘）完成整组，
+ * 再分别以各自的考试记录ID完成每个调用方的 future。
+ * 后台线程取到第一份交卷后，最多再等待 exam.groupCommit.windowMillis 毫秒（默认 2）收集后续交卷，
+ * 一组最多 exam.groupCommit.maxSize 份（默认 64）；上一组提交期间到达的交卷自然成为下一组。
+ * 整组事务失败时逐份单独重试，一份交卷的问题不会导致同组其他交卷失败。
+ */
+public class GroupCommitCoordinator {
+    private static final Logger LOGGER = Logger.getLogger(GroupCommitCoordinator.class.getName());
+
+    private final long windowNanos;
+    private final int maxGroupSize;
+    private final LinkedBlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+
+    private static final class Holder {
+        static final GroupCommitCoordinator INSTANCE = new GroupCommitCoordinator(
+                Math.max(0, Integer.getInteger("exam.groupCommit.windowMillis", 2)),
+                Math.max(1, Integer.getInteger("exam.groupCommit.maxSize", 64)));
+    }
+
+    private GroupCommitCoordinator(int windowMillis, int maxGroupSize) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxGroupSize = maxGroupSize;
+        Thread committer = new Thread(this::commitLoop, "group-commit");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    public static GroupCommitCoordinator getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * 提交一份交卷，返回的 future 在所在的组提交后以考试记录ID完成，写入失败时以 SQLException 异常完成
+     */
+    public CompletableFuture<Integer> submit(Submission submission) {
+        Request request = new Request(submission);
+        requests.add(request);
+        return request.future;
+    }
+
+    private void commitLoop() {
+        List<Request> group = new ArrayList<>(maxGroupSize);
+        while (true) {
+            try {
+                group.clear();
+                group.add(requests.take());
+                requests.drainTo(group, maxGroupSize - 1);
+                long deadline = System.nanoTime() + windowNanos;
+                while (group.size() < maxGroupSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Request next = remaining > 0 ? requests.poll(remaining, TimeUnit.NANOSECONDS) : requests.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                    requests.drainTo(group, maxGroupSize - group.size());
+                }
+                commit(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (Request request : group) {
+                    request.future.completeExceptionally(e);
+                }
+                return;
+            } catch (RuntimeException e) {
+                // 保证后台线程不会因为意外的异常退出，否则之后的交卷永远不会完成
+                LOGGER.log(Level.SEVERE, "组提交时发生意外错误", e);
+                for (Request request : group) {
+                    request.future.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private void commit(List<Request> group) {
+        List<Submission> submissions = new ArrayList<>(group.size());
+        for (Request request : group) {
+            submissions.add(request.submission);
+        }
+        try {
+            // 题目快照在事务之外写入（见 SubmissionWriter.prepare）
+            SubmissionWriter.prepare(submissions);
+            int[] examRecordIds = DatabaseManager.getInstance().inTransaction(conn -> SubmissionWriter.writeAll(conn, submissions));
+            for (int i = 0; i < examRecordIds.length; i++) {
+                group.get(i).future.complete(examRecordIds[i]);
+            }
+            LOGGER.log(Level.FINE, "组提交完成，交卷数: " + group.size());
+            return;
+        } catch (SQLException e) {
+            if (group.size() == 1) {
+                group.get(0).future.completeExceptionally(e);
+                return;
+            }
+            LOGGER.log(Level.WARNING, "组提交 " + group.size() + " 份交卷失败，改为逐份提交: " + e.getMessage());
+        }
+        for (Request request : group) {
+            commit(List.of(request));
+        }
+    }
+
+    private static final class Request {
+        final Submission submission;
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        Request(Submission submission) {
+            this.submission = submission;
+        }
+    }
+}
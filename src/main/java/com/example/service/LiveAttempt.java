@@ -0,0 +1,112 @@
+package com.example.service;
+
+import com.example.model.Question;
+import com.example.model.StudentAnswerDetail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 边答边评分的考试
+ * 开始考试时编译所有题目的答案键并准备好答题详情；每次保存答案时只评判这一道题并更新累计得分，
+ * 交卷时得分和答题详情都已就绪，不需要在截止时间集中评分。
+ * 保存答案在 EDT 上调用，交卷在后台线程上调用，方法之间同步。
+ */
+public class LiveAttempt {
+    private final List<Question> questions;
+    private final GradingEngine.AnswerKey[] keys;
+    private final Map<Integer, Integer> indexById;
+    private final List<StudentAnswerDetail> details;
+    private int correctCount;
+    private boolean closed;
+
+    LiveAttempt(List<Question> questions) {
+        this.questions = questions;
+        this.keys = new GradingEngine.AnswerKey[questions.size()];
+        this.indexById = new HashMap<>(questions.size() * 2);
+        this.details = new ArrayList<>(questions.size());
+        for (int i = 0; i < keys.length; i++) {
+            Question question = questions.get(i);
+            GradingEngine.AnswerKey key = GradingEngine.compile(question);
+            keys[i] = key;
+            indexById.put(question.getId(), i);
+            // 未作答的题目按空答案评判
+            boolean isCorrect = GradingEngine.isCorrect(key, "");
+            if (isCorrect) {
+                correctCount++;
+            }
+            details.add(new StudentAnswerDetail(0,
+                    question.getId(),
+                    "",
+                    isCorrect,
+                    key.getCorrectAnswerText(),
+                    question.getQuestionText(),
+                    question.getType(),
+                    question.getOptionA(),
+                    question.getOptionB(),
+                    question.getOptionC(),
+                    question.getOptionD()));
+        }
+    }
+
+    /**
+     * 保存一道题的答案并评判，更新累计得分
+     * 不属于本场考试的题目和交卷之后的调用被忽略
+     */
+    public synchronized void recordAnswer(int questionId, String answer) {
+        Integer index = indexById.get(questionId);
+        if (index == null || closed) {
+            return;
+        }
+        if (answer == null) {
+            answer = "";
+        }
+        StudentAnswerDetail detail = details.get(index);
+        if (answer.equals(detail.getStudentAnswer())) {
+            return;
+        }
+        boolean isCorrect = GradingEngine.isCorrect(keys[index], answer);
+        if (isCorrect != detail.isCorrect()) {
+            correctCount += isCorrect ? 1 : -1;
+        }
+        detail.setStudentAnswer(answer);
+        detail.setCorrect(isCorrect);
+    }
+
+    /**
+     * 当前累计答对的题目数
+     */
+    public synchronized int getCorrectCount() {
+        return correctCount;
+    }
+
+    public int getTotalQuestions() {
+        return questions.size();
+    }
+
+    public List<Question> getQuestions() {
+        return questions;
+    }
+
+    /**
+     * 已保存的答案，键为题目ID
+     */
+    public synchronized Map<Integer, String> getAnswers() {
+        Map<Integer, String> answers = new LinkedHashMap<>(details.size() * 2);
+        for (StudentAnswerDetail detail : details) {
+            answers.put(detail.getQuestionId(), detail.getStudentAnswer());
+        }
+        return answers;
+    }
+
+    /**
+     * 结束作答并生成交卷，之后保存的答案不再生效
+     */
+    synchronized Submission close(String studentId, String subject) {
+        closed = true;
+        return new Submission(studentId, subject, correctCount, questions.size(), details);
+    }
+}
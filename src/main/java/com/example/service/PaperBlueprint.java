@@ -0,0 +1,79 @@
+package com.example.service;
+
+import com.example.model.Difficulty;
+import com.example.model.QuestionType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 试卷蓝图
+ * 按题型（可选再按难度）规定每类题目的数量，使每位学生拿到的题型结构一致。
+ * 配额按添加顺序组成试卷的各个部分，同一部分内的题目顺序随机。
+ */
+public class PaperBlueprint {
+    private final List<Quota> quotas = new ArrayList<>();
+
+    /**
+     * 添加不限难度的题型配额
+     */
+    public void addQuota(QuestionType type, int count) {
+        addQuota(type, null, count);
+    }
+
+    /**
+     * 添加指定难度的题型配额，difficulty 为 null 表示不限难度
+     */
+    public void addQuota(QuestionType type, Difficulty difficulty, int count) {
+        if (type == null) {
+            throw new IllegalArgumentException("题型不能为空");
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("题目数量不能为负数: " + count);
+        }
+        quotas.add(new Quota(type, difficulty, count));
+    }
+
+    public List<Quota> getQuotas() {
+        return Collections.unmodifiableList(quotas);
+    }
+
+    /**
+     * 蓝图要求的题目总数
+     */
+    public int getTotalCount() {
+        int total = 0;
+        for (Quota quota : quotas) {
+            total += quota.getCount();
+        }
+        return total;
+    }
+
+    /**
+     * 单条配额
+     */
+    public static class Quota {
+        private final QuestionType type;
+        private final Difficulty difficulty;
+        private final int count;
+
+        public Quota(QuestionType type, Difficulty difficulty, int count) {
+            this.type = type;
+            this.difficulty = difficulty;
+            this.count = count;
+        }
+
+        public QuestionType getType() {
+            return type;
+        }
+
+        public Difficulty getDifficulty() {
+            return difficulty;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.service;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 预生成试卷池
+ * 按 (科目, 题目数量) 在后台线程提前生成若干份试卷，开考时直接取出一份，
+ * 取出后异步补充。大量学生同时开考时，开考耗时不再随排队人数增长。
+ * 题库在试卷生成后被修改过的试卷会被丢弃，不会发给学生（按科目题库版本判断，见 QuestionBankCache.version）；
+ * 其他客户端的修改本进程无从得知，由最长存放时间 exam.paperPool.maxAgeSeconds 兜底。
+ */
+public class PaperPool {
+    private static final Logger LOGGER = Logger.getLogger(PaperPool.class.getName());
+
+    private final ExamService examService;
+    private final int papersPerKey;
+    private final long maxAgeMillis;
+    private final ExecutorService executor;
+    private final Map<Key, Slot> slots = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong staleCount = new AtomicLong();
+
+    PaperPool(ExamService examService) {
+        this(examService,
+                Integer.getInteger("exam.paperPool.size", 32),
+                Long.getLong("exam.paperPool.maxAgeSeconds", 300L) * 1000,
+                Integer.getInteger("exam.paperPool.threads", 2));
+    }
+
+    PaperPool(ExamService examService, int papersPerKey, long maxAgeMillis, int threads) {
+        this.examService = examService;
+        this.papersPerKey = papersPerKey;
+        this.maxAgeMillis = maxAgeMillis;
+        AtomicInteger threadIndex = new AtomicInteger();
+        // 队列有界，补充任务堆积时直接放弃，下一次取卷会重新触发补充
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(256), r -> {
+                    Thread thread = new Thread(r, "paper-pool-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 取出一份预生成的试卷，池中没有可用试卷时返回 null（由调用方同步生成）
+     * 无论是否命中都会在后台把该 (科目, 题目数量) 补满
+     */
+    public ExamService.ExamPaper poll(String subject, int questionCount) {
+        if (papersPerKey <= 0) {
+            return null;
+        }
+        Slot slot = slots.computeIfAbsent(new Key(subject, questionCount), k -> new Slot());
+        ExamService.ExamPaper paper;
+        while ((paper = slot.papers.poll()) != null) {
+            slot.size.decrementAndGet();
+            if (isFresh(paper)) {
+                break;
+            }
+            staleCount.incrementAndGet();
+        }
+        if (paper != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        scheduleRefill(subject, questionCount, slot);
+        return paper;
+    }
+
+    /**
+     * 提前为某科目生成试卷，例如在考试开始前调用
+     */
+    public void warmUp(String subject, int questionCount) {
+        if (papersPerKey > 0) {
+            scheduleRefill(subject, questionCount,
+                    slots.computeIfAbsent(new Key(subject, questionCount), k -> new Slot()));
+        }
+    }
+
+    /**
+     * 清空某科目的所有预生成试卷
+     */
+    public void clear(String subject) {
+        slots.entrySet().removeIf(e -> e.getKey().subject.equals(subject));
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 因题库已变化或超过最长存放时间而被丢弃的试卷数量
+     */
+    public long getStaleCount() {
+        return staleCount.get();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private boolean isFresh(ExamService.ExamPaper paper) {
+        return System.currentTimeMillis() - paper.getCreatedAt() <= maxAgeMillis
+                && examService.isPaperCurrent(paper);
+    }
+
+    private void scheduleRefill(String subject, int questionCount, Slot slot) {
+        if (slot.size.get() >= papersPerKey || !slot.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> refill(subject, questionCount, slot));
+        } catch (RejectedExecutionException e) {
+            slot.refilling.set(false);
+            LOGGER.log(Level.FINE, "试卷池补充任务被拒绝，科目: " + subject);
+        }
+    }
+
+    private void refill(String subject, int questionCount, Slot slot) {
+        try {
+            while (slot.size.get() < papersPerKey && !Thread.currentThread().isInterrupted()) {
+                ExamService.ExamPaper paper = examService.generatePaper(subject, questionCount, PaperSampler.newSeed());
+                if (paper.getQuestions().isEmpty()) {
+                    return; // 科目无题或加载失败，不缓存空试卷
+                }
+                slot.papers.offer(paper);
+                slot.size.incrementAndGet();
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "预生成试卷失败，科目: " + subject, e);
+        } finally {
+            slot.refilling.set(false);
+        }
+    }
+
+    private static final class Slot {
+        final ConcurrentLinkedQueue<ExamService.ExamPaper> papers = new ConcurrentLinkedQueue<>();
+        // ConcurrentLinkedQueue.size() 是 O(n)，单独计数
+        final AtomicInteger size = new AtomicInteger();
+        final AtomicBoolean refilling = new AtomicBoolean();
+    }
+
+    private static final class Key {
+        final String subject;
+        final int questionCount;
+
+        Key(String subject, int questionCount) {
+            this.subject = subject;
+            this.questionCount = questionCount;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return questionCount == key.questionCount && subject.equals(key.subject);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(subject, questionCount);
+        }
+    }
+}
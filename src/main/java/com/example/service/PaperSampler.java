@@ -0,0 +1,156 @@
+package com.example.service;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 试卷抽题算法
+ * 提供 O(k) 的部分 Fisher–Yates 下标抽样（适用于已缓存的题库），
+ * 以及蓄水池抽样（适用于从数据库流式读取题目 ID 的场景）。
+ * 所有方法都使用调用方传入的随机源，同一种子在题库不变时总能得到同一份试卷。
+ */
+public final class PaperSampler {
+
+    private PaperSampler() {
+    }
+
+    /**
+     * 生成新的试卷种子
+     */
+    public static long newSeed() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * 从 [0, n) 中不重复地随机抽取 min(k, n) 个下标，结果顺序即出题顺序
+     * 只记录被交换过的位置，时间和空间都是 O(k)，不需要复制或打乱整个题库
+     */
+    public static int[] sampleIndexes(int n, int k, SplittableRandom random) {
+        if (n < 0 || k < 0) {
+            throw new IllegalArgumentException("n 和 k 不能为负数: n=" + n + ", k=" + k);
+        }
+        k = Math.min(k, n);
+        int[] result = new int[k];
+
+        // 抽取比例较高时直接在完整下标数组上洗牌更省事，此时 n <= 2k，仍是 O(k)
+        if (k * 2L >= n) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) {
+                all[i] = i;
+            }
+            for (int i = 0; i < k; i++) {
+                int j = i + random.nextInt(n - i);
+                int tmp = all[i];
+                all[i] = all[j];
+                all[j] = tmp;
+            }
+            System.arraycopy(all, 0, result, 0, k);
+            return result;
+        }
+
+        // 虚拟 Fisher–Yates：未被交换过的位置 x 的值就是 x 本身
+        SwapTable swaps = new SwapTable(k);
+        for (int i = 0; i < k; i++) {
+            int j = i + random.nextInt(n - i);
+            result[i] = swaps.get(j);
+            swaps.put(j, swaps.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * 对数组做原地 Fisher–Yates 洗牌
+     */
+    public static void shuffle(int[] values, SplittableRandom random) {
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+    }
+
+    /**
+     * 蓄水池抽样
+     * 逐个接收题目 ID，只保留 k 个，适合不知道总数、也不想把整个科目读入内存的场景
+     */
+    public static final class Reservoir {
+        private final int[] sample;
+        private final SplittableRandom random;
+        private long seen;
+
+        public Reservoir(int k, SplittableRandom random) {
+            this.sample = new int[k];
+            this.random = random;
+        }
+
+        public void offer(int id) {
+            if (seen < sample.length) {
+                sample[(int) seen] = id;
+            } else {
+                long j = random.nextLong(seen + 1);
+                if (j < sample.length) {
+                    sample[(int) j] = id;
+                }
+            }
+            seen++;
+        }
+
+        public long getSeen() {
+            return seen;
+        }
+
+        /**
+         * 返回抽样结果，并打乱顺序作为出题顺序
+         */
+        public int[] result() {
+            int[] result = Arrays.copyOf(sample, (int) Math.min(seen, sample.length));
+            shuffle(result, random);
+            return result;
+        }
+    }
+
+    /**
+     * 记录被交换位置的开放寻址哈希表（int -> int），避免装箱
+     */
+    private static final class SwapTable {
+        private static final int EMPTY = -1;
+        private final int[] keys;
+        private final int[] values;
+        private final int mask;
+
+        SwapTable(int expectedSize) {
+            int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 4) - 1) << 1;
+            this.keys = new int[capacity];
+            this.values = new int[capacity];
+            this.mask = capacity - 1;
+            Arrays.fill(keys, EMPTY);
+        }
+
+        int get(int key) {
+            int slot = mix(key) & mask;
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return key;
+        }
+
+        void put(int key, int value) {
+            int slot = mix(key) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
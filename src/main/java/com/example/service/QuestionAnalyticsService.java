@@ -0,0 +1,123 @@
+package com.example.service;
+
+import com.example.dao.QuestionSnapshotDAO;
+import com.example.dao.QuestionStatsDAO;
+import com.example.database.DatabaseManager;
+import com.example.model.QuestionStats;
+import com.example.model.QuestionType;
+import com.example.model.StudentAnswerDetail;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 题目作答统计服务
+ * 计算每道题的答对率（p 值）、点二列区分度（与考试得分率的相关）和 A-D 选项分布，结果保存在 question_stats 中，
+ * 管理端按难度排序时直接读取，不再临时聚合全部作答详情。
+ * 统计只累加水位之后的新考试记录：按考试记录ID分段（默认 500 条），每段在一个事务中锁定水位、读取作答、
+ * 累加到对应题目的统计并推进水位，中途失败时已提交的段保持一致，重新运行即可继续。
+ * 删除考试记录或重新评分后已累加的统计不再准确，需要用 rebuild 清空后从头累加。
+ */
+public class QuestionAnalyticsService {
+    private static final Logger LOGGER = Logger.getLogger(QuestionAnalyticsService.class.getName());
+    private static final String WATERMARK = "question_stats";
+
+    private final int chunkSize;
+    private final int settleSeconds;
+
+    public QuestionAnalyticsService() {
+        this(Integer.getInteger("exam.analytics.chunkSize", 500),
+                Integer.getInteger("exam.analytics.settleSeconds", 60));
+    }
+
+    /**
+     * @param settleSeconds 只累加写入超过这么多秒的考试记录，见 QuestionStatsDAO.findFirstUnsettledRecordId
+     */
+    public QuestionAnalyticsService(int chunkSize, int settleSeconds) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize 必须大于 0");
+        }
+        this.chunkSize = chunkSize;
+        this.settleSeconds = settleSeconds;
+    }
+
+    /**
+     * 把水位之后的新考试记录累加到统计中
+     * @return 本次累加的考试记录数
+     */
+    public int update() throws SQLException {
+        long startNanos = System.nanoTime();
+        int total = 0;
+        int folded;
+        do {
+            folded = DatabaseManager.getInstance().inTransaction(conn ->
+                    foldChunk(new QuestionStatsDAO(conn), new QuestionSnapshotDAO(conn)));
+            total += folded;
+        } while (folded == chunkSize);
+        LOGGER.log(Level.INFO, "Question stats updated, records: " + total + ", "
+                + (System.nanoTime() - startNanos) / 1_000_000 + " ms");
+        return total;
+    }
+
+    /**
+     * 清空统计并从第一条考试记录开始重新累加
+     * @return 累加的考试记录数
+     */
+    public int rebuild() throws SQLException {
+        DatabaseManager.getInstance().inTransaction(conn -> {
+            new QuestionStatsDAO(conn).reset(WATERMARK);
+            return null;
+        });
+        return update();
+    }
+
+    /**
+     * 获取一道题的统计，尚未统计时返回 null
+     */
+    public QuestionStats getStats(int questionId) throws SQLException {
+        return new QuestionStatsDAO().getStats(questionId);
+    }
+
+    /**
+     * 在一个事务中累加一段考试记录，返回累加的记录数
+     * 两个 DAO 都使用事务连接，持有水位行锁期间不再借用其他连接
+     */
+    private int foldChunk(QuestionStatsDAO statsDAO, QuestionSnapshotDAO snapshotDAO) throws SQLException {
+        int watermark = statsDAO.lockWatermark(WATERMARK);
+        int beforeId = statsDAO.findFirstUnsettledRecordId(watermark, settleSeconds);
+        QuestionStatsDAO.AnswerChunk chunk = statsDAO.readAnswersAfter(watermark, beforeId, chunkSize);
+        if (chunk.getRecordCount() == 0) {
+            return 0;
+        }
+
+        // 题型取自作答时的快照，只有选择题统计选项分布
+        snapshotDAO.fillSnapshotContent(chunk.getAnswers());
+        Map<Integer, QuestionStats> deltas = new HashMap<>();
+        for (StudentAnswerDetail answer : chunk.getAnswers()) {
+            Double percentage = chunk.getPercentages().get(answer.getExamRecordId());
+            if (percentage == null || answer.getQuestionId() <= 0) {
+                continue; // 不属于这一段的记录，或题目已删除
+            }
+            boolean choice = answer.getQuestionType() == QuestionType.SINGLE_CHOICE
+                    || answer.getQuestionType() == QuestionType.MULTIPLE_CHOICE;
+            deltas.computeIfAbsent(answer.getQuestionId(), QuestionStats::new)
+                    .addResponse(percentage, answer.getStudentAnswer(), answer.isCorrect(), choice);
+        }
+
+        if (!deltas.isEmpty()) {
+            Map<Integer, QuestionStats> current = statsDAO.lockStats(deltas.keySet());
+            for (QuestionStats delta : deltas.values()) {
+                QuestionStats existing = current.get(delta.getQuestionId());
+                if (existing != null) {
+                    delta.add(existing);
+                }
+            }
+            statsDAO.saveStats(deltas.values());
+        }
+        statsDAO.setWatermark(WATERMARK, chunk.getLastRecordId());
+        return chunk.getRecordCount();
+    }
+}
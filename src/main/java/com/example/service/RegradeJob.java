@@ -0,0 +1,356 @@
+package com.example.service;
+
+import com.example.dao.AnswerBlobCodec;
+import com.example.dao.ExamDAO;
+import com.example.dao.QuestionDAO;
+import com.example.dao.QuestionSnapshotDAO;
+import com.example.dao.StudentAnswerDetailDAO;
+import com.example.dao.StudentSubjectStatsDAO;
+import com.example.database.DatabaseManager;
+import com.example.model.Question;
+import com.example.model.StudentAnswerDetail;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 批量重新评分任务
+ * 题目的正确答案修改后，按题目逐段扫描历史作答详情，用 GradingEngine 重新判定对错，
+ * 更新 student_answer_details.is_correct 和 exam_records.score，并让作答详情指向新的题目快照：
+ * 新快照由作答原来引用的快照派生，题型、题干和选项保持作答时的版本，只换成新的正确答案。
+ * 每段（默认 500 条）先在事务之外读取并准备新快照，再在一个独立的短事务中判定并写回；写回时核对读取时的评分结果，
+ * 期间被其他任务改过的行不会重复计分。段内的分数变化按考试记录合并为一次增量更新，
+ * 因此无论有多少条作答详情，内存占用都只有一段的大小，也不会长时间持有大量行锁。
+ * 以紧凑编码保存作答的考试记录（exam_records.answers_blob）在逐题详情之后按考试记录分段扫描，
+ * 只有包含被重新评分题目的记录才会被重新编码写回。
+ * 任务中途取消或失败时，已提交的段保持一致（详情和分数在同一事务中修改），重新运行即可继续。
+ */
+public class RegradeJob {
+    private static final Logger LOGGER = Logger.getLogger(RegradeJob.class.getName());
+
+    /**
+     * 进度回调，在执行任务的线程中调用
+     */
+    public interface ProgressListener {
+        void onProgress(long processed, long total);
+    }
+
+    private final int[] questionIds;
+    private final int chunkSize;
+    private final QuestionDAO questionDAO = new QuestionDAO();
+    private final QuestionSnapshotDAO snapshotDAO = new QuestionSnapshotDAO();
+    private volatile boolean cancelled;
+    private final Map<Integer, Question> questionsById = new HashMap<>();
+    // 旧快照ID -> 只替换了正确答案的新快照ID
+    private final Map<Integer, Integer> replacementSnapshotIds = new HashMap<>();
+
+    // 每段复用的缓冲区
+    private final int[] changedIds;
+    private final int[] newSnapshotIds;
+    private final boolean[] previousCorrect;
+    private final boolean[] newCorrect;
+
+    public RegradeJob(int... questionIds) {
+        this(questionIds, Integer.getInteger("exam.regrade.chunkSize", 500));
+    }
+
+    public RegradeJob(int[] questionIds, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize 必须大于 0");
+        }
+        this.questionIds = questionIds.clone();
+        this.chunkSize = chunkSize;
+        this.changedIds = new int[chunkSize];
+        this.newSnapshotIds = new int[chunkSize];
+        this.previousCorrect = new boolean[chunkSize];
+        this.newCorrect = new boolean[chunkSize];
+    }
+
+    /**
+     * 请求取消任务，当前段提交后停止
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * 执行重新评分，listener 可以为 null
+     * 每次只借用一个连接，可以在 AsyncService 或 DatabaseManager.supplyAsync 中运行
+     */
+    public RegradeResult run(ProgressListener listener) throws SQLException {
+        long startNanos = System.nanoTime();
+        List<Question> questions = questionDAO.getQuestionsByIds(questionIds);
+        if (questions.size() < questionIds.length) {
+            LOGGER.log(Level.WARNING, "部分题目已不存在，跳过 " + (questionIds.length - questions.size()) + " 道题");
+        }
+
+        StudentAnswerDetailDAO countDAO = new StudentAnswerDetailDAO();
+        long total = 0;
+        for (Question question : questions) {
+            total += countDAO.countAnswersByQuestionId(question.getId());
+        }
+        if (!questions.isEmpty()) {
+            total += new ExamDAO().countAnswerBlobs();
+        }
+
+        Map<Integer, GradingEngine.AnswerKey> keys = new HashMap<>();
+        for (Question question : questions) {
+            keys.put(question.getId(), GradingEngine.compile(question));
+            questionsById.put(question.getId(), question);
+        }
+
+        RegradeResult result = new RegradeResult();
+        for (Question question : questions) {
+            int afterId = 0;
+            while (!cancelled) {
+                // 读取和准备快照时各自短暂借用连接，事务中只做有条件的写回
+                List<StudentAnswerDetail> details = new StudentAnswerDetailDAO()
+                        .getAnswersByQuestionIdAfter(question.getId(), afterId, chunkSize);
+                resolveReplacementSnapshots(details, keys);
+                GradingEngine.AnswerKey key = keys.get(question.getId());
+                ChunkResult chunk = DatabaseManager.getInstance().inTransaction(conn ->
+                        regradeChunk(key, details, new StudentAnswerDetailDAO(conn), new ExamDAO(conn),
+                                new StudentSubjectStatsDAO(conn)));
+                result.add(chunk);
+                if (listener != null) {
+                    listener.onProgress(result.scanned, total);
+                }
+                if (chunk.rows < chunkSize) {
+                    break;
+                }
+                afterId = chunk.lastId;
+            }
+        }
+
+        int afterRecordId = 0;
+        while (!cancelled && !keys.isEmpty()) {
+            Map<Integer, byte[]> blobs = new ExamDAO().getAnswerBlobsAfter(afterRecordId, chunkSize);
+            Map<Integer, List<StudentAnswerDetail>> decoded = new LinkedHashMap<>();
+            List<StudentAnswerDetail> allAnswers = new ArrayList<>();
+            for (Map.Entry<Integer, byte[]> entry : blobs.entrySet()) {
+                List<StudentAnswerDetail> answers = AnswerBlobCodec.decode(entry.getKey(), entry.getValue());
+                decoded.put(entry.getKey(), answers);
+                allAnswers.addAll(answers);
+            }
+            resolveReplacementSnapshots(allAnswers, keys);
+            ChunkResult chunk = DatabaseManager.getInstance().inTransaction(conn ->
+                    regradePackedChunk(keys, blobs, decoded, new ExamDAO(conn), new StudentSubjectStatsDAO(conn)));
+            result.add(chunk);
+            if (listener != null) {
+                listener.onProgress(result.scanned, total);
+            }
+            if (chunk.rows < chunkSize) {
+                break;
+            }
+            afterRecordId = chunk.lastId;
+        }
+        result.cancelled = cancelled;
+        if (result.changed > 0) {
+            ExamRecordSnapshot.getInstance().invalidate();
+        }
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        LOGGER.log(Level.INFO, "重新评分" + (result.cancelled ? "已取消" : "完成") + "：扫描 " + result.scanned
+                + " 条作答，判定结果变化 " + result.changed + " 条，耗时 " + elapsedMillis + " ms（"
+                + (result.scanned * 1000 / elapsedMillis) + " 条/秒）");
+        return result;
+    }
+
+    /**
+     * 为作答引用的每个旧快照找到（必要时创建）替换快照：内容与旧快照相同，只有正确答案换成新的
+     * 没有快照的早期作答只能取题目当前的内容。结果按旧快照ID缓存；
+     * 在事务之外调用，快照在写回的事务回滚时仍然有效
+     */
+    private void resolveReplacementSnapshots(List<StudentAnswerDetail> answers,
+                                             Map<Integer, GradingEngine.AnswerKey> keys) throws SQLException {
+        Map<Integer, StudentAnswerDetail> templates = new LinkedHashMap<>();
+        for (StudentAnswerDetail answer : answers) {
+            if (keys.containsKey(answer.getQuestionId()) && !replacementSnapshotIds.containsKey(answer.getSnapshotId())) {
+                templates.computeIfAbsent(answer.getSnapshotId(), oldSnapshotId -> {
+                    StudentAnswerDetail template = new StudentAnswerDetail();
+                    template.setQuestionId(answer.getQuestionId());
+                    template.setSnapshotId(oldSnapshotId);
+                    return template;
+                });
+            }
+        }
+        if (templates.isEmpty()) {
+            return;
+        }
+
+        List<StudentAnswerDetail> pending = new ArrayList<>(templates.values());
+        snapshotDAO.fillSnapshotContent(pending);
+        for (StudentAnswerDetail template : pending) {
+            if (template.getQuestionType() == null) {
+                Question question = questionsById.get(template.getQuestionId());
+                template.setQuestionType(question.getType());
+                template.setQuestionText(question.getQuestionText());
+                template.setOptionA(question.getOptionA());
+                template.setOptionB(question.getOptionB());
+                template.setOptionC(question.getOptionC());
+                template.setOptionD(question.getOptionD());
+            }
+            template.setCorrectAnswer(keys.get(template.getQuestionId()).getCorrectAnswerText());
+        }
+        snapshotDAO.assignSnapshotIds(pending);
+        for (Map.Entry<Integer, StudentAnswerDetail> entry : templates.entrySet()) {
+            replacementSnapshotIds.put(entry.getKey(), entry.getValue().getSnapshotId());
+        }
+    }
+
+    /**
+     * 判定一段作答详情并写回，details 在事务之外读取，替换快照已经准备好
+     */
+    private ChunkResult regradeChunk(GradingEngine.AnswerKey key, List<StudentAnswerDetail> details,
+                                     StudentAnswerDetailDAO detailDAO, ExamDAO examDAO,
+                                     StudentSubjectStatsDAO statsDAO) throws SQLException {
+        ChunkResult chunk = new ChunkResult();
+        chunk.rows = details.size();
+        if (details.isEmpty()) {
+            return chunk;
+        }
+        chunk.lastId = details.get(details.size() - 1).getId();
+
+        int count = 0;
+        for (StudentAnswerDetail detail : details) {
+            boolean correct = GradingEngine.isCorrect(key, detail.getStudentAnswer());
+            int snapshotId = replacementSnapshotIds.get(detail.getSnapshotId());
+            // 判定结果不变但快照中的正确答案是旧的，也一起更新，答题详情中显示的正确答案与题目保持一致
+            if (correct != detail.isCorrect() || detail.getSnapshotId() != snapshotId) {
+                changedIds[count] = detail.getId();
+                previousCorrect[count] = detail.isCorrect();
+                newCorrect[count] = correct;
+                newSnapshotIds[count] = snapshotId;
+                count++;
+            }
+        }
+        if (count == 0) {
+            return chunk;
+        }
+
+        boolean[] updated = detailDAO.updateCorrectness(changedIds, previousCorrect, newCorrect, newSnapshotIds, count);
+        TreeMap<Integer, Integer> scoreDeltas = new TreeMap<>();
+        int index = 0;
+        for (StudentAnswerDetail detail : details) {
+            if (index < count && changedIds[index] == detail.getId()) {
+                if (updated[index]) {
+                    chunk.updated++;
+                    if (newCorrect[index] != previousCorrect[index]) {
+                        chunk.changed++;
+                        scoreDeltas.merge(detail.getExamRecordId(), newCorrect[index] ? 1 : -1, Integer::sum);
+                    }
+                }
+                index++;
+            }
+        }
+        if (!scoreDeltas.isEmpty()) {
+            examDAO.applyScoreDeltas(scoreDeltas);
+            statsDAO.refreshForRecords(scoreDeltas.keySet());
+            examDAO.bumpExamRecordsVersion();
+        }
+        return chunk;
+    }
+
+    /**
+     * 判定一段紧凑编码的考试记录并写回，blobs 在事务之外读取并解码为 decoded，替换快照已经准备好
+     */
+    private ChunkResult regradePackedChunk(Map<Integer, GradingEngine.AnswerKey> keys, Map<Integer, byte[]> blobs,
+                                           Map<Integer, List<StudentAnswerDetail>> decoded,
+                                           ExamDAO examDAO, StudentSubjectStatsDAO statsDAO) throws SQLException {
+        ChunkResult chunk = new ChunkResult();
+        List<Integer> rescored = new ArrayList<>();
+        chunk.rows = blobs.size();
+        for (Map.Entry<Integer, byte[]> entry : blobs.entrySet()) {
+            int recordId = entry.getKey();
+            chunk.lastId = recordId;
+            List<StudentAnswerDetail> answers = decoded.get(recordId);
+            boolean modified = false;
+            int scoreDelta = 0;
+            int changed = 0;
+            for (StudentAnswerDetail answer : answers) {
+                GradingEngine.AnswerKey key = keys.get(answer.getQuestionId());
+                if (key == null) {
+                    continue;
+                }
+                boolean correct = GradingEngine.isCorrect(key, answer.getStudentAnswer());
+                int snapshotId = replacementSnapshotIds.get(answer.getSnapshotId());
+                if (correct != answer.isCorrect()) {
+                    scoreDelta += correct ? 1 : -1;
+                    changed++;
+                }
+                if (correct != answer.isCorrect() || answer.getSnapshotId() != snapshotId) {
+                    answer.setCorrect(correct);
+                    answer.setSnapshotId(snapshotId);
+                    modified = true;
+                }
+            }
+            if (modified && examDAO.replaceAnswerBlob(recordId, entry.getValue(), AnswerBlobCodec.encode(answers), scoreDelta)) {
+                chunk.updated++;
+                chunk.changed += changed;
+                if (scoreDelta != 0) {
+                    rescored.add(recordId);
+                }
+            }
+        }
+        if (!rescored.isEmpty()) {
+            statsDAO.refreshForRecords(rescored);
+            examDAO.bumpExamRecordsVersion();
+        }
+        return chunk;
+    }
+
+    private static final class ChunkResult {
+        int rows;
+        int lastId;
+        int changed;
+        int updated;
+    }
+
+    /**
+     * 重新评分结果
+     */
+    public static class RegradeResult {
+        private long scanned;
+        private long changed;
+        private long updated;
+        private boolean cancelled;
+
+        private void add(ChunkResult chunk) {
+            scanned += chunk.rows;
+            changed += chunk.changed;
+            updated += chunk.updated;
+        }
+
+        /**
+         * 扫描过的作答详情和紧凑编码考试记录的数量
+         */
+        public long getScanned() {
+            return scanned;
+        }
+
+        /**
+         * 对错判定发生变化（分数随之调整）的作答数量
+         */
+        public long getChanged() {
+            return changed;
+        }
+
+        /**
+         * 实际写回数据库的作答详情和考试记录数量（包括只更新了题目快照的）
+         */
+        public long getUpdated() {
+            return updated;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.service;
+
+import com.example.model.QuestionType;
+import com.example.model.StudentAnswerDetail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 一次已评分、待保存的交卷
+ * 包含写入考试记录和答题详情所需的全部数据，可以序列化后写入本地提交日志，
+ * 数据库暂时不可用时也不会丢失。submissionId 在交卷时生成，保存时用于去重。
+ */
+public class Submission {
+    private static final int FORMAT_VERSION = 1;
+
+    private final String submissionId;
+    private final String studentId;
+    private final String subject;
+    private final int correctCount;
+    private final int totalQuestions;
+    private final long submittedAt;
+    private final List<StudentAnswerDetail> details;
+
+    public Submission(String studentId, String subject, int correctCount, int totalQuestions,
+                      List<StudentAnswerDetail> details) {
+        this(UUID.randomUUID().toString(), studentId, subject, correctCount, totalQuestions,
+                System.currentTimeMillis(), details);
+    }
+
+    private Submission(String submissionId, String studentId, String subject, int correctCount,
+                       int totalQuestions, long submittedAt, List<StudentAnswerDetail> details) {
+        this.submissionId = submissionId;
+        this.studentId = studentId;
+        this.subject = subject;
+        this.correctCount = correctCount;
+        this.totalQuestions = totalQuestions;
+        this.submittedAt = submittedAt;
+        this.details = details;
+    }
+
+    public String getSubmissionId() {
+        return submissionId;
+    }
+
+    public String getStudentId() {
+        return studentId;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public int getCorrectCount() {
+        return correctCount;
+    }
+
+    public int getTotalQuestions() {
+        return totalQuestions;
+    }
+
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public List<StudentAnswerDetail> getDetails() {
+        return Collections.unmodifiableList(details);
+    }
+
+    /**
+     * 序列化为字节数组，用于写入提交日志
+     * 快照ID和考试记录ID不写入，保存时重新确定
+     */
+    byte[] toBytes() {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256 + details.size() * 128);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.writeByte(FORMAT_VERSION);
+            writeString(out, submissionId);
+            writeString(out, studentId);
+            writeString(out, subject);
+            out.writeInt(correctCount);
+            out.writeInt(totalQuestions);
+            out.writeLong(submittedAt);
+            out.writeInt(details.size());
+            for (StudentAnswerDetail detail : details) {
+                out.writeInt(detail.getQuestionId());
+                out.writeBoolean(detail.isCorrect());
+                writeString(out, detail.getStudentAnswer());
+                writeString(out, detail.getCorrectAnswer());
+                writeString(out, detail.getQuestionText());
+                writeString(out, detail.getQuestionType() != null ? detail.getQuestionType().name() : null);
+                writeString(out, detail.getOptionA());
+                writeString(out, detail.getOptionB());
+                writeString(out, detail.getOptionC());
+                writeString(out, detail.getOptionD());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // 写入内存缓冲区不会失败
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 从提交日志中的字节数组还原
+     */
+    static Submission fromBytes(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("不支持的交卷数据版本: " + version);
+            }
+            String submissionId = readString(in);
+            String studentId = readString(in);
+            String subject = readString(in);
+            int correctCount = in.readInt();
+            int totalQuestions = in.readInt();
+            long submittedAt = in.readLong();
+            int count = in.readInt();
+            List<StudentAnswerDetail> details = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                StudentAnswerDetail detail = new StudentAnswerDetail();
+                detail.setQuestionId(in.readInt());
+                detail.setCorrect(in.readBoolean());
+                detail.setStudentAnswer(readString(in));
+                detail.setCorrectAnswer(readString(in));
+                detail.setQuestionText(readString(in));
+                String type = readString(in);
+                detail.setQuestionType(type == null ? null : QuestionType.valueOf(type));
+                detail.setOptionA(readString(in));
+                detail.setOptionB(readString(in));
+                detail.setOptionC(readString(in));
+                detail.setOptionD(readString(in));
+                details.add(detail);
+            }
+            return new Submission(submissionId, studentId, subject, correctCount, totalQuestions, submittedAt, details);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("交卷数据损坏", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.service;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * 本地只追加的交卷日志
+ * 日志由若干个固定大小、内存映射的段文件组成。每条记录为 长度(4) + CRC32(4) + 数据，
+ * 写入后立即把这段映射刷到磁盘（fsync），返回时记录已经持久化。
+ * 每个段的文件头保存“已写入数据库”的位置，重启时从该位置开始重放，
+ * 遇到长度为 0 或 CRC 不符（写入时断电留下的半条记录）即视为该段结束。
+ * 段中的记录全部写入数据库后先把文件头中的位置推进到段末尾，再删除该段文件。
+ * 删除只是清理：Windows 上仍有内存映射的文件无法删除，删除失败的文件留待之后重试，
+ * 即使一直没有删掉，文件头也已表明其中没有待重放的记录。
+ * 该类不是线程安全的，由 SubmissionQueue 加锁调用。
+ */
+final class SubmissionJournal {
+    private static final Logger LOGGER = Logger.getLogger(SubmissionJournal.class.getName());
+
+    private static final int MAGIC = 0x45584A31; // "EXJ1"
+    // 文件头：MAGIC(4) + 保留(4) + 已写入数据库的位置(8)
+    private static final int HEADER_SIZE = 16;
+    private static final int DRAINED_OFFSET_POSITION = 8;
+    private static final int ENTRY_HEADER_SIZE = 8;
+    private static final String FILE_PREFIX = "submissions-";
+    private static final String FILE_SUFFIX = ".journal";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    // 已全部写入数据库、但删除失败的段文件，不再持有其映射，之后每次 markDrained 时重试
+    private final List<Path> pendingDeletes = new ArrayList<>();
+    private Segment active;
+
+    /**
+     * 日志中的一个位置：段序号和该段内的偏移量
+     */
+    static final class Position {
+        final long segment;
+        final int offset;
+
+        Position(long segment, int offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * 重放时读出的一条记录，end 为记录之后的位置
+     */
+    static final class Entry {
+        final Position end;
+        final byte[] payload;
+
+        Entry(Position end, byte[] payload) {
+            this.end = end;
+            this.payload = payload;
+        }
+    }
+
+    SubmissionJournal(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * 打开已有的段文件，返回所有尚未写入数据库的记录（按写入顺序）
+     * 只能在追加之前调用一次
+     */
+    List<Entry> recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        List<Entry> entries = new ArrayList<>();
+        for (Path file : files) {
+            long sequence;
+            String name = file.getFileName().toString();
+            try {
+                sequence = Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                LOGGER.log(Level.WARNING, "忽略无法识别的日志文件: " + file);
+                continue;
+            }
+            Segment segment = Segment.open(file, sequence);
+            if (segment == null) {
+                LOGGER.log(Level.SEVERE, "日志文件头损坏，已跳过: " + file);
+                continue;
+            }
+            segments.put(sequence, segment);
+        }
+        for (Segment segment : segments.values()) {
+            int offset = (int) segment.buffer.getLong(DRAINED_OFFSET_POSITION);
+            CRC32 crc = new CRC32();
+            while (offset + ENTRY_HEADER_SIZE <= segment.size) {
+                int length = segment.buffer.getInt(offset);
+                if (length <= 0 || length > segment.size - offset - ENTRY_HEADER_SIZE) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                segment.buffer.get(offset + ENTRY_HEADER_SIZE, payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != segment.buffer.getInt(offset + 4)) {
+                    LOGGER.log(Level.WARNING, "日志段 " + segment.sequence + " 在偏移 " + offset + " 处有不完整的记录，已截断");
+                    break;
+                }
+                offset += ENTRY_HEADER_SIZE + length;
+                entries.add(new Entry(new Position(segment.sequence, offset), payload));
+            }
+            segment.writeOffset = offset;
+        }
+        if (!segments.isEmpty()) {
+            active = segments.lastEntry().getValue();
+        }
+        // 之前的段如果已经全部写入数据库（删除文件前进程退出或删除失败），不再保留；
+        // 刚刚映射过的文件在 Windows 上通常删不掉，留待之后重试
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment != active && segment.buffer.getLong(DRAINED_OFFSET_POSITION) >= segment.writeOffset) {
+                retire(segment);
+            }
+        }
+        LOGGER.log(Level.INFO, "交卷日志恢复完成，待写入数据库的记录: " + entries.size());
+        return entries;
+    }
+
+    /**
+     * 追加一条记录并刷到磁盘，返回记录之后的位置
+     */
+    Position append(byte[] payload) throws IOException {
+        int required = ENTRY_HEADER_SIZE + payload.length + 4; // 末尾留 4 字节写结束标记
+        if (required > segmentSize - HEADER_SIZE) {
+            throw new IOException("交卷数据过大，无法写入日志: " + payload.length + " 字节");
+        }
+        if (active == null || active.writeOffset + required > active.size) {
+            long sequence = active == null ? 1 : active.sequence + 1;
+            active = Segment.create(directory.resolve(fileName(sequence)), sequence, segmentSize);
+            segments.put(sequence, active);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        int start = active.writeOffset;
+        MappedByteBuffer buffer = active.buffer;
+        buffer.put(start + ENTRY_HEADER_SIZE, payload);
+        buffer.putInt(start + ENTRY_HEADER_SIZE + payload.length, 0);
+        buffer.putInt(start + 4, (int) crc.getValue());
+        buffer.putInt(start, payload.length);
+        buffer.force(start, required);
+        active.writeOffset = start + ENTRY_HEADER_SIZE + payload.length;
+        return new Position(active.sequence, active.writeOffset);
+    }
+
+    /**
+     * 标记 end 之前的所有记录已经写入数据库
+     * 先在各段的文件头记录新的重放起点并刷盘，之前已经全部写入的段再尝试删除
+     */
+    void markDrained(Position end) throws IOException {
+        for (Map.Entry<Long, Segment> entry : new ArrayList<>(segments.headMap(end.segment).entrySet())) {
+            Segment segment = entry.getValue();
+            persistDrainedOffset(segment, segment.writeOffset);
+            retire(segment);
+        }
+        Segment segment = segments.get(end.segment);
+        if (segment != null) {
+            persistDrainedOffset(segment, end.offset);
+            if (segment != active && end.offset >= segment.writeOffset) {
+                retire(segment);
+            }
+        }
+        retryPendingDeletes();
+    }
+
+    private static void persistDrainedOffset(Segment segment, int offset) {
+        if (segment.buffer.getLong(DRAINED_OFFSET_POSITION) >= offset) {
+            return;
+        }
+        segment.buffer.putLong(DRAINED_OFFSET_POSITION, offset);
+        segment.buffer.force(0, HEADER_SIZE);
+    }
+
+    /**
+     * 不再跟踪已经全部写入数据库的段，并尝试删除其文件；删除失败时只记录文件路径，之后重试
+     */
+    private void retire(Segment segment) {
+        segments.remove(segment.sequence);
+        if (!tryDelete(segment.file)) {
+            pendingDeletes.add(segment.file);
+        }
+    }
+
+    private void retryPendingDeletes() {
+        pendingDeletes.removeIf(SubmissionJournal::tryDelete);
+    }
+
+    private static boolean tryDelete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+            return true;
+        } catch (IOException e) {
+            // 例如 Windows 上映射尚未释放；文件头已表明没有待重放的记录，稍后再删
+            LOGGER.log(Level.FINE, "暂时无法删除已写入数据库的日志段: " + file, e);
+            return false;
+        }
+    }
+
+    private static String fileName(long sequence) {
+        return String.format("%s%016d%s", FILE_PREFIX, sequence, FILE_SUFFIX);
+    }
+
+    private static final class Segment {
+        final Path file;
+        final long sequence;
+        final int size;
+        final MappedByteBuffer buffer;
+        int writeOffset;
+
+        private Segment(Path file, long sequence, int size, MappedByteBuffer buffer) {
+            this.file = file;
+            this.sequence = sequence;
+            this.size = size;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path file, long sequence, int size) throws IOException {
+            MappedByteBuffer buffer = map(file, size);
+            buffer.putInt(0, MAGIC);
+            buffer.putLong(DRAINED_OFFSET_POSITION, HEADER_SIZE);
+            buffer.putInt(HEADER_SIZE, 0);
+            buffer.force(0, HEADER_SIZE + 4);
+            Segment segment = new Segment(file, sequence, size, buffer);
+            segment.writeOffset = HEADER_SIZE;
+            return segment;
+        }
+
+        static Segment open(Path file, long sequence) throws IOException {
+            long size = Files.size(file);
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer buffer = map(file, (int) size);
+            long drained = buffer.getLong(DRAINED_OFFSET_POSITION);
+            if (buffer.getInt(0) != MAGIC || drained < HEADER_SIZE || drained > size) {
+                return null;
+            }
+            return new Segment(file, sequence, (int) size, buffer);
+        }
+
+        private static MappedByteBuffer map(Path file, int size) throws IOException {
+            // 映射在通道关闭后仍然有效
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw");
+                 FileChannel channel = raf.getChannel()) {
+                if (raf.length() < size) {
+                    raf.setLength(size);
+                }
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+    }
+}
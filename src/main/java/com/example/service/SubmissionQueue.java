@@ -0,0 +1,219 @@
+package com.example.service;
+
+import com.example.database.DatabaseManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 交卷的异步写入队列（默认关闭，-Dexam.submissions.journal=true 开启）
+ * 交卷先追加到本地交卷日志并刷盘，随即返回给学生；后台线程再把日志中的交卷按组写入 MySQL，
+ * 一组交卷在一个事务中提交。考试结束时集中交卷的高峰被日志吸收，数据库短暂不可用时会按退避间隔重试，
+ * 进程重启后从日志中未写入的位置继续，已写入过的交卷按 submission_id 去重，不会重复保存。
+ */
+public class SubmissionQueue {
+    private static final Logger LOGGER = Logger.getLogger(SubmissionQueue.class.getName());
+
+    private static final long MIN_RETRY_DELAY_MILLIS = 500;
+    private static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+
+    private final SubmissionJournal journal;
+    private final Path rejectedDirectory;
+    private final int groupSize;
+    private final LinkedBlockingQueue<Pending> pending = new LinkedBlockingQueue<>();
+    private final Thread drainer;
+    private volatile boolean running = true;
+
+    private static final class Holder {
+        static final SubmissionQueue INSTANCE = create();
+    }
+
+    private SubmissionQueue(Path directory, int segmentSize, int groupSize) throws IOException {
+        this.journal = new SubmissionJournal(directory, segmentSize);
+        this.rejectedDirectory = directory.resolve("rejected");
+        this.groupSize = groupSize;
+        for (SubmissionJournal.Entry entry : journal.recover()) {
+            pending.add(new Pending(entry.payload, entry.end));
+        }
+        this.drainer = new Thread(this::drainLoop, "submission-drainer");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    private static SubmissionQueue create() {
+        Path directory = Paths.get(System.getProperty("exam.submissions.dir",
+                Paths.get(System.getProperty("user.home"), ".exam-system", "submissions").toString()));
+        try {
+            return new SubmissionQueue(directory,
+                    Integer.getInteger("exam.submissions.segmentBytes", 16 * 1024 * 1024),
+                    Math.max(1, Integer.getInteger("exam.submissions.groupSize", 50)));
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "无法打开交卷日志，交卷将直接写入数据库: " + directory, e);
+            return null;
+        }
+    }
+
+    /**
+     * 是否开启了交卷日志
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean("exam.submissions.journal");
+    }
+
+    /**
+     * 返回交卷队列，未开启或日志无法打开时返回 null
+     * 第一次调用时恢复日志中尚未写入数据库的交卷并启动后台写入线程
+     */
+    public static SubmissionQueue getInstance() {
+        return isEnabled() ? Holder.INSTANCE : null;
+    }
+
+    /**
+     * 把交卷写入本地日志并刷盘，返回后交卷不会丢失，之后由后台线程写入数据库
+     * @throws IOException 写入日志失败时（调用方应改为直接写入数据库）
+     */
+    public void submit(Submission submission) throws IOException {
+        byte[] payload = submission.toBytes();
+        // 追加和入队在同一把锁内完成，保证队列顺序与日志顺序一致，写入进度可以按顺序推进
+        synchronized (journal) {
+            SubmissionJournal.Position end = journal.append(payload);
+            pending.add(new Pending(submission, payload, end));
+        }
+    }
+
+    /**
+     * 已写入日志、尚未写入数据库的交卷数量
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 停止后台写入线程，未写入的交卷保留在日志中，下次启动时继续写入
+     */
+    public void shutdown() {
+        running = false;
+        drainer.interrupt();
+    }
+
+    private void drainLoop() {
+        List<Pending> group = new ArrayList<>(groupSize);
+        while (running) {
+            try {
+                Pending first = pending.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.clear();
+                group.add(first);
+                pending.drainTo(group, groupSize - 1);
+                if (!writeWithRetry(group)) {
+                    return; // 正在关闭，未写入的交卷留在日志中
+                }
+                synchronized (journal) {
+                    journal.markDrained(group.get(group.size() - 1).end);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                // 进度没有记录下来，重启后这些交卷会被重放，按 submission_id 去重
+                LOGGER.log(Level.WARNING, "更新交卷日志写入进度失败", e);
+            }
+        }
+    }
+
+    /**
+     * 把一组交卷写入数据库，暂时性错误（连接中断、超时、死锁等）按退避间隔重试直到成功
+     * 其他错误（约束冲突、数据截断等）重试也不会成功，逐条写入找出有问题的交卷，
+     * 无法写入的交卷另存到 rejected 目录，不阻塞后续交卷
+     * @return false 表示因为关闭而放弃
+     */
+    private boolean writeWithRetry(List<Pending> group) throws InterruptedException {
+        long delay = MIN_RETRY_DELAY_MILLIS;
+        while (running) {
+            Exception failure;
+            try {
+                writeGroup(group);
+                return true;
+            } catch (SQLException e) {
+                if (DatabaseManager.isTransient(e)) {
+                    LOGGER.log(Level.WARNING, "写入 " + group.size() + " 份交卷失败，" + delay + " ms 后重试: " + e.getMessage());
+                    Thread.sleep(delay);
+                    delay = Math.min(delay * 2, MAX_RETRY_DELAY_MILLIS);
+                    continue;
+                }
+                failure = e;
+            } catch (IOException | RuntimeException e) {
+                failure = e; // 日志中的数据无法还原
+            }
+            if (group.size() == 1) {
+                reject(group.get(0), failure);
+                return true;
+            }
+            // 找出有问题的交卷，其余的逐条写入
+            for (Pending single : group) {
+                if (!writeWithRetry(List.of(single))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void writeGroup(List<Pending> group) throws SQLException, IOException {
+        List<Submission> submissions = new ArrayList<>(group.size());
+        for (Pending item : group) {
+            submissions.add(item.submission());
+        }
+        SubmissionWriter.prepare(submissions);
+        DatabaseManager.getInstance().inTransaction(conn -> SubmissionWriter.writeAll(conn, submissions));
+        LOGGER.log(Level.FINE, "已写入 " + submissions.size() + " 份交卷");
+    }
+
+    private void reject(Pending item, Exception cause) {
+        LOGGER.log(Level.SEVERE, "交卷无法写入数据库，已另存到 " + rejectedDirectory, cause);
+        try {
+            Files.createDirectories(rejectedDirectory);
+            Files.write(rejectedDirectory.resolve("rejected-" + System.nanoTime() + ".bin"), item.payload);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "保存无法写入的交卷失败", e);
+        }
+    }
+
+    private static final class Pending {
+        private final byte[] payload;
+        private final SubmissionJournal.Position end;
+        private Submission submission;
+
+        Pending(byte[] payload, SubmissionJournal.Position end) {
+            this.payload = payload;
+            this.end = end;
+        }
+
+        Pending(Submission submission, byte[] payload, SubmissionJournal.Position end) {
+            this(payload, end);
+            this.submission = submission;
+        }
+
+        /**
+         * 从日志恢复的交卷在第一次写入时才反序列化
+         */
+        Submission submission() throws IOException {
+            if (submission == null) {
+                submission = Submission.fromBytes(payload);
+            }
+            return submission;
+        }
+    }
+}
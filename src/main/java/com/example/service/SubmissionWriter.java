@@ -0,0 +1,89 @@
+package com.example.service;
+
+import com.example.dao.AnswerBlobCodec;
+import com.example.dao.ExamDAO;
+import com.example.dao.QuestionSnapshotDAO;
+import com.example.dao.StudentAnswerDetailDAO;
+import com.example.dao.StudentSubjectStatsDAO;
+import com.example.model.ExamRecord;
+import com.example.model.StudentAnswerDetail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 把交卷写入数据库
+ * 同步交卷和提交队列的后台写入共用这里的逻辑，保证两条路径写出的数据完全相同。
+ */
+final class SubmissionWriter {
+    private static final Logger LOGGER = Logger.getLogger(SubmissionWriter.class.getName());
+
+    // exam.answers.storage=packed 时整场考试的作答编码后保存在 exam_records.answers_blob 中，
+    // 不再逐题写入 student_answer_details；默认 rows 保持逐题存储
+    private static final boolean PACKED_ANSWER_STORAGE = "packed".equalsIgnoreCase(System.getProperty("exam.answers.storage", "rows"));
+
+    private SubmissionWriter() {
+    }
+
+    /**
+     * 为一组交卷的答题详情准备题目快照，必须在写入事务之外调用（见 QuestionSnapshotDAO.assignSnapshotIds）
+     */
+    static void prepare(List<Submission> submissions) throws SQLException {
+        List<StudentAnswerDetail> details = new ArrayList<>();
+        for (Submission submission : submissions) {
+            details.addAll(submission.getDetails());
+        }
+        new QuestionSnapshotDAO().assignSnapshotIds(details);
+    }
+
+    /**
+     * 在事务连接 conn 上写入一次交卷，返回考试记录ID
+     * 同一 submissionId 已经写入过时不会重复写入，直接返回已有记录的ID
+     */
+    static int write(Connection conn, Submission submission) throws SQLException {
+        ExamDAO examDAO = new ExamDAO(conn);
+        int existingId = examDAO.findExamRecordIdBySubmissionId(submission.getSubmissionId());
+        if (existingId > 0) {
+            LOGGER.log(Level.INFO, "交卷已保存过，跳过: " + submission.getSubmissionId());
+            return existingId;
+        }
+
+        // 1. 保存考试记录
+        ExamRecord record = new ExamRecord(submission.getStudentId(), submission.getSubject(),
+                submission.getCorrectCount(), submission.getTotalQuestions());
+        record.setExamDate(new Timestamp(submission.getSubmittedAt()));
+        List<StudentAnswerDetail> details = submission.getDetails();
+        // 紧凑存储：作答随考试记录一起写入，只插入一行
+        byte[] answersBlob = PACKED_ANSWER_STORAGE ? AnswerBlobCodec.encode(details) : null;
+        if (!examDAO.addExamRecord(record, answersBlob, submission.getSubmissionId()) || record.getId() <= 0) {
+            throw new SQLException("保存考试记录失败");
+        }
+        new StudentSubjectStatsDAO(conn).recordExam(record);
+        if (PACKED_ANSWER_STORAGE) {
+            return record.getId();
+        }
+
+        // 2. 保存详细答题记录
+        for (StudentAnswerDetail detail : details) {
+            detail.setExamRecordId(record.getId());
+        }
+        new StudentAnswerDetailDAO(conn).saveAllStudentAnswerDetails(details);
+        return record.getId();
+    }
+
+    /**
+     * 在事务连接 conn 上依次写入一组交卷，返回与 submissions 顺序对应的考试记录ID
+     */
+    static int[] writeAll(Connection conn, List<Submission> submissions) throws SQLException {
+        int[] examRecordIds = new int[submissions.size()];
+        for (int i = 0; i < examRecordIds.length; i++) {
+            examRecordIds[i] = write(conn, submissions.get(i));
+        }
+        return examRecordIds;
+    }
+}
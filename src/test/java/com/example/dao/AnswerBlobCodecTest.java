@@ -0,0 +1,189 @@
+package com.example.dao;
+
+import com.example.model.StudentAnswerDetail;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 作答紧凑编码测试：随机作答的编码解码往返，包括不能由掩码原样还原的选择题答案和多字节 UTF-8 填空答案
+ */
+class AnswerBlobCodecTest {
+    // 字母合法但顺序、空白或分隔符不规范，只能按文本保存
+    private static final String[] NON_CANONICAL = {"C,A", "A,A", "A, C", " A", "A,", ",A", "A,,C", "a", "AC", "A;C",
+            "D,C,B,A", "A,B,C,D,", "E", "A,B,C,D,A"};
+    private static final String[] CANONICAL = {"", "A", "B", "C", "D", "A,C", "B,D", "A,B,C", "A,B,C,D"};
+    private static final String[] MULTIBYTE = {"类", "面向对象", "é", "ß", "Ω", "😀", "𝔸𝔹", "日本語テキスト", "x\u0000y", "Java 虚拟机"};
+
+    @Test
+    void canonicalAnswersRoundTripAsMasks() {
+        List<StudentAnswerDetail> details = new ArrayList<>();
+        for (int i = 0; i < CANONICAL.length; i++) {
+            details.add(detail(i + 1, i + 100, CANONICAL[i], i % 2 == 0));
+        }
+        byte[] blob = AnswerBlobCodec.encode(details);
+
+        assertRoundTrip(details, 7, blob);
+        // 版本号、数量，之后每题为 1 字节题目ID、1 字节快照ID、1 字节标志
+        assertEquals(2 + CANONICAL.length * 3, blob.length);
+    }
+
+    @Test
+    void nonCanonicalAnswersKeepTheirExactText() {
+        List<StudentAnswerDetail> details = new ArrayList<>();
+        for (int i = 0; i < NON_CANONICAL.length; i++) {
+            details.add(detail(i + 1, i + 1, NON_CANONICAL[i], true));
+        }
+
+        assertRoundTrip(details, 3, AnswerBlobCodec.encode(details));
+    }
+
+    @Test
+    void multibyteFillBlankAnswersRoundTrip() {
+        List<StudentAnswerDetail> details = new ArrayList<>();
+        for (int i = 0; i < MULTIBYTE.length; i++) {
+            details.add(detail(i + 1, 300 + i, MULTIBYTE[i], false));
+        }
+
+        assertRoundTrip(details, 9, AnswerBlobCodec.encode(details));
+    }
+
+    @Test
+    void nullAnswerDecodesAsEmpty() {
+        List<StudentAnswerDetail> decoded = AnswerBlobCodec.decode(1, AnswerBlobCodec.encode(List.of(detail(5, 6, null, false))));
+
+        assertEquals("", decoded.get(0).getStudentAnswer());
+    }
+
+    @Test
+    void randomRoundTrips() {
+        Random random = new Random(42L);
+        for (int round = 0; round < 20_000; round++) {
+            int count = random.nextInt(12);
+            List<StudentAnswerDetail> details = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                details.add(detail(randomId(random), randomId(random), randomAnswer(random), random.nextBoolean()));
+            }
+            int examRecordId = randomId(random);
+
+            assertRoundTrip(details, examRecordId, AnswerBlobCodec.encode(details));
+        }
+    }
+
+    @Test
+    void truncatedBlobIsRejected() {
+        byte[] blob = AnswerBlobCodec.encode(List.of(detail(1, 2, "面向对象", true), detail(3, 4, "A,C", false)));
+        for (int length = 0; length < blob.length; length++) {
+            byte[] truncated = Arrays.copyOf(blob, length);
+            assertThrows(IllegalArgumentException.class, () -> AnswerBlobCodec.decode(1, truncated), "长度 " + length);
+        }
+    }
+
+    @Test
+    void unknownVersionIsRejected() {
+        byte[] blob = AnswerBlobCodec.encode(List.of(detail(1, 2, "A", true)));
+        blob[0] = 99;
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> AnswerBlobCodec.decode(1, blob));
+        assertTrue(e.getMessage().contains("99"));
+    }
+
+    private static void assertRoundTrip(List<StudentAnswerDetail> expected, int examRecordId, byte[] blob) {
+        List<StudentAnswerDetail> decoded = AnswerBlobCodec.decode(examRecordId, blob);
+        assertEquals(expected.size(), decoded.size());
+        for (int i = 0; i < expected.size(); i++) {
+            StudentAnswerDetail want = expected.get(i);
+            StudentAnswerDetail got = decoded.get(i);
+            String answer = want.getStudentAnswer() == null ? "" : want.getStudentAnswer();
+            assertEquals(examRecordId, got.getExamRecordId());
+            assertEquals(want.getQuestionId(), got.getQuestionId());
+            assertEquals(want.getSnapshotId(), got.getSnapshotId());
+            assertEquals(answer, got.getStudentAnswer(), "第 " + i + " 题");
+            assertEquals(want.isCorrect(), got.isCorrect());
+        }
+    }
+
+    private static int randomId(Random random) {
+        // 覆盖 1 到 5 字节的 varint
+        switch (random.nextInt(4)) {
+            case 0:
+                return random.nextInt(128);
+            case 1:
+                return random.nextInt(1 << 14);
+            case 2:
+                return random.nextInt(1 << 21);
+            default:
+                return random.nextInt(Integer.MAX_VALUE);
+        }
+    }
+
+    private static String randomAnswer(Random random) {
+        switch (random.nextInt(5)) {
+            case 0:
+                return CANONICAL[random.nextInt(CANONICAL.length)];
+            case 1:
+                return NON_CANONICAL[random.nextInt(NON_CANONICAL.length)];
+            case 2:
+                return randomLetters(random);
+            case 3:
+                return random.nextInt(10) == 0 ? null : MULTIBYTE[random.nextInt(MULTIBYTE.length)];
+            default:
+                return randomText(random);
+        }
+    }
+
+    /**
+     * 随机的字母、逗号和空白组合，其中一部分恰好是规范的掩码文本
+     */
+    private static String randomLetters(Random random) {
+        int length = random.nextInt(10);
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append("ABCDE, a".charAt(random.nextInt(8)));
+        }
+        return text.toString();
+    }
+
+    /**
+     * 随机的合法 Unicode 文本，覆盖 1 到 4 字节的 UTF-8 编码，长度可能超过 127 字节
+     */
+    private static String randomText(Random random) {
+        int length = random.nextInt(random.nextInt(8) == 0 ? 200 : 20);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            int codePoint;
+            switch (random.nextInt(4)) {
+                case 0:
+                    codePoint = random.nextInt(0x80);
+                    break;
+                case 1:
+                    codePoint = 0x80 + random.nextInt(0x800 - 0x80);
+                    break;
+                case 2:
+                    codePoint = 0x800 + random.nextInt(0xD800 - 0x800);
+                    break;
+                default:
+                    codePoint = 0x10000 + random.nextInt(0x10FFFF - 0x10000);
+                    break;
+            }
+            text.appendCodePoint(codePoint);
+        }
+        return text.toString();
+    }
+
+    private static StudentAnswerDetail detail(int questionId, int snapshotId, String answer, boolean correct) {
+        StudentAnswerDetail detail = new StudentAnswerDetail();
+        detail.setQuestionId(questionId);
+        detail.setSnapshotId(snapshotId);
+        detail.setStudentAnswer(answer);
+        detail.setCorrect(correct);
+        return detail;
+    }
+}
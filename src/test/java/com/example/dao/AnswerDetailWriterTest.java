@@ -0,0 +1,168 @@
+package com.example.dao;
+
+import com.example.model.QuestionType;
+import com.example.model.StudentAnswerDetail;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 答题详情批量写入测试：用记录调用的 Connection 代理校验语句数量（数据库往返次数）和每条语句的参数绑定
+ */
+class AnswerDetailWriterTest {
+    private static final int ROWS = AnswerDetailWriter.ROWS_PER_STATEMENT;
+
+    @Test
+    void hundredQuestionSubmitIsOneStatement() throws SQLException {
+        RecordingConnection recording = new RecordingConnection();
+        List<StudentAnswerDetail> details = details(100);
+
+        int statements = AnswerDetailWriter.write(recording.connection(), details);
+
+        assertTrue(ROWS >= 100, "默认每条语句 250 行");
+        assertEquals(1, statements);
+        assertEquals(1, recording.executed.size());
+        assertStatement(recording.executed.get(0), details, 0, 100);
+    }
+
+    @Test
+    void fullChunksThenTailChunk() throws SQLException {
+        RecordingConnection recording = new RecordingConnection();
+        int tail = 7;
+        List<StudentAnswerDetail> details = details(2 * ROWS + tail);
+
+        int statements = AnswerDetailWriter.write(recording.connection(), details);
+
+        assertEquals(3, statements);
+        assertEquals(3, recording.executed.size());
+        // 整段共用一条预编译语句，末尾一段单独预编译
+        assertEquals(2, recording.prepared);
+        assertStatement(recording.executed.get(0), details, 0, ROWS);
+        assertStatement(recording.executed.get(1), details, ROWS, 2 * ROWS);
+        assertStatement(recording.executed.get(2), details, 2 * ROWS, 2 * ROWS + tail);
+    }
+
+    @Test
+    void exactMultipleHasNoTailStatement() throws SQLException {
+        RecordingConnection recording = new RecordingConnection();
+        List<StudentAnswerDetail> details = details(ROWS);
+
+        assertEquals(1, AnswerDetailWriter.write(recording.connection(), details));
+        assertEquals(1, recording.prepared);
+        assertStatement(recording.executed.get(0), details, 0, ROWS);
+    }
+
+    @Test
+    void emptyListExecutesNothing() throws SQLException {
+        RecordingConnection recording = new RecordingConnection();
+
+        assertEquals(0, AnswerDetailWriter.write(recording.connection(), List.of()));
+        assertEquals(0, recording.prepared);
+    }
+
+    @Test
+    void missingSnapshotIsRejected() {
+        RecordingConnection recording = new RecordingConnection();
+        List<StudentAnswerDetail> details = details(3);
+        details.get(1).setSnapshotId(0);
+
+        assertThrows(SQLException.class, () -> AnswerDetailWriter.write(recording.connection(), details));
+        assertEquals(0, recording.executed.size());
+    }
+
+    private static void assertStatement(Executed executed, List<StudentAnswerDetail> details, int from, int to) {
+        int rows = to - from;
+        assertEquals(rows, countOccurrences(executed.sql, "(?, ?, ?, ?, ?)"), executed.sql);
+        assertEquals(rows * 5, executed.parameters.size());
+        int index = 1;
+        for (int i = from; i < to; i++) {
+            StudentAnswerDetail detail = details.get(i);
+            assertEquals(detail.getExamRecordId(), executed.parameters.get(index++));
+            assertEquals(detail.getQuestionId(), executed.parameters.get(index++));
+            assertEquals(detail.getSnapshotId(), executed.parameters.get(index++));
+            assertEquals(detail.getStudentAnswer(), executed.parameters.get(index++));
+            assertEquals(detail.isCorrect(), executed.parameters.get(index++));
+        }
+    }
+
+    private static int countOccurrences(String text, String token) {
+        int count = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + token.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    private static List<StudentAnswerDetail> details(int count) {
+        List<StudentAnswerDetail> details = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StudentAnswerDetail detail = new StudentAnswerDetail(42, 1000 + i, i % 3 == 0 ? "A,C" : "B", i % 2 == 0,
+                    "A,C", "题目" + i, QuestionType.MULTIPLE_CHOICE, "a", "b", "c", "d");
+            detail.setSnapshotId(5000 + i);
+            details.add(detail);
+        }
+        return details;
+    }
+
+    private static final class Executed {
+        final String sql;
+        final Map<Integer, Object> parameters;
+
+        Executed(String sql, Map<Integer, Object> parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+    }
+
+    /**
+     * 只实现写入器用到的方法：prepareStatement、set*、executeUpdate、close，其他调用直接失败
+     */
+    private static final class RecordingConnection {
+        final List<Executed> executed = new ArrayList<>();
+        int prepared;
+
+        Connection connection() {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("prepareStatement") && args.length == 1) {
+                            prepared++;
+                            return statement((String) args[0]);
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        private PreparedStatement statement(String sql) {
+            Map<Integer, Object> parameters = new HashMap<>();
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                    (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (name.startsWith("set") && args != null && args.length == 2 && args[0] instanceof Integer) {
+                            parameters.put((Integer) args[0], args[1]);
+                            return null;
+                        }
+                        switch (name) {
+                            case "executeUpdate":
+                                executed.add(new Executed(sql, new HashMap<>(parameters)));
+                                parameters.clear();
+                                return 1;
+                            case "close":
+                                return null;
+                            default:
+                                throw new UnsupportedOperationException(name);
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 成绩分析报告测试：在合成的快照上与逐行直接计算的结果对比
+ * 行数超过 CohortReport.LEAF_ROWS，fork-join 会分成多段后合并
+ */
+class CohortReportTest {
+    private static final String[] SUBJECTS = {"Java", "Python", "数据库"};
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final long START = 1_700_000_000_000L;
+    private static final int ROWS = 3 * CohortReport.LEAF_ROWS + 1234;
+
+    @Test
+    void matchesDirectComputationAcrossLeaves() {
+        ExamRecordSnapshot.View view = randomView(new Random(11L), ROWS);
+        long from = START + 10 * DAY;
+        long to = START + 50 * DAY;
+
+        for (String subject : new String[]{null, "Java", "Python", "数据库"}) {
+            assertMatches(view, subject, from, to);
+            assertMatches(view, subject, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+    }
+
+    @Test
+    void mergesLeavesWithDifferentMeans() {
+        // 前半部分全部满分，后半部分全部零分：各段均值不同，合并后均值 50、标准差 50
+        int size = 2 * CohortReport.LEAF_ROWS + 2;
+        int[] scores = new int[size];
+        int[] totals = new int[size];
+        long[] millis = new long[size];
+        Arrays.fill(totals, 20);
+        Arrays.fill(scores, 0, size / 2, 20);
+        Arrays.fill(millis, START);
+        ExamRecordSnapshot.View view = view(new int[size], scores, totals, millis);
+
+        CohortReport report = CohortReport.compute(view, "Java", Long.MIN_VALUE, Long.MAX_VALUE);
+
+        assertEquals(size, report.getCount());
+        assertEquals(50.0, report.getMean(), 1e-9);
+        assertEquals(50.0, report.getStandardDeviation(), 1e-9);
+        assertEquals(0.5, report.getPassRate(), 1e-12);
+        assertEquals(0.0, report.getPercentile(50));
+        assertEquals(100.0, report.getPercentile(50.001));
+        assertEquals(100.0, report.getPercentile(100));
+    }
+
+    @Test
+    void nearestRankPercentiles() {
+        // 得分率 10%, 20%, ..., 100%
+        int[] scores = new int[10];
+        int[] totals = new int[10];
+        for (int i = 0; i < 10; i++) {
+            scores[i] = i + 1;
+            totals[i] = 10;
+        }
+        CohortReport report = CohortReport.compute(view(new int[10], scores, totals, new long[10]), null,
+                Long.MIN_VALUE, Long.MAX_VALUE);
+
+        assertEquals(10.0, report.getPercentile(0));
+        assertEquals(10.0, report.getPercentile(10));
+        assertEquals(20.0, report.getPercentile(10.5));
+        assertEquals(50.0, report.getPercentile(50));
+        assertEquals(90.0, report.getPercentile(90));
+        assertEquals(100.0, report.getPercentile(91));
+        assertEquals(100.0, report.getPercentile(100));
+        assertEquals(0.5, report.getPassRate(), 1e-12);
+    }
+
+    @Test
+    void fromIsInclusiveAndToIsExclusive() {
+        long from = START + DAY;
+        long to = START + 2 * DAY;
+        long[] millis = {from - 1, from, from + 1, to - 1, to, to + 1};
+        int[] scores = {1, 2, 3, 4, 5, 6};
+        int[] totals = new int[6];
+        Arrays.fill(totals, 10);
+
+        CohortReport report = CohortReport.compute(view(new int[6], scores, totals, millis), "Java", from, to);
+
+        // 只包含 from、from + 1、to - 1 三行：得分率 20%, 30%, 40%
+        assertEquals(3, report.getCount());
+        assertEquals(30.0, report.getMean(), 1e-9);
+        assertEquals(20.0, report.getPercentile(0));
+        assertEquals(40.0, report.getPercentile(100));
+        assertEquals(0, CohortReport.compute(view(new int[6], scores, totals, millis), "Java", from, from).getCount());
+    }
+
+    @Test
+    void emptySubjectYieldsEmptyReport() {
+        ExamRecordSnapshot.View view = randomView(new Random(5L), ROWS);
+
+        for (CohortReport report : new CohortReport[]{
+                CohortReport.compute(view, "不存在的科目", Long.MIN_VALUE, Long.MAX_VALUE),
+                CohortReport.compute(view, "Java", START - 2 * DAY, START - DAY)}) {
+            assertEquals(0, report.getCount());
+            assertEquals(0.0, report.getMean());
+            assertEquals(0.0, report.getStandardDeviation());
+            assertEquals(0.0, report.getPassRate());
+            assertEquals(0.0, report.getPercentile(50));
+            assertEquals(0, Arrays.stream(report.getHistogram(10)).sum());
+        }
+    }
+
+    private static void assertMatches(ExamRecordSnapshot.View view, String subject, long from, long to) {
+        int subjectCode = subject == null ? -1 : view.subjectCode(subject);
+        int[] perMilles = new int[view.size()];
+        double[] percentages = new double[view.size()];
+        int count = 0;
+        long passCount = 0;
+        long[] histogram = new long[10];
+        for (int row = 0; row < view.size(); row++) {
+            long millis = view.getExamMillis(row);
+            if ((subjectCode >= 0 && view.getSubjectCode(row) != subjectCode) || millis < from || millis >= to) {
+                continue;
+            }
+            int score = view.getScore(row);
+            int total = view.getTotalQuestions(row);
+            percentages[count] = view.getPercentage(row);
+            perMilles[count] = total > 0 ? score * 1000 / total : 0;
+            histogram[Math.min(9, perMilles[count] / 100)]++;
+            if (total > 0 && score * 100 >= 60 * total) {
+                passCount++;
+            }
+            count++;
+        }
+        assertTrue(count > CohortReport.LEAF_ROWS / 4, "每个科目的行应分布在多段中");
+
+        double mean = 0;
+        for (int i = 0; i < count; i++) {
+            mean += percentages[i];
+        }
+        mean /= count;
+        double squares = 0;
+        for (int i = 0; i < count; i++) {
+            squares += (percentages[i] - mean) * (percentages[i] - mean);
+        }
+        int[] sorted = Arrays.copyOf(perMilles, count);
+        Arrays.sort(sorted);
+
+        CohortReport report = CohortReport.compute(view, subject, from, to);
+        String message = "科目 " + subject;
+        assertEquals(count, report.getCount(), message);
+        assertEquals(mean, report.getMean(), 1e-9, message);
+        assertEquals(Math.sqrt(squares / count), report.getStandardDeviation(), 1e-9, message);
+        assertEquals((double) passCount / count, report.getPassRate(), 1e-12, message);
+        assertArrayEquals(histogram, report.getHistogram(10), message);
+        for (double p : new double[]{0, 1, 10, 25, 50, 75, 90, 99, 99.9, 100}) {
+            int rank = Math.max(1, (int) Math.ceil(p / 100.0 * count));
+            assertEquals(sorted[rank - 1] / 10.0, report.getPercentile(p), message + " 百分位 " + p);
+        }
+    }
+
+    private static ExamRecordSnapshot.View randomView(Random random, int size) {
+        int[] subjectCodes = new int[size];
+        int[] scores = new int[size];
+        int[] totals = new int[size];
+        long[] millis = new long[size];
+        for (int row = 0; row < size; row++) {
+            subjectCodes[row] = random.nextInt(SUBJECTS.length);
+            // 少量题目数为 0 的记录按得分率 0 计入
+            totals[row] = random.nextInt(50) == 0 ? 0 : 1 + random.nextInt(100);
+            scores[row] = totals[row] == 0 ? 0 : random.nextInt(totals[row] + 1);
+            millis[row] = START + (long) (random.nextDouble() * 60 * DAY);
+        }
+        // 恰好落在区间边界上的记录
+        millis[0] = START + 10 * DAY;
+        millis[size - 1] = START + 50 * DAY;
+        return view(subjectCodes, scores, totals, millis);
+    }
+
+    private static ExamRecordSnapshot.View view(int[] subjectCodes, int[] scores, int[] totals, long[] millis) {
+        int size = scores.length;
+        int[] ids = new int[size];
+        for (int row = 0; row < size; row++) {
+            ids[row] = row + 1;
+        }
+        return new ExamRecordSnapshot.View(ids, new int[size], subjectCodes, scores, totals, millis, size,
+                new String[]{"s1"}, SUBJECTS, SUBJECTS.length);
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.service;
+
+import com.example.model.Question;
+import com.example.model.QuestionType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 评分引擎测试：多选题的重复、空项和无法识别的选项，正确答案不是 A-D 时的逐项比较，
+ * 填空题的首尾空白与大小写，以及与原 ExamService.submitExam 判定规则的随机对比
+ */
+class GradingEngineTest {
+    private static final String[] TOKENS = {"A", "B", "C", "D", "E", "a", "b", " A", "B ", "\tC", "", " ", "AB", "Ω", "D\n"};
+    private static final String[] FILL_PARTS = {"java", "JAVA", "Java", " ", "\t", "\n", "类", "ß", "ǅ", "İ", "x", "1", ""};
+
+    @Test
+    void multipleChoiceIgnoresOrderAndSurroundingWhitespace() {
+        GradingEngine.AnswerKey key = GradingEngine.compile(multipleChoice("A", "C"));
+
+        assertTrue(GradingEngine.isCorrect(key, "A,C"));
+        assertTrue(GradingEngine.isCorrect(key, "C,A"));
+        assertTrue(GradingEngine.isCorrect(key, " C , A "));
+        assertTrue(GradingEngine.isCorrect(key, "A,C,"), "与 split 一致，末尾的空项被忽略");
+        assertTrue(GradingEngine.isCorrect(key, "A,C,,,"));
+        assertFalse(GradingEngine.isCorrect(key, "A"));
+        assertFalse(GradingEngine.isCorrect(key, "A,B,C"));
+        assertEquals("A,C", key.getCorrectAnswerText());
+    }
+
+    @Test
+    void multipleChoiceRejectsDuplicateEmptyAndUnknownTokens() {
+        GradingEngine.AnswerKey key = GradingEngine.compile(multipleChoice("A", "C"));
+
+        assertFalse(GradingEngine.isCorrect(key, "A,A,C"), "重复选项");
+        assertFalse(GradingEngine.isCorrect(key, "A,,C"), "中间的空项");
+        assertFalse(GradingEngine.isCorrect(key, ",A,C"), "开头的空项");
+        assertFalse(GradingEngine.isCorrect(key, "A, ,C"), "只有空白的项");
+        assertFalse(GradingEngine.isCorrect(key, "A,C,E"), "A-D 以外的字母");
+        assertFalse(GradingEngine.isCorrect(key, "a,c"), "小写字母");
+        assertFalse(GradingEngine.isCorrect(key, "AC"), "未分隔的多个字母");
+        assertFalse(GradingEngine.isCorrect(key, ""));
+        assertFalse(GradingEngine.isCorrect(key, null));
+    }
+
+    @Test
+    void multipleChoiceFallsBackForNonCanonicalCorrectAnswers() {
+        // 正确答案不是 A-D 中的单个字母：逐项去掉空白后排序比较
+        GradingEngine.AnswerKey lower = GradingEngine.compile(multipleChoice("a", " c "));
+        assertTrue(GradingEngine.isCorrect(lower, "c,a"));
+        assertFalse(GradingEngine.isCorrect(lower, "A,C"));
+
+        GradingEngine.AnswerKey extra = GradingEngine.compile(multipleChoice("A", "E"));
+        assertTrue(GradingEngine.isCorrect(extra, "E, A"));
+        assertFalse(GradingEngine.isCorrect(extra, "A"));
+
+        GradingEngine.AnswerKey duplicated = GradingEngine.compile(multipleChoice("B", "B"));
+        assertTrue(GradingEngine.isCorrect(duplicated, "B,B"));
+        assertFalse(GradingEngine.isCorrect(duplicated, "B"));
+
+        Question missing = multipleChoice();
+        missing.setCorrectAnswers(null);
+        assertFalse(GradingEngine.isCorrect(GradingEngine.compile(missing), "A"));
+    }
+
+    @Test
+    void emptyCorrectAnswerMatchesOnlyEmptyAnswer() {
+        GradingEngine.AnswerKey key = GradingEngine.compile(multipleChoice());
+
+        assertTrue(GradingEngine.isCorrect(key, ""));
+        assertTrue(GradingEngine.isCorrect(key, null));
+        assertTrue(GradingEngine.isCorrect(key, ","), "split 只得到末尾的空项");
+        assertFalse(GradingEngine.isCorrect(key, "A"));
+    }
+
+    @Test
+    void singleChoiceIsExactMatch() {
+        GradingEngine.AnswerKey key = GradingEngine.compile(singleChoice("B"));
+
+        assertTrue(GradingEngine.isCorrect(key, "B"));
+        assertFalse(GradingEngine.isCorrect(key, " B"));
+        assertFalse(GradingEngine.isCorrect(key, "b"));
+        assertFalse(GradingEngine.isCorrect(key, null));
+    }
+
+    @Test
+    void fillBlankIsTrimmedAndCaseInsensitive() {
+        GradingEngine.AnswerKey key = GradingEngine.compile(fillBlank("  Java Virtual Machine\t"));
+
+        assertTrue(GradingEngine.isCorrect(key, "java virtual machine"));
+        assertTrue(GradingEngine.isCorrect(key, "\n JAVA VIRTUAL MACHINE  "));
+        assertFalse(GradingEngine.isCorrect(key, "java  virtual machine"), "中间的空白不做处理");
+        assertFalse(GradingEngine.isCorrect(key, "java virtual"));
+        assertFalse(GradingEngine.isCorrect(key, ""));
+        assertEquals("  Java Virtual Machine\t", key.getCorrectAnswerText(), "保存原始的正确答案");
+
+        GradingEngine.AnswerKey missing = GradingEngine.compile(fillBlank(null));
+        assertTrue(GradingEngine.isCorrect(missing, "  "));
+        assertTrue(GradingEngine.isCorrect(missing, null));
+        assertFalse(GradingEngine.isCorrect(missing, "x"));
+    }
+
+    @Test
+    void parseMaskReportsInvalidAnswers() {
+        assertEquals(0b0101, GradingEngine.parseMask("A,C"));
+        assertEquals(0b1000, GradingEngine.parseMask(" D ,"));
+        assertEquals(0, GradingEngine.parseMask(""));
+        assertEquals(-1, GradingEngine.parseMask("A,A"));
+        assertEquals(-1, GradingEngine.parseMask("A,,B"));
+        assertEquals(-1, GradingEngine.parseMask("F"));
+    }
+
+    @Test
+    void matchesLegacyGradingOnRandomAnswers() {
+        Random random = new Random(20240611L);
+        for (int i = 0; i < 50_000; i++) {
+            Question question;
+            String answer;
+            switch (random.nextInt(3)) {
+                case 0:
+                    question = multipleChoice(randomCorrectLetters(random).toArray(new String[0]));
+                    answer = random.nextInt(10) == 0 ? null : randomChoiceAnswer(random);
+                    break;
+                case 1:
+                    question = singleChoice(TOKENS[random.nextInt(TOKENS.length)]);
+                    answer = random.nextInt(10) == 0 ? null : TOKENS[random.nextInt(TOKENS.length)];
+                    break;
+                default:
+                    question = fillBlank(random.nextInt(20) == 0 ? null : randomFillText(random));
+                    answer = random.nextInt(10) == 0 ? null : randomFillText(random);
+                    break;
+            }
+            question.setId(i);
+            assertEquals(legacyIsCorrect(question, answer), GradingEngine.isCorrect(GradingEngine.compile(question), answer),
+                    () -> question.getType() + " 正确答案 " + describe(question) + " 作答 [" + answer + "]");
+        }
+    }
+
+    /**
+     * 原 ExamService.submitExam 中的判定逻辑
+     */
+    private static boolean legacyIsCorrect(Question question, String userAnswer) {
+        if (userAnswer == null) userAnswer = "";
+        switch (question.getType()) {
+            case SINGLE_CHOICE:
+                return userAnswer.equals(question.getCorrectAnswer());
+            case MULTIPLE_CHOICE: {
+                List<String> correctOptionLetters = question.getCorrectAnswers();
+                List<String> studentSelectedOptionLetters = new ArrayList<>();
+                if (!userAnswer.isEmpty()) {
+                    studentSelectedOptionLetters.addAll(Arrays.asList(userAnswer.split(",")));
+                }
+                List<String> sortedCorrectOptions = correctOptionLetters.stream().map(String::trim).sorted().collect(Collectors.toList());
+                List<String> sortedStudentOptions = studentSelectedOptionLetters.stream().map(String::trim).sorted().collect(Collectors.toList());
+                return sortedStudentOptions.equals(sortedCorrectOptions);
+            }
+            case FILL_BLANK: {
+                String correctAnswerText = question.getFillBlankAnswer();
+                return userAnswer.trim().equalsIgnoreCase(correctAnswerText == null ? "" : correctAnswerText.trim());
+            }
+            default:
+                return false;
+        }
+    }
+
+    private static List<String> randomCorrectLetters(Random random) {
+        List<String> letters = new ArrayList<>();
+        if (random.nextInt(5) == 0) {
+            // 不规范的正确答案
+            int count = random.nextInt(3);
+            for (int i = 0; i < count; i++) {
+                letters.add(TOKENS[random.nextInt(TOKENS.length)]);
+            }
+            return letters;
+        }
+        for (String letter : new String[]{"A", "B", "C", "D"}) {
+            if (random.nextBoolean()) {
+                letters.add(letter);
+            }
+        }
+        if (letters.isEmpty()) {
+            letters.add("B");
+        }
+        return letters;
+    }
+
+    private static String randomChoiceAnswer(Random random) {
+        int count = random.nextInt(6);
+        StringBuilder answer = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                answer.append(',');
+            }
+            // 多数时候只用规范字母，让正确的作答足够常见
+            answer.append(random.nextInt(3) == 0 ? TOKENS[random.nextInt(TOKENS.length)] : TOKENS[random.nextInt(4)]);
+        }
+        int trailing = random.nextInt(8) == 0 ? 1 + random.nextInt(2) : 0;
+        answer.append(",".repeat(trailing));
+        return answer.toString();
+    }
+
+    private static String randomFillText(Random random) {
+        int count = random.nextInt(4);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(FILL_PARTS[random.nextInt(FILL_PARTS.length)]);
+        }
+        return text.toString();
+    }
+
+    private static String describe(Question question) {
+        switch (question.getType()) {
+            case MULTIPLE_CHOICE:
+                return String.valueOf(question.getCorrectAnswers());
+            case FILL_BLANK:
+                return "[" + question.getFillBlankAnswer() + "]";
+            default:
+                return "[" + question.getCorrectAnswer() + "]";
+        }
+    }
+
+    private static Question singleChoice(String correct) {
+        return new Question("题目", "a", "b", "c", "d", correct, "Java");
+    }
+
+    private static Question multipleChoice(String... letters) {
+        return new Question("题目", "a", "b", "c", "d", new ArrayList<>(List.of(letters)), "Java");
+    }
+
+    private static Question fillBlank(String answer) {
+        Question question = new Question("题目", answer, "Java");
+        assertEquals(QuestionType.FILL_BLANK, question.getType());
+        return question;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.service;
+
+import com.example.model.Question;
+import com.example.model.StudentAnswerDetail;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 边答边评分测试：随机的保存答案序列之后，累计得分和答题详情必须与按最终答案重新评分的结果相同
+ */
+class LiveAttemptTest {
+    private static final String[] CHOICE_ANSWERS = {"", "A", "B", "C", "D", "A,C", "C,A", "A,B,C,D", "A,A", "a", " B ", "A,,C"};
+    private static final String[] FILL_ANSWERS = {"", "java", "JAVA", "  Java  ", "jvm", "虚拟机", " 虚拟机\t"};
+
+    @Test
+    void randomEditsMatchGradingFromScratch() {
+        Random random = new Random(7L);
+        for (int round = 0; round < 500; round++) {
+            List<Question> questions = randomQuestions(random, 1 + random.nextInt(40));
+            LiveAttempt attempt = new LiveAttempt(questions);
+            Map<Integer, String> finalAnswers = new HashMap<>();
+
+            int edits = random.nextInt(200);
+            for (int i = 0; i < edits; i++) {
+                // 偶尔保存不属于本场考试的题目，应被忽略
+                int questionId = random.nextInt(20) == 0 ? -1 - random.nextInt(5) : questions.get(random.nextInt(questions.size())).getId();
+                Question question = questionById(questions, questionId);
+                String answer = question == null ? "A" : randomAnswer(random, question);
+                attempt.recordAnswer(questionId, answer);
+                if (question != null) {
+                    finalAnswers.put(questionId, answer == null ? "" : answer);
+                }
+                if (random.nextInt(10) == 0) {
+                    assertEquals(gradeFromScratch(questions, finalAnswers), attempt.getCorrectCount());
+                }
+            }
+
+            assertMatchesScratch(questions, finalAnswers, attempt);
+        }
+    }
+
+    @Test
+    void answersAfterCloseAreIgnored() {
+        List<Question> questions = randomQuestions(new Random(3L), 10);
+        LiveAttempt attempt = new LiveAttempt(questions);
+        Question first = questions.get(0);
+        String answer = correctAnswer(first);
+        attempt.recordAnswer(first.getId(), answer);
+
+        Submission submission = attempt.close("s1", "Java");
+        attempt.recordAnswer(first.getId(), "wrong");
+
+        Map<Integer, String> expected = new HashMap<>();
+        expected.put(first.getId(), answer);
+        assertEquals(gradeFromScratch(questions, expected), submission.getCorrectCount());
+        assertEquals(submission.getCorrectCount(), attempt.getCorrectCount());
+        assertEquals(answer, submission.getDetails().get(0).getStudentAnswer());
+    }
+
+    private static void assertMatchesScratch(List<Question> questions, Map<Integer, String> finalAnswers, LiveAttempt attempt) {
+        assertEquals(gradeFromScratch(questions, finalAnswers), attempt.getCorrectCount());
+        Map<Integer, String> answers = attempt.getAnswers();
+        assertEquals(questions.size(), answers.size());
+
+        Submission submission = attempt.close("s1", "Java");
+        assertEquals(attempt.getCorrectCount(), submission.getCorrectCount());
+        assertEquals(questions.size(), submission.getTotalQuestions());
+        List<StudentAnswerDetail> details = submission.getDetails();
+        for (int i = 0; i < questions.size(); i++) {
+            Question question = questions.get(i);
+            String answer = finalAnswers.getOrDefault(question.getId(), "");
+            StudentAnswerDetail detail = details.get(i);
+            GradingEngine.AnswerKey key = GradingEngine.compile(question);
+            assertEquals(question.getId(), detail.getQuestionId());
+            assertEquals(answer, detail.getStudentAnswer());
+            assertEquals(answer, answers.get(question.getId()));
+            assertEquals(GradingEngine.isCorrect(key, answer), detail.isCorrect());
+            assertEquals(key.getCorrectAnswerText(), detail.getCorrectAnswer());
+        }
+    }
+
+    private static int gradeFromScratch(List<Question> questions, Map<Integer, String> answers) {
+        int correct = 0;
+        for (Question question : questions) {
+            if (GradingEngine.isCorrect(GradingEngine.compile(question), answers.getOrDefault(question.getId(), ""))) {
+                correct++;
+            }
+        }
+        return correct;
+    }
+
+    private static List<Question> randomQuestions(Random random, int count) {
+        List<Question> questions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Question question;
+            switch (random.nextInt(3)) {
+                case 0:
+                    question = new Question("单选" + i, "a", "b", "c", "d", String.valueOf((char) ('A' + random.nextInt(4))), "Java");
+                    break;
+                case 1: {
+                    List<String> letters = new ArrayList<>();
+                    for (String letter : new String[]{"A", "B", "C", "D"}) {
+                        if (random.nextBoolean()) {
+                            letters.add(letter);
+                        }
+                    }
+                    question = new Question("多选" + i, "a", "b", "c", "d", letters, "Java");
+                    break;
+                }
+                default:
+                    question = new Question("填空" + i, random.nextBoolean() ? "Java" : "虚拟机", "Java");
+                    break;
+            }
+            question.setId(100 + i);
+            questions.add(question);
+        }
+        return questions;
+    }
+
+    private static String randomAnswer(Random random, Question question) {
+        switch (random.nextInt(6)) {
+            case 0:
+                return null;
+            case 1:
+                return correctAnswer(question);
+            default:
+                String[] pool = question.getFillBlankAnswer() != null ? FILL_ANSWERS : CHOICE_ANSWERS;
+                return pool[random.nextInt(pool.length)];
+        }
+    }
+
+    private static String correctAnswer(Question question) {
+        switch (question.getType()) {
+            case MULTIPLE_CHOICE:
+                return String.join(",", question.getCorrectAnswers());
+            case FILL_BLANK:
+                return question.getFillBlankAnswer();
+            default:
+                return question.getCorrectAnswer();
+        }
+    }
+
+    private static Question questionById(List<Question> questions, int id) {
+        for (Question question : questions) {
+            if (question.getId() == id) {
+                return question;
+            }
+        }
+        return null;
+    }
+}
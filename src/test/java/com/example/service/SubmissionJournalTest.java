@@ -0,0 +1,139 @@
+package com.example.service;
+
+import com.example.model.QuestionType;
+import com.example.model.StudentAnswerDetail;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 交卷日志的恢复测试：段滚动、部分写入数据库后的重放起点、全部写入后的清理、末尾不完整记录的截断
+ */
+class SubmissionJournalTest {
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoverEmptyDirectory() throws IOException {
+        assertTrue(new SubmissionJournal(directory, SEGMENT_SIZE).recover().isEmpty());
+    }
+
+    @Test
+    void replaysEntriesAfterDrainedPositionAcrossSegments() throws IOException {
+        SubmissionJournal journal = new SubmissionJournal(directory, SEGMENT_SIZE);
+        journal.recover();
+        List<SubmissionJournal.Position> positions = appendEntries(journal, 50);
+        assertTrue(segmentFiles().size() > 1, "50 条记录应当跨越多个段");
+
+        journal.markDrained(positions.get(19));
+
+        List<SubmissionJournal.Entry> entries = new SubmissionJournal(directory, SEGMENT_SIZE).recover();
+        assertEquals(30, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertArrayEquals(payload(20 + i), entries.get(i).payload);
+        }
+    }
+
+    @Test
+    void fullyDrainedJournalReplaysNothing() throws IOException {
+        SubmissionJournal journal = new SubmissionJournal(directory, SEGMENT_SIZE);
+        journal.recover();
+        List<SubmissionJournal.Position> positions = appendEntries(journal, 50);
+
+        journal.markDrained(positions.get(positions.size() - 1));
+
+        assertEquals(1, segmentFiles().size(), "只保留当前段");
+        assertTrue(new SubmissionJournal(directory, SEGMENT_SIZE).recover().isEmpty());
+    }
+
+    @Test
+    void drainedSegmentLeftOnDiskReplaysNothing() throws IOException {
+        SubmissionJournal journal = new SubmissionJournal(directory, SEGMENT_SIZE);
+        journal.recover();
+        List<SubmissionJournal.Position> positions = appendEntries(journal, 50);
+        Path first = segmentFiles().get(0);
+        Path link = directory.resolve("first.link");
+        Files.createLink(link, first);
+
+        // 模拟删除失败（如 Windows 上映射未释放）：硬链接与段文件共用数据，写入数据库后再把它放回原处
+        journal.markDrained(positions.get(positions.size() - 1));
+        Files.move(link, first, StandardCopyOption.REPLACE_EXISTING);
+        assertEquals(2, segmentFiles().size());
+
+        assertTrue(new SubmissionJournal(directory, SEGMENT_SIZE).recover().isEmpty());
+    }
+
+    @Test
+    void truncatesTornEntryAndKeepsAppending() throws IOException {
+        SubmissionJournal journal = new SubmissionJournal(directory, SEGMENT_SIZE);
+        journal.recover();
+        journal.append(new byte[]{1, 2, 3});
+        SubmissionJournal.Position torn = journal.append(new byte[]{4, 5, 6, 7});
+
+        // 第二条记录只写了一部分：最后一个字节与校验和不符
+        Path segment = segmentFiles().get(0);
+        byte[] raw = Files.readAllBytes(segment);
+        raw[torn.offset - 1] ^= 0x55;
+        Files.write(segment, raw);
+
+        SubmissionJournal recovered = new SubmissionJournal(directory, SEGMENT_SIZE);
+        List<SubmissionJournal.Entry> entries = recovered.recover();
+        assertEquals(1, entries.size());
+        assertArrayEquals(new byte[]{1, 2, 3}, entries.get(0).payload);
+
+        recovered.append(new byte[]{9});
+        List<SubmissionJournal.Entry> afterAppend = new SubmissionJournal(directory, SEGMENT_SIZE).recover();
+        assertEquals(2, afterAppend.size());
+        assertArrayEquals(new byte[]{9}, afterAppend.get(1).payload);
+    }
+
+    @Test
+    void submissionRoundTrip() throws IOException {
+        StudentAnswerDetail detail = new StudentAnswerDetail(0, 5, "A,C", true, "A,C", "题目",
+                QuestionType.MULTIPLE_CHOICE, "a", null, "c", "d");
+        Submission submission = new Submission("s1", "Java", 1, 1, List.of(detail));
+
+        Submission decoded = Submission.fromBytes(submission.toBytes());
+
+        assertEquals(submission.getSubmissionId(), decoded.getSubmissionId());
+        StudentAnswerDetail decodedDetail = decoded.getDetails().get(0);
+        assertEquals("题目", decodedDetail.getQuestionText());
+        assertEquals(null, decodedDetail.getOptionB());
+        assertEquals(QuestionType.MULTIPLE_CHOICE, decodedDetail.getQuestionType());
+        assertTrue(decodedDetail.isCorrect());
+    }
+
+    private static List<SubmissionJournal.Position> appendEntries(SubmissionJournal journal, int count) throws IOException {
+        List<SubmissionJournal.Position> positions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            positions.add(journal.append(payload(i)));
+        }
+        return positions;
+    }
+
+    private static byte[] payload(int i) {
+        byte[] payload = new byte[100 + i];
+        Arrays.fill(payload, (byte) i);
+        return payload;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".journal")).sorted().toList();
+        }
+    }
+}